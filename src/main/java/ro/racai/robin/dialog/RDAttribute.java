@@ -0,0 +1,125 @@
+/**
+ *
+ */
+package ro.racai.robin.dialog;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ro.racai.robin.nlp.StringUtils;
+
+/**
+ * @author Radu Ion ({@code radu@racai.ro})
+ *         <p>
+ *         An attribute is a qualifier of an {@link CType#AMOUNT} concept which selects one of its
+ *         references, e.g. <i>ieftin</i> selects the lowest <i>preț</i> and <i>scump</i> selects
+ *         the highest one. It is declared in the micro-world file with:
+ *         </p>
+ *         <p>
+ *         {@code ATTRIBUTE ieftin -> MIN preț}
+ *         </p>
+ *         <p>
+ *         and it is used in superlative queries such as <i>Care este cel mai ieftin laptop?</i>
+ *         </p>
+ */
+public class RDAttribute {
+	/**
+	 * @author Radu Ion ({@code radu@racai.ro})
+	 *         <p>
+	 *         Which end of the values of the concept the attribute selects.
+	 *         </p>
+	 */
+	public enum Order {
+		MIN, MAX
+	}
+
+	/**
+	 * The adjective of the attribute, e.g. <i>ieftin</i>.
+	 */
+	private String canonicalForm;
+
+	/**
+	 * Other adjectives with the same meaning, e.g. <i>convenabil</i>.
+	 */
+	private List<String> synonymsOfCanonicalForm;
+
+	/**
+	 * The {@link CType#AMOUNT} concept definition whose values are compared.
+	 */
+	private RDConcept amountConcept;
+
+	private Order order;
+
+	private RDAttribute(String name, RDConcept concept, Order ord) {
+		if (StringUtils.isNullEmptyOrBlank(name)) {
+			throw new RuntimeException("Attribute name cannot be null, empty or blank!");
+		}
+
+		if (concept == null || concept.getType() != CType.AMOUNT) {
+			throw new RuntimeException(
+					String.format("Attribute '%s' must qualify an AMOUNT concept!", name));
+		}
+
+		canonicalForm = name.trim().toLowerCase();
+		synonymsOfCanonicalForm = new ArrayList<>();
+		amountConcept = concept;
+		order = ord;
+	}
+
+	/**
+	 * <p>
+	 * Builds an attribute of an {@link CType#AMOUNT} concept.
+	 * </p>
+	 *
+	 * @param name    the adjective of the attribute;
+	 * @param syns    synonyms of the adjective;
+	 * @param concept the amount concept definition that the attribute qualifies;
+	 * @param ord     whether the attribute selects the lowest or the highest value.
+	 * @return the new attribute.
+	 */
+	public static RDAttribute attributeBuilder(String name, List<String> syns, RDConcept concept,
+			Order ord) {
+		RDAttribute attr = new RDAttribute(name, concept, ord);
+
+		for (String s : syns) {
+			attr.synonymsOfCanonicalForm.add(s.trim().toLowerCase());
+		}
+
+		return attr;
+	}
+
+	public String getCanonicalName() {
+		return canonicalForm;
+	}
+
+	public List<String> getSynonyms() {
+		return synonymsOfCanonicalForm;
+	}
+
+	public RDConcept getConcept() {
+		return amountConcept;
+	}
+
+	public Order getOrder() {
+		return order;
+	}
+
+	/**
+	 * <p>
+	 * Tests if a word (lemma) refers to this attribute.
+	 * </p>
+	 *
+	 * @param word the word to be tested;
+	 * @return {@code true} if the word is the attribute or one of its synonyms.
+	 */
+	public boolean isThisAttribute(String word) {
+		word = word.trim().toLowerCase();
+
+		return word.equals(canonicalForm) || synonymsOfCanonicalForm.contains(word);
+	}
+
+	@Override
+	public String toString() {
+		return canonicalForm + " -> " + order.name() + " " + amountConcept.getCanonicalName();
+	}
+}
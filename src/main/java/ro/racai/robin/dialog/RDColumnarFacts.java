@@ -0,0 +1,352 @@
+/**
+ *
+ */
+package ro.racai.robin.dialog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+import ro.racai.robin.dialog.RDPredicate.PMatch;
+import ro.racai.robin.dialog.RDUniverse.QueryScoring;
+import ro.racai.robin.dialog.RDUniverse.ScoringScratch;
+import ro.racai.robin.nlp.CompressedBitmap;
+
+/**
+ * @author Radu Ion ({@code radu@racai.ro})
+ *         <p>
+ *         The TRUE facts of a universe in the int columns of an {@link RDFactStore}, for
+ *         universes with many facts, see {@link RDUniverse#setColumnarFacts(boolean)}. The action
+ *         verb index points to the tables of the store, whose rows are scored one column cell at
+ *         a time; only the facts of the best rows are built as {@link RDPredicate} objects. Fact
+ *         grouping and parallel scoring do not apply here.
+ *         </p>
+ */
+class RDColumnarFacts implements RDFacts {
+	protected RDFactStore store;
+
+	/**
+	 * Action verb to table definitions index, reset when the facts change.
+	 */
+	private RDPredicateIndex predicateIndex;
+
+	/**
+	 * The table IDs of the predicate definitions of {@link #store}, by identity. Built together
+	 * with {@link #predicateIndex}.
+	 */
+	private Map<RDPredicate, Integer> tableIds = new IdentityHashMap<>();
+
+	private RDFactIndexes indexes;
+
+	/**
+	 * @author Radu Ion ({@code radu@racai.ro})
+	 *         <p>
+	 *         The best {@code k} facts of the {@link RDColumnarFacts#store}, best first, the
+	 *         lower fact ID first on equal scores.
+	 *         </p>
+	 */
+	private static class TopFacts {
+		final int[] facts;
+		final float[] scores;
+		final boolean[] exact;
+		int found;
+
+		TopFacts(int k) {
+			facts = new int[k];
+			scores = new float[k];
+			exact = new boolean[k];
+		}
+
+		void offer(int fact, float score, boolean exactMatch) {
+			int k = facts.length;
+
+			if (score <= 0.0f || (found == k && (score < scores[k - 1]
+					|| (score == scores[k - 1] && fact > facts[k - 1])))) {
+				return;
+			}
+
+			int e = Math.min(found, k - 1);
+
+			// Tables are not in fact order, so ties are ordered by fact ID.
+			while (e > 0 && (score > scores[e - 1]
+					|| (score == scores[e - 1] && fact < facts[e - 1]))) {
+				facts[e] = facts[e - 1];
+				scores[e] = scores[e - 1];
+				exact[e] = exact[e - 1];
+				e--;
+			}
+
+			facts[e] = fact;
+			scores[e] = score;
+			exact[e] = exactMatch;
+			found = Math.min(found + 1, k);
+		}
+	}
+
+	RDColumnarFacts(RDFactStore store) {
+		this.store = store;
+	}
+
+	/**
+	 * @param base the facts whose store and indexes are shared, e.g. by the copy of a universe.
+	 */
+	RDColumnarFacts(RDColumnarFacts base) {
+		store = base.store;
+		predicateIndex = base.predicateIndex;
+		tableIds = base.tableIds;
+		indexes = base.indexes;
+	}
+
+	@Override
+	public int size() {
+		return store.size();
+	}
+
+	@Override
+	public RDPredicate fact(int factId) {
+		return store.fact(factId);
+	}
+
+	@Override
+	public int arity(int factId) {
+		return store.arity(factId);
+	}
+
+	@Override
+	public RDConcept argument(int factId, int position) {
+		return store.concept(store.argumentId(factId, position));
+	}
+
+	@Override
+	public List<RDPredicate> toList() {
+		return store.facts();
+	}
+
+	@Override
+	public List<RDPredicate> definitions() {
+		List<RDPredicate> definitions = new ArrayList<>();
+
+		for (int t = 0; t < store.tableCount(); t++) {
+			definitions.add(store.definition(t));
+		}
+
+		return definitions;
+	}
+
+	@Override
+	public void add(RDPredicate fact) {
+		store.addFact(fact);
+		clearIndexes();
+	}
+
+	@Override
+	public void setAll(List<RDPredicate> facts) {
+		store = new RDFactStore();
+
+		for (RDPredicate p : facts) {
+			store.addFact(p);
+		}
+
+		clearIndexes();
+	}
+
+	@Override
+	public int factId(RDPredicate fact) {
+		// The facts are built from their rows, so they have no identity.
+		return -1;
+	}
+
+	@Override
+	public int globalFactId(int factId) {
+		return factId;
+	}
+
+	@Override
+	public RDFacts copy() {
+		return new RDColumnarFacts(this);
+	}
+
+	@Override
+	public RDFacts toColumnar() {
+		return this;
+	}
+
+	@Override
+	public RDFacts toObjects() {
+		return new RDObjectFacts(store.facts());
+	}
+
+	@Override
+	public RDPartitionFacts partition(IntPredicate keep) {
+		throw new UnsupportedOperationException("Columnar facts cannot be partitioned!");
+	}
+
+	@Override
+	public RDObjectFacts forTransaction() {
+		throw new UnsupportedOperationException(
+				"Transactions are not supported with columnar facts!");
+	}
+
+	@Override
+	public void index(RDUniverse universe) {
+		List<RDPredicate> definitions = definitions();
+		Map<RDPredicate, Integer> ids = new IdentityHashMap<>();
+
+		for (int t = 0; t < definitions.size(); t++) {
+			ids.put(definitions.get(t), t);
+		}
+
+		tableIds = ids;
+		// The store has the posting lists of the concepts, which are mapped from its file if it
+		// is an RDMappedFactStore, so they are not copied to the heap as bitmaps.
+		indexes = RDFactIndexes.of(this, universe.getDefinedConcepts(), universe.getWordNet(),
+				false);
+		// The verb index points to the tables of the store
+		predicateIndex = new RDPredicateIndex(definitions, universe.getWordNet());
+	}
+
+	@Override
+	public void clearIndexes() {
+		predicateIndex = null;
+	}
+
+	@Override
+	public boolean isIndexed() {
+		return predicateIndex != null;
+	}
+
+	@Override
+	public RDFactIndexes indexes() {
+		return indexes;
+	}
+
+	@Override
+	public CompressedBitmap factsWith(RDConcept conc) {
+		Integer id = store.getConceptIds().get(conc);
+
+		if (id == null) {
+			return null;
+		}
+
+		int[] postings = store.factsWith(id);
+
+		return postings.length == 0 ? null : CompressedBitmap.of(postings);
+	}
+
+	@Override
+	public Map<RDConcept, Integer> argumentIds() {
+		return store.getConceptIds();
+	}
+
+	/**
+	 * <p>
+	 * Scores the rows of the tables of the {@link #store} whose verb matches the query, one column
+	 * cell at a time, and only builds the facts of the best {@code k} rows.
+	 * </p>
+	 */
+	@Override
+	public List<PMatch> topK(RDUniverse universe, QueryScoring scoring, int k,
+			CompressedBitmap survivors) {
+		ScoringScratch scratch = universe.scratch();
+		// -1 for the tables whose verb does not match, 1 for an exact match, 0 otherwise.
+		byte[] verbMatch = new byte[store.tableCount()];
+		TopFacts best = new TopFacts(k);
+
+		Arrays.fill(verbMatch, (byte) -1);
+
+		for (RDPredicate definition : predicateIndex.predicatesFor(scoring.query.actionVerb)) {
+			int t = tableIds.get(definition);
+
+			if (definition.isTheActionVerb(scoring.query.actionVerb)) {
+				verbMatch[t] = 1;
+			} else if (definition.isThisPredicate(scoring.query.actionVerb,
+					universe.getWordNet())) {
+				verbMatch[t] = 0;
+			}
+		}
+
+		if (survivors != null) {
+			// In fact order, straight from the bitmap
+			for (int f : survivors.toArray()) {
+				int t = store.tableOf(f);
+
+				if (verbMatch[t] >= 0) {
+					scratch.exactPredicateNameMatch = verbMatch[t] == 1;
+					best.offer(f, scoreFact(universe, scoring, t, store.rowOf(f), scratch),
+							scratch.exactPredicateNameMatch);
+				}
+			}
+		} else {
+			for (int t = 0; t < verbMatch.length; t++) {
+				if (verbMatch[t] < 0) {
+					continue;
+				}
+
+				scratch.exactPredicateNameMatch = verbMatch[t] == 1;
+
+				for (int row = 0; row < store.rowCount(t); row++) {
+					best.offer(store.factId(t, row),
+							scoreFact(universe, scoring, t, row, scratch),
+							scratch.exactPredicateNameMatch);
+				}
+			}
+		}
+
+		List<PMatch> result = new ArrayList<>();
+
+		for (int e = 0; e < best.found; e++) {
+			int f = best.facts[e];
+
+			// Score the row again to get its details into scratch.
+			scratch.exactPredicateNameMatch = best.exact[e];
+			scoreFact(universe, scoring, store.tableOf(f), store.rowOf(f), scratch);
+			scratch.matchedFact = store.fact(f);
+			result.add(universe.toPMatch(scoring, scratch, best.scores[e]));
+		}
+
+		return result;
+	}
+
+	/**
+	 * <p>
+	 * Scores a row of a table of the {@link #store} as {@link RDObjectFacts} scores a fact, without
+	 * building the fact. The verb match of the table is already in {@code scratch}.
+	 * </p>
+	 */
+	private float scoreFact(RDUniverse universe, QueryScoring scoring, int table, int row,
+			ScoringScratch scratch) {
+		int queryArgCount = scoring.query.predicateArguments.size();
+		int arity = store.arity(table, row);
+		float[] argScores = scratch.argScores(arity);
+		float matchScore = 0.0f;
+
+		scratch.saidArgumentIndex = -1;
+
+		for (int i = 0; i < arity; i++) {
+			int id = store.argumentId(table, row, i);
+			RDConcept pArg = store.concept(id);
+			float maxScore = 0.0f;
+
+			for (int j = 0; j < queryArgCount; j++) {
+				float cell = universe.cellScore(scoring, pArg, id, j, scratch);
+
+				if (cell > maxScore) {
+					maxScore = cell;
+				}
+
+				if (scratch.saidArgumentIndex == -1
+						&& universe.isOfSameQueryType(scoring, pArg, id, j)) {
+					scratch.saidArgumentIndex = i;
+				}
+			}
+
+			matchScore += maxScore;
+			argScores[i] = maxScore;
+		}
+
+		return matchScore + (scratch.exactPredicateNameMatch ? 0.5f : 0.25f);
+	}
+}
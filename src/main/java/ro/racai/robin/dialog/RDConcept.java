@@ -4,7 +4,9 @@
 package ro.racai.robin.dialog;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import org.apache.log4j.Logger;
 import ro.racai.robin.nlp.Lexicon;
 import ro.racai.robin.nlp.StringUtils;
@@ -51,6 +53,12 @@ public class RDConcept {
 	 */
 	protected List<String> synonymsOfCanonicalForm;
 
+	/**
+	 * {@code true} if {@link #synonymsOfCanonicalForm} is shared with the concept this one was
+	 * copied from, or with its other copies. It is copied before it is changed.
+	 */
+	private boolean sharedSynonyms;
+
 	/**
 	 * This is the reference of the concept from the micro-world.
 	 * If no reference has been assigned yet, leave this to null.
@@ -91,6 +99,113 @@ public class RDConcept {
 	 */
 	protected boolean isJavaClass;
 
+	/**
+	 * What the matching of user descriptions against the reference needs, computed once by
+	 * {@link #setReference(String, TextProcessor, Lexicon)}.
+	 */
+	protected MatchFeatures matchFeatures;
+
+	/**
+	 * @author Radu Ion ({@code radu@racai.ro})
+	 *         <p>
+	 *         Immutable features of the reference of a bound concept, used when scoring user
+	 *         descriptions against it.
+	 *         </p>
+	 */
+	public static class MatchFeatures {
+		/**
+		 * The reference tokens without the functional words.
+		 */
+		private final List<Token> contentTokens;
+
+		/**
+		 * Lower-cased word forms of {@link #contentTokens}.
+		 */
+		private final List<String> foldedWordForms;
+
+		/**
+		 * Lemmas of {@link #contentTokens}, as they are, for WordNet.
+		 */
+		private final List<String> lemmas;
+
+		/**
+		 * Lower-cased lemmas of {@link #contentTokens}.
+		 */
+		private final List<String> foldedLemmas;
+
+		/**
+		 * The nouns which are roots of the reference.
+		 */
+		private final List<Token> rootNouns;
+
+		/**
+		 * For {@link CType#AMOUNT}s, the value and its unit, {@code null} otherwise.
+		 */
+		private final Float numericalValue;
+		private final String unit;
+
+		private MatchFeatures(List<Token> tokens, TextProcessor proc, Lexicon lex, Float value,
+				String unit) {
+			List<Token> content = proc.noFunctionalWordsFilter(tokens);
+			List<String> wforms = new ArrayList<>();
+			List<String> lems = new ArrayList<>();
+			List<String> flems = new ArrayList<>();
+			List<Token> roots = new ArrayList<>();
+
+			for (Token t : content) {
+				wforms.add(t.wform.toLowerCase());
+				lems.add(t.lemma);
+				flems.add(t.lemma.toLowerCase());
+			}
+
+			for (Token t : tokens) {
+				if (t.drel.equals("root") && lex.isNounPOS(t.pos)) {
+					roots.add(t);
+				}
+			}
+
+			contentTokens = Collections.unmodifiableList(new ArrayList<>(content));
+			foldedWordForms = Collections.unmodifiableList(wforms);
+			lemmas = Collections.unmodifiableList(lems);
+			foldedLemmas = Collections.unmodifiableList(flems);
+			rootNouns = Collections.unmodifiableList(roots);
+			numericalValue = value;
+			this.unit = unit;
+		}
+
+		public List<Token> getContentTokens() {
+			return contentTokens;
+		}
+
+		public int size() {
+			return contentTokens.size();
+		}
+
+		public List<String> getFoldedWordForms() {
+			return foldedWordForms;
+		}
+
+		public List<String> getLemmas() {
+			return lemmas;
+		}
+
+		public List<String> getFoldedLemmas() {
+			return foldedLemmas;
+		}
+
+		public List<Token> getRootNouns() {
+			return rootNouns;
+		}
+
+		public Float getNumericalValue() {
+			return numericalValue;
+		}
+
+		public String getUnit() {
+			return unit;
+		}
+	}
+
 	/**
 	 * Used to create {@link RDConstant}s.
 	 * 
@@ -150,6 +265,8 @@ public class RDConcept {
 	 * <p>
 	 * Create a deep copy of this concept in order to assign a reference to it.
 	 * All internal data structure are allocated on the heap for the new object, except for immutable types.
+	 * The synonyms are shared with this concept until one of the two adds a synonym, such that all
+	 * the references of a concept definition share its synonyms.
 	 * </p>
 	 * 
 	 * @return a deep copy of this object, with no assigned reference.
@@ -157,11 +274,11 @@ public class RDConcept {
 	public RDConcept deepCopy() {
 		RDConcept concept = new RDConcept(conceptType, canonicalForm, superClass);
 
-		// 1. Copy sysnonyms
+		// 1. Share sysnonyms, copy on write
 		if (synonymsOfCanonicalForm != null) {
-			for (String s : synonymsOfCanonicalForm) {
-				concept.addSynonym(s);
-			}
+			concept.synonymsOfCanonicalForm = synonymsOfCanonicalForm;
+			concept.sharedSynonyms = true;
+			sharedSynonyms = true;
 		}
 
 		// 2. Copy Java class status
@@ -182,6 +299,11 @@ public class RDConcept {
 			throw new RuntimeException("Synonym may not be null, empty or blank!");
 		}
 
+		if (sharedSynonyms) {
+			synonymsOfCanonicalForm = new ArrayList<>(synonymsOfCanonicalForm);
+			sharedSynonyms = false;
+		}
+
 		synonymsOfCanonicalForm.add(syn.trim().toLowerCase());
 	}
 
@@ -193,15 +315,36 @@ public class RDConcept {
 	 * @param value the reference to be set.
 	 */
 	public void setReference(String value, TextProcessor proc, Lexicon lex) {
+		if (!StringUtils.isNullEmptyOrBlank(value)) {
+			boolean isJavaRef = isJavaClass || isJavaReference(value);
+
+			setReference(value, proc.textProcessor(value, isJavaRef, true), proc, lex);
+		}
+	}
+
+	private static boolean isJavaReference(String value) {
+		// TODO: better generator identification here, using reflection.
+		return value.startsWith("ro.racai.robin.dialog.generators.");
+	}
+
+	/**
+	 * <p>
+	 * Sets the reference for this concept from an already processed value, e.g. from a compiled
+	 * micro-world snapshot. The text processor is not called on {@code value}.
+	 * </p>
+	 * 
+	 * @param value  the reference to be set;
+	 * @param tokens the processed {@code value}.
+	 */
+	public void setReference(String value, List<Token> tokens, TextProcessor proc, Lexicon lex) {
 		if (!StringUtils.isNullEmptyOrBlank(value)) {
 			assignedReference = value.trim();
 
-			// TODO: better generator identification here, using reflection.
-			if (value.startsWith("ro.racai.robin.dialog.generators.")) {
+			if (isJavaReference(value)) {
 				isJavaClass = true;
 			}
 
-			assignedReferenceTokens = proc.textProcessor(value, isJavaClass, true);
+			assignedReferenceTokens = tokens;
 
 			if (assignedReference == null || assignedReferenceTokens.isEmpty()) {
 				throw new RuntimeException(String.format(
@@ -242,7 +385,50 @@ public class RDConcept {
 							"Reference value '%s' is of type AMOUNT and it has no numerical value!", value));
 				}
 			} // end AMOUNT specificity
+
+			matchFeatures = new MatchFeatures(assignedReferenceTokens, proc, lex, numericalValue,
+					typeOfNumericalValue);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Checks if {@code other} is another reference of the same concept definition, such that the
+	 * two can only differ by their references when matched against user's queries (e.g.
+	 * <i>placă grafică Radeon RX 550</i> and <i>placă video Radeon RX 550</i>).
+	 * </p>
+	 * 
+	 * @param other the concept to check;
+	 * @return {@code true} if the two concepts have the same class, type, names, superclass and
+	 *         unit of the numerical value.
+	 */
+	public boolean isInterchangeableWith(RDConcept other) {
+		if (other == this) {
+			return true;
+		}
+
+		return other != null && other.getClass() == getClass()
+				&& other.conceptType == conceptType
+				&& Objects.equals(other.canonicalForm, canonicalForm)
+				&& other.superClass == superClass
+				&& other.isJavaClass == isJavaClass
+				&& Objects.equals(other.synonymsOfCanonicalForm, synonymsOfCanonicalForm)
+				&& Objects.equals(other.typeOfNumericalValue, typeOfNumericalValue);
+	}
+
+	/**
+	 * <p>
+	 * Gets the precomputed features of the reference for matching with user's sayings.
+	 * </p>
+	 * 
+	 * @return the match features of the reference.
+	 */
+	public MatchFeatures getMatchFeatures() {
+		if (matchFeatures == null) {
+			throw new RuntimeException(String.format("RDConcept %s has not been processed!", toString()));
 		}
+
+		return matchFeatures;
 	}
 
 	/**
@@ -309,8 +495,13 @@ public class RDConcept {
 		return conceptType;
 	}
 
+	/**
+	 * @return the synonyms of the canonical form, which cannot be changed: they may be shared
+	 *         with the other references of the concept definition. See
+	 *         {@link #addSynonym(String)}.
+	 */
 	public List<String> getSynonyms() {
-		return synonymsOfCanonicalForm;
+		return Collections.unmodifiableList(synonymsOfCanonicalForm);
 	}
 
 	public boolean isThisConcept(RDConcept another, WordNet wn) {
@@ -347,24 +538,40 @@ public class RDConcept {
 			return true;
 		}
 
-		// Check IS-A relationship
-		if (conceptType == CType.ISA && superClass != null) {
-			if (word.equals(superClass.getCanonicalName())) {
+		RDConcept parent = isaSuperClass();
+
+		if (parent != null && wn != null && wn.wordnetEquals(word, parent.getCanonicalName())) {
+			return true;
+		}
+
+		// Check the IS-A relationship, all the way up. Only the precomputed closure is
+		// consulted for the ancestors, such that no WordNet requests are made here.
+		for (RDConcept sup = parent; sup != null; sup = sup.isaSuperClass()) {
+			if (word.equals(sup.getCanonicalName())) {
 				return true;
 			}
 
-			for (String syn : superClass.getSynonyms()) {
+			for (String syn : sup.getSynonyms()) {
 				if (word.equals(syn)) {
 					return true;
 				}
 			}
 
-			if (wn != null && wn.wordnetEquals(word, superClass.getCanonicalName())) {
+			if (wn != null && wn.isKindOf(word, sup.getCanonicalName())) {
 				return true;
 			}
 		}
 
-		return false;
+		// The word is a WordNet specialization of this concept, e.g. a 'laptop' is a 'device'
+		return wn != null && wn.isKindOf(word, canonicalForm);
+	}
+
+	/**
+	 * @return the {@link #superClass} if this concept is of {@link CType#ISA} type,
+	 *         {@code null} otherwise.
+	 */
+	private RDConcept isaSuperClass() {
+		return conceptType == CType.ISA ? superClass : null;
 	}
 
 	public RDConcept getSuperClass() {
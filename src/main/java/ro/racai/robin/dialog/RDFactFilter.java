@@ -0,0 +1,51 @@
+/**
+ *
+ */
+package ro.racai.robin.dialog;
+
+/**
+ * @author Radu Ion ({@code radu@racai.ro})
+ *         <p>
+ *         Selects the TRUE facts of a micro-world that a universe keeps, e.g. the facts of one
+ *         partition of an {@link RDPartitionedUniverse}. A loader applies it while it reads the
+ *         facts, so the facts of the other partitions are never built.
+ *         </p>
+ */
+@FunctionalInterface
+public interface RDFactFilter {
+	/**
+	 * Keeps no facts, e.g. for the coordinator of an {@link RDPartitionedUniverse}.
+	 */
+	RDFactFilter NONE = (factId, firstArgument) -> false;
+
+	/**
+	 * @param factId        the index of the fact among all the TRUE facts of the micro-world;
+	 * @param firstArgument the index of the first argument of the fact in
+	 *                      {@link RDUniverse#getBoundConcepts()}, {@code -1} if it has no
+	 *                      arguments;
+	 * @return {@code true} if the fact is kept.
+	 */
+	boolean keeps(int factId, int firstArgument);
+
+	/**
+	 * <p>
+	 * The facts of partition {@code index} of {@code count}, as in
+	 * {@link RDUniverse#partition(int, int, boolean)}.
+	 * </p>
+	 *
+	 * @param index     the partition, from 0 to {@code count - 1};
+	 * @param count     the number of partitions;
+	 * @param byConcept if {@code true}, the facts go to the partition of their first argument,
+	 *                  e.g. the product that they are about; otherwise, they go by fact ID;
+	 * @return the filter of the partition.
+	 */
+	static RDFactFilter partition(int index, int count, boolean byConcept) {
+		if (index < 0 || index >= count) {
+			throw new IllegalArgumentException(
+					"Partition " + index + " is not one of " + count + " partitions!");
+		}
+
+		return (factId, firstArgument) -> (byConcept && firstArgument >= 0 ? firstArgument
+				: factId) % count == index;
+	}
+}
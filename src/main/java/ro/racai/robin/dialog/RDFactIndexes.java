@@ -0,0 +1,469 @@
+/**
+ *
+ */
+package ro.racai.robin.dialog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ro.racai.robin.nlp.CompressedBitmap;
+import ro.racai.robin.nlp.WordNet;
+
+/**
+ * @author Radu Ion ({@code radu@racai.ro})
+ *         <p>
+ *         The indexes of the TRUE facts that every {@link RDFacts} strategy has: the fact bitmaps
+ *         of the bound concepts and of the concept types, for the faceted queries, and the sorted
+ *         values of the AMOUNT arguments, for the superlative and the range queries. Fact IDs are
+ *         the ones of the {@link RDFacts}.
+ *         </p>
+ *         <p>
+ *         The indexes are not changed once built, so the versions of a universe share them and
+ *         the queries read them without locking.
+ *         </p>
+ */
+final class RDFactIndexes {
+	/**
+	 * For each bound concept that is a predicate argument, the IDs of the TRUE facts that have it
+	 * as an argument; empty for the facts that have posting lists of their own, see
+	 * {@link RDFacts#factsWith(RDConcept)}.
+	 */
+	final Map<RDConcept, CompressedBitmap> conceptFacts;
+
+	/**
+	 * For each concept type, the IDs of the TRUE facts that have an argument of this type, after
+	 * going up the IS-A chain.
+	 */
+	final Map<CType, CompressedBitmap> typeFacts;
+
+	/**
+	 * The sorted values of each {@link CType#AMOUNT} concept definition in the TRUE facts, by
+	 * identity, for the superlative queries.
+	 */
+	final Map<RDConcept, AmountIndex> amountIndexes;
+
+	/**
+	 * The sorted values of the AMOUNT arguments of the TRUE facts, by lower-cased unit, e.g.
+	 * <i>leu</i> or <i>gb</i>, for the numeric range queries.
+	 */
+	final Map<String, AmountIndex> unitIndexes;
+
+	/**
+	 * @author Radu Ion ({@code radu@racai.ro})
+	 *         <p>
+	 *         The values of one {@link CType#AMOUNT} concept in the TRUE facts, in increasing
+	 *         order, with the fact and the argument position that each value comes from. Equal
+	 *         values are in the order of the facts.
+	 *         </p>
+	 */
+	static class AmountIndex {
+		final float[] values;
+		final int[] facts;
+		final int[] positions;
+
+		AmountIndex(List<Integer> valueFacts, List<Integer> valuePositions,
+				List<Float> factValues) {
+			int n = valueFacts.size();
+			Integer[] order = new Integer[n];
+
+			for (int i = 0; i < n; i++) {
+				order[i] = i;
+			}
+
+			// Stable, so equal values stay in the order of the facts
+			Arrays.sort(order, (a, b) -> Float.compare(factValues.get(a), factValues.get(b)));
+
+			values = new float[n];
+			facts = new int[n];
+			positions = new int[n];
+
+			for (int i = 0; i < n; i++) {
+				facts[i] = valueFacts.get(order[i]);
+				positions[i] = valuePositions.get(order[i]);
+				values[i] = factValues.get(order[i]);
+			}
+		}
+
+		private AmountIndex(float[] values, int[] facts, int[] positions) {
+			this.values = values;
+			this.facts = facts;
+			this.positions = positions;
+		}
+
+		int size() {
+			return facts.length;
+		}
+
+		/**
+		 * Compares value {@code i} of this index with value {@code j} of {@code other}, by value,
+		 * then by fact and then by argument position.
+		 */
+		private int compare(int i, AmountIndex other, int j) {
+			int c = Float.compare(values[i], other.values[j]);
+
+			if (c == 0) {
+				c = Integer.compare(facts[i], other.facts[j]);
+			}
+
+			return c != 0 ? c : Integer.compare(positions[i], other.positions[j]);
+		}
+
+		/**
+		 * Merges the values of {@code added} with the values of this index, except the ones of the
+		 * {@code removed} facts. This index is not changed.
+		 *
+		 * @return the new index.
+		 */
+		AmountIndex update(CompressedBitmap removed, AmountIndex added) {
+			int n = size() + added.size();
+			float[] newValues = new float[n];
+			int[] newFacts = new int[n];
+			int[] newPositions = new int[n];
+			int i = 0;
+			int j = 0;
+			int k = 0;
+
+			while (i < size() || j < added.size()) {
+				if (i < size() && removed.contains(facts[i])) {
+					i++;
+					continue;
+				}
+
+				AmountIndex from =
+						j == added.size() || (i < size() && compare(i, added, j) < 0) ? this
+								: added;
+				int e = from == this ? i++ : j++;
+
+				newValues[k] = from.values[e];
+				newFacts[k] = from.facts[e];
+				newPositions[k] = from.positions[e];
+				k++;
+			}
+
+			return new AmountIndex(Arrays.copyOf(newValues, k), Arrays.copyOf(newFacts, k),
+					Arrays.copyOf(newPositions, k));
+		}
+
+		/**
+		 * Binary search for the first value above {@code value}.
+		 *
+		 * @param strict if {@code false}, the first value that is at least {@code value};
+		 * @return the index of the value or {@link #size()} if there is none.
+		 */
+		int firstAbove(float value, boolean strict) {
+			int lo = 0;
+			int hi = values.length;
+
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+
+				if (values[mid] < value || (strict && values[mid] == value)) {
+					lo = mid + 1;
+				} else {
+					hi = mid;
+				}
+			}
+
+			return lo;
+		}
+	}
+
+	private RDFactIndexes(Map<RDConcept, CompressedBitmap> conceptFacts,
+			Map<CType, CompressedBitmap> typeFacts, Map<RDConcept, AmountIndex> amountIndexes,
+			Map<String, AmountIndex> unitIndexes) {
+		this.conceptFacts = conceptFacts;
+		this.typeFacts = typeFacts;
+		this.amountIndexes = amountIndexes;
+		this.unitIndexes = unitIndexes;
+	}
+
+	/**
+	 * <p>
+	 * Builds the indexes of {@code facts}: the fact bitmaps of the bound concepts and of the
+	 * concept types, and the sorted values of each {@link CType#AMOUNT} concept definition and
+	 * of each unit, such that a superlative query reads its answer from one end of an index.
+	 * </p>
+	 *
+	 * @param facts          the facts to index;
+	 * @param defined        the concept definitions of the universe;
+	 * @param wn             the WordNet of the universe, to find the units of the amounts;
+	 * @param conceptBitmaps if {@code false}, the fact bitmaps of the bound concepts are not
+	 *                       built, because {@code facts} have posting lists of their own.
+	 * @return the indexes.
+	 */
+	static RDFactIndexes of(RDFacts facts, List<RDConcept> defined, WordNet wn,
+			boolean conceptBitmaps) {
+		Map<RDConcept, CompressedBitmap> byConcept = new IdentityHashMap<>();
+		Map<CType, CompressedBitmap> byType = new EnumMap<>(CType.class);
+		int n = facts.size();
+
+		for (int f = 0; f < n; f++) {
+			for (int i = 0; i < facts.arity(f); i++) {
+				RDConcept a = facts.argument(f, i);
+
+				if (conceptBitmaps) {
+					byConcept.computeIfAbsent(a, k -> new CompressedBitmap()).add(f);
+				}
+
+				byType.computeIfAbsent(topLevelType(a), k -> new CompressedBitmap()).add(f);
+			}
+		}
+
+		Map<RDConcept, AmountIndex> indexes = new IdentityHashMap<>();
+
+		for (RDConcept dfc : defined) {
+			if (dfc.getType() != CType.AMOUNT) {
+				continue;
+			}
+
+			List<Integer> valueFacts = new ArrayList<>();
+			List<Integer> valuePositions = new ArrayList<>();
+			List<Float> values = new ArrayList<>();
+
+			for (int f = 0; f < n; f++) {
+				for (int i = 0; i < facts.arity(f); i++) {
+					RDConcept a = facts.argument(f, i);
+
+					if (isAmountOf(a, dfc, wn)) {
+						valueFacts.add(f);
+						valuePositions.add(i);
+						values.add(a.numericalValue);
+					}
+				}
+			}
+
+			indexes.put(dfc, new AmountIndex(valueFacts, valuePositions, values));
+		}
+
+		Map<String, List<Integer>> unitFacts = new HashMap<>();
+		Map<String, List<Integer>> unitPositions = new HashMap<>();
+		Map<String, List<Float>> unitValues = new HashMap<>();
+
+		for (int f = 0; f < n; f++) {
+			for (int i = 0; i < facts.arity(f); i++) {
+				RDConcept a = facts.argument(f, i);
+
+				if (a.getType() == CType.AMOUNT && a.numericalValue != null) {
+					String unit = a.typeOfNumericalValue.toLowerCase();
+
+					unitFacts.computeIfAbsent(unit, k -> new ArrayList<>()).add(f);
+					unitPositions.computeIfAbsent(unit, k -> new ArrayList<>()).add(i);
+					unitValues.computeIfAbsent(unit, k -> new ArrayList<>()).add(a.numericalValue);
+				}
+			}
+		}
+
+		Map<String, AmountIndex> units = new HashMap<>();
+
+		for (Map.Entry<String, List<Integer>> e : unitFacts.entrySet()) {
+			units.put(e.getKey(), new AmountIndex(e.getValue(), unitPositions.get(e.getKey()),
+					unitValues.get(e.getKey())));
+		}
+
+		return new RDFactIndexes(byConcept, byType, indexes, units);
+	}
+
+	/**
+	 * <p>
+	 * Updates these indexes for the facts that replaced some of the facts of {@code baseFacts},
+	 * at their fact IDs, and for the facts that were appended to them. Only the entries of these
+	 * facts change: the fact bitmaps and the value indexes that they are in are copied and the
+	 * other ones are shared with these indexes, which are not changed.
+	 * </p>
+	 *
+	 * @param baseFacts the facts that these indexes were built for;
+	 * @param facts     the new facts;
+	 * @param replaced  the fact IDs of the replaced facts, in increasing order;
+	 * @param changed   the IDs of the replaced and of the appended facts, in increasing order;
+	 * @param wn        the WordNet of the universe, to find the units of the amounts.
+	 * @return the indexes of {@code facts}.
+	 */
+	RDFactIndexes update(List<RDPredicate> baseFacts, List<RDPredicate> facts, int[] replaced,
+			int[] changed, WordNet wn) {
+		Map<RDConcept, CompressedBitmap> removedByConcept = new IdentityHashMap<>();
+		Map<RDConcept, CompressedBitmap> addedByConcept = new IdentityHashMap<>();
+		Map<CType, CompressedBitmap> removedByType = new EnumMap<>(CType.class);
+		Map<CType, CompressedBitmap> addedByType = new EnumMap<>(CType.class);
+
+		for (int f : replaced) {
+			for (RDConcept a : baseFacts.get(f).getArguments()) {
+				removedByConcept.computeIfAbsent(a, k -> new CompressedBitmap()).add(f);
+				removedByType.computeIfAbsent(topLevelType(a), k -> new CompressedBitmap()).add(f);
+			}
+		}
+
+		for (int f : changed) {
+			for (RDConcept a : facts.get(f).getArguments()) {
+				addedByConcept.computeIfAbsent(a, k -> new CompressedBitmap()).add(f);
+				addedByType.computeIfAbsent(topLevelType(a), k -> new CompressedBitmap()).add(f);
+			}
+		}
+
+		return new RDFactIndexes(
+				updateBitmaps(new IdentityHashMap<>(conceptFacts), removedByConcept,
+						addedByConcept),
+				updateBitmaps(new EnumMap<>(typeFacts), removedByType, addedByType),
+				updateAmountIndexes(baseFacts, facts, replaced, changed, wn),
+				updateUnitIndexes(baseFacts, facts, replaced, changed));
+	}
+
+	/**
+	 * @param bitmaps a copy of the bitmaps to update, which are shared with other indexes;
+	 * @return {@code bitmaps}, with new bitmaps without the {@code removed} IDs and with the
+	 *         {@code added} ones. Empty bitmaps are removed.
+	 */
+	private static <K> Map<K, CompressedBitmap> updateBitmaps(Map<K, CompressedBitmap> bitmaps,
+			Map<K, CompressedBitmap> removed, Map<K, CompressedBitmap> added) {
+		for (Map.Entry<K, CompressedBitmap> e : removed.entrySet()) {
+			CompressedBitmap bm = bitmaps.get(e.getKey());
+
+			if (bm != null) {
+				bitmaps.put(e.getKey(), bm.andNot(e.getValue()));
+			}
+		}
+
+		for (Map.Entry<K, CompressedBitmap> e : added.entrySet()) {
+			CompressedBitmap bm = bitmaps.get(e.getKey());
+
+			bitmaps.put(e.getKey(), bm == null ? e.getValue() : bm.or(e.getValue()));
+		}
+
+		for (K k : removed.keySet()) {
+			if (bitmaps.containsKey(k) && bitmaps.get(k).isEmpty()) {
+				bitmaps.remove(k);
+			}
+		}
+
+		return bitmaps;
+	}
+
+	/**
+	 * @return the {@link #amountIndexes} of the {@code changed} facts. The indexes that have no
+	 *         values of these facts are shared.
+	 */
+	private Map<RDConcept, AmountIndex> updateAmountIndexes(List<RDPredicate> baseFacts,
+			List<RDPredicate> facts, int[] replaced, int[] changed, WordNet wn) {
+		CompressedBitmap changedFacts = CompressedBitmap.of(changed);
+		Map<RDConcept, AmountIndex> indexes = new IdentityHashMap<>(amountIndexes);
+
+		for (Map.Entry<RDConcept, AmountIndex> e : amountIndexes.entrySet()) {
+			RDConcept dfc = e.getKey();
+			boolean affected = false;
+
+			for (int f : replaced) {
+				for (RDConcept a : baseFacts.get(f).getArguments()) {
+					affected |= isAmountOf(a, dfc, wn);
+				}
+			}
+
+			List<Integer> valueFacts = new ArrayList<>();
+			List<Integer> valuePositions = new ArrayList<>();
+			List<Float> values = new ArrayList<>();
+
+			for (int f : changed) {
+				List<RDConcept> args = facts.get(f).getArguments();
+
+				for (int i = 0; i < args.size(); i++) {
+					if (isAmountOf(args.get(i), dfc, wn)) {
+						valueFacts.add(f);
+						valuePositions.add(i);
+						values.add(args.get(i).numericalValue);
+					}
+				}
+			}
+
+			if (affected || !valueFacts.isEmpty()) {
+				indexes.put(dfc, e.getValue().update(changedFacts,
+						new AmountIndex(valueFacts, valuePositions, values)));
+			}
+		}
+
+		return indexes;
+	}
+
+	/**
+	 * @return the {@link #unitIndexes} of the {@code changed} facts. The indexes of the units
+	 *         that these facts do not have are shared.
+	 */
+	private Map<String, AmountIndex> updateUnitIndexes(List<RDPredicate> baseFacts,
+			List<RDPredicate> facts, int[] replaced, int[] changed) {
+		CompressedBitmap changedFacts = CompressedBitmap.of(changed);
+		Set<String> affectedUnits = new HashSet<>();
+		Map<String, List<Integer>> unitFacts = new HashMap<>();
+		Map<String, List<Integer>> unitPositions = new HashMap<>();
+		Map<String, List<Float>> unitValues = new HashMap<>();
+
+		for (int f : replaced) {
+			for (RDConcept a : baseFacts.get(f).getArguments()) {
+				if (a.getType() == CType.AMOUNT && a.numericalValue != null) {
+					affectedUnits.add(a.typeOfNumericalValue.toLowerCase());
+				}
+			}
+		}
+
+		for (int f : changed) {
+			List<RDConcept> args = facts.get(f).getArguments();
+
+			for (int i = 0; i < args.size(); i++) {
+				RDConcept a = args.get(i);
+
+				if (a.getType() == CType.AMOUNT && a.numericalValue != null) {
+					String unit = a.typeOfNumericalValue.toLowerCase();
+
+					affectedUnits.add(unit);
+					unitFacts.computeIfAbsent(unit, k -> new ArrayList<>()).add(f);
+					unitPositions.computeIfAbsent(unit, k -> new ArrayList<>()).add(i);
+					unitValues.computeIfAbsent(unit, k -> new ArrayList<>()).add(a.numericalValue);
+				}
+			}
+		}
+
+		Map<String, AmountIndex> units = new HashMap<>(unitIndexes);
+		AmountIndex none = new AmountIndex(List.of(), List.of(), List.of());
+
+		for (String unit : affectedUnits) {
+			AmountIndex added = unitFacts.containsKey(unit) ? new AmountIndex(unitFacts.get(unit),
+					unitPositions.get(unit), unitValues.get(unit)) : none;
+
+			units.put(unit, units.getOrDefault(unit, none).update(changedFacts, added));
+		}
+
+		return units;
+	}
+
+	/**
+	 * @return the type of the first concept up the IS-A chain of {@code con} which is not
+	 *         {@link CType#ISA}, as in the query type checks of {@link RDUniverse}.
+	 */
+	static CType topLevelType(RDConcept con) {
+		while (con.getType() == CType.ISA && con.getSuperClass() != null) {
+			con = con.getSuperClass();
+		}
+
+		return con.getType();
+	}
+
+	/**
+	 * @return {@code true} if the bound concept {@code con} is a value of the amount concept
+	 *         definition {@code dfc}: either a reference of {@code dfc} or an AMOUNT constant with
+	 *         a unit that names {@code dfc}, e.g. <i>2700 de lei</i> for <i>preț, leu</i>.
+	 */
+	static boolean isAmountOf(RDConcept con, RDConcept dfc, WordNet wn) {
+		if (con.getType() != CType.AMOUNT || con.numericalValue == null) {
+			return false;
+		}
+
+		if (con instanceof RDConstant) {
+			return dfc.isThisConcept(con.typeOfNumericalValue, wn);
+		}
+
+		return dfc.getCanonicalName().equalsIgnoreCase(con.getCanonicalName());
+	}
+}
@@ -0,0 +1,354 @@
+/**
+ *
+ */
+package ro.racai.robin.dialog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Radu Ion ({@code radu@racai.ro})
+ *         <p>
+ *         Columnar storage of the TRUE facts of a universe, for micro-worlds with many facts (e.g.
+ *         a product catalog). Bound concepts get dense int IDs and the facts of each predicate
+ *         definition (same verb, synonyms and user intent) form a table with one int column per
+ *         argument position. A fact does not exist as an {@link RDPredicate} object: it is
+ *         materialized from its row when it is asked for, e.g. for a {@link RDPredicate.PMatch}.
+ *         </p>
+ *         <p>
+ *         Facts have IDs in the order in which they were added, as in
+ *         {@link RDUniverse#getBoundPredicates()}. For each concept ID, the store keeps the
+ *         increasing list of the IDs of the facts that have it as an argument.
+ *         </p>
+ */
+public class RDFactStore {
+	/**
+	 * Marks a missing argument in a column, for the rows with fewer arguments.
+	 */
+	public static final int NO_CONCEPT = -1;
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	/**
+	 * @author Radu Ion ({@code radu@racai.ro})
+	 *         <p>
+	 *         The facts of one predicate definition, by columns.
+	 *         </p>
+	 */
+	private static class Table {
+		/**
+		 * The predicate definition, with no arguments.
+		 */
+		final RDPredicate definition;
+
+		/**
+		 * Concept IDs of the arguments, {@code columns[position][row]}.
+		 */
+		int[][] columns = new int[0][];
+		int[] arities = new int[INITIAL_CAPACITY];
+		int[] factIds = new int[INITIAL_CAPACITY];
+		int rows;
+
+		Table(RDPredicate definition) {
+			this.definition = definition;
+		}
+
+		void addRow(int factId, int[] argumentIds) {
+			if (rows == factIds.length) {
+				factIds = Arrays.copyOf(factIds, rows * 2);
+				arities = Arrays.copyOf(arities, rows * 2);
+
+				for (int i = 0; i < columns.length; i++) {
+					columns[i] = grow(columns[i], rows * 2);
+				}
+			}
+
+			if (argumentIds.length > columns.length) {
+				int old = columns.length;
+
+				columns = Arrays.copyOf(columns, argumentIds.length);
+
+				for (int i = old; i < columns.length; i++) {
+					columns[i] = grow(new int[0], factIds.length);
+				}
+			}
+
+			for (int i = 0; i < columns.length; i++) {
+				columns[i][rows] = i < argumentIds.length ? argumentIds[i] : NO_CONCEPT;
+			}
+
+			factIds[rows] = factId;
+			arities[rows] = argumentIds.length;
+			rows++;
+		}
+
+		private static int[] grow(int[] column, int capacity) {
+			int old = column.length;
+			int[] result = Arrays.copyOf(column, capacity);
+
+			Arrays.fill(result, old, capacity, NO_CONCEPT);
+			return result;
+		}
+	}
+
+	/**
+	 * Bound concepts by ID and IDs by concept identity.
+	 */
+	private final List<RDConcept> concepts;
+	private final Map<RDConcept, Integer> conceptIds;
+
+	private final List<Table> tables;
+	private final Map<String, Integer> tableIds;
+
+	/**
+	 * The table and the row of each fact ID.
+	 */
+	private int[] factTables;
+	private int[] factRows;
+	private int factCount;
+
+	/**
+	 * For each concept ID, the IDs of the facts that have it as an argument, in increasing order.
+	 */
+	private int[][] postings;
+	private int[] postingSizes;
+
+	public RDFactStore() {
+		concepts = new ArrayList<>();
+		conceptIds = new IdentityHashMap<>();
+		tables = new ArrayList<>();
+		tableIds = new LinkedHashMap<>();
+		factTables = new int[INITIAL_CAPACITY];
+		factRows = new int[INITIAL_CAPACITY];
+		postings = new int[INITIAL_CAPACITY][];
+		postingSizes = new int[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * <p>
+	 * Makes a store over the given concepts for the subclasses which keep the facts elsewhere,
+	 * e.g. in a file. The columns and the posting lists are not allocated on the heap, so the
+	 * subclasses have to override {@link #addFact(RDPredicate)} and the accessors of the facts.
+	 * </p>
+	 *
+	 * @param concepts   the concepts, by concept ID;
+	 * @param conceptIds the concept IDs, by concept identity.
+	 */
+	protected RDFactStore(List<RDConcept> concepts, Map<RDConcept, Integer> conceptIds) {
+		this.concepts = concepts;
+		this.conceptIds = conceptIds;
+		tables = Collections.emptyList();
+		tableIds = Collections.emptyMap();
+	}
+
+	/**
+	 * <p>
+	 * Stores a fact.
+	 * </p>
+	 *
+	 * @param fact the TRUE predicate to store;
+	 * @return the ID of the fact.
+	 */
+	public int addFact(RDPredicate fact) {
+		String key = fact.getUserIntent().name() + "#" + fact.getActionVerb() + "#"
+				+ fact.getSynonyms();
+		Integer t = tableIds.get(key);
+
+		if (t == null) {
+			t = tables.size();
+			tableIds.put(key, t);
+			tables.add(new Table(fact.deepCopy()));
+		}
+
+		List<RDConcept> args = fact.getArguments();
+		int[] argumentIds = new int[args.size()];
+		int factId = factCount;
+
+		for (int i = 0; i < args.size(); i++) {
+			argumentIds[i] = intern(args.get(i));
+			addPosting(argumentIds[i], factId);
+		}
+
+		Table table = tables.get(t);
+
+		if (factCount == factTables.length) {
+			factTables = Arrays.copyOf(factTables, factCount * 2);
+			factRows = Arrays.copyOf(factRows, factCount * 2);
+		}
+
+		factTables[factCount] = t;
+		factRows[factCount] = table.rows;
+		factCount++;
+		table.addRow(factId, argumentIds);
+
+		return factId;
+	}
+
+	private int intern(RDConcept c) {
+		Integer id = conceptIds.get(c);
+
+		if (id == null) {
+			id = concepts.size();
+			concepts.add(c);
+			conceptIds.put(c, id);
+
+			if (id == postings.length) {
+				postings = Arrays.copyOf(postings, id * 2);
+				postingSizes = Arrays.copyOf(postingSizes, id * 2);
+			}
+
+			postings[id] = new int[2];
+		}
+
+		return id;
+	}
+
+	private void addPosting(int conceptId, int factId) {
+		int[] list = postings[conceptId];
+		int n = postingSizes[conceptId];
+
+		if (n > 0 && list[n - 1] == factId) {
+			// The same concept twice in a fact
+			return;
+		}
+
+		if (n == list.length) {
+			list = Arrays.copyOf(list, n * 2);
+			postings[conceptId] = list;
+		}
+
+		list[n] = factId;
+		postingSizes[conceptId] = n + 1;
+	}
+
+	public int size() {
+		return factCount;
+	}
+
+	public int conceptCount() {
+		return concepts.size();
+	}
+
+	public RDConcept concept(int id) {
+		return concepts.get(id);
+	}
+
+	/**
+	 * @return the concept IDs, by concept identity; not to be modified.
+	 */
+	public Map<RDConcept, Integer> getConceptIds() {
+		return Collections.unmodifiableMap(conceptIds);
+	}
+
+	public int tableCount() {
+		return tables.size();
+	}
+
+	/**
+	 * @return the predicate definition of the facts of table {@code t}, with no arguments.
+	 */
+	public RDPredicate definition(int t) {
+		return tables.get(t).definition;
+	}
+
+	/**
+	 * @return the number of facts in table {@code t}.
+	 */
+	public int rowCount(int t) {
+		return tables.get(t).rows;
+	}
+
+	/**
+	 * @return the ID of the fact at {@code row} in table {@code t}.
+	 */
+	public int factId(int t, int row) {
+		return tables.get(t).factIds[row];
+	}
+
+	public int arity(int t, int row) {
+		return tables.get(t).arities[row];
+	}
+
+	/**
+	 * @return the concept ID of argument {@code position} of the fact at {@code row} in table
+	 *         {@code t}.
+	 */
+	public int argumentId(int t, int row, int position) {
+		return tables.get(t).columns[position][row];
+	}
+
+	public int tableOf(int factId) {
+		return factTables[factId];
+	}
+
+	/**
+	 * @return the row of the fact in its table.
+	 */
+	public int rowOf(int factId) {
+		return factRows[factId];
+	}
+
+	public int arity(int factId) {
+		return arity(tableOf(factId), rowOf(factId));
+	}
+
+	/**
+	 * @return the concept ID of argument {@code position} of the fact.
+	 */
+	public int argumentId(int factId, int position) {
+		return argumentId(tableOf(factId), rowOf(factId), position);
+	}
+
+	/**
+	 * @return the IDs of the facts that have the concept as an argument, in increasing order.
+	 */
+	public int[] factsWith(int conceptId) {
+		return Arrays.copyOf(postings[conceptId], postingSizes[conceptId]);
+	}
+
+	/**
+	 * <p>
+	 * Builds the {@link RDPredicate} of a fact from its row. Each call returns a new object.
+	 * </p>
+	 *
+	 * @param factId the ID of the fact;
+	 * @return the fact with its arguments.
+	 */
+	public RDPredicate fact(int factId) {
+		int t = tableOf(factId);
+		int row = rowOf(factId);
+		RDPredicate p = definition(t).deepCopy();
+
+		for (int i = 0; i < arity(t, row); i++) {
+			p.addArgument(concept(argumentId(t, row, i)));
+		}
+
+		return p;
+	}
+
+	/**
+	 * @return all the facts, materialized, in the order of their IDs.
+	 */
+	public List<RDPredicate> facts() {
+		List<RDPredicate> result = new ArrayList<>(size());
+
+		for (int f = 0; f < size(); f++) {
+			result.add(fact(f));
+		}
+
+		return result;
+	}
+
+	/**
+	 * @return the facts of a universe, kept in this store, see
+	 *         {@link RDUniverse#setFactStore(RDFactStore)}.
+	 */
+	RDColumnarFacts toFacts() {
+		return new RDColumnarFacts(this);
+	}
+}
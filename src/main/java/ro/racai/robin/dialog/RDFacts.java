@@ -0,0 +1,164 @@
+/**
+ *
+ */
+package ro.racai.robin.dialog;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+import ro.racai.robin.dialog.RDPredicate.PMatch;
+import ro.racai.robin.dialog.RDUniverse.QueryScoring;
+import ro.racai.robin.nlp.CompressedBitmap;
+
+/**
+ * @author Radu Ion ({@code radu@racai.ro})
+ *         <p>
+ *         How an {@link RDUniverse} keeps its TRUE facts: as {@link RDPredicate} objects
+ *         ({@link RDObjectFacts}), as the int columns of an {@link RDFactStore}
+ *         ({@link RDColumnarFacts}), in a memory-mapped file ({@link RDMappedFacts}) or as one
+ *         partition of the facts of a larger universe ({@link RDPartitionFacts}). Each strategy
+ *         indexes and scores its facts in its own way; the universe finds the candidate concepts
+ *         of a query and scores the (concept, query argument) cells.
+ *         </p>
+ *         <p>
+ *         Fact IDs are the indexes of the facts in {@link #toList()}. The facts are changed while
+ *         the universe is loaded and then indexed with {@link #index(RDUniverse)}; changing them
+ *         drops their indexes.
+ *         </p>
+ */
+interface RDFacts {
+	/**
+	 * @return the number of TRUE facts.
+	 */
+	int size();
+
+	/**
+	 * @return the fact with the given ID, built from its row if the facts are not kept as
+	 *         objects.
+	 */
+	RDPredicate fact(int factId);
+
+	int arity(int factId);
+
+	RDConcept argument(int factId, int position);
+
+	/**
+	 * @return the facts, by fact ID; a materialized copy if they are not kept as objects.
+	 */
+	List<RDPredicate> toList();
+
+	/**
+	 * @return the predicates whose action verbs and synonyms are looked up in WordNet.
+	 */
+	List<RDPredicate> definitions();
+
+	/**
+	 * Adds a fact, while the universe is loaded.
+	 */
+	void add(RDPredicate fact);
+
+	/**
+	 * Replaces all the facts, while the universe is loaded.
+	 */
+	void setAll(List<RDPredicate> facts);
+
+	/**
+	 * @return the ID of {@code fact}, by identity, {@code -1} if it is not one of these facts,
+	 *         they are not indexed or they are not kept as objects.
+	 */
+	int factId(RDPredicate fact);
+
+	/**
+	 * @return the ID of fact {@code factId} among all the TRUE facts of the micro-world, which
+	 *         is {@code factId} itself if these facts are not a partition.
+	 */
+	int globalFactId(int factId);
+
+	/**
+	 * @return a copy that shares the facts and the indexes with these facts, e.g. for a new
+	 *         version of the universe, which is indexed on its own.
+	 */
+	RDFacts copy();
+
+	/**
+	 * @return these facts in the int columns of an {@link RDFactStore}.
+	 */
+	RDFacts toColumnar();
+
+	/**
+	 * @return these facts as {@link RDPredicate} objects.
+	 */
+	RDFacts toObjects();
+
+	/**
+	 * @param keep selects the facts of the partition, by fact ID;
+	 * @return the partition of these facts that {@code keep} selects, not indexed.
+	 */
+	RDPartitionFacts partition(IntPredicate keep);
+
+	/**
+	 * @return these facts, if an {@link RDTransaction} can change them.
+	 * @throws UnsupportedOperationException if the facts cannot be changed by transactions.
+	 */
+	RDObjectFacts forTransaction();
+
+	/**
+	 * <p>
+	 * Builds the indexes of the facts, with the concept definitions, the WordNet and the options
+	 * of {@code universe}.
+	 * </p>
+	 */
+	void index(RDUniverse universe);
+
+	/**
+	 * Drops the indexes, e.g. when the facts are to be scored in another way.
+	 */
+	void clearIndexes();
+
+	boolean isIndexed();
+
+	/**
+	 * @return the indexes that all the strategies have, {@code null} if the facts are not
+	 *         indexed.
+	 */
+	RDFactIndexes indexes();
+
+	/**
+	 * @return the IDs of the facts that have {@code conc} as an argument, {@code null} if there
+	 *         are none; the facts must be indexed.
+	 */
+	CompressedBitmap factsWith(RDConcept conc);
+
+	/**
+	 * @return dense IDs of the arguments of the facts, by identity, such that the cell scores of
+	 *         one query can be memoized in arrays; {@code null} if the facts are not indexed.
+	 */
+	Map<RDConcept, Integer> argumentIds();
+
+	/**
+	 * <p>
+	 * Scores the facts whose predicate the verb of the query can refer to.
+	 * </p>
+	 *
+	 * @param universe  the universe that scores the cells of the facts;
+	 * @param scoring   the query that is being resolved;
+	 * @param k         how many matches to return;
+	 * @param survivors the IDs of the facts to score, {@code null} to score all of them;
+	 * @return at most {@code k} matches with positive scores, best first, earlier facts first on
+	 *         equal scores.
+	 */
+	List<PMatch> topK(RDUniverse universe, QueryScoring scoring, int k,
+			CompressedBitmap survivors);
+
+	/**
+	 * @return the first match of {@link #topK(RDUniverse, QueryScoring, int, CompressedBitmap)},
+	 *         {@code null} if there is none.
+	 */
+	default PMatch best(RDUniverse universe, QueryScoring scoring,
+			CompressedBitmap survivors) {
+		List<PMatch> best = topK(universe, scoring, 1, survivors);
+
+		return best.isEmpty() ? null : best.get(0);
+	}
+}
@@ -6,9 +6,21 @@ package ro.racai.robin.dialog;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import javax.sound.sampled.LineUnavailableException;
 import javax.sound.sampled.UnsupportedAudioFileException;
@@ -16,7 +28,8 @@ import org.apache.maven.model.Model;
 import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
 import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
 import ro.racai.robin.dialog.RDPredicate.PMatch;
-import ro.racai.robin.mw.MWFileReader;
+import ro.racai.robin.mw.MWSnapshot;
+import ro.racai.robin.mw.RDMicroworld;
 import ro.racai.robin.nlp.Lexicon;
 import ro.racai.robin.nlp.QType;
 import ro.racai.robin.nlp.RoLexicon;
@@ -25,6 +38,7 @@ import ro.racai.robin.nlp.RoTextProcessor;
 import ro.racai.robin.nlp.RoWordNet;
 import ro.racai.robin.nlp.SpeechProcessing;
 import ro.racai.robin.nlp.TextProcessor;
+import ro.racai.robin.nlp.TextProcessor.Corrections;
 import ro.racai.robin.nlp.TextProcessor.Query;
 import ro.racai.robin.nlp.TextProcessor.Token;
 import ro.racai.robin.nlp.WordNet;
@@ -45,12 +59,49 @@ public class RDManager {
 	 */
 	private boolean confUseSpeech;
 	private SpeechProcessing speechProcessor;
-	private RDUniverse discourseUniverse;
+
+	/**
+	 * Swapped in one write when the micro-world is reloaded or updated. A conversation turn reads
+	 * it once, so it finishes against the universe and the ASR corrections that it started with.
+	 */
+	private volatile LoadedMicroworld microworld;
 	private WordNet resouceWordNet;
 	private Lexicon resourceLexicon;
 	private TextProcessor resourceTextProc;
 	private RDSayings resourceSayings;
-	private String microworldName;
+
+	/**
+	 * The lines of the loaded {@code .mw} file, to count the changed lines on reload.
+	 */
+	private List<String> microworldLines = new ArrayList<>();
+
+	/**
+	 * Watches the {@code .mw} file for changes; {@code null} if not watching.
+	 */
+	private WatchService microworldWatcher;
+
+	/**
+	 * Wait this long after the last change to the {@code .mw} file, before reloading it. Editors
+	 * usually write a file in more than one go.
+	 */
+	private static final long RELOAD_DEBOUNCE_MILLIS = 500;
+
+	/**
+	 * Command line option with the base URLs of the {@link RDPartitionWorker}s.
+	 */
+	private static final String WORKERS_OPTION = "--workers=";
+
+	/**
+	 * If {@code true}, the TRUE facts of the micro-world are loaded with
+	 * {@link RDMicroworld#constructMappedUniverse(WordNet, Lexicon, TextProcessor)}.
+	 */
+	private boolean mappedFacts;
+
+	/**
+	 * The base URLs of the {@link RDPartitionWorker}s of the micro-world, if its facts are
+	 * partitioned.
+	 */
+	private List<String> partitionWorkers = new ArrayList<>();
 
 	/**
 	 * @author Radu Ion ({@code radu@racai.ro})
@@ -151,6 +202,23 @@ public class RDManager {
 	 */
 	private DialogueState currentDState;
 
+	/**
+	 * @author Radu Ion ({@code radu@racai.ro})
+	 * <p>A version of the loaded micro-world: the universe of discourse, with the DICT rules and
+	 * the spelling indexes that the ASR output is corrected with.</p>
+	 */
+	private static final class LoadedMicroworld {
+		final String name;
+		final RDUniverse universe;
+		final Corrections corrections;
+
+		LoadedMicroworld(String name, RDUniverse universe, Corrections corrections) {
+			this.name = name;
+			this.universe = universe;
+			this.corrections = corrections;
+		}
+	}
+
 	public RDManager(WordNet wn, Lexicon lex, TextProcessor tproc, RDSayings say,
 			SpeechProcessing sproc, boolean speech) {
 		resouceWordNet = wn;
@@ -164,32 +232,295 @@ public class RDManager {
 
 	/**
 	 * <p>
-	 * Initialize the {@link #discourseUniverse} member field from the given {@code .mw} file.
+	 * Initialize the {@link #microworld} member field from the given {@code .mw} file.
+	 * The new universe is fully built and indexed before it replaces the old one, so this can
+	 * be called to reload the micro-world while conversations are going on. Referring
+	 * expressions of unchanged lines are not processed again: their tokens come from the text
+	 * processor cache.
 	 * </p>
 	 * 
 	 * @param mwFile
 	 */
-	public void loadMicroworld(String mwFile) {
-		MWFileReader mwr = new MWFileReader(mwFile);
-
-		discourseUniverse =
-				mwr.constructUniverse(resouceWordNet, resourceLexicon, resourceTextProc);
-		microworldName = mwr.getMicroworldName();
-		// Set DICT ASR correction rules on the text processor
-		resourceTextProc.setASRDictionary(discourseUniverse.getASRRulesMap());
+	public synchronized void loadMicroworld(String mwFile) {
+		long start = System.currentTimeMillis();
+		// Loads the compiled micro-world, if the .mw file did not change since it was compiled
+		RDMicroworld mwr = new MWSnapshot(mwFile);
+		RDUniverse universe;
+
+		if (!partitionWorkers.isEmpty()) {
+			// The facts are in the partition workers, do not build them here
+			universe = mwr.constructUniverse(resouceWordNet, resourceLexicon, resourceTextProc,
+					RDFactFilter.NONE);
+		} else if (mappedFacts) {
+			universe = mwr.constructMappedUniverse(resouceWordNet, resourceLexicon,
+					resourceTextProc);
+		} else {
+			universe = mwr.constructUniverse(resouceWordNet, resourceLexicon, resourceTextProc);
+		}
+
+		if (universe == null) {
+			LOG.error("Could not load micro-world file " + mwFile);
+			return;
+		}
+
+		// Ask WordNet about all the words of the micro-world in one go
+		universe.warmUpWordNetCache();
+		universe.indexHypernymClosure();
+		universe.indexBoundConcepts();
+
+		if (partitionWorkers.isEmpty()) {
+			universe.indexPredicates();
+		} else {
+			universe = new RDPartitionedUniverse(universe, partitionWorkers);
+		}
+
+		boolean reload = microworld != null;
+		// DICT ASR correction rules, and correct the rest of the ASR errors to the words of the
+		// micro-world
+		Corrections corrections = new Corrections(universe.getASRRulesMap(),
+				resourceTextProc.buildSpelling(universe.getSpellingVocabulary()));
+
+		microworld = new LoadedMicroworld(mwr.getMicroworldName(), universe, corrections);
+		// For the text that is not processed through this manager
+		resourceTextProc.setCorrections(corrections);
+
+		List<String> lines = readMicroworldLines(mwFile);
+
+		if (reload) {
+			LOG.info(String.format("Reloaded micro-world %s in %d ms, %d changed lines",
+					microworld.name, System.currentTimeMillis() - start,
+					countChangedLines(microworldLines, lines)));
+		}
+
+		microworldLines = lines;
+	}
+
+	/**
+	 * <p>
+	 * Changes the bound concepts and the TRUE facts of the loaded micro-world, e.g. a price,
+	 * without reading the {@code .mw} file again. The changes are committed as a new version of
+	 * the universe, which replaces the old one when it is ready: conversations that are resolving
+	 * a query finish it on the old version. Updates are applied one at a time.
+	 * </p>
+	 * <p>
+	 * The facts of a micro-world loaded with {@link #setMappedFacts(boolean)} or
+	 * {@link #setPartitionWorkers(List)} are read-only here: change the {@code .mw} file and
+	 * reload it instead.
+	 * </p>
+	 * 
+	 * @param changes the changes to make, on the transaction of the new version.
+	 * @return {@code true} if the changes were published, {@code false} if the micro-world cannot
+	 *         be updated.
+	 */
+	public synchronized boolean updateMicroworld(Consumer<RDTransaction> changes) {
+		LoadedMicroworld current = microworld;
+
+		if (current == null) {
+			LOG.error("Cannot update the micro-world, it is not loaded");
+			return false;
+		}
+
+		RDTransaction tx;
+
+		try {
+			tx = current.universe.beginTransaction();
+		} catch (UnsupportedOperationException uoe) {
+			LOG.error("Cannot update micro-world " + current.name + ": " + uoe.getMessage());
+			return false;
+		}
+
+		changes.accept(tx);
+
+		if (tx.isEmpty()) {
+			return true;
+		}
+
+		RDUniverse universe = tx.commit();
+		Corrections corrections = current.corrections;
+
+		if (tx.changesConcepts()) {
+			corrections = corrections.withSpelling(
+					resourceTextProc.buildSpelling(universe.getSpellingVocabulary()));
+			resourceTextProc.setCorrections(corrections);
+		}
+
+		microworld = new LoadedMicroworld(current.name, universe, corrections);
+		return true;
+	}
+
+	private static List<String> readMicroworldLines(String mwFile) {
+		try {
+			return Files.readAllLines(new File(mwFile).toPath(), StandardCharsets.UTF_8);
+		} catch (IOException ioe) {
+			LOG.warn("Could not read micro-world file " + mwFile);
+			return new ArrayList<>();
+		}
+	}
+
+	/**
+	 * <p>
+	 * Counts the lines that were removed from or added to the micro-world file, regardless of
+	 * where they are in the file.
+	 * </p>
+	 * 
+	 * @param oldLines lines of the previous version of the file;
+	 * @param newLines lines of the current version of the file;
+	 * @return the number of changed lines.
+	 */
+	private static int countChangedLines(List<String> oldLines, List<String> newLines) {
+		Map<String, Integer> counts = new HashMap<>();
+
+		for (String l : oldLines) {
+			counts.merge(l.trim(), 1, Integer::sum);
+		}
+
+		for (String l : newLines) {
+			counts.merge(l.trim(), -1, Integer::sum);
+		}
+
+		int changed = 0;
+
+		for (int c : counts.values()) {
+			changed += Math.abs(c);
+		}
+
+		return changed;
+	}
+
+	/**
+	 * <p>
+	 * Reloads the micro-world in the background, each time the {@code .mw} file changes. Call
+	 * {@link #loadMicroworld(String)} first.
+	 * </p>
+	 * 
+	 * @param mwFile the {@code .mw} file to watch.
+	 */
+	public synchronized void watchMicroworld(String mwFile) {
+		if (microworldWatcher != null) {
+			LOG.warn("Already watching the micro-world file");
+			return;
+		}
+
+		Path mwPath = new File(mwFile).getAbsoluteFile().toPath();
+		Path mwName = mwPath.getFileName();
+
+		try {
+			microworldWatcher = FileSystems.getDefault().newWatchService();
+			mwPath.getParent().register(microworldWatcher, StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_MODIFY);
+		} catch (IOException ioe) {
+			LOG.error("Cannot watch micro-world file " + mwFile);
+			microworldWatcher = null;
+			return;
+		}
+
+		WatchService watcher = microworldWatcher;
+		Thread reloader = new Thread(() -> {
+			try {
+				while (true) {
+					WatchKey key = watcher.take();
+					boolean changed = false;
+
+					do {
+						for (WatchEvent<?> e : key.pollEvents()) {
+							changed |= mwName.equals(e.context());
+						}
+
+						key.reset();
+
+						if (changed) {
+							// Wait for the editor to finish writing the file
+							Thread.sleep(RELOAD_DEBOUNCE_MILLIS);
+						}
+
+						key = watcher.poll();
+					} while (key != null);
+
+					if (changed) {
+						try {
+							loadMicroworld(mwFile);
+						} catch (RuntimeException re) {
+							// Keep the old universe and the watcher if the new file is broken
+							LOG.error("Could not reload micro-world file " + mwFile, re);
+						}
+					}
+				}
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+			} catch (ClosedWatchServiceException cwse) {
+				// Stopped watching
+			}
+		}, "mw-reloader");
+
+		reloader.setDaemon(true);
+		reloader.start();
+		LOG.info("Watching micro-world file " + mwPath);
+	}
+
+	/**
+	 * Stops reloading the micro-world when the {@code .mw} file changes.
+	 */
+	public synchronized void stopWatchingMicroworld() {
+		if (microworldWatcher != null) {
+			try {
+				microworldWatcher.close();
+			} catch (IOException ioe) {
+				LOG.warn("Could not close the micro-world file watcher");
+			}
+
+			microworldWatcher = null;
+		}
 	}
 
 	public String getMicroworldName() {
-		return microworldName;
+		LoadedMicroworld current = microworld;
+
+		return current == null ? null : current.name;
+	}
+
+	public boolean isMappedFacts() {
+		return mappedFacts;
+	}
+
+	/**
+	 * <p>
+	 * Keep the TRUE facts of the micro-world in a memory-mapped file, for catalogs whose facts
+	 * do not fit in the heap. The bound concepts and their indexes are still on the heap, see
+	 * {@link RDMappedFactStore}. Takes effect at the next {@link #loadMicroworld(String)}. Not
+	 * used with {@link #setPartitionWorkers(List)}, as the facts are then kept by the workers.
+	 * </p>
+	 * 
+	 * @param mapped {@code true} to map the facts.
+	 */
+	public void setMappedFacts(boolean mapped) {
+		mappedFacts = mapped;
+	}
+
+	public List<String> getPartitionWorkers() {
+		return partitionWorkers;
+	}
+
+	/**
+	 * <p>
+	 * Resolve the queries on the {@link RDPartitionWorker}s which serve the partitions of the
+	 * TRUE facts of the micro-world, instead of in this process. Takes effect at the next
+	 * {@link #loadMicroworld(String)}.
+	 * </p>
+	 * 
+	 * @param workerUrls the base URLs of the workers, one for each partition; empty to keep the
+	 *                   facts in this process.
+	 */
+	public void setPartitionWorkers(List<String> workerUrls) {
+		partitionWorkers = new ArrayList<>(workerUrls);
 	}
 
 	public String getConceptsAsString() {
-		return String.join(System.lineSeparator(), discourseUniverse.getBoundConcepts().stream()
+		return String.join(System.lineSeparator(), microworld.universe.getBoundConcepts().stream()
 				.map(RDConcept::toString).collect(Collectors.toList()));
 	}
 
 	public String getPredicatesAsString() {
-		return String.join(System.lineSeparator(), discourseUniverse.getBoundPredicates().stream()
+		return String.join(System.lineSeparator(), microworld.universe.getBoundPredicates().stream()
 				.map(RDPredicate::toString).collect(Collectors.toList()));
 	}
 
@@ -203,8 +534,10 @@ public class RDManager {
 	 * @return a current state of the dialogue.
 	 */
 	public DialogueState doConversation(List<Token> userProcessedInput) {
+		// The micro-world may be reloaded meanwhile: stick to this version of it
+		RDUniverse universe = microworld.universe;
 		Query q = resourceTextProc.queryAnalyzer(userProcessedInput,
-				discourseUniverse.getDefinedConcepts());
+				universe.getDefinedConcepts());
 
 		if (q == null) {
 			// 1. No predicate found, this means no predicate was found in KB. Return this and say
@@ -230,7 +563,7 @@ public class RDManager {
 		}
 
 		// 3. Match the query first...
-		PMatch pm = discourseUniverse.resolveQuery(q);
+		PMatch pm = universe.resolveQuery(q);
 
 		if (pm == null || pm.matchedPredicate == null) {
 			// 4. No predicate found, this means no predicate was found in KB. Return this and say
@@ -260,7 +593,7 @@ public class RDManager {
 			// enough information specified. Try to do a
 			// match in the context of the previously
 			// matched predicate.
-			pm = discourseUniverse.resolveQueryInContext(q, currentDState.inferredPredicate);
+			pm = universe.resolveQueryInContext(q, currentDState.inferredPredicate);
 
 			if (pm.saidArgumentIndex >= 0) {
 				currentDState = DialogueState.robotInformedResponse(q.queryType, pm);
@@ -364,6 +697,31 @@ public class RDManager {
 	 * @return an {@link RDManager} application (Java actionable object).
 	 */
 	public static RDManager createApplication(String mwFile) {
+		return createApplication(mwFile, false);
+	}
+
+	/**
+	 * Call this method to instantiate an {@link RDManager} object.
+	 * 
+	 * @param mappedFacts if {@code true}, keep the TRUE facts in a memory-mapped file, see
+	 *                    {@link #setMappedFacts(boolean)};
+	 * @return an {@link RDManager} application (Java actionable object).
+	 */
+	public static RDManager createApplication(String mwFile, boolean mappedFacts) {
+		return createApplication(mwFile, mappedFacts, new ArrayList<>());
+	}
+
+	/**
+	 * Call this method to instantiate an {@link RDManager} object.
+	 * 
+	 * @param mappedFacts if {@code true}, keep the TRUE facts in a memory-mapped file, see
+	 *                    {@link #setMappedFacts(boolean)};
+	 * @param workerUrls  the partition workers of the facts, see
+	 *                    {@link #setPartitionWorkers(List)};
+	 * @return an {@link RDManager} application (Java actionable object).
+	 */
+	public static RDManager createApplication(String mwFile, boolean mappedFacts,
+			List<String> workerUrls) {
 		String version = getROBINDialogVersion();
 
 		LOG.info(String.format("ROBINDialog version %s", version));
@@ -375,6 +733,8 @@ public class RDManager {
 		RoTextProcessor rotp = new RoTextProcessor(rolex, rown, say);
 		RDManager dman = new RDManager(rown, rolex, rotp, say, speech, false);
 
+		dman.setMappedFacts(mappedFacts);
+		dman.setPartitionWorkers(workerUrls);
 		dman.loadMicroworld(mwFile);
 
 		LOG.info(String.format("Running with the %s microworld", dman.getMicroworldName()));
@@ -383,7 +743,11 @@ public class RDManager {
 	}
 
 	public List<Token> processPrompt(String prompt) {
-		return resourceTextProc.textProcessor(prompt, false, false);
+		// The DICT rules and the spelling indexes of the same micro-world version
+		LoadedMicroworld current = microworld;
+
+		return resourceTextProc.textProcessor(prompt, false, false,
+				current == null ? Corrections.NONE : current.corrections);
 	}
 
 	/**
@@ -395,15 +759,41 @@ public class RDManager {
 	 */
 	public static void main(String[] args) throws IOException, LineUnavailableException,
 			UnsupportedAudioFileException, InterruptedException {
-		if (args.length != 1) {
+		List<String> options = args.length > 1
+				? Arrays.asList(args).subList(1, args.length) : new ArrayList<>();
+
+		List<String> workerUrls = new ArrayList<>();
+
+		for (String o : options) {
+			if (o.startsWith(WORKERS_OPTION)) {
+				workerUrls.addAll(Arrays.asList(o.substring(WORKERS_OPTION.length()).split(",")));
+			}
+		}
+
+		options = options.stream().filter(o -> !o.startsWith(WORKERS_OPTION))
+				.collect(Collectors.toList());
+
+		if (args.length < 1 || !List.of("--watch", "--mapped").containsAll(options)) {
 			String version = getROBINDialogVersion();
-			System.err.println(
-					"java ROBINDialog-" + version + "-jar-with-dependencies.jar <.mw file>");
+			System.err.println("java ROBINDialog-" + version
+					+ "-jar-with-dependencies.jar <.mw file> [--watch] [--mapped] "
+					+ "[--workers=<url>,<url>,...]");
+			return;
+		}
+
+		if (options.contains("--mapped") && !workerUrls.isEmpty()) {
+			// The partition workers keep the facts, in their own processes
+			System.err.println("--mapped cannot be used with --workers=.");
 			return;
 		}
 
 		String mwFile = args[0];
-		RDManager dman = createApplication(mwFile);
+		RDManager dman = createApplication(mwFile, options.contains("--mapped"), workerUrls);
+
+		if (options.contains("--watch")) {
+			// Reload the micro-world when the .mw file is edited
+			dman.watchMicroworld(mwFile);
+		}
 		String prompt = dman.getUserInput();
 
 		// A text-based dialogue loop with speech/console input and output.
@@ -425,6 +815,7 @@ public class RDManager {
 		} // end demo dialogue loop
 
 		System.out.println("Pepper> La revedere.");
+		dman.stopWatchingMicroworld();
 		dman.dumpResourceCaches();
 	}
 }
@@ -0,0 +1,434 @@
+/**
+ *
+ */
+package ro.racai.robin.dialog;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+/**
+ * @author Radu Ion ({@code radu@racai.ro})
+ *         <p>
+ *         A read-only {@link RDFactStore} whose columns, fact locations and posting lists are in
+ *         a memory-mapped file, for catalogs whose facts do not fit in the heap. The file is
+ *         mapped read-only, so the JVMs on the same host that open it share its pages through
+ *         the OS page cache. Only the predicate definitions and a small cache of the recently
+ *         materialized facts are on the heap.
+ *         </p>
+ *         <p>
+ *         Concept IDs are the indexes of the bound concepts of the universe, which stay on the
+ *         heap: the concept indexes of {@link RDUniverse} need them to find the candidates of a
+ *         query. The file holds the hash of its source, such that a stale file is not opened.
+ *         </p>
+ *         <p>
+ *         Only the facts and the posting lists of their arguments are moved out of the heap,
+ *         see {@link RDColumnarFacts#factsWith(RDConcept)}. The bound concepts, their processed
+ *         references and the concept indexes (trigrams, n-grams and head nouns) are not
+ *         mapped, and neither are the fact bitmaps of the concept types and the value indexes
+ *         of the amounts: they stay on the heap and grow with the catalog, one concept per
+ *         product at least. So this saves the heap of the facts only. The file is mapped at
+ *         once and a mapping is at most 2 GB: {@link #open(File, List, byte[])} does not map
+ *         larger files, and {@link ro.racai.robin.mw.MWSnapshot} then keeps the facts in the int
+ *         columns of an {@link RDFactStore}, on the heap.
+ *         </p>
+ */
+public class RDMappedFactStore extends RDFactStore {
+	private static final Logger LOGGER = Logger.getLogger(RDMappedFactStore.class.getName());
+	private static final int MAGIC = 0x52444d46;
+	private static final int FORMAT_VERSION = 1;
+
+	/**
+	 * How many materialized facts are kept on the heap.
+	 */
+	public static final int HOT_FACTS = 256;
+
+	private final List<RDPredicate> definitions;
+	private final int factCount;
+
+	/**
+	 * The int sections of the file. {@link #tableIndex} has the row count, the column count and
+	 * the offset in {@link #data} of each table. A table is its fact IDs, its arities and its
+	 * columns, one after the other.
+	 */
+	private final IntBuffer data;
+	private final int tableIndex;
+	private final int factTablesOffset;
+	private final int factRowsOffset;
+
+	/**
+	 * {@code conceptCount + 1} offsets in {@link #data}, followed by the posting lists.
+	 */
+	private final int postingsOffset;
+
+	private final Map<Integer, RDPredicate> hotFacts =
+			new LinkedHashMap<Integer, RDPredicate>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Integer, RDPredicate> eldest) {
+					return size() > HOT_FACTS;
+				}
+			};
+
+	private RDMappedFactStore(List<RDConcept> bound, List<RDPredicate> definitions,
+			IntBuffer data, int factCount) {
+		super(bound, conceptIds(bound));
+		this.definitions = definitions;
+		this.data = data;
+		this.factCount = factCount;
+		tableIndex = 0;
+		factTablesOffset = 3 * definitions.size();
+		factRowsOffset = factTablesOffset + factCount;
+		postingsOffset = factRowsOffset + factCount;
+	}
+
+	/**
+	 * @return the indexes of {@code bound}, by concept identity.
+	 */
+	private static Map<RDConcept, Integer> conceptIds(List<RDConcept> bound) {
+		Map<RDConcept, Integer> ids = new IdentityHashMap<>();
+
+		for (RDConcept c : bound) {
+			ids.put(c, ids.size());
+		}
+
+		return ids;
+	}
+
+	/**
+	 * <p>
+	 * Writes the facts of {@code store} to {@code file}, replacing it atomically, such that the
+	 * JVMs that mapped the old file keep reading it.
+	 * </p>
+	 *
+	 * @param store the facts to write;
+	 * @param bound the bound concepts of the universe, all the arguments of the facts are here;
+	 * @param hash  the hash of the source of the facts;
+	 * @param file  the file to write.
+	 * @return {@code true} if the file was written.
+	 */
+	public static boolean write(RDFactStore store, List<RDConcept> bound, byte[] hash,
+			File file) {
+		Map<RDConcept, Integer> boundIds = conceptIds(bound);
+		File tmpFile = new File(file.getPath() + ".tmp");
+
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+			ByteArrayOutputStream header = new ByteArrayOutputStream();
+			DataOutputStream hout = new DataOutputStream(header);
+
+			hout.writeInt(hash.length);
+			hout.write(hash);
+			hout.writeInt(store.size());
+			hout.writeInt(bound.size());
+			hout.writeInt(store.tableCount());
+
+			for (int t = 0; t < store.tableCount(); t++) {
+				RDPredicate def = store.definition(t);
+
+				hout.writeUTF(def.getUserIntent().name());
+				hout.writeUTF(def.getActionVerb());
+				hout.writeInt(def.getSynonyms().size());
+
+				for (String syn : def.getSynonyms()) {
+					hout.writeUTF(syn);
+				}
+			}
+
+			// The int sections start at a multiple of 4
+			while (header.size() % 4 != 0) {
+				hout.writeByte(0);
+			}
+
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeInt(header.size());
+			header.writeTo(out);
+
+			// 1. Table index
+			int offset = 3 * store.tableCount() + 2 * store.size() + bound.size() + 1;
+			int[] columnCounts = new int[store.tableCount()];
+
+			for (int t = 0; t < store.tableCount(); t++) {
+				for (int row = 0; row < store.rowCount(t); row++) {
+					columnCounts[t] = Math.max(columnCounts[t], store.arity(t, row));
+				}
+
+				out.writeInt(store.rowCount(t));
+				out.writeInt(columnCounts[t]);
+				out.writeInt(offset);
+				offset += store.rowCount(t) * (2 + columnCounts[t]);
+			}
+
+			// 2. Table and row of each fact
+			for (int f = 0; f < store.size(); f++) {
+				out.writeInt(store.tableOf(f));
+			}
+
+			for (int f = 0; f < store.size(); f++) {
+				out.writeInt(store.rowOf(f));
+			}
+
+			// 3. Posting list offsets, by bound concept index
+			int[][] postings = new int[bound.size()][];
+
+			for (int c = 0; c < bound.size(); c++) {
+				Integer id = store.getConceptIds().get(bound.get(c));
+
+				postings[c] = id == null ? new int[0] : store.factsWith(id);
+			}
+
+			int postingOffset = offset;
+
+			for (int c = 0; c < bound.size(); c++) {
+				out.writeInt(postingOffset);
+				postingOffset += postings[c].length;
+			}
+
+			out.writeInt(postingOffset);
+
+			// 4. Tables
+			for (int t = 0; t < store.tableCount(); t++) {
+				for (int row = 0; row < store.rowCount(t); row++) {
+					out.writeInt(store.factId(t, row));
+				}
+
+				for (int row = 0; row < store.rowCount(t); row++) {
+					out.writeInt(store.arity(t, row));
+				}
+
+				for (int i = 0; i < columnCounts[t]; i++) {
+					for (int row = 0; row < store.rowCount(t); row++) {
+						out.writeInt(i < store.arity(t, row)
+								? boundIds.get(store.concept(store.argumentId(t, row, i)))
+								: NO_CONCEPT);
+					}
+				}
+			}
+
+			// 5. Posting lists
+			for (int[] posting : postings) {
+				for (int f : posting) {
+					out.writeInt(f);
+				}
+			}
+		} catch (IOException ioe) {
+			LOGGER.warn("Could not write " + tmpFile.getPath());
+			ioe.printStackTrace();
+			return false;
+		}
+
+		try {
+			Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			return true;
+		} catch (IOException ioe) {
+			LOGGER.warn("Could not replace " + file.getPath());
+			ioe.printStackTrace();
+			return false;
+		}
+	}
+
+	/**
+	 * <p>
+	 * Maps a file written by {@link #write(RDFactStore, List, byte[], File)}, read-only.
+	 * </p>
+	 *
+	 * @param file  the file to map;
+	 * @param bound the bound concepts of the universe, in the order they had when the file was
+	 *              written;
+	 * @param hash  the hash of the current source of the facts;
+	 * @return the store or {@code null} if the file is stale, unreadable or larger than 2 GB.
+	 */
+	public static RDMappedFactStore open(File file, List<RDConcept> bound, byte[] hash) {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				LOGGER.warn(file.getPath() + " is larger than 2 GB, the size of one mapping");
+				return null;
+			}
+
+			// The mapping stays valid after the channel is closed.
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+			if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+				LOGGER.info(file.getPath() + " has an old format");
+				return null;
+			}
+
+			byte[] header = new byte[buffer.getInt()];
+
+			buffer.get(header);
+
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(header));
+			byte[] fileHash = new byte[in.readInt()];
+
+			in.readFully(fileHash);
+
+			if (!Arrays.equals(fileHash, hash)) {
+				LOGGER.info(file.getPath() + " is stale");
+				return null;
+			}
+
+			int factCount = in.readInt();
+
+			if (in.readInt() != bound.size()) {
+				LOGGER.info(file.getPath() + " has other bound concepts");
+				return null;
+			}
+
+			int tableCount = in.readInt();
+			List<RDPredicate> definitions = new ArrayList<>(tableCount);
+
+			for (int t = 0; t < tableCount; t++) {
+				UIntentType intent = UIntentType.valueOf(in.readUTF());
+				String verb = in.readUTF();
+				int n = in.readInt();
+				List<String> syns = new ArrayList<>(n);
+
+				for (int i = 0; i < n; i++) {
+					syns.add(in.readUTF());
+				}
+
+				definitions.add(RDPredicate.predicateBuilder(intent, verb, syns));
+			}
+
+			ByteBuffer ints = buffer.slice();
+
+			return new RDMappedFactStore(bound, definitions, ints.asIntBuffer(), factCount);
+		} catch (IOException | RuntimeException e) {
+			LOGGER.warn("Could not map " + file.getPath());
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	@Override
+	public int addFact(RDPredicate fact) {
+		throw new UnsupportedOperationException("Mapped fact stores are read-only!");
+	}
+
+	@Override
+	RDColumnarFacts toFacts() {
+		return new RDMappedFacts(this);
+	}
+
+	@Override
+	public int size() {
+		return factCount;
+	}
+
+	@Override
+	public int tableCount() {
+		return definitions.size();
+	}
+
+	@Override
+	public RDPredicate definition(int t) {
+		return definitions.get(t);
+	}
+
+	@Override
+	public int rowCount(int t) {
+		return data.get(tableIndex + 3 * t);
+	}
+
+	@Override
+	public int factId(int t, int row) {
+		return data.get(data.get(tableIndex + 3 * t + 2) + row);
+	}
+
+	@Override
+	public int arity(int t, int row) {
+		return data.get(data.get(tableIndex + 3 * t + 2) + rowCount(t) + row);
+	}
+
+	@Override
+	public int argumentId(int t, int row, int position) {
+		int rows = rowCount(t);
+
+		return data.get(data.get(tableIndex + 3 * t + 2) + (2 + position) * rows + row);
+	}
+
+	@Override
+	public int tableOf(int factId) {
+		return data.get(factTablesOffset + factId);
+	}
+
+	@Override
+	public int rowOf(int factId) {
+		return data.get(factRowsOffset + factId);
+	}
+
+	@Override
+	public int[] factsWith(int conceptId) {
+		int from = data.get(postingsOffset + conceptId);
+		int to = data.get(postingsOffset + conceptId + 1);
+		int[] result = new int[to - from];
+
+		for (int i = 0; i < result.length; i++) {
+			result[i] = data.get(from + i);
+		}
+
+		return result;
+	}
+
+	/**
+	 * <p>
+	 * Materializes a fact, through the cache of the recently materialized facts. The cached
+	 * facts are shared, so they must not be changed.
+	 * </p>
+	 */
+	@Override
+	public RDPredicate fact(int factId) {
+		synchronized (hotFacts) {
+			RDPredicate p = hotFacts.get(factId);
+
+			if (p != null) {
+				return p;
+			}
+		}
+
+		RDPredicate p = super.fact(factId);
+
+		synchronized (hotFacts) {
+			hotFacts.put(factId, p);
+		}
+
+		return p;
+	}
+
+	/**
+	 * @return all the facts, materialized, bypassing the cache of the recently materialized facts.
+	 */
+	@Override
+	public List<RDPredicate> facts() {
+		List<RDPredicate> result = new ArrayList<>(factCount);
+
+		for (int f = 0; f < factCount; f++) {
+			result.add(super.fact(f));
+		}
+
+		return result;
+	}
+}
@@ -0,0 +1,47 @@
+/**
+ *
+ */
+package ro.racai.robin.dialog;
+
+import java.util.List;
+
+/**
+ * @author Radu Ion ({@code radu@racai.ro})
+ *         <p>
+ *         The TRUE facts of a universe in an {@link RDMappedFactStore}. They are scored as the
+ *         other columnar facts, but they cannot be changed: the file is built from the
+ *         micro-world and mapped read-only.
+ *         </p>
+ */
+class RDMappedFacts extends RDColumnarFacts {
+	RDMappedFacts(RDMappedFactStore store) {
+		super(store);
+	}
+
+	private RDMappedFacts(RDMappedFacts base) {
+		super(base);
+	}
+
+	@Override
+	public void add(RDPredicate fact) {
+		throw new UnsupportedOperationException(
+				"The facts of a mapped fact store cannot be changed!");
+	}
+
+	@Override
+	public void setAll(List<RDPredicate> facts) {
+		throw new UnsupportedOperationException(
+				"The facts of a mapped fact store cannot be changed!");
+	}
+
+	@Override
+	public RDFacts copy() {
+		return new RDMappedFacts(this);
+	}
+
+	@Override
+	public RDObjectFacts forTransaction() {
+		throw new UnsupportedOperationException(
+				"Transactions are not supported on the facts of a mapped file!");
+	}
+}
@@ -0,0 +1,975 @@
+/**
+ *
+ */
+package ro.racai.robin.dialog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntPredicate;
+
+import org.apache.log4j.Logger;
+
+import ro.racai.robin.dialog.RDPredicate.PMatch;
+import ro.racai.robin.dialog.RDUniverse.QueryScoring;
+import ro.racai.robin.dialog.RDUniverse.ScoringScratch;
+import ro.racai.robin.nlp.CompressedBitmap;
+import ro.racai.robin.nlp.TextProcessor.Argument;
+
+/**
+ * @author Radu Ion ({@code radu@racai.ro})
+ *         <p>
+ *         The TRUE facts of a universe as {@link RDPredicate} objects, in the order of the TRUE
+ *         lines. The action verb index points to the facts to score, which can be grouped, see
+ *         {@link RDUniverse#setFactGrouping(boolean)}, and scored in parallel, see
+ *         {@link RDUniverse#setParallelScoring(boolean)}. These are the only facts that an
+ *         {@link RDTransaction} can change.
+ *         </p>
+ */
+class RDObjectFacts implements RDFacts {
+	private static final Logger LOGGER = Logger.getLogger(RDObjectFacts.class.getName());
+
+	/**
+	 * How many predicates a parallel scoring task scores by itself, without forking.
+	 */
+	private static final int PARALLEL_SCORING_LEAF_SIZE = 16;
+
+	/**
+	 * Runs the parallel scoring tasks of all universes, on daemon threads, such that they do not
+	 * wait behind other tasks of the common pool or keep the JVM alive.
+	 */
+	private static final ForkJoinPool SCORING_POOL =
+			new ForkJoinPool(Runtime.getRuntime().availableProcessors(), pool -> {
+				ForkJoinWorkerThread t =
+						ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+
+				t.setName("RDUniverse-scoring-" + t.getPoolIndex());
+				t.setDaemon(true);
+				return t;
+			}, null, false);
+
+	/**
+	 * The TRUE facts, by fact ID.
+	 */
+	protected List<RDPredicate> predicates;
+
+	/**
+	 * Action verb to {@link #predicates} index. Built by {@link #index(RDUniverse)}, together
+	 * with the other fact indexes, and reset when the facts change.
+	 */
+	private RDPredicateIndex predicateIndex;
+
+	/**
+	 * Dense IDs of the distinct predicate arguments, by identity. A committed
+	 * {@link RDTransaction} gives IDs to the new arguments and keeps the IDs of the arguments that
+	 * have no facts any more, until there are more than {@link RDUniverse#DELTA_MERGE_SIZE} of
+	 * these, or more than one in eight IDs, and then the arguments are numbered again.
+	 */
+	private Map<RDConcept, Integer> argumentIds;
+
+	/**
+	 * The fact IDs of the {@link #predicates}, by identity.
+	 */
+	private Map<RDPredicate, Integer> factIds = new IdentityHashMap<>();
+
+	/**
+	 * The fact groups, by identity of each of their facts; the first fact of a group is the one
+	 * that is scored. Built together with {@link #predicateIndex}, if the universe groups its
+	 * facts.
+	 */
+	private Map<RDPredicate, FactGroup> factGroups = new IdentityHashMap<>();
+
+	private RDFactIndexes indexes;
+
+	/**
+	 * @author Radu Ion ({@code radu@racai.ro})
+	 *         <p>
+	 *         Consecutive TRUE facts that only differ at argument {@link #position}, where they
+	 *         have interchangeable references of the same concept, e.g. <i>TRUE avea C1 P3 M2 V3
+	 *         A2</i> and <i>TRUE avea C1 P3 M2 V4 A2</i>. The first fact is the one that is scored
+	 *         and the references of the others at {@link #position} are its alternatives.
+	 *         </p>
+	 */
+	private static class FactGroup {
+		final List<RDPredicate> members = new ArrayList<>();
+		int position = -1;
+
+		FactGroup(RDPredicate first) {
+			members.add(first);
+		}
+
+		/**
+		 * Adds {@code fact} to the group if it is its next alternative.
+		 *
+		 * @return {@code true} if {@code fact} was added.
+		 */
+		boolean offer(RDPredicate fact) {
+			RDPredicate first = members.get(0);
+			List<RDConcept> args = first.getArguments();
+			List<RDConcept> fargs = fact.getArguments();
+
+			if (fact.getUserIntent() != first.getUserIntent()
+					|| !fact.getActionVerb().equals(first.getActionVerb())
+					|| !fact.getSynonyms().equals(first.getSynonyms())
+					|| fargs.size() != args.size()) {
+				return false;
+			}
+
+			int diff = -1;
+
+			for (int i = 0; i < args.size(); i++) {
+				if (fargs.get(i) != args.get(i)) {
+					if (diff >= 0 || !fargs.get(i).isInterchangeableWith(args.get(i))) {
+						return false;
+					}
+
+					diff = i;
+				}
+			}
+
+			if (diff < 0 || (position >= 0 && diff != position)) {
+				// Duplicates are scored separately, as before.
+				return false;
+			}
+
+			position = diff;
+			members.add(fact);
+			return true;
+		}
+	}
+
+	/**
+	 * @author Radu Ion ({@code radu@racai.ro})
+	 *         <p>
+	 *         Scores a range of predicates, splitting it in halves until it is small enough, and
+	 *         returns the best match of the range. The left half wins ties, such that the result is
+	 *         the same as the one of the sequential scoring.
+	 *         </p>
+	 */
+	private class PredicateScoringTask extends RecursiveTask<PMatch> {
+		private static final long serialVersionUID = 1L;
+
+		private final transient RDUniverse universe;
+		private final transient QueryScoring scoring;
+		private final transient List<RDPredicate> preds;
+		private final int from;
+		private final int to;
+
+		PredicateScoringTask(RDUniverse universe, QueryScoring scoring, List<RDPredicate> preds,
+				int from, int to) {
+			this.universe = universe;
+			this.scoring = scoring;
+			this.preds = preds;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected PMatch compute() {
+			if (to - from <= PARALLEL_SCORING_LEAF_SIZE) {
+				return scorePredicates(universe, scoring, preds, from, to);
+			}
+
+			int mid = (from + to) >>> 1;
+			PredicateScoringTask left =
+					new PredicateScoringTask(universe, scoring, preds, from, mid);
+			PredicateScoringTask right =
+					new PredicateScoringTask(universe, scoring, preds, mid, to);
+
+			right.fork();
+
+			PMatch leftBest = left.compute();
+			PMatch rightBest = right.join();
+
+			if (rightBest != null
+					&& (leftBest == null || rightBest.matchScore > leftBest.matchScore)) {
+				return rightBest;
+			}
+
+			return leftBest;
+		}
+	}
+
+	RDObjectFacts() {
+		predicates = new ArrayList<>();
+	}
+
+	RDObjectFacts(List<RDPredicate> facts) {
+		predicates = facts;
+	}
+
+	/**
+	 * @param base  the facts whose indexes are shared, e.g. by the copy of a universe;
+	 * @param facts the facts of the copy.
+	 */
+	RDObjectFacts(RDObjectFacts base, List<RDPredicate> facts) {
+		predicates = facts;
+		predicateIndex = base.predicateIndex;
+		argumentIds = base.argumentIds;
+		factIds = base.factIds;
+		factGroups = base.factGroups;
+		indexes = base.indexes;
+	}
+
+	@Override
+	public int size() {
+		return predicates.size();
+	}
+
+	@Override
+	public RDPredicate fact(int factId) {
+		return predicates.get(factId);
+	}
+
+	@Override
+	public int arity(int factId) {
+		return predicates.get(factId).getArguments().size();
+	}
+
+	@Override
+	public RDConcept argument(int factId, int position) {
+		return predicates.get(factId).getArguments().get(position);
+	}
+
+	@Override
+	public List<RDPredicate> toList() {
+		return predicates;
+	}
+
+	@Override
+	public List<RDPredicate> definitions() {
+		return predicates;
+	}
+
+	@Override
+	public void add(RDPredicate fact) {
+		predicates.add(fact);
+		clearIndexes();
+	}
+
+	@Override
+	public void setAll(List<RDPredicate> facts) {
+		predicates.clear();
+		predicates.addAll(facts);
+		clearIndexes();
+	}
+
+	@Override
+	public int factId(RDPredicate fact) {
+		Integer id = factIds.get(fact);
+
+		return id == null ? -1 : id;
+	}
+
+	@Override
+	public int globalFactId(int factId) {
+		return factId;
+	}
+
+	@Override
+	public RDFacts copy() {
+		return new RDObjectFacts(this, predicates);
+	}
+
+	@Override
+	public RDFacts toColumnar() {
+		RDFactStore store = new RDFactStore();
+
+		for (RDPredicate p : predicates) {
+			store.addFact(p);
+		}
+
+		return new RDColumnarFacts(store);
+	}
+
+	@Override
+	public RDFacts toObjects() {
+		return this;
+	}
+
+	@Override
+	public RDPartitionFacts partition(IntPredicate keep) {
+		List<RDPredicate> facts = new ArrayList<>();
+		int[] ids = new int[predicates.size()];
+
+		for (int f = 0; f < predicates.size(); f++) {
+			if (keep.test(f)) {
+				ids[facts.size()] = globalFactId(f);
+				facts.add(predicates.get(f));
+			}
+		}
+
+		return new RDPartitionFacts(facts, Arrays.copyOf(ids, facts.size()), predicateIndex);
+	}
+
+	@Override
+	public RDObjectFacts forTransaction() {
+		return this;
+	}
+
+	@Override
+	public void index(RDUniverse universe) {
+		index(universe, argumentIds(predicates), null);
+	}
+
+	/**
+	 * <p>
+	 * Builds the indexes of the {@link #predicates}.
+	 * </p>
+	 *
+	 * @param universe the universe of the facts;
+	 * @param ids      the IDs of the predicate arguments;
+	 * @param previous the action verb index of the previous version of the facts, whose verb
+	 *                 groups are reused, or {@code null}.
+	 */
+	void index(RDUniverse universe, Map<RDConcept, Integer> ids, RDPredicateIndex previous) {
+		Map<RDPredicate, Integer> fids = new IdentityHashMap<>();
+
+		for (int f = 0; f < predicates.size(); f++) {
+			fids.put(predicates.get(f), f);
+		}
+
+		argumentIds = ids;
+		factIds = fids;
+		factGroups = new IdentityHashMap<>();
+		indexes = RDFactIndexes.of(this, universe.getDefinedConcepts(), universe.getWordNet(),
+				true);
+
+		if (!universe.isFactGrouping()) {
+			predicateIndex =
+					new RDPredicateIndex(predicates, null, universe.getWordNet(), previous);
+			return;
+		}
+
+		List<Integer> scored = new ArrayList<>();
+		FactGroup group = null;
+		int groupCount = 0;
+
+		for (int f = 0; f < predicates.size(); f++) {
+			RDPredicate p = predicates.get(f);
+
+			if (group != null && group.offer(p)) {
+				if (group.members.size() == 2) {
+					// Single facts need no group.
+					factGroups.put(group.members.get(0), group);
+					groupCount++;
+				}
+
+				factGroups.put(p, group);
+				continue;
+			}
+
+			group = new FactGroup(p);
+			scored.add(f);
+		}
+
+		LOGGER.info(String.format("Scoring %d of %d facts, in %d fact groups", scored.size(),
+				predicates.size(), groupCount));
+		// The verb index only has the scored facts, by fact ID.
+		predicateIndex = new RDPredicateIndex(predicates,
+				scored.stream().mapToInt(Integer::intValue).toArray(), universe.getWordNet(),
+				previous);
+	}
+
+	@Override
+	public void clearIndexes() {
+		predicateIndex = null;
+	}
+
+	@Override
+	public boolean isIndexed() {
+		return predicateIndex != null;
+	}
+
+	@Override
+	public RDFactIndexes indexes() {
+		return indexes;
+	}
+
+	@Override
+	public CompressedBitmap factsWith(RDConcept conc) {
+		return indexes.conceptFacts.get(conc);
+	}
+
+	@Override
+	public Map<RDConcept, Integer> argumentIds() {
+		return argumentIds;
+	}
+
+	/**
+	 * <p>
+	 * Brings the indexes that these facts share with the facts of the version that an
+	 * {@link RDTransaction} was started from up to date. If the facts of {@code base} kept their
+	 * fact IDs, the indexes are updated for the replaced and the added facts only. Otherwise, they
+	 * are built again, but without WordNet lookups for the verb groups that {@code base} already
+	 * has.
+	 * </p>
+	 *
+	 * @param universe the new version of the universe;
+	 * @param base     the facts of the version that the transaction was started from;
+	 * @param replaced the fact IDs of the replaced facts, in increasing order, or {@code null} if
+	 *                 facts of {@code base} were retracted without a replacement;
+	 * @param renumber if {@code true}, the predicate arguments are numbered again.
+	 */
+	void update(RDUniverse universe, RDObjectFacts base, int[] replaced, boolean renumber) {
+		if (base.predicateIndex == null) {
+			return;
+		}
+
+		if (replaced == null) {
+			// Fact IDs have changed.
+			index(universe, argumentIds(predicates), base.predicateIndex);
+			return;
+		}
+
+		int baseCount = base.predicates.size();
+		int[] changed = new int[replaced.length + predicates.size() - baseCount];
+
+		System.arraycopy(replaced, 0, changed, 0, replaced.length);
+
+		for (int f = baseCount; f < predicates.size(); f++) {
+			changed[replaced.length + f - baseCount] = f;
+		}
+
+		if (changed.length == 0) {
+			return;
+		}
+
+		Map<RDPredicate, Integer> fids = new IdentityHashMap<>(base.factIds);
+
+		for (int f : replaced) {
+			fids.remove(base.predicates.get(f));
+		}
+
+		for (int f : changed) {
+			fids.put(predicates.get(f), f);
+		}
+
+		factIds = fids;
+		indexes = base.indexes.update(base.predicates, predicates, replaced, changed,
+				universe.getWordNet());
+
+		Map<RDConcept, Integer> ids = base.argumentIds;
+
+		for (int f : changed) {
+			for (RDConcept c : predicates.get(f).getArguments()) {
+				if (!ids.containsKey(c)) {
+					if (ids == base.argumentIds) {
+						ids = new IdentityHashMap<>(ids);
+					}
+
+					ids.put(c, ids.size());
+				}
+			}
+		}
+
+		// The arguments that have no facts any more
+		int unused = ids.size() - indexes.conceptFacts.size();
+
+		if (renumber || unused > Math.max(RDUniverse.DELTA_MERGE_SIZE, ids.size() / 8)) {
+			ids = argumentIds(predicates);
+		}
+
+		argumentIds = ids;
+
+		List<Integer> unscored = new ArrayList<>();
+		List<Integer> scored = new ArrayList<>();
+
+		if (universe.isFactGrouping()) {
+			updateFactGroups(base, changed, unscored, scored);
+		} else {
+			for (int f : replaced) {
+				unscored.add(f);
+			}
+
+			for (int f : changed) {
+				scored.add(f);
+			}
+		}
+
+		predicateIndex = base.predicateIndex.update(predicates,
+				unscored.stream().mapToInt(Integer::intValue).toArray(),
+				scored.stream().mapToInt(Integer::intValue).toArray());
+	}
+
+	/**
+	 * <p>
+	 * Groups the facts again around the {@code changed} fact IDs, from the group of the fact
+	 * before each of them up to the first group that {@code base} also has. The other groups are
+	 * shared with {@code base}.
+	 * </p>
+	 *
+	 * @param changed  the IDs of the replaced and added facts, in increasing order;
+	 * @param unscored collects the IDs of the facts that {@code base} scored and which were
+	 *                 grouped again;
+	 * @param scored   collects the IDs of the facts that are scored in the new groups.
+	 */
+	private void updateFactGroups(RDObjectFacts base, int[] changed, List<Integer> unscored,
+			List<Integer> scored) {
+		Map<RDPredicate, FactGroup> groups = new IdentityHashMap<>(base.factGroups);
+		int count = predicates.size();
+		int baseCount = base.predicates.size();
+		int next = 0;
+		int f = base.groupStartBefore(changed[0]);
+
+		while (f < count) {
+			if (f < baseCount && predicates.get(f) == base.predicates.get(f)
+					&& base.isGroupStart(f)) {
+				// The groups of base are kept up to the next changed fact.
+				while (next < changed.length && changed[next] < f) {
+					next++;
+				}
+
+				if (next == changed.length) {
+					break;
+				}
+
+				int start = base.groupStartBefore(changed[next]);
+
+				if (start > f) {
+					f = start;
+					continue;
+				}
+			}
+
+			FactGroup group = new FactGroup(predicates.get(f));
+			int end = f + 1;
+
+			while (end < count && group.offer(predicates.get(end))) {
+				end++;
+			}
+
+			for (int e = f; e < Math.min(end, baseCount); e++) {
+				if (base.isGroupStart(e)) {
+					unscored.add(e);
+				}
+
+				groups.remove(base.predicates.get(e));
+			}
+
+			if (group.members.size() > 1) {
+				for (RDPredicate m : group.members) {
+					groups.put(m, group);
+				}
+			}
+
+			scored.add(f);
+			f = end;
+		}
+
+		factGroups = groups;
+	}
+
+	/**
+	 * @return {@code true} if fact {@code f} is scored: it is the first fact of its group or it
+	 *         has no group.
+	 */
+	private boolean isGroupStart(int f) {
+		RDPredicate p = predicates.get(f);
+		FactGroup group = factGroups.get(p);
+
+		return group == null || group.members.get(0) == p;
+	}
+
+	/**
+	 * @return the ID of the first fact of the group of fact {@code f - 1}; {@code 0} if {@code f}
+	 *         is {@code 0}.
+	 */
+	private int groupStartBefore(int f) {
+		if (f == 0) {
+			return 0;
+		}
+
+		FactGroup group = factGroups.get(predicates.get(f - 1));
+
+		return group == null ? f - 1 : factIds.get(group.members.get(0));
+	}
+
+	/**
+	 * @return dense IDs of the distinct arguments of {@code facts}, by identity, in the order in
+	 *         which they first appear.
+	 */
+	static Map<RDConcept, Integer> argumentIds(List<RDPredicate> facts) {
+		Map<RDConcept, Integer> ids = new IdentityHashMap<>();
+
+		for (RDPredicate p : facts) {
+			for (RDConcept c : p.getArguments()) {
+				ids.putIfAbsent(c, ids.size());
+			}
+		}
+
+		return ids;
+	}
+
+	@Override
+	public List<PMatch> topK(RDUniverse universe, QueryScoring scoring, int k,
+			CompressedBitmap survivors) {
+		return topKPredicates(universe, scoring,
+				scoredPredicates(scoring.query.actionVerb, survivors), k);
+	}
+
+	/**
+	 * <p>
+	 * With {@link RDUniverse#setParallelScoring(boolean)} on, the predicates are scored on a
+	 * {@link ForkJoinPool} of daemon threads, shared by all universes, when there are at least
+	 * {@link RDUniverse#PARALLEL_SCORING_THRESHOLD} of them. The best match is the same as with
+	 * the sequential scoring, ties included.
+	 * </p>
+	 */
+	@Override
+	public PMatch best(RDUniverse universe, QueryScoring scoring, CompressedBitmap survivors) {
+		List<RDPredicate> preds = scoredPredicates(scoring.query.actionVerb, survivors);
+
+		if (universe.isParallelScoring()
+				&& preds.size() >= RDUniverse.PARALLEL_SCORING_THRESHOLD) {
+			return SCORING_POOL.invoke(
+					new PredicateScoringTask(universe, scoring, preds, 0, preds.size()));
+		}
+
+		List<PMatch> best = topKPredicates(universe, scoring, preds, 1);
+
+		return best.isEmpty() ? null : best.get(0);
+	}
+
+	/**
+	 * @return the scored predicates whose verb {@code verb} can refer to, with a fact (or a fact
+	 *         of its {@link FactGroup}) in {@code survivors}, in fact order; all of them if
+	 *         {@code survivors} is {@code null}.
+	 */
+	private List<RDPredicate> scoredPredicates(String verb, CompressedBitmap survivors) {
+		List<RDPredicate> preds = predicateIndex.predicatesFor(verb);
+
+		if (survivors == null) {
+			return preds;
+		}
+
+		List<RDPredicate> result = new ArrayList<>();
+
+		for (RDPredicate p : preds) {
+			FactGroup group = factGroups.get(p);
+
+			if (group == null) {
+				if (survivors.contains(factIds.get(p))) {
+					result.add(p);
+				}
+
+				continue;
+			}
+
+			for (RDPredicate m : group.members) {
+				if (survivors.contains(factIds.get(m))) {
+					result.add(p);
+					break;
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * <p>
+	 * Scores the predicates in decreasing order of their {@link #scoreUpperBound(QueryScoring,
+	 * RDPredicate, float[], float[], RDUniverse)} and stops as soon as the bound cannot reach the
+	 * k-th best score.
+	 * </p>
+	 *
+	 * @return at most {@code k} matches with positive scores, best first, earlier predicates
+	 *         first on equal scores.
+	 */
+	private List<PMatch> topKPredicates(RDUniverse universe, QueryScoring scoring,
+			List<RDPredicate> preds, int k) {
+		int n = preds.size();
+		ScoringScratch scratch = universe.scratch();
+
+		scratch.predicates(n);
+
+		float[] bounds = scratch.bounds;
+		PMatch[] matches = scratch.matches;
+		long[] order = scratch.order;
+		List<Argument> queryArgs = scoring.query.predicateArguments;
+		float[] argMaxScores = new float[queryArgs.size()];
+		float[] conceptBounds = new float[scoring.conceptIds.size()];
+
+		for (int j = 0; j < argMaxScores.length; j++) {
+			argMaxScores[j] = RDUniverse.MAX_REFERENCE_SIMILARITY + RDUniverse.SCORE_DELTA
+					+ (queryArgs.get(j).isQueryTopic ? 1.0f : 0.0f);
+		}
+
+		Arrays.fill(conceptBounds, Float.NaN);
+
+		for (int p = 0; p < n; p++) {
+			bounds[p] = scoreUpperBound(scoring, preds.get(p), argMaxScores, conceptBounds,
+					universe);
+			order[p] = scoringOrder(bounds[p], p);
+		}
+
+		Arrays.sort(order, 0, n);
+
+		// Min-heap on score, the worst match (the later one, on equal scores) is on top.
+		PriorityQueue<Integer> heap = new PriorityQueue<>(k + 1,
+				(a, b) -> matches[a].matchScore != matches[b].matchScore
+						? Float.compare(matches[a].matchScore, matches[b].matchScore)
+						: b - a);
+		int pruned = 0;
+
+		for (int o = 0; o < n; o++) {
+			int p = (int) order[o];
+
+			if (heap.size() == k && bounds[p] < matches[heap.peek()].matchScore) {
+				// The bounds of the remaining predicates are not larger.
+				pruned = n - o;
+				break;
+			}
+
+			float score = scorePredicate(universe, scoring, preds.get(p), scratch);
+
+			if (score <= 0.0f) {
+				continue;
+			}
+
+			if (heap.size() == k) {
+				PMatch worst = matches[heap.peek()];
+
+				if (score < worst.matchScore || (score == worst.matchScore && p > heap.peek())) {
+					// Would be polled right away.
+					continue;
+				}
+			}
+
+			matches[p] = universe.toPMatch(scoring, scratch, score);
+			heap.add(p);
+
+			if (heap.size() > k) {
+				heap.poll();
+			}
+		}
+
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug(String.format("Top %d: pruned %d of %d predicates", k, pruned, n));
+		}
+
+		List<PMatch> result = new ArrayList<>();
+
+		while (!heap.isEmpty()) {
+			result.add(0, matches[heap.poll()]);
+		}
+
+		// Do not keep the matches of this query alive
+		Arrays.fill(matches, 0, n, null);
+		return result;
+	}
+
+	/**
+	 * @return a key that sorts the predicates by descending upper {@code bound}, the lower
+	 *         predicate index {@code p} first on equal bounds.
+	 */
+	private static long scoringOrder(float bound, int p) {
+		int bits = Float.floatToIntBits(bound);
+
+		// The bits of a float sort as a signed int after flipping all but the sign of negatives.
+		bits ^= (bits >> 31) & Integer.MAX_VALUE;
+		return ((long) ~bits << 32) | p;
+	}
+
+	/**
+	 * <p>
+	 * Cheap upper bound of the score of {@link #scorePredicate(RDUniverse, QueryScoring,
+	 * RDPredicate, ScoringScratch)}: each predicate argument (or its best alternative in the
+	 * {@link FactGroup} of the predicate) adds at most its
+	 * {@link #cellUpperBound(QueryScoring, RDConcept, float[], float[], RDUniverse)}, and the
+	 * predicate name adds at most 0.5.
+	 * </p>
+	 *
+	 * @param scoring       the query that is being resolved;
+	 * @param predicate     the predicate to bound the score of;
+	 * @param argMaxScores  the maximum cell score of each query argument;
+	 * @param conceptBounds the memoized cell bounds, by concept ID, {@code NaN} if not computed
+	 *                      yet;
+	 * @param universe      the universe that scores the cells;
+	 * @return the upper bound of the match score.
+	 */
+	private float scoreUpperBound(QueryScoring scoring, RDPredicate predicate,
+			float[] argMaxScores, float[] conceptBounds, RDUniverse universe) {
+		List<RDConcept> args = predicate.getArguments();
+		FactGroup group = factGroups.get(predicate);
+		float bound = predicate.isTheActionVerb(scoring.query.actionVerb) ? 0.5f : 0.25f;
+
+		for (int i = 0; i < args.size(); i++) {
+			float argBound =
+					cellUpperBound(scoring, args.get(i), argMaxScores, conceptBounds, universe);
+
+			if (group != null && i == group.position) {
+				for (int m = 1; m < group.members.size(); m++) {
+					argBound = Math.max(argBound, cellUpperBound(scoring,
+							group.members.get(m).getArguments().get(i), argMaxScores,
+							conceptBounds, universe));
+				}
+			}
+
+			bound += argBound;
+		}
+
+		// Some slack for the float sums.
+		return bound * 1.0001f;
+	}
+
+	/**
+	 * <p>
+	 * Upper bound of the best cell score of {@code pArg}, without scoring its reference: a
+	 * concept of the type that the query asks for scores 1 (plus {@link RDUniverse#SCORE_DELTA}),
+	 * a candidate of a query argument scores at most the maximum of that argument and any other
+	 * concept scores 0.
+	 * </p>
+	 *
+	 * @return the bound, memoized in {@code conceptBounds} if {@code pArg} has an ID.
+	 */
+	private static float cellUpperBound(QueryScoring scoring, RDConcept pArg,
+			float[] argMaxScores, float[] conceptBounds, RDUniverse universe) {
+		int id = scoring.idOf(pArg);
+
+		if (id >= 0 && !Float.isNaN(conceptBounds[id])) {
+			return conceptBounds[id];
+		}
+
+		float bound = 0.0f;
+
+		for (int j = 0; j < argMaxScores.length; j++) {
+			Set<RDConcept> cands = scoring.candidates.get(j);
+
+			if (universe.isOfSameQueryType(scoring, pArg, id, j)) {
+				bound = Math.max(bound, 1.0f + RDUniverse.SCORE_DELTA);
+			} else if (cands == null || cands.contains(pArg)) {
+				bound = Math.max(bound, argMaxScores[j]);
+			}
+		}
+
+		if (id >= 0) {
+			conceptBounds[id] = bound;
+		}
+
+		return bound;
+	}
+
+	/**
+	 * <p>
+	 * Scores the predicates from {@code from} to {@code to} (exclusive) and returns the first one
+	 * with the highest, positive score.
+	 * </p>
+	 */
+	private PMatch scorePredicates(RDUniverse universe, QueryScoring scoring,
+			List<RDPredicate> preds, int from, int to) {
+		ScoringScratch scratch = universe.scratch();
+		PMatch result = null;
+		float maxScore = 0.0f;
+
+		for (int k = from; k < to; k++) {
+			float score = scorePredicate(universe, scoring, preds.get(k), scratch);
+
+			if (score > maxScore) {
+				result = universe.toPMatch(scoring, scratch, score);
+				maxScore = score;
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * This method scores the match between the {@code query} and a given {@code pred}icate,
+	 * leaving the details in {@code scratch} for {@link RDUniverse#toPMatch(QueryScoring,
+	 * ScoringScratch, float)}. Nothing is allocated here.
+	 * @param universe the universe that scores the cells of the predicate.
+	 * @param scoring the analyzed query that came from the NLP module, with the candidate
+	 * concepts of its arguments and the memoized cell scores.
+	 * @param pred the predicated that came from the .mw file.
+	 * @param scratch the working memory of the current thread.
+	 * @return the match score or {@code -1} if the action verb of the query does not refer
+	 * to the predicate.
+	 */
+	private float scorePredicate(RDUniverse universe, QueryScoring scoring,
+			RDPredicate predicate, ScoringScratch scratch) {
+		// 1. Match the action verb of the query with the one of the predicate
+		if (predicate.isTheActionVerb(scoring.query.actionVerb)) {
+			scratch.exactPredicateNameMatch = true;
+		}
+		else if (predicate.isThisPredicate(scoring.query.actionVerb, universe.getWordNet())) {
+			scratch.exactPredicateNameMatch = false;
+		}
+		else {
+			return -1.0f;
+		}
+
+		// 2. Match the syntactic arguments with logical (bound) arguments
+		// Predicate bound arguments
+		List<RDConcept> predicateArgs = predicate.getArguments();
+		// User query tokens making up syntactic arguments of the verb
+		int queryArgCount = scoring.query.predicateArguments.size();
+		float[] argScores = scratch.argScores(predicateArgs.size());
+		FactGroup group = factGroups.get(predicate);
+		// Predicate has matched with its name.
+		float matchScore = 0.0f;
+
+		scratch.saidArgumentIndex = -1;
+		scratch.matchedFact = predicate;
+
+		for (int i = 0; i < predicateArgs.size(); i++) {
+			RDConcept pArg = predicateArgs.get(i);
+			float maxScore = 0.0f;
+
+			for (int j = 0; j < queryArgCount; j++) {
+				float cell = universe.cellScore(scoring, pArg, j, scratch);
+
+				if (cell > maxScore) {
+					maxScore = cell;
+				}
+
+				if (scratch.saidArgumentIndex == -1
+						&& universe.isOfSameQueryType(scoring, pArg, j)) {
+					// Only set this once.
+					// Alternatives are interchangeable, so they agree on this.
+					scratch.saidArgumentIndex = i;
+				}
+			}
+
+			if (group != null && i == group.position) {
+				// The first alternative with the best score wins, as the first fact would.
+				for (int m = 1; m < group.members.size(); m++) {
+					RDPredicate fact = group.members.get(m);
+					RDConcept alt = fact.getArguments().get(i);
+
+					for (int j = 0; j < queryArgCount; j++) {
+						float cell = universe.cellScore(scoring, alt, j, scratch);
+
+						if (cell > maxScore) {
+							maxScore = cell;
+							scratch.matchedFact = fact;
+						}
+					}
+				}
+			}
+
+			matchScore += maxScore;
+			argScores[i] = maxScore;
+		}
+
+		// 1.0 for the query variable.
+		// 0.5 for the predicate name or 0.25 for WordNet approximate equals.
+		// Anything extra is reference matching or Java references, the more, the better.
+		if (scratch.exactPredicateNameMatch) {
+			matchScore += 0.5f;
+		}
+		else {
+			matchScore += 0.25f;
+		}
+
+		return matchScore;
+	}
+}
@@ -0,0 +1,146 @@
+/**
+ *
+ */
+package ro.racai.robin.dialog;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import ro.racai.robin.dialog.RDPredicate.PMatch;
+import ro.racai.robin.dialog.RDUniverse.QueryScoring;
+import ro.racai.robin.nlp.CompressedBitmap;
+import ro.racai.robin.nlp.TextProcessor.Query;
+
+/**
+ * @author Radu Ion ({@code radu@racai.ro})
+ *         <p>
+ *         What a {@link RDUniverse#partition(int, int, boolean)} answers to a query: its best
+ *         matches and how they were found, such that an {@link RDPartitionedUniverse} can merge
+ *         the answers of all the partitions into the answer of the whole universe.
+ *         </p>
+ */
+class RDPartitionAnswer {
+	enum Kind {
+		/**
+		 * A superlative query for the lowest value, with one match.
+		 */
+		LOWEST,
+		/**
+		 * A superlative query for the highest value, with one match.
+		 */
+		HIGHEST,
+		/**
+		 * A numeric range query, with all the matches in increasing order of their values.
+		 */
+		RANGE,
+		/**
+		 * The best matches of the scoring, best first.
+		 */
+		SCORED
+	}
+
+	final Kind kind;
+	final List<PMatch> matches;
+
+	/**
+	 * The global fact IDs of the {@link #matches}, see
+	 * {@link RDUniverse#getGlobalFactId(RDPredicate)}.
+	 */
+	final int[] factIds;
+
+	/**
+	 * If {@code true}, only the facts which satisfy all the constraints of the query were scored.
+	 * See {@link RDUniverse#survivingFacts(QueryScoring)}.
+	 */
+	final boolean filtered;
+
+	RDPartitionAnswer(Kind kind, List<PMatch> matches, int[] factIds, boolean filtered) {
+		this.kind = kind;
+		this.matches = matches;
+		this.factIds = factIds;
+		this.filtered = filtered;
+	}
+
+	/**
+	 * <p>
+	 * Resolves a query as {@link RDUniverse#resolveQueryTopK(Query, int)} does, in a partition:
+	 * range queries get all their matches and scored queries tell if their facts were filtered.
+	 * </p>
+	 */
+	static RDPartitionAnswer of(RDUniverse partition, Query query, int k) {
+		partition.checkIndexed();
+
+		int j = partition.superlativeArgument(query);
+		PMatch superlative = j >= 0 ? partition.selectSuperlative(query, j) : null;
+
+		if (superlative != null) {
+			// Only the selection: the concept with the lowest or highest value of the whole
+			// universe may have its other facts in other partitions.
+			RDAttribute attr = partition.superlativeAttribute(query.predicateArguments.get(j));
+
+			return of(partition,
+					attr.getOrder() == RDAttribute.Order.MIN ? Kind.LOWEST : Kind.HIGHEST,
+					Collections.singletonList(superlative), false);
+		}
+
+		List<PMatch> inRange = partition.resolveRangeQuery(query);
+
+		if (inRange != null && !inRange.isEmpty()) {
+			return of(partition, Kind.RANGE, inRange, false);
+		}
+
+		QueryScoring scoring = partition.newScoring(query);
+		CompressedBitmap survivors = partition.survivingFacts(scoring);
+		RDFacts facts = partition.getFacts();
+		List<PMatch> best = facts.topK(partition, scoring, k, survivors);
+
+		if (best.isEmpty() && survivors != null) {
+			return of(partition, Kind.SCORED, facts.topK(partition, scoring, k, null), false);
+		}
+
+		return of(partition, Kind.SCORED, best, survivors != null);
+	}
+
+	/**
+	 * <p>
+	 * Resolves a query as {@link RDUniverse#resolveRangeQuery(Query)} does, in a partition.
+	 * </p>
+	 *
+	 * @return the answer; a {@link Kind#SCORED} one with no matches if the query has no numeric
+	 *         constraint on the values of the partition.
+	 */
+	static RDPartitionAnswer range(RDUniverse partition, Query query) {
+		List<PMatch> inRange = partition.resolveRangeQuery(query);
+
+		if (inRange == null) {
+			return new RDPartitionAnswer(Kind.SCORED, new ArrayList<>(), new int[0], false);
+		}
+
+		return of(partition, Kind.RANGE, inRange, false);
+	}
+
+	/**
+	 * <p>
+	 * Resolves a query against the facts of {@code concept} only, as
+	 * {@link RDUniverse#resolveAbout(Query, int, RDConcept, int)} does, in a partition.
+	 * </p>
+	 */
+	static RDPartitionAnswer about(RDUniverse partition, Query query, int j, RDConcept concept,
+			int k) {
+		partition.checkIndexed();
+
+		return of(partition, Kind.SCORED, partition.resolveAbout(query, j, concept, k), false);
+	}
+
+	private static RDPartitionAnswer of(RDUniverse partition, Kind kind, List<PMatch> matches,
+			boolean filtered) {
+		int[] ids = new int[matches.size()];
+
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = partition.getGlobalFactId(matches.get(i).matchedPredicate);
+		}
+
+		return new RDPartitionAnswer(kind, matches, ids, filtered);
+	}
+}
@@ -0,0 +1,87 @@
+/**
+ *
+ */
+package ro.racai.robin.dialog;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Radu Ion ({@code radu@racai.ro})
+ *         <p>
+ *         The TRUE facts of a partition of a universe, e.g. of an {@link RDPartitionWorker}, with
+ *         the IDs that they have among all the TRUE facts of the micro-world. A partition is built
+ *         once and then only read: its facts cannot be changed, not even by transactions, and
+ *         they stay {@link RDPredicate} objects.
+ *         </p>
+ */
+class RDPartitionFacts extends RDObjectFacts {
+	/**
+	 * The IDs of the facts among all the TRUE facts of the micro-world, by fact ID.
+	 */
+	private final int[] globalFactIds;
+
+	/**
+	 * The action verb index of the universe that was partitioned, whose verb groups are reused,
+	 * or {@code null}.
+	 */
+	private final RDPredicateIndex previous;
+
+	/**
+	 * @param facts         the facts of the partition;
+	 * @param globalFactIds the IDs of {@code facts} among all the TRUE facts of the micro-world;
+	 * @param previous      the action verb index of the universe that was partitioned, or
+	 *                      {@code null}.
+	 */
+	RDPartitionFacts(List<RDPredicate> facts, int[] globalFactIds, RDPredicateIndex previous) {
+		super(new ArrayList<>(facts));
+
+		if (facts.size() != globalFactIds.length) {
+			throw new IllegalArgumentException("Each fact of the partition needs one global ID!");
+		}
+
+		this.globalFactIds = globalFactIds.clone();
+		this.previous = previous;
+	}
+
+	private RDPartitionFacts(RDPartitionFacts base) {
+		super(base, base.predicates);
+		globalFactIds = base.globalFactIds;
+		previous = base.previous;
+	}
+
+	@Override
+	public void add(RDPredicate fact) {
+		throw new UnsupportedOperationException("The facts of a partition cannot be changed!");
+	}
+
+	@Override
+	public void setAll(List<RDPredicate> facts) {
+		throw new UnsupportedOperationException("The facts of a partition cannot be changed!");
+	}
+
+	@Override
+	public int globalFactId(int factId) {
+		return globalFactIds[factId];
+	}
+
+	@Override
+	public RDFacts copy() {
+		return new RDPartitionFacts(this);
+	}
+
+	@Override
+	public RDFacts toColumnar() {
+		throw new UnsupportedOperationException("Partitions keep their facts as objects!");
+	}
+
+	@Override
+	public RDObjectFacts forTransaction() {
+		throw new UnsupportedOperationException("Transactions are not supported on partitions!");
+	}
+
+	@Override
+	public void index(RDUniverse universe) {
+		index(universe, argumentIds(predicates), previous);
+	}
+}
@@ -0,0 +1,359 @@
+/**
+ *
+ */
+package ro.racai.robin.dialog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.log4j.Logger;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import ro.racai.robin.dialog.RDPredicate.PMatch;
+import ro.racai.robin.mw.MWSnapshot;
+import ro.racai.robin.nlp.QType;
+import ro.racai.robin.nlp.RoLexicon;
+import ro.racai.robin.nlp.RoTextProcessor;
+import ro.racai.robin.nlp.RoWordNet;
+import ro.racai.robin.nlp.TextProcessor.Argument;
+import ro.racai.robin.nlp.TextProcessor.Query;
+import ro.racai.robin.nlp.TextProcessor.Token;
+
+/**
+ * @author Radu Ion ({@code radu@racai.ro})
+ *         <p>
+ *         Serves one {@link RDUniverse#partition(int, int, boolean)} of a micro-world over HTTP,
+ *         for an {@link RDPartitionedUniverse} in another process or on another machine. Queries
+ *         are posted as JSON to {@value #RESOLVE_PATH} and the answer holds the best matches of
+ *         the partition, with the facts given by their global fact IDs, their predicates and the
+ *         indexes of their arguments in {@link RDUniverse#getBoundConcepts()}. A query with an
+ *         {@code about} member is only resolved against the facts of the given bound concept.
+ *         A query that cannot be resolved gets a 500 reply.
+ *         </p>
+ *         <p>
+ *         The workers and the coordinator load the same micro-world, so they have the same bound
+ *         concepts in the same order. {@value #INFO_PATH} gives the partition and a checksum of
+ *         the bound concepts, for the coordinator to check this.
+ *         </p>
+ */
+public class RDPartitionWorker {
+	private static final Logger LOGGER = Logger.getLogger(RDPartitionWorker.class.getName());
+
+	public static final String INFO_PATH = "/info";
+	public static final String RESOLVE_PATH = "/resolve";
+
+	private final RDUniverse partition;
+	private final int partitionIndex;
+	private final int partitionCount;
+
+	/**
+	 * The indexes of the bound concepts, by identity.
+	 */
+	private final Map<RDConcept, Integer> conceptIds = new IdentityHashMap<>();
+
+	private HttpServer server;
+	private ExecutorService executor;
+
+	/**
+	 * @param part  the partition to serve;
+	 * @param index the index of the partition;
+	 * @param count the number of partitions.
+	 */
+	public RDPartitionWorker(RDUniverse part, int index, int count) {
+		partition = part;
+		partitionIndex = index;
+		partitionCount = count;
+
+		List<RDConcept> concepts = part.getBoundConcepts();
+
+		for (int i = 0; i < concepts.size(); i++) {
+			conceptIds.put(concepts.get(i), i);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Starts answering queries, on a pool of one thread per processor.
+	 * </p>
+	 *
+	 * @param address the address to listen at; port 0 picks a free port;
+	 * @return the address that the worker listens at.
+	 * @throws IOException if the server cannot be started.
+	 */
+	public synchronized InetSocketAddress start(InetSocketAddress address) throws IOException {
+		server = HttpServer.create(address, 0);
+		executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		server.createContext(INFO_PATH, this::info);
+		server.createContext(RESOLVE_PATH, this::resolve);
+		server.setExecutor(executor);
+		server.start();
+
+		LOGGER.info(String.format("Serving partition %d of %d (%d facts) at %s",
+				partitionIndex, partitionCount, partition.getBoundPredicates().size(),
+				server.getAddress()));
+
+		return server.getAddress();
+	}
+
+	public synchronized void stop() {
+		if (server != null) {
+			server.stop(0);
+			executor.shutdown();
+			server = null;
+		}
+	}
+
+	private void info(HttpExchange exchange) throws IOException {
+		Map<String, Object> info = new LinkedHashMap<>();
+
+		info.put("partition", partitionIndex);
+		info.put("partitions", partitionCount);
+		info.put("facts", partition.getBoundPredicates().size());
+		info.put("concepts", partition.getBoundConcepts().size());
+		info.put("checksum", conceptsChecksum(partition.getBoundConcepts()));
+		reply(exchange, 200, JSONValue.toJSONString(info));
+	}
+
+	private void resolve(HttpExchange exchange) throws IOException {
+		JSONObject request;
+
+		try (InputStream in = exchange.getRequestBody()) {
+			request = (JSONObject) new JSONParser().parse(readAll(in));
+		} catch (ParseException | ClassCastException e) {
+			LOGGER.error("Malformed query: " + e.getMessage());
+			reply(exchange, 400, "{}");
+			return;
+		}
+
+		RDPartitionAnswer answer;
+
+		try {
+			Query query = queryFromJson((JSONObject) request.get("query"));
+			int k = ((Number) request.get("k")).intValue();
+			JSONObject about = (JSONObject) request.get("about");
+
+			if (Boolean.TRUE.equals(request.get("range"))) {
+				answer = RDPartitionAnswer.range(partition, query);
+			} else if (about != null) {
+				answer = RDPartitionAnswer.about(partition, query,
+						((Number) about.get("argument")).intValue(), partition.getBoundConcepts()
+								.get(((Number) about.get("concept")).intValue()), k);
+			} else {
+				answer = RDPartitionAnswer.of(partition, query, k);
+			}
+		} catch (RuntimeException e) {
+			// The coordinator fails the query, instead of waiting for an answer
+			LOGGER.error("Could not resolve query: " + e, e);
+			reply(exchange, 500, "{}");
+			return;
+		}
+
+		reply(exchange, 200, JSONValue.toJSONString(answerToJson(answer)));
+	}
+
+	private static void reply(HttpExchange exchange, int status, String json) throws IOException {
+		byte[] out = json.getBytes(StandardCharsets.UTF_8);
+
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+		exchange.sendResponseHeaders(status, out.length);
+
+		try (OutputStream os = exchange.getResponseBody()) {
+			os.write(out);
+		}
+	}
+
+	static String readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+
+		for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+			bytes.write(buffer, 0, n);
+		}
+
+		return bytes.toString(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return a checksum of the canonical names and references of {@code concepts}, in order.
+	 */
+	static long conceptsChecksum(List<RDConcept> concepts) {
+		long checksum = 17;
+
+		for (RDConcept c : concepts) {
+			checksum = 31 * checksum + (c.getCanonicalName() + "|" + c.getReference()).hashCode();
+		}
+
+		return checksum;
+	}
+
+	private Map<String, Object> answerToJson(RDPartitionAnswer answer) {
+		Map<String, Object> json = new LinkedHashMap<>();
+		List<Object> matches = new ArrayList<>();
+
+		for (int i = 0; i < answer.matches.size(); i++) {
+			PMatch pm = answer.matches.get(i);
+			RDPredicate p = pm.matchedPredicate;
+			Map<String, Object> m = new LinkedHashMap<>();
+			List<Object> args = new ArrayList<>();
+			List<Object> argScores = new ArrayList<>();
+
+			for (RDConcept c : p.getArguments()) {
+				args.add(conceptIds.get(c));
+			}
+
+			for (float s : pm.argMatchScores) {
+				argScores.add((double) s);
+			}
+
+			m.put("fact", answer.factIds[i]);
+			m.put("intent", p.getUserIntent().name());
+			m.put("verb", p.getActionVerb());
+			m.put("synonyms", new ArrayList<Object>(p.getSynonyms()));
+			m.put("args", args);
+			m.put("score", (double) pm.matchScore);
+			m.put("argScores", argScores);
+			m.put("said", pm.saidArgumentIndex);
+			m.put("valid", pm.isValidMatch);
+
+			if (pm.answerValue != null) {
+				m.put("value", (double) pm.answerValue);
+			}
+
+			matches.add(m);
+		}
+
+		json.put("kind", answer.kind.name());
+		json.put("filtered", answer.filtered);
+		json.put("matches", matches);
+
+		return json;
+	}
+
+	static Map<String, Object> queryToJson(Query query) {
+		Map<String, Object> json = new LinkedHashMap<>();
+		List<Object> args = new ArrayList<>();
+
+		for (Argument a : query.predicateArguments) {
+			Map<String, Object> arg = new LinkedHashMap<>();
+			List<Object> tokens = new ArrayList<>();
+
+			for (Token t : a.argTokens) {
+				List<Object> token = new ArrayList<>();
+
+				token.add(t.wform);
+				token.add(t.lemma);
+				token.add(t.pos);
+				token.add(t.head);
+				token.add(t.drel);
+				token.add(t.isActionVerbDependent);
+				tokens.add(token);
+			}
+
+			arg.put("tokens", tokens);
+			arg.put("variable", a.isQueryVariable);
+			arg.put("topic", a.isQueryTopic);
+			args.add(arg);
+		}
+
+		json.put("type", query.queryType == null ? null : query.queryType.name());
+		json.put("verb", query.actionVerb);
+		json.put("args", args);
+
+		return json;
+	}
+
+	static Query queryFromJson(JSONObject json) {
+		Query query = new Query();
+		String type = (String) json.get("type");
+
+		query.queryType = type == null ? null : QType.valueOf(type);
+		query.actionVerb = (String) json.get("verb");
+
+		for (Object o : (JSONArray) json.get("args")) {
+			JSONObject arg = (JSONObject) o;
+			List<Token> tokens = new ArrayList<>();
+
+			for (Object t : (JSONArray) arg.get("tokens")) {
+				JSONArray token = (JSONArray) t;
+
+				tokens.add(new Token((String) token.get(0), (String) token.get(1),
+						(String) token.get(2), ((Number) token.get(3)).intValue(),
+						(String) token.get(4), (Boolean) token.get(5)));
+			}
+
+			Argument a = new Argument(tokens);
+
+			a.isQueryVariable = (Boolean) arg.get("variable");
+			a.isQueryTopic = (Boolean) arg.get("topic");
+			query.predicateArguments.add(a);
+		}
+
+		return query;
+	}
+
+	/**
+	 * @param args the {@code .mw} file, the partition index, the number of partitions, the
+	 *             {@code [host:]port} to listen at and, optionally, {@code --by-fact} to
+	 *             partition the facts by fact ID instead of by their first argument.
+	 * @throws IOException if the server cannot be started.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 4 || (args.length == 5 && !args[4].equals("--by-fact"))
+				|| args.length > 5) {
+			System.err.println("java -cp ROBINDialog-jar-with-dependencies.jar "
+					+ RDPartitionWorker.class.getName()
+					+ " <.mw file> <partition> <partitions> [<host>:]<port> [--by-fact]");
+			return;
+		}
+
+		String mwFile = args[0];
+		int index = Integer.parseInt(args[1]);
+		int count = Integer.parseInt(args[2]);
+		String[] hostPort = args[3].split(":");
+		InetSocketAddress address = hostPort.length == 1
+				? new InetSocketAddress(InetAddress.getLoopbackAddress(),
+						Integer.parseInt(hostPort[0]))
+				: new InetSocketAddress(hostPort[0], Integer.parseInt(hostPort[1]));
+		RoWordNet rown = new RoWordNet();
+		RoLexicon rolex = new RoLexicon();
+		RoTextProcessor rotp = new RoTextProcessor(rolex, rown, new RoSayings());
+		// Only the facts of the partition are built
+		RDUniverse partition = new MWSnapshot(mwFile).constructUniverse(rown, rolex, rotp,
+				RDFactFilter.partition(index, count, args.length == 4));
+
+		if (partition == null) {
+			LOGGER.error("Could not load micro-world file " + mwFile);
+			return;
+		}
+
+		partition.warmUpWordNetCache();
+		partition.indexHypernymClosure();
+		partition.indexBoundConcepts();
+		partition.indexPredicates();
+
+		RDPartitionWorker worker = new RDPartitionWorker(partition, index, count);
+		InetSocketAddress bound = worker.start(address);
+
+		System.out.println("Partition " + index + " of " + count + " listening at http://"
+				+ bound.getHostString() + ":" + bound.getPort());
+	}
+}
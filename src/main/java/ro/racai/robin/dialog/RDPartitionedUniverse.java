@@ -0,0 +1,424 @@
+/**
+ *
+ */
+package ro.racai.robin.dialog;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import ro.racai.robin.dialog.RDPartitionAnswer.Kind;
+import ro.racai.robin.dialog.RDPredicate.PMatch;
+import ro.racai.robin.nlp.TextProcessor.Query;
+
+/**
+ * @author Radu Ion ({@code radu@racai.ro})
+ *         <p>
+ *         A universe of discourse whose TRUE facts are split among {@link RDPartitionWorker}s,
+ *         e.g. a large product catalog served by several processes or machines. This universe
+ *         keeps the bound concepts (for the text processor and for the context of the dialogue)
+ *         but no facts: {@link #resolveQuery(Query)} sends the query to all the workers in
+ *         parallel and merges their best matches.
+ *         </p>
+ *         <p>
+ *         Merging is deterministic and gives the answer of the whole universe: scored matches
+ *         are ordered by score and then by global fact ID, which is the order of the facts in the
+ *         micro-world file; superlative and range answers are ordered by their values. A
+ *         superlative query which asks about a concept, e.g. <i>Ce procesor are cel mai ieftin
+ *         laptop?</i>, takes a second round: the workers select the laptop with the lowest price
+ *         and then all of them score the query against the facts of that laptop. If some
+ *         partition could restrict the scoring to the facts that satisfy all the constraints of
+ *         the query, the partitions that could not are left out, as the whole universe would
+ *         have done. If a worker does not answer, the query fails, with an error in the log:
+ *         the answer of the other partitions may not be the answer of the whole universe.
+ *         </p>
+ */
+public class RDPartitionedUniverse extends RDUniverse {
+	private static final Logger LOGGER = Logger.getLogger(RDPartitionedUniverse.class.getName());
+
+	/**
+	 * How long to wait for a worker to connect or to answer, in milliseconds.
+	 */
+	public static final int DEFAULT_TIMEOUT = 5000;
+
+	/**
+	 * Sends the requests to the workers, for all partitioned universes.
+	 */
+	private static final ExecutorService SCATTER = Executors.newCachedThreadPool(r -> {
+		Thread t = new Thread(r, "RDPartitionedUniverse-scatter");
+
+		t.setDaemon(true);
+		return t;
+	});
+
+	private static final Comparator<Gathered> BY_SCORE =
+			Comparator.comparing((Gathered g) -> -g.match.matchScore)
+					.thenComparingInt(g -> g.factId);
+	private static final Comparator<Gathered> BY_VALUE =
+			Comparator.comparing((Gathered g) -> g.match.answerValue)
+					.thenComparingInt(g -> g.factId);
+
+	/**
+	 * @author Radu Ion ({@code radu@racai.ro})
+	 *         <p>
+	 *         A match of a worker, with its global fact ID.
+	 *         </p>
+	 */
+	private static class Gathered {
+		final PMatch match;
+		final int factId;
+
+		Gathered(PMatch match, int factId) {
+			this.match = match;
+			this.factId = factId;
+		}
+	}
+
+	/**
+	 * @author Radu Ion ({@code radu@racai.ro})
+	 *         <p>
+	 *         The merged answers of the workers.
+	 *         </p>
+	 */
+	private static class Merged {
+		final Kind kind;
+		final List<PMatch> matches;
+
+		Merged(Kind kind, List<PMatch> matches) {
+			this.kind = kind;
+			this.matches = matches;
+		}
+	}
+
+	private final List<URL> workers = new ArrayList<>();
+	private int timeout = DEFAULT_TIMEOUT;
+
+	/**
+	 * <p>
+	 * Connects to the workers of the partitions of {@code universe} and checks that they serve
+	 * all of its partitions, with the same bound concepts.
+	 * </p>
+	 *
+	 * @param universe   the universe, loaded from the same micro-world as the workers, e.g.
+	 *                   with {@link RDFactFilter#NONE}; its facts are not kept;
+	 * @param workerUrls the base URLs of the workers, e.g. {@code http://127.0.0.1:9101}.
+	 */
+	public RDPartitionedUniverse(RDUniverse universe, List<String> workerUrls) {
+		super(universe.partition(f -> false));
+
+		BitSet partitions = new BitSet();
+		long checksum = RDPartitionWorker.conceptsChecksum(getBoundConcepts());
+
+		for (String w : workerUrls) {
+			try {
+				URL url = new URL(w);
+				JSONObject info = (JSONObject) new JSONParser()
+						.parse(request(new URL(url, RDPartitionWorker.INFO_PATH), null));
+
+				if (((Number) info.get("partitions")).intValue() != workerUrls.size()) {
+					throw new RuntimeException("Worker " + w + " serves a partition of "
+							+ info.get("partitions") + " partitions, not of " + workerUrls.size()
+							+ "!");
+				}
+
+				if (((Number) info.get("concepts")).intValue() != getBoundConcepts().size()
+						|| ((Number) info.get("checksum")).longValue() != checksum) {
+					throw new RuntimeException("Worker " + w
+							+ " has other bound concepts. Is it serving the same micro-world?");
+				}
+
+				partitions.set(((Number) info.get("partition")).intValue());
+				workers.add(url);
+			} catch (IOException | ParseException e) {
+				throw new RuntimeException("Could not connect to worker " + w, e);
+			}
+		}
+
+		if (partitions.cardinality() != workerUrls.size()) {
+			throw new RuntimeException("Some partitions are served by more than one worker!");
+		}
+	}
+
+	public void setTimeout(int millis) {
+		timeout = millis;
+	}
+
+	@Override
+	public PMatch resolveQuery(Query query) {
+		List<PMatch> best = resolve(query, 1);
+
+		return best == null || best.isEmpty() ? null : best.get(0);
+	}
+
+	@Override
+	public List<PMatch> resolveQueryTopK(Query query, int k) {
+		if (k <= 0) {
+			return new ArrayList<>();
+		}
+
+		List<PMatch> best = resolve(query, k);
+
+		return best == null ? null : new ArrayList<>(best.subList(0, Math.min(k, best.size())));
+	}
+
+	@Override
+	public List<PMatch> resolveRangeQuery(Query query) {
+		Merged merged = gather(query, 0, true, null);
+
+		return merged == null ? null : merged.matches;
+	}
+
+	/**
+	 * @return the merged matches, best first, or {@code null} if a worker did not answer.
+	 */
+	private List<PMatch> resolve(Query query, int k) {
+		Merged merged = gather(query, k, false, null);
+
+		if (merged == null) {
+			return null;
+		}
+
+		if ((merged.kind == Kind.LOWEST || merged.kind == Kind.HIGHEST)
+				&& !merged.matches.isEmpty()) {
+			int j = superlativeArgument(query);
+
+			if (asksAboutConcept(query, j)) {
+				Map<String, Object> about = new LinkedHashMap<>();
+
+				about.put("argument", j);
+				about.put("concept", conceptIndex(selectedConcept(merged.matches.get(0))));
+
+				merged = gather(query, k, false, about);
+				return merged == null ? null : merged.matches;
+			}
+		}
+
+		return merged.matches;
+	}
+
+	/**
+	 * @return the index of {@code concept} in {@link #getBoundConcepts()}.
+	 */
+	private int conceptIndex(RDConcept concept) {
+		List<RDConcept> concepts = getBoundConcepts();
+
+		for (int i = 0; i < concepts.size(); i++) {
+			if (concepts.get(i) == concept) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * <p>
+	 * Sends the query to all the workers and merges their answers.
+	 * </p>
+	 *
+	 * @param k     how many scored matches each worker returns;
+	 * @param range if {@code true}, only the numeric range of the query is resolved;
+	 * @param about the query argument and the bound concept that it was resolved to, if the
+	 *              query is to be resolved against the facts of that concept only, or
+	 *              {@code null};
+	 * @return the merged matches, best first; {@code null} matches if {@code range} is
+	 *         {@code true} and no partition found a numeric constraint on its values;
+	 *         {@code null} if a worker did not answer.
+	 */
+	private Merged gather(Query query, int k, boolean range, Map<String, Object> about) {
+		Map<String, Object> request = new LinkedHashMap<>();
+
+		request.put("query", RDPartitionWorker.queryToJson(query));
+		request.put("k", k);
+		request.put("range", range);
+
+		if (about != null) {
+			request.put("about", about);
+		}
+
+		String body = JSONValue.toJSONString(request);
+		List<Future<String>> replies = new ArrayList<>();
+
+		for (URL w : workers) {
+			replies.add(SCATTER.submit(() -> request(new URL(w, RDPartitionWorker.RESOLVE_PATH),
+					body)));
+		}
+
+		List<JSONObject> answers = new ArrayList<>();
+
+		for (int i = 0; i < workers.size(); i++) {
+			try {
+				answers.add((JSONObject) new JSONParser().parse(replies.get(i).get()));
+			} catch (ExecutionException | ParseException e) {
+				LOGGER.error("Worker " + workers.get(i) + " did not answer, the query fails: "
+						+ e.getMessage());
+				return null;
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+				return null;
+			}
+		}
+
+		// The answer of the whole universe is the one of the most specific query resolution.
+		Kind kind = Kind.SCORED;
+		boolean filtered = false;
+
+		for (JSONObject a : answers) {
+			Kind answerKind = Kind.valueOf((String) a.get("kind"));
+
+			if (answerKind == Kind.LOWEST || answerKind == Kind.HIGHEST
+					|| (answerKind == Kind.RANGE && kind == Kind.SCORED)) {
+				kind = answerKind;
+			}
+
+			filtered |= answerKind == Kind.SCORED && (Boolean) a.get("filtered");
+		}
+
+		if (range && kind != Kind.RANGE) {
+			return new Merged(kind, null);
+		}
+
+		List<Gathered> gathered = new ArrayList<>();
+
+		for (JSONObject a : answers) {
+			if (Kind.valueOf((String) a.get("kind")) != kind
+					|| (kind == Kind.SCORED && filtered && !(Boolean) a.get("filtered"))) {
+				continue;
+			}
+
+			for (Object m : (JSONArray) a.get("matches")) {
+				JSONObject jm = (JSONObject) m;
+
+				gathered.add(new Gathered(toPMatch(jm), ((Number) jm.get("fact")).intValue()));
+			}
+		}
+
+		switch (kind) {
+			case LOWEST:
+				gathered.sort(BY_VALUE);
+				break;
+			case HIGHEST:
+				// Of the equal highest values, the one of the last fact
+				gathered.sort(BY_VALUE.reversed());
+				break;
+			case RANGE:
+				gathered.sort(BY_VALUE);
+				break;
+			default:
+				gathered.sort(BY_SCORE);
+		}
+
+		if ((kind == Kind.LOWEST || kind == Kind.HIGHEST) && gathered.size() > 1) {
+			// There is only one lowest or highest value.
+			gathered = gathered.subList(0, 1);
+		}
+
+		List<PMatch> result = new ArrayList<>();
+		Set<RDConcept> answered = Collections.newSetFromMap(new IdentityHashMap<>());
+
+		for (Gathered g : gathered) {
+			PMatch pm = g.match;
+
+			// One range answer for each concept, e.g. for each laptop
+			if (kind != Kind.RANGE || answered
+					.add(pm.matchedPredicate.getArguments().get(pm.saidArgumentIndex))) {
+				result.add(pm);
+			}
+		}
+
+		return new Merged(kind, result);
+	}
+
+	/**
+	 * @return the match of a worker, with its fact made of the bound concepts of this universe.
+	 */
+	private PMatch toPMatch(JSONObject json) {
+		List<String> synonyms = new ArrayList<>();
+
+		for (Object s : (JSONArray) json.get("synonyms")) {
+			synonyms.add((String) s);
+		}
+
+		RDPredicate fact = RDPredicate.predicateBuilder(
+				UIntentType.valueOf((String) json.get("intent")), (String) json.get("verb"),
+				synonyms);
+
+		for (Object id : (JSONArray) json.get("args")) {
+			fact.addArgument(getBoundConcepts().get(((Number) id).intValue()));
+		}
+
+		PMatch pm = new PMatch(fact);
+		JSONArray argScores = (JSONArray) json.get("argScores");
+
+		for (int i = 0; i < pm.argMatchScores.length; i++) {
+			pm.argMatchScores[i] = ((Number) argScores.get(i)).floatValue();
+		}
+
+		pm.matchScore = ((Number) json.get("score")).floatValue();
+		pm.saidArgumentIndex = ((Number) json.get("said")).intValue();
+		pm.isValidMatch = (Boolean) json.get("valid");
+
+		if (json.get("value") != null) {
+			pm.answerValue = ((Number) json.get("value")).floatValue();
+		}
+
+		return pm;
+	}
+
+	/**
+	 * @param body the JSON to post or {@code null} for a GET request;
+	 * @return the reply of the worker.
+	 */
+	private String request(URL url, String body) throws IOException {
+		HttpURLConnection http = (HttpURLConnection) url.openConnection();
+
+		http.setConnectTimeout(timeout);
+		http.setReadTimeout(timeout);
+
+		if (body != null) {
+			byte[] out = body.getBytes(StandardCharsets.UTF_8);
+
+			http.setRequestMethod("POST");
+			http.setDoOutput(true);
+			http.setFixedLengthStreamingMode(out.length);
+			http.setRequestProperty("Content-Type", "application/json; charset=UTF-8");
+
+			try (OutputStream os = http.getOutputStream()) {
+				os.write(out);
+			}
+		}
+
+		int status = http.getResponseCode();
+
+		if (status != 200) {
+			throw new IOException("HTTP error code " + status + " from " + url);
+		}
+
+		try (InputStream in = http.getInputStream()) {
+			return RDPartitionWorker.readAll(in);
+		}
+	}
+}
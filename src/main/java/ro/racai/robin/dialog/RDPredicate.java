@@ -4,6 +4,7 @@
 package ro.racai.robin.dialog;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import ro.racai.robin.nlp.StringUtils;
@@ -52,6 +53,12 @@ public class RDPredicate {
 	 */
 	private List<String> synonymsOfActionVerb;
 
+	/**
+	 * {@code true} if {@link #synonymsOfActionVerb} is shared with the predicate this one was
+	 * copied from, or with its other copies. It is copied before it is changed.
+	 */
+	private boolean sharedSynonyms;
+
 	/**
 	 * The arguments of this predicate, in no special order.
 	 * To be populated from TRUE definitions.
@@ -96,6 +103,12 @@ public class RDPredicate {
 		 */
 		public int saidArgumentIndex;
 
+		/**
+		 * For the answers of superlative and range queries, the value that the fact was selected
+		 * by; {@code null} otherwise.
+		 */
+		public Float answerValue;
+
 		public PMatch(RDPredicate pred) {
 			matchedPredicate = pred;
 			argMatchScores = new float[pred.getArguments().size()];
@@ -163,6 +176,11 @@ public class RDPredicate {
 			throw new RuntimeException("Synonym may not be null, empty or blank!");
 		}
 
+		if (sharedSynonyms) {
+			synonymsOfActionVerb = new ArrayList<>(synonymsOfActionVerb);
+			sharedSynonyms = false;
+		}
+
 		synonymsOfActionVerb.add(syn.trim().toLowerCase());
 	}
 
@@ -192,6 +210,18 @@ public class RDPredicate {
 		return actionVerb;
 	}
 
+	/**
+	 * <p>
+	 * Get the alternate names of this predicate.
+	 * </p>
+	 * 
+	 * @return the {@link #synonymsOfActionVerb} member field, which cannot be changed: it may
+	 *         be shared with the other facts of the predicate definition.
+	 */
+	public List<String> getSynonyms() {
+		return Collections.unmodifiableList(synonymsOfActionVerb);
+	}
+
 	/**
 	 * <p>
 	 * Get the user intent associated with this predicate.
@@ -230,7 +260,8 @@ public class RDPredicate {
 	 * <p>
 	 * Convenience method for returning a deep copy of this object.
 	 * Arguments are not copied, if they exist. Use this to instantiate predicates
-	 * from the TRUE definitions.
+	 * from the TRUE definitions. The synonyms are shared until one of the copies adds
+	 * a synonym.
 	 * </p>
 	 * 
 	 * @return an exact duplicate of this object.
@@ -240,9 +271,9 @@ public class RDPredicate {
 				new RDPredicate(userIntention, actionVerb != null ? actionVerb : null);
 
 		if (synonymsOfActionVerb != null) {
-			for (String s : synonymsOfActionVerb) {
-				predicate.addSynonym(s);
-			}
+			predicate.synonymsOfActionVerb = synonymsOfActionVerb;
+			predicate.sharedSynonyms = true;
+			sharedSynonyms = true;
 		}
 
 		return predicate;
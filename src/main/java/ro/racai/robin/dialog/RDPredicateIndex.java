@@ -0,0 +1,352 @@
+/**
+ *
+ */
+package ro.racai.robin.dialog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ro.racai.robin.nlp.WordNet;
+import ro.racai.robin.nlp.WordNetEntry;
+
+/**
+ * @author Radu Ion ({@code radu@racai.ro})
+ *         <p>
+ *         Inverted index from action verbs to the TRUE predicates of a universe. Predicates which
+ *         were copied from the same PREDICATE definition share their verb and its synonyms, so
+ *         they form a <i>verb group</i>. The canonical verb, its synonyms and its WordNet synonyms,
+ *         hypernyms and hyponyms all point to the group, which holds the predicate postings in
+ *         the order of the TRUE lines.
+ *         </p>
+ *         <p>
+ *         An index is not changed once built. {@link #update(List, int[], int[])} makes the index
+ *         of a new version of the predicates which shares the unchanged verb groups and postings
+ *         with this one.
+ *         </p>
+ *         <p>
+ *         The relations of the query verb are also followed, since WordNet (and the cache of
+ *         {@link WordNet#wordnetEquals(String, String)}) need not be symmetric: the verb groups
+ *         whose canonical verb is one of {@link WordNet#getEqualWords(String)} of the query verb
+ *         are checked with {@link RDPredicate#isThisPredicate(String, WordNet)}.
+ *         </p>
+ */
+public class RDPredicateIndex {
+	/**
+	 * The predicates, by predicate ID. Not all of them need to be indexed.
+	 */
+	private final List<RDPredicate> predicates;
+
+	/**
+	 * The verb group IDs, by group key.
+	 */
+	private final Map<String, Integer> groupIds;
+
+	/**
+	 * The first predicate of each verb group, to check the group against a verb.
+	 */
+	private final List<RDPredicate> groupHeads;
+
+	/**
+	 * Predicate IDs of each verb group, in increasing order.
+	 */
+	private final List<List<Integer>> groupPostings;
+
+	/**
+	 * Verb to verb group IDs.
+	 */
+	private final Map<String, List<Integer>> verbGroups;
+
+	/**
+	 * Canonical verb to verb group IDs.
+	 */
+	private final Map<String, List<Integer>> actionVerbGroups;
+
+	/**
+	 * The verbs that point to each verb group, by group key, such that {@link #update(List)} does
+	 * not ask WordNet again.
+	 */
+	private final Map<String, List<String>> groupVerbs;
+
+	private final WordNet wordNet;
+
+	/**
+	 * The answers of {@link #predicatesFor(String)}, by query verb, such that a query does not
+	 * copy the predicates of its verb. Verbs with no predicates are not kept.
+	 */
+	private final Map<String, List<RDPredicate>> verbPredicates = new ConcurrentHashMap<>();
+
+	/**
+	 * <p>
+	 * Builds the index. WordNet entries of the verbs should be in the cache already.
+	 * </p>
+	 *
+	 * @param preds the TRUE predicates of the universe;
+	 * @param wn    WordNet for the verb relations; can be {@code null}.
+	 */
+	public RDPredicateIndex(List<RDPredicate> preds, WordNet wn) {
+		this(preds, null, wn, null);
+	}
+
+	/**
+	 * @param ids      the IDs of the predicates to index, in increasing order, or {@code null}
+	 *                 for all of them;
+	 * @param previous the index whose verb groups are reused, or {@code null}.
+	 */
+	RDPredicateIndex(List<RDPredicate> preds, int[] ids, WordNet wn,
+			RDPredicateIndex previous) {
+		predicates = new ArrayList<>(preds);
+		groupIds = new HashMap<>();
+		groupHeads = new ArrayList<>();
+		groupPostings = new ArrayList<>();
+		verbGroups = new HashMap<>();
+		actionVerbGroups = new HashMap<>();
+		groupVerbs = new HashMap<>();
+		wordNet = wn;
+
+		for (int k = 0, n = ids == null ? predicates.size() : ids.length; k < n; k++) {
+			int i = ids == null ? k : ids[k];
+
+			groupPostings.get(group(predicates.get(i), previous)).add(i);
+		}
+	}
+
+	/**
+	 * A new version of {@code base}, which shares its verb groups and postings.
+	 */
+	private RDPredicateIndex(RDPredicateIndex base, List<RDPredicate> preds) {
+		predicates = preds;
+		groupIds = new HashMap<>(base.groupIds);
+		groupHeads = new ArrayList<>(base.groupHeads);
+		groupPostings = new ArrayList<>(base.groupPostings);
+		verbGroups = new HashMap<>(base.verbGroups);
+		actionVerbGroups = new HashMap<>(base.actionVerbGroups);
+		groupVerbs = new HashMap<>(base.groupVerbs);
+		wordNet = base.wordNet;
+	}
+
+	private static String groupKey(RDPredicate p) {
+		return p.getActionVerb().toLowerCase() + "#" + p.getSynonyms();
+	}
+
+	/**
+	 * @return the verb group of {@code p}, which is added to the index if it is new.
+	 */
+	private int group(RDPredicate p, RDPredicateIndex previous) {
+		String groupKey = groupKey(p);
+		Integer g = groupIds.get(groupKey);
+
+		if (g == null) {
+			g = groupHeads.size();
+			groupIds.put(groupKey, g);
+			groupHeads.add(p);
+			groupPostings.add(new ArrayList<>());
+			addGroup(actionVerbGroups, p.getActionVerb(), g);
+			indexGroupVerbs(p, groupKey, g,
+					previous == null ? null : previous.groupVerbs.get(groupKey));
+		}
+
+		return g;
+	}
+
+	/**
+	 * Adds {@code group} to the groups of {@code verb}. The group lists may be shared with
+	 * another index, so they are copied.
+	 */
+	private static void addGroup(Map<String, List<Integer>> groups, String verb, int group) {
+		String key = verb.trim().toLowerCase();
+		List<Integer> known = groups.getOrDefault(key, List.of());
+
+		if (!known.contains(group)) {
+			List<Integer> extended = new ArrayList<>(known.size() + 1);
+
+			extended.addAll(known);
+			extended.add(group);
+			groups.put(key, extended);
+		}
+	}
+
+	/**
+	 * @param known the verbs of the group in the previous index, if it had the group.
+	 */
+	private void indexGroupVerbs(RDPredicate p, String groupKey, int group, List<String> known) {
+		List<String> verbs = known;
+
+		if (verbs == null) {
+			verbs = new ArrayList<>();
+			verbs.add(p.getActionVerb());
+			verbs.addAll(p.getSynonyms());
+
+			if (wordNet != null) {
+				WordNetEntry e = wordNet.lookup(p.getActionVerb());
+
+				verbs.addAll(e.getSynonyms());
+				verbs.addAll(e.getHypernyms());
+				verbs.addAll(e.getHyponyms());
+			}
+		}
+
+		groupVerbs.put(groupKey, verbs);
+
+		for (String v : verbs) {
+			addGroup(verbGroups, v, group);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Indexes a new version of the predicates, e.g. after some facts were added or retracted.
+	 * The verbs of the verb groups that this index already has are reused, so only the new verb
+	 * groups are looked up in WordNet. This index is not changed.
+	 * </p>
+	 *
+	 * @param preds the TRUE predicates of the new version;
+	 * @return the index of {@code preds}.
+	 */
+	public RDPredicateIndex update(List<RDPredicate> preds) {
+		return new RDPredicateIndex(preds, null, wordNet, this);
+	}
+
+	/**
+	 * <p>
+	 * Indexes a new version of the predicates in which only a few predicate IDs have changed,
+	 * e.g. after a price change. Only the postings of the verb groups of these predicates are
+	 * copied and only their new verb groups are looked up in WordNet. This index is not changed.
+	 * </p>
+	 *
+	 * @param preds   the predicates of the new version, by predicate ID; the predicates of this
+	 *                index keep their IDs. It is not copied, so it should not be changed;
+	 * @param removed the IDs of the predicates of this index which are not indexed any more;
+	 * @param added   the IDs of the predicates of {@code preds} which are indexed;
+	 * @return the index of {@code preds}.
+	 */
+	RDPredicateIndex update(List<RDPredicate> preds, int[] removed, int[] added) {
+		RDPredicateIndex next = new RDPredicateIndex(this, preds);
+		BitSet copied = new BitSet();
+
+		for (int id : removed) {
+			Integer g = groupIds.get(groupKey(predicates.get(id)));
+
+			if (g != null) {
+				List<Integer> postings = next.copiedPostings(g, copied);
+				int i = Collections.binarySearch(postings, id);
+
+				if (i >= 0) {
+					postings.remove(i);
+				}
+			}
+		}
+
+		for (int id : added) {
+			List<Integer> postings = next.copiedPostings(next.group(preds.get(id), this), copied);
+			int i = Collections.binarySearch(postings, id);
+
+			if (i < 0) {
+				postings.add(-i - 1, id);
+			}
+		}
+
+		return next;
+	}
+
+	/**
+	 * @return the postings of group {@code g}, copied once from the index that they are shared
+	 *         with.
+	 */
+	private List<Integer> copiedPostings(int g, BitSet copied) {
+		if (!copied.get(g)) {
+			copied.set(g);
+			groupPostings.set(g, new ArrayList<>(groupPostings.get(g)));
+		}
+
+		return groupPostings.get(g);
+	}
+
+	public int size() {
+		return predicates.size();
+	}
+
+	public int groupCount() {
+		return groupHeads.size();
+	}
+
+	/**
+	 * <p>
+	 * Gets the predicates that {@code verb} can refer to.
+	 * </p>
+	 *
+	 * @param verb the action verb of the query;
+	 * @return the predicates, in the order in which they were indexed; the list cannot be
+	 *         modified.
+	 */
+	public List<RDPredicate> predicatesFor(String verb) {
+		if (verb == null) {
+			return Collections.emptyList();
+		}
+
+		List<RDPredicate> result = verbPredicates.get(verb);
+
+		if (result == null) {
+			result = Collections.unmodifiableList(findPredicates(verb));
+
+			if (!result.isEmpty()) {
+				verbPredicates.putIfAbsent(verb, result);
+			}
+		}
+
+		return result;
+	}
+
+	private List<RDPredicate> findPredicates(String verb) {
+		List<RDPredicate> result = new ArrayList<>();
+
+		String key = verb.trim().toLowerCase();
+		List<Integer> groups = new ArrayList<>(verbGroups.getOrDefault(key, List.of()));
+
+		if (wordNet != null) {
+			for (String w : wordNet.getEqualWords(key)) {
+				for (int g : actionVerbGroups.getOrDefault(w.trim().toLowerCase(), List.of())) {
+					if (!groups.contains(g) && groupHeads.get(g).isThisPredicate(verb, wordNet)) {
+						groups.add(g);
+					}
+				}
+			}
+		}
+
+		if (groups.size() == 1) {
+			for (int id : groupPostings.get(groups.get(0))) {
+				result.add(predicates.get(id));
+			}
+
+			return result;
+		}
+
+		int count = 0;
+
+		for (int g : groups) {
+			count += groupPostings.get(g).size();
+		}
+
+		int[] ids = new int[count];
+		int k = 0;
+
+		for (int g : groups) {
+			for (int id : groupPostings.get(g)) {
+				ids[k++] = id;
+			}
+		}
+
+		Arrays.sort(ids);
+
+		for (int id : ids) {
+			result.add(predicates.get(id));
+		}
+
+		return result;
+	}
+}
@@ -0,0 +1,342 @@
+/**
+ *
+ */
+package ro.racai.robin.dialog;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+/**
+ * @author Radu Ion ({@code radu@racai.ro})
+ *         <p>
+ *         A batch of changes to the bound concepts and to the TRUE facts of a universe, which
+ *         {@link #commit()} publishes as a new version of the universe, e.g. a price change. The
+ *         universe that the transaction was started from is not changed: the sessions that hold
+ *         it go on answering from the same facts until they take the new version, and no locks
+ *         are needed.
+ *         </p>
+ *         <p>
+ *         The new version shares the concept definitions, the language resources and the
+ *         unchanged parts of the indexes with the old one. Only one transaction should be
+ *         committed at a time on a version, or the changes of one of them are lost. See
+ *         {@link RDUniverse#beginTransaction()}.
+ *         </p>
+ */
+public class RDTransaction {
+	private static final Logger LOGGER = Logger.getLogger(RDTransaction.class.getName());
+
+	private final RDUniverse base;
+
+	/**
+	 * The TRUE facts of {@link #base}, which are the ones that transactions can change.
+	 */
+	private final RDObjectFacts baseFacts;
+	private final List<RDConcept> addedConcepts = new ArrayList<>();
+	private final Set<RDConcept> retractedConcepts =
+			Collections.newSetFromMap(new IdentityHashMap<>());
+	private final List<RDPredicate> addedFacts = new ArrayList<>();
+	private final Set<RDPredicate> retractedFacts =
+			Collections.newSetFromMap(new IdentityHashMap<>());
+
+	/**
+	 * The facts that were replaced, to their replacements. See
+	 * {@link #replaceArgument(RDPredicate, int, RDConcept)}.
+	 */
+	private final Map<RDPredicate, RDPredicate> replacements = new IdentityHashMap<>();
+	private boolean committed;
+
+	/**
+	 * @throws UnsupportedOperationException if the facts of {@code base} cannot be changed by
+	 *                                       transactions.
+	 */
+	RDTransaction(RDUniverse base) {
+		this.base = base;
+		baseFacts = base.getFacts().forTransaction();
+	}
+
+	/**
+	 * @return the universe that the changes apply to.
+	 */
+	public RDUniverse getBase() {
+		return base;
+	}
+
+	/**
+	 * <p>
+	 * Adds a bound concept, e.g. a new product or a new amount.
+	 * </p>
+	 *
+	 * @param conc the concept, with its reference set.
+	 */
+	public void addBoundConcept(RDConcept conc) {
+		addedConcepts.add(conc);
+	}
+
+	/**
+	 * <p>
+	 * Adds a new reference of a concept definition, as a REFERENCE line of the micro-world file
+	 * does.
+	 * </p>
+	 *
+	 * @param conceptName the canonical name of the concept definition;
+	 * @param reference   the textual description of the new concept;
+	 * @return the new bound concept or {@code null} if there is no such definition.
+	 */
+	public RDConcept addReference(String conceptName, String reference) {
+		for (RDConcept c : base.getDefinedConcepts()) {
+			if (c.getCanonicalName().equalsIgnoreCase(conceptName)) {
+				RDConcept nc = c.deepCopy();
+
+				nc.setReference(reference, base.getTextProcessor(), base.getLexicon());
+				addBoundConcept(nc);
+				return nc;
+			}
+		}
+
+		LOGGER.error("There is no concept definition for '" + conceptName + "'!");
+		return null;
+	}
+
+	/**
+	 * <p>
+	 * Adds a new constant, e.g. {@code AMOUNT 1299 de lei}.
+	 * </p>
+	 *
+	 * @return the new bound concept.
+	 */
+	public RDConstant addConstant(CType type, String value) {
+		RDConstant constant = new RDConstant(type);
+
+		constant.setReference(value, base.getTextProcessor(), base.getLexicon());
+		addBoundConcept(constant);
+		return constant;
+	}
+
+	/**
+	 * <p>
+	 * Retracts a bound concept, together with the TRUE facts that have it as an argument.
+	 * </p>
+	 */
+	public void retractBoundConcept(RDConcept conc) {
+		retractedConcepts.add(conc);
+	}
+
+	/**
+	 * <p>
+	 * Adds a TRUE fact. Its arguments are bound concepts of the universe or of this transaction.
+	 * </p>
+	 */
+	public void addFact(RDPredicate fact) {
+		addedFacts.add(fact);
+	}
+
+	/**
+	 * <p>
+	 * Adds a TRUE fact, as a TRUE line of the micro-world file does. The predicate is copied from
+	 * a fact with the same action verb.
+	 * </p>
+	 *
+	 * @param actionVerb the canonical action verb of the predicate;
+	 * @param args       the arguments of the fact;
+	 * @return the new fact or {@code null} if there is no fact with this verb.
+	 */
+	public RDPredicate addFact(String actionVerb, RDConcept... args) {
+		RDPredicate definition = null;
+
+		for (RDPredicate p : baseFacts.toList()) {
+			if (p.getActionVerb().equalsIgnoreCase(actionVerb)) {
+				definition = p;
+				break;
+			}
+		}
+
+		if (definition == null) {
+			LOGGER.error("There is no fact with the action verb '" + actionVerb + "'!");
+			return null;
+		}
+
+		RDPredicate np = definition.deepCopy();
+
+		for (RDConcept a : args) {
+			np.addArgument(a);
+		}
+
+		addFact(np);
+		return np;
+	}
+
+	/**
+	 * <p>
+	 * Retracts a TRUE fact of the universe, by identity, or one that was added by this
+	 * transaction.
+	 * </p>
+	 */
+	public void retractFact(RDPredicate fact) {
+		retractedFacts.add(fact);
+	}
+
+	/**
+	 * <p>
+	 * Replaces a TRUE fact with a copy of it which has {@code value} at argument
+	 * {@code position}, e.g. a new price of a product. The copy takes the place of the fact among
+	 * the TRUE facts, so the other facts keep their fact IDs and the fact indexes are only
+	 * updated for the copy.
+	 * </p>
+	 *
+	 * @return the new fact.
+	 */
+	public RDPredicate replaceArgument(RDPredicate fact, int position, RDConcept value) {
+		RDPredicate np = fact.deepCopy();
+		List<RDConcept> args = fact.getArguments();
+
+		for (int i = 0; i < args.size(); i++) {
+			np.addArgument(i == position ? value : args.get(i));
+		}
+
+		retractFact(fact);
+		addFact(np);
+		replacements.put(fact, np);
+		return np;
+	}
+
+	public boolean isEmpty() {
+		return addedConcepts.isEmpty() && retractedConcepts.isEmpty() && addedFacts.isEmpty()
+				&& retractedFacts.isEmpty();
+	}
+
+	/**
+	 * @return {@code true} if bound concepts were added or retracted.
+	 */
+	public boolean changesConcepts() {
+		return !addedConcepts.isEmpty() || !retractedConcepts.isEmpty();
+	}
+
+	private boolean isRetracted(RDPredicate fact) {
+		if (retractedFacts.contains(fact)) {
+			return true;
+		}
+
+		if (!retractedConcepts.isEmpty()) {
+			for (RDConcept a : fact.getArguments()) {
+				if (retractedConcepts.contains(a)) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * <p>
+	 * Builds the new version of the universe, with the changes of this transaction. Its indexes
+	 * are updated from the ones of the base universe: the new bound concepts are indexed on their
+	 * own, the fact indexes are updated for the changed facts only (see
+	 * {@link RDObjectFacts#update(RDUniverse, RDObjectFacts, int[], boolean)}) and only the new
+	 * verbs and words are looked up in WordNet. A transaction can be committed once.
+	 * </p>
+	 *
+	 * @return the new version of the universe.
+	 */
+	public RDUniverse commit() {
+		if (committed) {
+			throw new IllegalStateException("This transaction was already committed!");
+		}
+
+		committed = true;
+
+		long start = System.currentTimeMillis();
+		List<RDConcept> baseConcepts = base.getBoundConcepts();
+		List<RDPredicate> basePredicates = baseFacts.toList();
+		List<RDConcept> concepts = new ArrayList<>(baseConcepts.size() + addedConcepts.size());
+		List<RDPredicate> predicates =
+				new ArrayList<>(basePredicates.size() + addedFacts.size());
+		List<RDConcept> newConcepts = new ArrayList<>();
+		List<RDPredicate> newFacts = new ArrayList<>();
+
+		for (RDConcept c : baseConcepts) {
+			if (!retractedConcepts.contains(c)) {
+				concepts.add(c);
+			}
+		}
+
+		for (RDConcept c : addedConcepts) {
+			if (!retractedConcepts.contains(c)) {
+				concepts.add(c);
+				newConcepts.add(c);
+			}
+		}
+
+		// The fact IDs of the replaced facts
+		List<Integer> replaced = new ArrayList<>();
+		Set<RDPredicate> placed = Collections.newSetFromMap(new IdentityHashMap<>());
+		boolean shifted = false;
+
+		for (RDPredicate p : basePredicates) {
+			if (!isRetracted(p)) {
+				predicates.add(p);
+				continue;
+			}
+
+			RDPredicate r = replacements.get(p);
+
+			while (r != null && isRetracted(r)) {
+				r = replacements.get(r);
+			}
+
+			if (r == null) {
+				// The next facts get other fact IDs.
+				shifted = true;
+				continue;
+			}
+
+			replaced.add(predicates.size());
+			predicates.add(r);
+			newFacts.add(r);
+			placed.add(r);
+		}
+
+		for (RDPredicate p : addedFacts) {
+			if (!isRetracted(p) && !placed.contains(p)) {
+				predicates.add(p);
+				newFacts.add(p);
+			}
+		}
+
+		Set<String> words = new LinkedHashSet<>();
+
+		for (RDConcept c : newConcepts) {
+			RDUniverse.addReferenceWords(c, words);
+		}
+
+		for (RDPredicate p : newFacts) {
+			words.add(p.getActionVerb());
+			words.addAll(p.getSynonyms());
+		}
+
+		base.getWordNet().lookupAll(words);
+
+		RDUniverse next = new RDUniverse(base);
+		RDObjectFacts nextFacts = new RDObjectFacts(baseFacts, predicates);
+		boolean merged = next.nextVersion(base, concepts, nextFacts, newConcepts,
+				retractedConcepts);
+
+		nextFacts.update(next, baseFacts,
+				shifted ? null : replaced.stream().mapToInt(Integer::intValue).toArray(),
+				merged);
+		LOGGER.info(String.format(
+				"Committed version %d of the universe in %d ms: %+d bound concepts, %+d facts",
+				next.getVersion(), System.currentTimeMillis() - start,
+				concepts.size() - baseConcepts.size(),
+				predicates.size() - basePredicates.size()));
+
+		return next;
+	}
+}
@@ -4,21 +4,37 @@
 package ro.racai.robin.dialog;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntPredicate;
+
+import org.apache.log4j.Logger;
 
 import ro.racai.robin.nlp.TextProcessor.Argument;
 import ro.racai.robin.nlp.TextProcessor.Query;
 import ro.racai.robin.nlp.TextProcessor.Token;
+import ro.racai.robin.dialog.RDFactIndexes.AmountIndex;
 import ro.racai.robin.dialog.RDPredicate.PMatch;
+import ro.racai.robin.nlp.CompressedBitmap;
+import ro.racai.robin.nlp.HashedNgramIndex;
+import ro.racai.robin.nlp.HypernymClosure;
 import ro.racai.robin.nlp.Levenshtein;
 import ro.racai.robin.nlp.Lexicon;
+import ro.racai.robin.nlp.NumericRange;
 import ro.racai.robin.nlp.QType;
 import ro.racai.robin.nlp.TextProcessor;
+import ro.racai.robin.nlp.TrigramIndex;
 import ro.racai.robin.nlp.WordNet;
+import ro.racai.robin.nlp.WordNetEntry;
 
 /**
  * @author Radu Ion ({@code radu@racai.ro})
@@ -29,8 +45,51 @@ import ro.racai.robin.nlp.WordNet;
  *         our PRECIS scenario, for the <i>sală</i> concept, we could have values such as
  *         <i>209</i>, <i>laboratorul de SDA</i>, etc.
  *         </p>
+ *         <p>
+ *         A universe is loaded, indexed with {@link #indexBoundConcepts()} and
+ *         {@link #indexPredicates()} and then only read by the queries, which any number of
+ *         threads can resolve at once. Changing the facts or how they are kept drops the fact
+ *         indexes; a universe that is being queried is changed with {@link #beginTransaction()}.
+ *         </p>
+ *         <p>
+ *         The TRUE facts are kept, indexed and scored by one of the {@link RDFacts} strategies;
+ *         the universe finds the candidate concepts of the query arguments and scores them.
+ *         </p>
  */
 public class RDUniverse {
+	private static final Logger LOGGER = Logger.getLogger(RDUniverse.class.getName());
+
+	/**
+	 * How many bound concepts are retrieved from {@link #conceptIndex} for a query argument.
+	 * Concepts that tie with the last one are also retrieved.
+	 */
+	public static final int CANDIDATE_LIST_SIZE = 16;
+
+	/**
+	 * With parallel scoring on, queries that have fewer candidate predicates than this are still
+	 * scored on the caller thread.
+	 */
+	public static final int PARALLEL_SCORING_THRESHOLD = 64;
+
+	/**
+	 * An upper bound of {@link #referenceSimilarity(RDConcept, QueryScoring, int,
+	 * ScoringScratch)}, which goes above 1 when the user's description has more words than the
+	 * reference.
+	 */
+	static final float MAX_REFERENCE_SIMILARITY = 2.0f;
+
+	/**
+	 * Added to an argument match score, so that we can pass the matching threshold.
+	 */
+	static final float SCORE_DELTA = 0.1f;
+
+	/**
+	 * A committed {@link RDTransaction} indexes its new bound concepts in small delta indexes
+	 * until there are more than this many of them, or more than one in eight bound concepts, and
+	 * then the concept indexes are built again.
+	 */
+	public static final int DELTA_MERGE_SIZE = 256;
+
 	/**
 	 * Bound concepts (defined with REFERENCE or constants) in this universe of discourse.
 	 * Fill in this list using {@link #addBoundConcept(RDConcept)}.
@@ -43,146 +102,1708 @@ public class RDUniverse {
 	private List<RDConcept> definedConcepts;
 
 	/**
-	 * Predicates that are TRUE in this universe. Use {@link #addPredicate()} method to fill in this
-	 * list.
+	 * The TRUE facts of this universe, in one of the {@link RDFacts} strategies. Fill them in
+	 * with {@link #addBoundPredicate(RDPredicate)}.
+	 */
+	private RDFacts facts;
+
+	/**
+	 * If {@code true}, {@link #resolveQuery(Query)} scores the predicates in parallel, when there
+	 * are at least {@link #PARALLEL_SCORING_THRESHOLD} of them.
+	 */
+	private boolean parallelScoring;
+
+	/**
+	 * If {@code true}, consecutive TRUE facts which only differ by interchangeable references at
+	 * one argument position are scored as one fact with alternatives.
+	 */
+	private boolean factGrouping;
+
+	/**
+	 * If {@code true}, the facts that satisfy all the constraints of a query are found with the
+	 * fact bitmaps of {@link RDFactIndexes} before scoring.
+	 */
+	private boolean bitmapFiltering = true;
+
+	/**
+	 * Attributes (defined with the ATTRIBUTE keyword) of the {@link CType#AMOUNT} concepts.
+	 */
+	private List<RDAttribute> attributes;
+
+	/**
+	 * The word distance object used to compute Levenshtein distances and the other working memory
+	 * of the scoring, one per thread.
+	 */
+	private ThreadLocal<ScoringScratch> scoringScratch;
+
+	/**
+	 * The WordNet object that is used to find "similar" words.
+	 */
+	private WordNet wordNet;
+
+	/**
+	 * The TextProcessor to use to compute a special type of sentence length.
+	 */
+	private TextProcessor textProcessor;
+
+	/**
+	 * Lexicon to test for functional words when matching descriptions.
+	 */
+	private Lexicon lexicon;
+
+	/**
+	 * A static mapping attempting to correct ASR errors
+	 * of the type e.g. "pe păr -> Pepper".
+	 */
+	private Map<String, String> asrCorrectionRules;
+
+	/**
+	 * Character trigram index over the bound concepts, which selects the concepts that are worth
+	 * scoring against a query argument. If {@code null}, all bound concepts are scored.
+	 */
+	private TrigramIndex<RDConcept> conceptIndex;
+
+	/**
+	 * The head noun index of the bound concepts, used by
+	 * {@link #findSimilarBoundConcepts(Argument)}. Built by {@link #indexBoundConcepts()} (or by
+	 * {@link #indexPredicates()}, if the bound concepts are not indexed) and replaced as a whole,
+	 * such that the threads that resolve queries see all of it or none of it.
+	 */
+	private volatile HeadNouns headNouns;
+
+	/**
+	 * How query arguments are scored against bound concepts.
+	 */
+	private SimilarityType similarityType = SimilarityType.DESCRIPTION;
+
+	/**
+	 * Hashed n-gram vectors of the bound concept references, used when
+	 * {@link #similarityType} is {@link SimilarityType#NGRAM}.
+	 */
+	private HashedNgramIndex<RDConcept> ngramIndex;
+
+	/**
+	 * The bound concepts that were added by transactions since {@link #conceptIndex} was built,
+	 * and their own trigram and n-gram indexes, which are searched together with the main ones.
+	 */
+	private List<RDConcept> deltaConcepts = new ArrayList<>();
+	private TrigramIndex<RDConcept> deltaConceptIndex;
+	private HashedNgramIndex<RDConcept> deltaNgramIndex;
+
+	/**
+	 * How many bound concepts were retracted since {@link #conceptIndex} was built. They are still
+	 * in the main indexes, where they take up candidate slots.
+	 */
+	private int staleConcepts;
+
+	/**
+	 * The number of transactions that were committed since this universe was loaded.
+	 */
+	private long version;
+
+	/**
+	 * If {@code true}, the concepts that the {@link #conceptIndex} filters out are scored anyway,
+	 * to measure its recall.
+	 */
+	private boolean candidateAudit;
+
+	/**
+	 * Candidate list statistics: how many lists were retrieved and their total size.
+	 */
+	private final LongAdder candidateLists = new LongAdder();
+	private final LongAdder candidateListsSize = new LongAdder();
+
+	/**
+	 * Candidate audit statistics: how many matching concepts were among the candidates and how
+	 * many were filtered out.
+	 */
+	private final LongAdder auditHits = new LongAdder();
+	private final LongAdder auditMisses = new LongAdder();
+
+	/**
+	 * @author Radu Ion ({@code radu@racai.ro})
+	 *         <p>
+	 *         What one {@link RDUniverse#resolveQuery(Query)} call knows about the query, shared by
+	 *         all the predicates that are scored. The same bound concept is an argument of many
+	 *         predicates, so the score of a (bound concept, query argument) cell is computed once
+	 *         and then looked up by the ID of the concept and the argument index.
+	 *         </p>
+	 *         <p>
+	 *         The memo arrays are shared by the parallel scoring tasks without locking: cell values
+	 *         are deterministic and single {@code float} or {@code byte} writes are atomic, so a
+	 *         race only means that a cell is computed twice.
+	 *         </p>
+	 */
+	static class QueryScoring {
+		static final byte UNKNOWN = 0;
+		static final byte FALSE = 1;
+		static final byte TRUE = 2;
+
+		final Query query;
+		final List<Set<RDConcept>> candidates;
+		final List<float[]> argVectors;
+		final Map<RDConcept, Integer> conceptIds;
+
+		/**
+		 * For each query argument index, the memoized cell scores by concept ID, {@code NaN} if
+		 * not computed yet.
+		 */
+		final float[][] cellScores;
+
+		/**
+		 * For each query argument index, the memoized
+		 * {@link RDUniverse#isOfSameQueryType(RDConcept, Argument, QType)} results by concept ID.
+		 */
+		final byte[][] sameQueryType;
+
+		/**
+		 * For each query argument index, the lower-cased word forms, the lemmas and the
+		 * lower-cased lemmas of its content words, such that they are computed once per query.
+		 */
+		final String[][] argWordForms;
+		final String[][] argLemmas;
+		final String[][] argFoldedLemmas;
+
+		QueryScoring(Query query, List<Set<RDConcept>> candidates, List<float[]> argVectors,
+				Map<RDConcept, Integer> conceptIds, TextProcessor proc) {
+			int argCount = query.predicateArguments.size();
+
+			this.query = query;
+			this.candidates = candidates;
+			this.argVectors = argVectors;
+			this.conceptIds = conceptIds;
+			cellScores = new float[argCount][conceptIds.size()];
+			sameQueryType = new byte[argCount][conceptIds.size()];
+			argWordForms = new String[argCount][];
+			argLemmas = new String[argCount][];
+			argFoldedLemmas = new String[argCount][];
+
+			for (float[] row : cellScores) {
+				Arrays.fill(row, Float.NaN);
+			}
+
+			for (int j = 0; j < argCount; j++) {
+				List<Token> content =
+						proc.noFunctionalWordsFilter(query.predicateArguments.get(j).argTokens);
+
+				argWordForms[j] = new String[content.size()];
+				argLemmas[j] = new String[content.size()];
+				argFoldedLemmas[j] = new String[content.size()];
+
+				for (int r = 0; r < content.size(); r++) {
+					argWordForms[j][r] = content.get(r).wform.toLowerCase();
+					argLemmas[j][r] = content.get(r).lemma;
+					argFoldedLemmas[j][r] = argLemmas[j][r].toLowerCase();
+				}
+			}
+		}
+
+		/**
+		 * @return the ID of {@code c} or {@code -1} if it is not a predicate argument.
+		 */
+		int idOf(RDConcept c) {
+			Integer id = conceptIds.get(c);
+
+			return id == null ? -1 : id;
+		}
+	}
+
+	/**
+	 * @author Radu Ion ({@code radu@racai.ro})
+	 *         <p>
+	 *         Working memory of the scoring functions, one per thread. The arrays only grow, such
+	 *         that scoring a predicate or computing a description similarity does not allocate
+	 *         once they are large enough.
+	 *         </p>
+	 */
+	static class ScoringScratch {
+		final Levenshtein wordDistance = new Levenshtein();
+
+		/**
+		 * The reference words that were already paired with a description word.
+		 */
+		final BitSet paired = new BitSet();
+
+		/**
+		 * The Levenshtein distances matrix of descriptionSimilarity(), row after row.
+		 */
+		int[] distances = new int[64];
+
+		/**
+		 * The best score of each argument of the last scored predicate.
+		 */
+		float[] argScores = new float[8];
+
+		/**
+		 * The score upper bounds of the predicates that {@link RDObjectFacts} scores, their
+		 * matches and their scoring order.
+		 */
+		float[] bounds = new float[64];
+		PMatch[] matches = new PMatch[64];
+		long[] order = new long[64];
+
+		/**
+		 * What the scoring found out about the last scored predicate.
+		 */
+		int saidArgumentIndex;
+		boolean exactPredicateNameMatch;
+
+		/**
+		 * The fact that got the score, one of the alternatives if the scored predicate is the
+		 * first fact of a fact group.
+		 */
+		RDPredicate matchedFact;
+
+		int[] distances(int size) {
+			if (distances.length < size) {
+				distances = new int[Math.max(size, 2 * distances.length)];
+			}
+
+			return distances;
+		}
+
+		float[] argScores(int size) {
+			if (argScores.length < size) {
+				argScores = new float[Math.max(size, 2 * argScores.length)];
+			}
+
+			return argScores;
+		}
+
+		/**
+		 * Makes room for the bounds, the matches and the order of {@code size} predicates.
+		 */
+		void predicates(int size) {
+			if (bounds.length < size) {
+				int length = Math.max(size, 2 * bounds.length);
+
+				bounds = new float[length];
+				matches = new PMatch[length];
+				order = new long[length];
+			}
+		}
+	}
+
+	/**
+	 * @author Radu Ion ({@code radu@racai.ro})
+	 *         <p>
+	 *         The head noun index of the bound concepts: a concept is found through the word
+	 *         forms and lemmas of the root nouns of its reference, and through its canonical name,
+	 *         if its reference has a root noun. It is not changed once it is built, so it is
+	 *         shared by the versions of a universe and read without locking.
+	 *         </p>
+	 */
+	private static final class HeadNouns {
+		/**
+		 * Case-folded word forms and lemmas of the root nouns of the bound concept references,
+		 * and the concept canonical names, to the IDs of the bound concepts having them.
+		 */
+		final Map<String, List<Integer>> wformIndex;
+		final Map<String, List<Integer>> lemmaIndex;
+
+		/**
+		 * The top-level (non-ISA) concept of each bound concept, by bound concept ID.
+		 */
+		final RDConcept[] topLevelConcepts;
+
+		private HeadNouns(Map<String, List<Integer>> wformIndex,
+				Map<String, List<Integer>> lemmaIndex, RDConcept[] topLevelConcepts) {
+			this.wformIndex = wformIndex;
+			this.lemmaIndex = lemmaIndex;
+			this.topLevelConcepts = topLevelConcepts;
+		}
+
+		/**
+		 * @return the head noun index of {@code concepts}, by their index in the list.
+		 */
+		static HeadNouns of(List<RDConcept> concepts) {
+			Map<String, List<Integer>> wformIndex = new HashMap<>();
+			Map<String, List<Integer>> lemmaIndex = new HashMap<>();
+			RDConcept[] topLevel = new RDConcept[concepts.size()];
+
+			for (int id = 0; id < concepts.size(); id++) {
+				add(wformIndex, lemmaIndex, topLevel, concepts.get(id), id, false);
+			}
+
+			return new HeadNouns(wformIndex, lemmaIndex, topLevel);
+		}
+
+		/**
+		 * <p>
+		 * Adds the concepts from {@code from} on to a copy of this index, e.g. the bound concepts
+		 * that an {@link RDTransaction} appended. The ID lists that are shared with this index
+		 * are copied before they are changed.
+		 * </p>
+		 */
+		HeadNouns append(List<RDConcept> concepts, int from) {
+			Map<String, List<Integer>> wforms = new HashMap<>(wformIndex);
+			Map<String, List<Integer>> lemmas = new HashMap<>(lemmaIndex);
+			RDConcept[] topLevel = Arrays.copyOf(topLevelConcepts, concepts.size());
+
+			for (int id = from; id < concepts.size(); id++) {
+				add(wforms, lemmas, topLevel, concepts.get(id), id, true);
+			}
+
+			return new HeadNouns(wforms, lemmas, topLevel);
+		}
+
+		private static void add(Map<String, List<Integer>> wformIndex,
+				Map<String, List<Integer>> lemmaIndex, RDConcept[] topLevel, RDConcept c, int id,
+				boolean copyOnWrite) {
+			String ccn = c.getCanonicalName();
+			boolean hasRootNoun = false;
+
+			for (Token t : c.getMatchFeatures().getRootNouns()) {
+				add(wformIndex, t.wform, id, copyOnWrite);
+				add(lemmaIndex, t.lemma, id, copyOnWrite);
+				hasRootNoun = true;
+			}
+
+			if (hasRootNoun && ccn != null) {
+				add(wformIndex, ccn, id, copyOnWrite);
+				add(lemmaIndex, ccn, id, copyOnWrite);
+			}
+
+			// If c has ISA type, get the superclass.
+			while (c.getType() == CType.ISA && c.getSuperClass() != null) {
+				c = c.getSuperClass();
+			}
+
+			topLevel[id] = c;
+		}
+
+		private static void add(Map<String, List<Integer>> index, String word, int id,
+				boolean copyOnWrite) {
+			String key = word.toLowerCase();
+			List<Integer> ids = index.get(key);
+
+			// IDs are added in increasing order.
+			if (ids != null && !ids.isEmpty() && ids.get(ids.size() - 1) == id) {
+				return;
+			}
+
+			if (ids == null) {
+				ids = new ArrayList<>(1);
+				index.put(key, ids);
+			} else if (copyOnWrite) {
+				ids = new ArrayList<>(ids);
+				index.put(key, ids);
+			}
+
+			ids.add(id);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Universe of discourse constructor.
+	 * </p>
+	 * 
+	 * @param wn  a WordNet instance for your language;
+	 * @param lex a lexicon instance for your language.
+	 */
+	public RDUniverse(WordNet wn, Lexicon lex, TextProcessor proc) {
+		boundConcepts = new ArrayList<>();
+		definedConcepts = new ArrayList<>();
+		facts = new RDObjectFacts();
+		attributes = new ArrayList<>();
+		scoringScratch = ThreadLocal.withInitial(ScoringScratch::new);
+		wordNet = wn;
+		lexicon = lex;
+		textProcessor = proc;
+		asrCorrectionRules = new HashMap<>();
+	}
+
+	/**
+	 * <p>
+	 * A new version of {@code base}, which shares all its members and a copy of its facts. See
+	 * {@link RDTransaction#commit()}.
+	 * </p>
+	 */
+	protected RDUniverse(RDUniverse base) {
+		boundConcepts = base.boundConcepts;
+		definedConcepts = base.definedConcepts;
+		facts = base.facts.copy();
+		parallelScoring = base.parallelScoring;
+		factGrouping = base.factGrouping;
+		bitmapFiltering = base.bitmapFiltering;
+		attributes = base.attributes;
+		scoringScratch = base.scoringScratch;
+		wordNet = base.wordNet;
+		textProcessor = base.textProcessor;
+		lexicon = base.lexicon;
+		asrCorrectionRules = base.asrCorrectionRules;
+		conceptIndex = base.conceptIndex;
+		headNouns = base.headNouns;
+		similarityType = base.similarityType;
+		ngramIndex = base.ngramIndex;
+		deltaConcepts = base.deltaConcepts;
+		deltaConceptIndex = base.deltaConceptIndex;
+		deltaNgramIndex = base.deltaNgramIndex;
+		staleConcepts = base.staleConcepts;
+		candidateAudit = base.candidateAudit;
+		version = base.version;
+	}
+
+	/**
+	 * <p>
+	 * Starts changing the bound concepts and the TRUE facts of this universe. The changes are
+	 * published as a new version of the universe by {@link RDTransaction#commit()}; this one
+	 * stays as it is. Not available with {@link #isColumnarFacts()} or on a partition.
+	 * </p>
+	 * 
+	 * @return the new transaction.
+	 * @throws UnsupportedOperationException if the facts of this universe cannot be changed.
+	 */
+	public RDTransaction beginTransaction() {
+		return new RDTransaction(this);
+	}
+
+	/**
+	 * @return the number of transactions that were committed since this universe was loaded.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * <p>
+	 * Makes this copy of {@code base} the next version of it, with the bound concepts and the
+	 * TRUE facts of an {@link RDTransaction}, and brings the concept indexes that it shares with
+	 * {@code base} up to date. The new bound concepts go to the delta concept indexes and to a
+	 * copy of the head noun index. The transaction updates the fact indexes afterwards.
+	 * </p>
+	 * 
+	 * @param base        the version that the transaction was started from;
+	 * @param concepts    the bound concepts of the new version;
+	 * @param facts       the TRUE facts of the new version;
+	 * @param newConcepts the bound concepts that were added;
+	 * @param retracted   the bound concepts that were retracted;
+	 * @return {@code true} if the concept indexes were built again, so the predicate arguments
+	 *         are to be numbered again too.
+	 */
+	boolean nextVersion(RDUniverse base, List<RDConcept> concepts, RDObjectFacts facts,
+			List<RDConcept> newConcepts, Set<RDConcept> retracted) {
+		boolean merged = false;
+
+		boundConcepts = concepts;
+		this.facts = facts;
+		version = base.version + 1;
+
+		if (base.conceptIndex != null) {
+			List<RDConcept> delta = new ArrayList<>();
+
+			for (RDConcept c : base.deltaConcepts) {
+				if (!retracted.contains(c)) {
+					delta.add(c);
+				}
+			}
+
+			delta.addAll(newConcepts);
+			staleConcepts = base.staleConcepts + retracted.size();
+
+			if (delta.size() + staleConcepts > Math.max(DELTA_MERGE_SIZE,
+					boundConcepts.size() / 8)) {
+				indexBoundConcepts();
+				merged = true;
+			} else {
+				deltaConcepts = delta;
+				deltaConceptIndex = delta.isEmpty() ? null : trigramIndex(delta);
+				deltaNgramIndex =
+						delta.isEmpty() || ngramIndex == null ? null : ngramIndex(delta);
+			}
+		}
+
+		if (!merged && base.headNouns != null) {
+			headNouns = retracted.isEmpty()
+					? base.headNouns.append(boundConcepts, base.boundConcepts.size())
+					// Concept IDs have changed.
+					: HeadNouns.of(boundConcepts);
+		}
+
+		return merged;
+	}
+
+	/**
+	 * <p>
+	 * Splits the TRUE facts of this universe in {@code count} parts and makes a universe with
+	 * part {@code index}, e.g. for an {@link RDPartitionWorker}. The partition shares the bound
+	 * concepts and their indexes with this universe, so a query argument gets the same candidate
+	 * concepts and scores in every partition. Its fact indexes only hold its own facts.
+	 * </p>
+	 * 
+	 * @param index     the partition to make, from 0 to {@code count - 1};
+	 * @param count     the number of partitions;
+	 * @param byConcept if {@code true}, the facts go to the partition of their first argument,
+	 *                  e.g. the product that they are about, such that the facts of a product
+	 *                  and its fact groups are not split; otherwise, they go by fact ID;
+	 * @return the partition, with its fact indexes built.
+	 */
+	public RDUniverse partition(int index, int count, boolean byConcept) {
+		RDFactFilter keep = RDFactFilter.partition(index, count, byConcept);
+		Map<RDConcept, Integer> conceptIds = new IdentityHashMap<>();
+
+		for (int i = 0; i < boundConcepts.size(); i++) {
+			conceptIds.put(boundConcepts.get(i), i);
+		}
+
+		return partition(f -> keep.keeps(f,
+				facts.arity(f) == 0 ? -1 : conceptIds.getOrDefault(facts.argument(f, 0), 0)));
+	}
+
+	/**
+	 * <p>
+	 * Makes this universe a partition with the given TRUE facts, for micro-world builders that
+	 * load only the facts of an {@link RDFactFilter}, e.g.
+	 * {@link ro.racai.robin.mw.RDMicroworld#constructUniverse(WordNet, Lexicon, TextProcessor,
+	 * RDFactFilter)}. Call {@link #indexPredicates()} afterwards.
+	 * </p>
+	 *
+	 * @param facts         the facts of the partition;
+	 * @param globalFactIds the IDs of {@code facts} among all the TRUE facts of the micro-world.
+	 */
+	public void setPartitionFacts(List<RDPredicate> facts, int[] globalFactIds) {
+		if (isColumnarFacts()) {
+			throw new UnsupportedOperationException("Partitions keep their facts as objects!");
+		}
+
+		this.facts = new RDPartitionFacts(facts, globalFactIds, null);
+	}
+
+	/**
+	 * @param keep selects the facts of the partition, by fact ID.
+	 */
+	RDUniverse partition(IntPredicate keep) {
+		RDUniverse part = new RDUniverse(this);
+
+		part.facts = facts.partition(keep);
+		// Built before the partition answers queries, on many threads.
+		part.indexPredicates();
+		return part;
+	}
+
+	/**
+	 * @return the ID of {@code fact} in the universe that this one is a partition of, or in this
+	 *         universe if it is not a partition; {@code -1} if {@code fact} is not one of the
+	 *         TRUE facts of this universe or they are {@link #isColumnarFacts()}.
+	 */
+	public int getGlobalFactId(RDPredicate fact) {
+		checkIndexed();
+
+		int id = facts.factId(fact);
+
+		return id < 0 ? -1 : facts.globalFactId(id);
+	}
+
+	/**
+	 * <p>
+	 * The queries only read the indexes of the universe, so that many threads can resolve them at
+	 * once. The indexes are built beforehand, by {@link #indexPredicates()}.
+	 * </p>
+	 */
+	void checkIndexed() {
+		if (!facts.isIndexed()) {
+			throw new IllegalStateException(
+					"The TRUE facts are not indexed, call indexPredicates() first!");
+		}
+	}
+
+	/**
+	 * @param conc a bound concept;
+	 * @return the TRUE facts that have {@code conc} as an argument, in the order of the facts.
 	 */
-	private List<RDPredicate> predicates;
+	public List<RDPredicate> getBoundPredicatesWith(RDConcept conc) {
+		List<RDPredicate> result = new ArrayList<>();
+
+		if (facts.isIndexed()) {
+			CompressedBitmap withConc = facts.factsWith(conc);
+
+			if (withConc != null) {
+				for (int f : withConc.toArray()) {
+					result.add(facts.fact(f));
+				}
+			}
+
+			return result;
+		}
+
+		for (int f = 0; f < facts.size(); f++) {
+			for (int i = 0; i < facts.arity(f); i++) {
+				if (facts.argument(f, i) == conc) {
+					result.add(facts.fact(f));
+					break;
+				}
+			}
+		}
+
+		return result;
+	}
+
+	public Map<String, String> getASRRulesMap() {
+		return asrCorrectionRules;
+	}
+
+	public void setASRRulesMap(Map<String, String> dictionary) {
+		asrCorrectionRules = dictionary;
+	}
+
+	public SimilarityType getSimilarityType() {
+		return similarityType;
+	}
+
+	public void setSimilarityType(SimilarityType type) {
+		similarityType = type;
+	}
+
+	/**
+	 * <p>
+	 * Get the universe instantiated concepts to pass on to the text processor or to print.
+	 * </p>
+	 * 
+	 * @return the list of bound concepts that exist in this universe.
+	 */
+	public List<RDConcept> getBoundConcepts() {
+		return boundConcepts;
+	}
+
+	public List<RDConcept> getDefinedConcepts() {
+		return definedConcepts;
+	}
+
+	/**
+	 * <p>
+	 * Get the universe instantiated predicates to print.
+	 * </p>
+	 * 
+	 * @return the list of bound predicates that exist in this universe; a materialized copy if
+	 *         {@link #isColumnarFacts()}.
+	 */
+	public List<RDPredicate> getBoundPredicates() {
+		return facts.toList();
+	}
+
+	/**
+	 * @return the TRUE facts of this universe, in the strategy that keeps them.
+	 */
+	RDFacts getFacts() {
+		return facts;
+	}
+
+	WordNet getWordNet() {
+		return wordNet;
+	}
+
+	Lexicon getLexicon() {
+		return lexicon;
+	}
+
+	TextProcessor getTextProcessor() {
+		return textProcessor;
+	}
+
+	/**
+	 * <p>
+	 * Adds a bound concept to this universe of discourse.
+	 * Note that the textual description {@link RDConcept#getReference()} must not be null or empty!
+	 * This changes the universe in place, while it is loaded: use {@link #beginTransaction()} to
+	 * change a universe that is being queried.
+	 * </p>
+	 * 
+	 * @param conc the bound (instantiated) concept to be added to this universe
+	 */
+	public void addBoundConcept(RDConcept conc) {
+		boundConcepts.add(conc);
+		headNouns = null;
+	}
+
+	public void addConcept(RDConcept conc) {
+		definedConcepts.add(conc);
+	}
+
+	public List<RDAttribute> getAttributes() {
+		return attributes;
+	}
+
+	public void addAttribute(RDAttribute attr) {
+		attributes.add(attr);
+	}
+
+	/**
+	 * <p>
+	 * Adds a ``true'' predicate to this universe of discourse. This changes the universe in place,
+	 * while it is loaded: use {@link #beginTransaction()} to change a universe that is being
+	 * queried. The facts of an {@link RDMappedFactStore} cannot be changed.
+	 * </p>
+	 * 
+	 * @param pred the predicate to add to this universe
+	 */
+	public void addBoundPredicate(RDPredicate pred) {
+		facts.add(pred);
+	}
+
+	public void addBoundPredicates(List<RDPredicate> preds) {
+		facts.setAll(preds);
+	}
+
+	/**
+	 * <p>
+	 * Keeps the TRUE facts in the given store from now on, e.g. an {@link RDMappedFactStore}
+	 * over the bound concepts of this universe, and turns on {@link #isColumnarFacts()}. The
+	 * facts that were in this universe are dropped.
+	 * </p>
+	 * 
+	 * @param store the store with the facts of this universe.
+	 */
+	public void setFactStore(RDFactStore store) {
+		facts = store.toFacts();
+	}
+
+	public boolean isColumnarFacts() {
+		return facts instanceof RDColumnarFacts;
+	}
+
+	/**
+	 * <p>
+	 * Turns on or off the columnar storage of the TRUE facts in an {@link RDFactStore}, for
+	 * universes with many facts. The facts are moved to the store (or back) and the
+	 * {@link RDPredicate} objects of the facts are dropped: {@link #resolveQuery(Query)} scores the
+	 * rows of the store and only the matched facts are built as objects. Fact grouping and
+	 * parallel scoring do not apply to the columnar facts. Call {@link #indexPredicates()}
+	 * afterwards.
+	 * </p>
+	 * 
+	 * @param columnar {@code true} to store the facts in columns.
+	 */
+	public void setColumnarFacts(boolean columnar) {
+		if (columnar != isColumnarFacts()) {
+			facts = columnar ? facts.toColumnar() : facts.toObjects();
+		}
+	}
+
+	/**
+	 * <p>
+	 * Builds the action verb index of the predicates, such that {@link #resolveQuery(Query)} only
+	 * scores the predicates that the verb of the query can refer to. Call it after
+	 * {@link #warmUpWordNetCache()}. If the bound concepts are not indexed, their head noun index
+	 * is built too.
+	 * </p>
+	 */
+	public void indexPredicates() {
+		if (headNouns == null) {
+			headNouns = HeadNouns.of(boundConcepts);
+		}
+
+		facts.index(this);
+	}
+
+	public boolean isFactGrouping() {
+		return factGrouping;
+	}
+
+	/**
+	 * <p>
+	 * Turns on or off the grouping of the consecutive facts which differ by one interchangeable
+	 * reference. A group is scored as one fact, taking the best of its alternatives, and the
+	 * returned {@link PMatch} holds the fact of the best alternative. Results are the same as
+	 * without grouping, but {@link #resolveQueryTopK(Query, int)} gives one match per group. Call
+	 * {@link #indexPredicates()} afterwards.
+	 * </p>
+	 * 
+	 * @param grouping {@code true} to group facts.
+	 */
+	public void setFactGrouping(boolean grouping) {
+		factGrouping = grouping;
+		facts.clearIndexes();
+	}
+
+	public boolean isBitmapFiltering() {
+		return bitmapFiltering;
+	}
+
+	/**
+	 * <p>
+	 * Turns on or off the filtering of the facts by the conjunctive constraints of the query,
+	 * before scoring. See {@link #survivingFacts(QueryScoring)}.
+	 * </p>
+	 * 
+	 * @param filtering {@code true} to filter the facts.
+	 */
+	public void setBitmapFiltering(boolean filtering) {
+		bitmapFiltering = filtering;
+	}
+
+	public boolean isParallelScoring() {
+		return parallelScoring;
+	}
+
+	/**
+	 * <p>
+	 * Turns on or off the parallel scoring of the predicates in {@link #resolveQuery(Query)}, when
+	 * there are at least {@link #PARALLEL_SCORING_THRESHOLD} of them. The tasks run in a fork/join
+	 * pool of daemon threads, shared by all universes, and the best match is the same as with the
+	 * sequential scoring, ties included. Does not apply to the columnar facts.
+	 * </p>
+	 * 
+	 * @param parallel {@code true} to score in parallel.
+	 */
+	public void setParallelScoring(boolean parallel) {
+		parallelScoring = parallel;
+	}
+
+	/**
+	 * <p>
+	 * Collects the words of this universe that will be looked up in WordNet when matching user
+	 * queries: concept names and synonyms, predicate names and synonyms, reference lemmas and
+	 * the types of the numerical values.
+	 * </p>
+	 * 
+	 * @return the set of words, in the order in which they were found.
+	 */
+	public Set<String> getWordNetVocabulary() {
+		Set<String> words = new LinkedHashSet<>();
+
+		for (RDConcept c : definedConcepts) {
+			words.add(c.getCanonicalName());
+			words.addAll(c.getSynonyms());
+		}
+
+		for (RDPredicate p : facts.definitions()) {
+			words.add(p.getActionVerb());
+			words.addAll(p.getSynonyms());
+		}
+
+		for (RDConcept c : boundConcepts) {
+			addReferenceWords(c, words);
+		}
+
+		return words;
+	}
+
+	/**
+	 * Adds the WordNet words of the reference of a bound concept to {@code words}.
+	 */
+	static void addReferenceWords(RDConcept c, Set<String> words) {
+		if (c.hasJavaClassReference()) {
+			return;
+		}
+
+		for (Token t : c.getMatchFeatures().getContentTokens()) {
+			words.add(t.lemma);
+		}
+
+		if (c.typeOfNumericalValue != null) {
+			words.add(c.typeOfNumericalValue);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Collects the words that the ASR output should be corrected to: concept names and synonyms,
+	 * and the word forms and lemmas of the bound concept references.
+	 * </p>
+	 *
+	 * @return the set of words, in the order in which they were found.
+	 */
+	public Set<String> getSpellingVocabulary() {
+		Set<String> words = new LinkedHashSet<>();
+
+		for (RDConcept c : definedConcepts) {
+			words.add(c.getCanonicalName());
+			words.addAll(c.getSynonyms());
+		}
+
+		for (RDConcept c : boundConcepts) {
+			if (c.hasJavaClassReference()) {
+				continue;
+			}
+
+			for (Token t : c.getMatchFeatures().getContentTokens()) {
+				words.add(t.wform);
+				words.add(t.lemma);
+			}
+		}
+
+		return words;
+	}
+
+	/**
+	 * <p>
+	 * Looks up the whole {@link #getWordNetVocabulary()} in one batch, so that the WordNet
+	 * requests are not issued one by one while the user waits for an answer.
+	 * </p>
+	 */
+	public void warmUpWordNetCache() {
+		wordNet.lookupAll(getWordNetVocabulary());
+	}
+
+	/**
+	 * <p>
+	 * Precomputes the multi-hop IS-A relation over the WordNet hypernyms of
+	 * {@link #getWordNetVocabulary()} and over the ISA concepts of this universe, such that
+	 * {@link RDConcept#isThisConcept(String, WordNet)} can check deeper generalizations without
+	 * going to WordNet.
+	 * </p>
+	 */
+	public void indexHypernymClosure() {
+		HypernymClosure closure = wordNet.buildHypernymClosure(getWordNetVocabulary(),
+				HypernymClosure.DEFAULT_MAX_HOPS);
+
+		for (RDConcept c : definedConcepts) {
+			if (c.getType() == CType.ISA && c.getSuperClass() != null) {
+				String hyper = c.getSuperClass().getCanonicalName();
+
+				closure.addIsA(c.getCanonicalName(), hyper);
+
+				for (String syn : c.getSynonyms()) {
+					closure.addIsA(syn, hyper);
+				}
+			}
+		}
+
+		closure.build();
+		wordNet.setHypernymClosure(closure);
+	}
+
+	/**
+	 * <p>
+	 * Checks each predicate from this universe of discourse and assigns a match score.
+	 * </p>
+	 * 
+	 * @param query the parsed {@link Query} object from the user utterance;
+	 * @return the predicate match object which best matches the query; {@code null} if no predicate
+	 *         matched. It's safe to say that the information is not in the Knowledge Base in this
+	 *         case.
+	 */
+	public PMatch resolveQuery(Query query) {
+		checkIndexed();
+
+		List<PMatch> superlative = resolveSuperlative(query, 1);
+
+		if (superlative != null) {
+			return superlative.isEmpty() ? null : superlative.get(0);
+		}
+
+		List<PMatch> inRange = resolveRangeQuery(query);
+
+		if (inRange != null && !inRange.isEmpty()) {
+			return inRange.get(0);
+		}
+
+		QueryScoring scoring = newScoring(query);
+		CompressedBitmap survivors = survivingFacts(scoring);
+		PMatch best = facts.best(this, scoring, survivors);
+
+		if (best == null && survivors != null) {
+			// All the facts are scored if no surviving fact gets a positive score.
+			best = facts.best(this, scoring, null);
+		}
+
+		return best;
+	}
+
+	/**
+	 * @return the scoring of {@code query}, with the candidate concepts of its arguments.
+	 */
+	QueryScoring newScoring(Query query) {
+		List<float[]> argVectors = new ArrayList<>();
+		List<Set<RDConcept>> candidates = findCandidateConcepts(query, argVectors);
+
+		return new QueryScoring(query, candidates, argVectors, facts.argumentIds(),
+				textProcessor);
+	}
+
+	/**
+	 * @return the working memory of the scoring, for the current thread.
+	 */
+	ScoringScratch scratch() {
+		return scoringScratch.get();
+	}
+
+	/**
+	 * <p>
+	 * Answers a superlative query, e.g. <i>Ce procesor are cel mai ieftin laptop?</i>, if an
+	 * argument of the query has an {@link RDAttribute} after a superlative. The attribute only
+	 * selects what the nouns of that argument (<i>laptop</i>) refer to: the first such concept
+	 * from the end of the {@link AmountIndex} of the attribute. The rest of the query is then
+	 * resolved against the facts of that concept, with the usual scoring.
+	 * </p>
+	 * 
+	 * @param query the parsed {@link Query} object from the user utterance;
+	 * @param k     how many matches to return;
+	 * @return at most {@code k} matches, best first, or the fact with the lowest or highest value
+	 *         if the argument has no such nouns (e.g. <i>Care este cel mai mic preț?</i>);
+	 *         {@code null} if this is not a superlative query or no fact has the nouns.
+	 */
+	private List<PMatch> resolveSuperlative(Query query, int k) {
+		int j = superlativeArgument(query);
+
+		if (j < 0) {
+			return null;
+		}
+
+		PMatch selected = selectSuperlative(query, j);
+
+		if (selected == null) {
+			return null;
+		}
+
+		if (!asksAboutConcept(query, j)) {
+			// There is only one lowest or highest value.
+			return new ArrayList<>(Collections.singletonList(selected));
+		}
+
+		return resolveAbout(query, j, selectedConcept(selected), k);
+	}
+
+	/**
+	 * @return the index of the first query argument with a superlative attribute, {@code -1} if
+	 *         there is none.
+	 */
+	int superlativeArgument(Query query) {
+		if (attributes.isEmpty()) {
+			return -1;
+		}
+
+		for (int j = 0; j < query.predicateArguments.size(); j++) {
+			if (superlativeAttribute(query.predicateArguments.get(j)) != null) {
+				return j;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * @return {@code true} if the superlative argument {@code j} of {@code query} has nouns
+	 *         which refer to a concept, as <i>laptop</i> in <i>cel mai ieftin laptop</i>, and not
+	 *         only to the value.
+	 */
+	boolean asksAboutConcept(Query query, int j) {
+		return !objectNouns(query.predicateArguments.get(j), null).isEmpty();
+	}
+
+	/**
+	 * @return the concept that the nouns of a superlative or range match refer to.
+	 */
+	static RDConcept selectedConcept(PMatch selected) {
+		return selected.matchedPredicate.getArguments().get(selected.saidArgumentIndex);
+	}
+
+	/**
+	 * @param j the index of the superlative argument of {@code query};
+	 * @return the fact with the lowest or highest value of the attribute of argument {@code j},
+	 *         with {@link PMatch#saidArgumentIndex} at the argument that its nouns refer to (or at
+	 *         the value, if there are no such nouns); {@code null} if no fact has the nouns.
+	 */
+	PMatch selectSuperlative(Query query, int j) {
+		Argument arg = query.predicateArguments.get(j);
+
+		return selectByAttribute(superlativeAttribute(arg), arg);
+	}
+
+	/**
+	 * @return the first {@link RDAttribute} of {@code arg} which is a superlative, e.g.
+	 *         <i>ieftin</i> in <i>cel mai ieftin laptop</i>, or {@code null}.
+	 */
+	RDAttribute superlativeAttribute(Argument arg) {
+		List<Token> tokens = arg.argTokens;
+
+		for (int i = 0; i < tokens.size(); i++) {
+			if (!lexicon.isSuperlative(tokens, i)) {
+				continue;
+			}
+
+			for (RDAttribute attr : attributes) {
+				if (attr.isThisAttribute(tokens.get(i).lemma)) {
+					return attr;
+				}
+			}
+		}
+
+		return null;
+	}
+
+	private PMatch selectByAttribute(RDAttribute attr, Argument arg) {
+		AmountIndex index = facts.indexes().amountIndexes.get(attr.getConcept());
+
+		if (index == null || index.size() == 0) {
+			return null;
+		}
+
+		List<String> nouns = objectNouns(arg, null);
+		boolean fromLowest = attr.getOrder() == RDAttribute.Order.MIN;
+
+		for (int k = 0; k < index.size(); k++) {
+			int e = fromLowest ? k : index.size() - 1 - k;
+			PMatch pm = answerFromFact(facts.fact(index.facts[e]), index.positions[e], nouns);
+
+			if (pm != null) {
+				pm.answerValue = index.values[e];
+				return pm;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * <p>
+	 * Resolves {@code query} against the facts of {@code concept} only, with the usual scoring.
+	 * Query argument {@code j} refers to {@code concept}, as an exact match of its reference. If
+	 * no other argument is asked for, the answer is {@code concept}.
+	 * </p>
+	 * 
+	 * @param query   the parsed {@link Query} object from the user utterance;
+	 * @param j       the index of the query argument that was resolved to {@code concept};
+	 * @param concept the bound concept selected by argument {@code j};
+	 * @param k       how many matches to return;
+	 * @return at most {@code k} matches with positive scores, best first.
+	 */
+	List<PMatch> resolveAbout(Query query, int j, RDConcept concept, int k) {
+		CompressedBitmap withConcept = facts.factsWith(concept);
+
+		if (withConcept == null) {
+			return new ArrayList<>();
+		}
+
+		QueryScoring scoring = newScoring(query);
+		int id = scoring.idOf(concept);
+
+		scoring.candidates.set(j, Collections.singleton(concept));
+		Arrays.fill(scoring.cellScores[j], 0.0f);
+
+		if (id >= 0) {
+			scoring.cellScores[j][id] = 1.0f + SCORE_DELTA
+					+ (query.predicateArguments.get(j).isQueryTopic ? 1.0f : 0.0f);
+		}
+
+		List<PMatch> result = facts.topK(this, scoring, k, withConcept);
+
+		for (PMatch pm : result) {
+			if (pm.saidArgumentIndex < 0) {
+				List<RDConcept> args = pm.matchedPredicate.getArguments();
+
+				for (int i = 0; i < args.size() && pm.saidArgumentIndex < 0; i++) {
+					if (args.get(i) == concept) {
+						pm.saidArgumentIndex = i;
+					}
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * <p>
+	 * Answers a query with a numeric constraint, e.g. <i>Aveți laptopuri sub 2500 de lei?</i>
+	 * or <i>Aveți calculatoare cu cel puțin 8 GB memorie?</i>, found with
+	 * {@link Lexicon#findNumericRange(List)}. The values in the range are read from the
+	 * {@link AmountIndex} of their unit (or of the amount concept that the query names) with two
+	 * binary searches. The facts of these values are kept if the action verb of the query refers
+	 * to their predicate and the nouns of the query refer to one of their arguments.
+	 * </p>
+	 * 
+	 * @param query the parsed {@link Query} object from the user utterance;
+	 * @return the matching facts, in increasing order of their values, one for each answer (e.g.
+	 *         for each laptop), possibly none; {@code null} if the query has no numeric
+	 *         constraint on known values. {@link #resolveQuery(Query)} scores the facts as usual
+	 *         if there are no matching facts.
+	 */
+	public List<PMatch> resolveRangeQuery(Query query) {
+		checkIndexed();
+
+		for (Argument arg : query.predicateArguments) {
+			NumericRange range = lexicon.findNumericRange(arg.argTokens);
+
+			if (range == null) {
+				continue;
+			}
+
+			// The amount concept that the query names, e.g. 'memorie' in '8 GB memorie'
+			RDConcept amount = null;
+
+			for (Token t : arg.argTokens) {
+				RDConcept dfc = amountConceptOf(t.lemma);
+
+				if (dfc != null && lexicon.isPureNounPOS(t.pos)) {
+					amount = dfc;
+				}
+			}
+
+			AmountIndex index = null;
+
+			if (range.getUnit() != null) {
+				index = facts.indexes().unitIndexes.get(range.getUnit().toLowerCase());
+
+				if (index == null && amount == null) {
+					// The unit is a name of the concept, e.g. 'RON' for 'preț, leu, RON'
+					amount = amountConceptOf(range.getUnit());
+				}
+			}
+
+			if (index == null && amount != null) {
+				index = facts.indexes().amountIndexes.get(amount);
+			}
+
+			if (index == null) {
+				return null;
+			}
+
+			List<String> nouns = objectNouns(arg, range.getUnit());
+
+			if (nouns.isEmpty()) {
+				// The range may be a separate argument, e.g. 'Aveți laptopuri sub 2500 de lei?'
+				for (Argument other : query.predicateArguments) {
+					if (other != arg) {
+						nouns.addAll(objectNouns(other, null));
+					}
+				}
+			}
+
+			int from = index.firstAbove(range.getLow(), !range.isLowInclusive());
+			int to = index.firstAbove(range.getHigh(), range.isHighInclusive());
+			Set<RDConcept> answered = Collections.newSetFromMap(new IdentityHashMap<>());
+			List<PMatch> result = new ArrayList<>();
+
+			for (int e = from; e < to; e++) {
+				RDPredicate fact = facts.fact(index.facts[e]);
+
+				if ((amount != null && !RDFactIndexes.isAmountOf(
+						fact.getArguments().get(index.positions[e]), amount, wordNet))
+						|| !fact.isThisPredicate(query.actionVerb, wordNet)) {
+					continue;
+				}
+
+				PMatch pm = answerFromFact(fact, index.positions[e], nouns);
+
+				if (pm != null && answered.add(fact.getArguments().get(pm.saidArgumentIndex))) {
+					pm.answerValue = index.values[e];
+					result.add(pm);
+				}
+			}
+
+			return result;
+		}
+
+		return null;
+	}
+
+	/**
+	 * @return the AMOUNT concept definition that {@code word} refers to or {@code null}.
+	 */
+	private RDConcept amountConceptOf(String word) {
+		for (RDConcept dfc : definedConcepts) {
+			if (dfc.getType() == CType.AMOUNT && dfc.isThisConcept(word, wordNet)) {
+				return dfc;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * @return the lemmas of the nouns of {@code arg} which do not name an amount, e.g.
+	 *         <i>laptop</i> in <i>cel mai ieftin laptop</i>.
+	 */
+	private List<String> objectNouns(Argument arg, String unit) {
+		List<String> nouns = new ArrayList<>();
+
+		for (Token t : arg.argTokens) {
+			if (lexicon.isPureNounPOS(t.pos) && !t.lemma.equalsIgnoreCase(unit)
+					&& amountConceptOf(t.lemma) == null) {
+				nouns.add(t.lemma);
+			}
+		}
+
+		return nouns;
+	}
+
+	/**
+	 * <p>
+	 * Makes the answer of a superlative or range query from a fact with a selected value.
+	 * </p>
+	 * 
+	 * @param fact          the fact of the value;
+	 * @param valuePosition the argument position of the value in {@code fact};
+	 * @param nouns         what the query asks about, e.g. <i>laptop</i>;
+	 * @return the match with {@link PMatch#saidArgumentIndex} at the first other argument that
+	 *         one of the {@code nouns} refers to, or at the value if there are no nouns;
+	 *         {@code null} if the nouns do not refer to any argument of {@code fact}.
+	 */
+	private PMatch answerFromFact(RDPredicate fact, int valuePosition, List<String> nouns) {
+		int said = nouns.isEmpty() ? valuePosition : -1;
+
+		for (int i = 0; i < fact.getArguments().size() && said < 0; i++) {
+			for (String n : nouns) {
+				if (i != valuePosition && fact.getArguments().get(i).isThisConcept(n, wordNet)) {
+					said = i;
+					break;
+				}
+			}
+		}
+
+		if (said < 0) {
+			return null;
+		}
+
+		PMatch pm = new PMatch(fact);
+
+		pm.argMatchScores[valuePosition] = 1.0f;
+		pm.argMatchScores[said] = 1.0f;
+		pm.matchScore = said == valuePosition ? 1.0f : 2.0f;
+		pm.saidArgumentIndex = said;
+		pm.isValidMatch = true;
+
+		return pm;
+	}
 
 	/**
-	 * The word distance object used to compute Levenshtein distances.
+	 * <p>
+	 * Like {@link #resolveQuery(Query)} but returns the {@code k} best predicate matches, e.g. for
+	 * asking the user which one they meant. Matches with equal scores are in the order of the
+	 * predicates, so the first one is what {@link #resolveQuery(Query)} returns.
+	 * </p>
+	 * 
+	 * @param query the parsed {@link Query} object from the user utterance;
+	 * @param k     how many matches to return;
+	 * @return at most {@code k} matches with positive scores, best first.
 	 */
-	private Levenshtein wordDistance;
+	public List<PMatch> resolveQueryTopK(Query query, int k) {
+		if (k <= 0) {
+			return new ArrayList<>();
+		}
 
-	/**
-	 * The WordNet object that is used to find "similar" words.
-	 */
-	private WordNet wordNet;
+		checkIndexed();
 
-	/**
-	 * The TextProcessor to use to compute a special type of sentence length.
-	 */
-	private TextProcessor textProcessor;
+		List<PMatch> superlative = resolveSuperlative(query, k);
 
-	/**
-	 * Lexicon to test for functional words when matching descriptions.
-	 */
-	private Lexicon lexicon;
+		if (superlative != null) {
+			return superlative;
+		}
+
+		List<PMatch> inRange = resolveRangeQuery(query);
+
+		if (inRange != null && !inRange.isEmpty()) {
+			return new ArrayList<>(inRange.subList(0, Math.min(k, inRange.size())));
+		}
+
+		QueryScoring scoring = newScoring(query);
+		CompressedBitmap survivors = survivingFacts(scoring);
+		List<PMatch> best = facts.topK(this, scoring, k, survivors);
+
+		return best.isEmpty() && survivors != null ? facts.topK(this, scoring, k, null) : best;
+	}
 
-	/**
-	 * A static mapping attempting to correct ASR errors
-	 * of the type e.g. "pe păr -> Pepper".
-	 */
-	private Map<String, String> asrCorrectionRules;
-	
 	/**
 	 * <p>
-	 * Universe of discourse constructor.
+	 * Finds the facts that satisfy all the constraints of a faceted query, e.g. <i>Aveți laptop
+	 * cu procesor Intel și 8 GB memorie?</i>, by intersecting fact bitmaps. A query argument which
+	 * is not a variable constrains the facts to the ones that have one of its candidate concepts
+	 * with a positive cell score, and a PERSON, LOCATION, TIME or AMOUNT query variable constrains
+	 * them to the ones that have an argument of that type.
 	 * </p>
 	 * 
-	 * @param wn  a WordNet instance for your language;
-	 * @param lex a lexicon instance for your language.
+	 * @param scoring the query that is being resolved;
+	 * @return the IDs of the facts to be scored or {@code null} if all the facts are to be scored:
+	 *         the query has fewer than two constraints or no fact satisfies all of them.
 	 */
-	public RDUniverse(WordNet wn, Lexicon lex, TextProcessor proc) {
-		boundConcepts = new ArrayList<>();
-		definedConcepts = new ArrayList<>();
-		predicates = new ArrayList<>();
-		wordDistance = new Levenshtein();
-		wordNet = wn;
-		lexicon = lex;
-		textProcessor = proc;
-		asrCorrectionRules = new HashMap<>();
-	}
+	CompressedBitmap survivingFacts(QueryScoring scoring) {
+		if (!bitmapFiltering) {
+			return null;
+		}
 
-	public Map<String, String> getASRRulesMap() {
-		return asrCorrectionRules;
+		ScoringScratch scratch = scoringScratch.get();
+		RDFactIndexes indexes = facts.indexes();
+		List<Argument> queryArgs = scoring.query.predicateArguments;
+		CType type = conceptTypeOf(scoring.query.queryType);
+		CompressedBitmap result = null;
+		int constraints = 0;
+
+		for (int j = 0; j < queryArgs.size(); j++) {
+			if (queryArgs.get(j).isQueryVariable ? type != null
+					: scoring.candidates.get(j) != null) {
+				constraints++;
+			}
+		}
+
+		if (constraints < 2) {
+			// Do not build the fact bitmaps of a single constraint
+			return null;
+		}
+
+		for (int j = 0; j < queryArgs.size(); j++) {
+			CompressedBitmap argFacts = null;
+
+			if (queryArgs.get(j).isQueryVariable) {
+				if (type != null) {
+					argFacts = indexes.typeFacts.getOrDefault(type, new CompressedBitmap());
+				}
+			} else if (scoring.candidates.get(j) != null) {
+				argFacts = new CompressedBitmap();
+
+				for (RDConcept c : scoring.candidates.get(j)) {
+					CompressedBitmap cf = facts.factsWith(c);
+
+					if (cf != null && cellScore(scoring, c, j, scratch) > 0.0f) {
+						argFacts = argFacts.or(cf);
+					}
+				}
+			}
+
+			if (argFacts != null) {
+				result = result == null ? argFacts : result.and(argFacts);
+			}
+		}
+
+		if (result.isEmpty()) {
+			return null;
+		}
+
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug(String.format("%d of %d facts satisfy the %d query constraints",
+					result.cardinality(), facts.size(), constraints));
+		}
+
+		return result;
 	}
 
-	public void setASRRulesMap(Map<String, String> dictionary) {
-		asrCorrectionRules = dictionary;
+	/**
+	 * @return the concept type that a query variable of type {@code typ} must have, {@code null}
+	 *         if any type will do.
+	 */
+	private static CType conceptTypeOf(QType typ) {
+		switch (typ) {
+			case PERSON:
+				return CType.PERSON;
+			case LOCATION:
+				return CType.LOCATION;
+			case TIME:
+				return CType.TIME;
+			case AMOUNT:
+				return CType.AMOUNT;
+			default:
+				return null;
+		}
 	}
 
 	/**
 	 * <p>
-	 * Get the universe instantiated concepts to pass on to the text processor or to print.
+	 * Builds the character trigram index over the bound concepts. A concept is described by the
+	 * word forms and lemmas of its reference and by the names and synonyms of its IS-A chain,
+	 * WordNet synonyms, hypernyms and hyponyms included, such that the concepts that
+	 * {@link #isConceptInstance(Argument, RDConcept)} can match share trigrams with the query
+	 * argument or with its {@link #relatedWords(Argument)}. The head noun index of
+	 * {@link #findSimilarBoundConcepts(Argument)} is built again too.
 	 * </p>
-	 * 
-	 * @return the list of bound concepts that exist in this universe.
 	 */
-	public List<RDConcept> getBoundConcepts() {
-		return boundConcepts;
+	public void indexBoundConcepts() {
+		conceptIndex = trigramIndex(boundConcepts);
+		ngramIndex = similarityType == SimilarityType.NGRAM ? ngramIndex(boundConcepts) : null;
+		deltaConcepts = new ArrayList<>();
+		deltaConceptIndex = null;
+		deltaNgramIndex = null;
+		staleConcepts = 0;
+		headNouns = HeadNouns.of(boundConcepts);
 	}
 
-	public List<RDConcept> getDefinedConcepts() {
-		return definedConcepts;
+	private TrigramIndex<RDConcept> trigramIndex(List<RDConcept> concepts) {
+		TrigramIndex<RDConcept> index = new TrigramIndex<>();
+
+		for (RDConcept c : concepts) {
+			Set<String> words = new LinkedHashSet<>();
+
+			for (Token t : c.getMatchFeatures().getContentTokens()) {
+				words.add(t.wform);
+				words.add(t.lemma);
+			}
+
+			for (RDConcept a = c; a != null; a =
+					(a.getType() == CType.ISA ? a.getSuperClass() : null)) {
+				if (a.getCanonicalName() != null) {
+					WordNetEntry entry = wordNet.lookup(a.getCanonicalName());
+
+					words.add(a.getCanonicalName());
+					words.addAll(entry.getSynonyms());
+					words.addAll(entry.getHypernyms());
+					words.addAll(entry.getHyponyms());
+				}
+
+				words.addAll(a.getSynonyms());
+			}
+
+			index.add(c, words);
+		}
+
+		return index;
+	}
+
+	private HashedNgramIndex<RDConcept> ngramIndex(List<RDConcept> concepts) {
+		HashedNgramIndex<RDConcept> vectors = new HashedNgramIndex<>();
+
+		for (RDConcept c : concepts) {
+			vectors.add(c, argumentWords(c.assignedReferenceTokens));
+		}
+
+		return vectors;
 	}
 
 	/**
-	 * <p>
-	 * Get the universe instantiated predicates to print.
-	 * </p>
-	 * 
-	 * @return the list of bound predicates that exist in this universe.
+	 * @return the word forms and lemmas of the content words in {@code tokens}.
 	 */
-	public List<RDPredicate> getBoundPredicates() {
-		return predicates;
+	private List<String> argumentWords(List<Token> tokens) {
+		List<String> words = new ArrayList<>();
+
+		for (Token t : textProcessor.noFunctionalWordsFilter(tokens)) {
+			words.add(t.wform);
+			words.add(t.lemma);
+		}
+
+		return words;
 	}
 
 	/**
 	 * <p>
-	 * Adds a bound concept to this universe of discourse.
-	 * Note that the textual description {@link RDConcept#getReference()} must not be null or empty!
+	 * Turns on or off the scoring of the concepts that the trigram index filters out, such that
+	 * the recall of the candidate lists can be measured.
 	 * </p>
 	 * 
-	 * @param conc the bound (instantiated) concept to be added to this universe
+	 * @param audit {@code true} to measure recall.
 	 */
-	public void addBoundConcept(RDConcept conc) {
-		boundConcepts.add(conc);
+	public void setCandidateAudit(boolean audit) {
+		candidateAudit = audit;
 	}
 
-	public void addConcept(RDConcept conc) {
-		definedConcepts.add(conc);
+	/**
+	 * @return average candidate list size and, in audit mode, the recall of the candidate lists.
+	 */
+	public String getCandidateStats() {
+		StringBuilder sb = new StringBuilder();
+
+		long lists = candidateLists.sum();
+
+		sb.append(String.format("candidate lists: %d, average size: %.2f of %d bound concepts",
+				lists, lists > 0 ? (double) candidateListsSize.sum() / lists : 0.0,
+				boundConcepts.size()));
+
+		long hits = auditHits.sum();
+		long audited = hits + auditMisses.sum();
+
+		if (audited > 0) {
+			sb.append(String.format(", recall: %.4f (%d/%d)", (double) hits / audited, hits,
+					audited));
+		}
+
+		return sb.toString();
 	}
 
 	/**
 	 * <p>
-	 * Adds a ``true'' predicate to this universe of discourse.
+	 * Retrieves the bound concepts that are worth scoring against each argument of the query.
 	 * </p>
 	 * 
-	 * @param pred the predicate to add to this universe
+	 * @param query      the query to get the candidates for;
+	 * @param argVectors filled in with the n-gram vector of each query argument, or {@code null}
+	 *                   if the n-gram similarity is not used;
+	 * @return the set of candidate concepts for each query argument, by argument index, or
+	 *         {@code null} for the arguments which should be scored against all concepts.
 	 */
-	public void addBoundPredicate(RDPredicate pred) {
-		predicates.add(pred);
-	}
+	private List<Set<RDConcept>> findCandidateConcepts(Query query, List<float[]> argVectors) {
+		List<Set<RDConcept>> result = new ArrayList<>();
 
-	public void addBoundPredicates(List<RDPredicate> preds) {
-		predicates.clear();
-		predicates.addAll(preds);
+		for (Argument qArg : query.predicateArguments) {
+			argVectors.add(null);
+
+			if (conceptIndex == null || qArg.isQueryVariable) {
+				// Variables are not concept instances, nothing to filter.
+				result.add(null);
+				continue;
+			}
+
+			List<String> words = argumentWords(qArg.argTokens);
+			Set<RDConcept> cands = new HashSet<>();
+			// The words that the argument matches through WordNet, which the reference words
+			// need not resemble
+			List<String> related = relatedWords(qArg);
+
+			if (ngramIndex != null) {
+				float[] vec = ngramIndex.embed(words);
+
+				argVectors.set(argVectors.size() - 1, vec);
+
+				for (HashedNgramIndex.Hit<RDConcept> h : ngramIndex.topK(vec,
+						CANDIDATE_LIST_SIZE)) {
+					cands.add(h.item);
+				}
+
+				if (deltaNgramIndex != null) {
+					for (HashedNgramIndex.Hit<RDConcept> h : deltaNgramIndex.topK(vec,
+							CANDIDATE_LIST_SIZE)) {
+						cands.add(h.item);
+					}
+				}
+			} else {
+				related.addAll(words);
+			}
+
+			if (!related.isEmpty()) {
+				cands.addAll(conceptIndex.candidates(related, CANDIDATE_LIST_SIZE));
+
+				if (deltaConceptIndex != null) {
+					cands.addAll(deltaConceptIndex.candidates(related, CANDIDATE_LIST_SIZE));
+				}
+			}
+
+			if (cands.isEmpty()) {
+				// No trigram hit at all, e.g. the argument is out of the vocabulary of the
+				// micro-world: do not filter, let the scoring decide.
+				result.add(null);
+				continue;
+			}
+
+			candidateLists.increment();
+			candidateListsSize.add(cands.size());
+			result.add(cands);
+		}
+
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Trigram index " + getCandidateStats());
+		}
+
+		return result;
 	}
 
 	/**
 	 * <p>
-	 * Checks each predicate from this universe of discourse and assigns a match score.
+	 * Collects the words that {@link #isConceptInstance(Argument, RDConcept)} compares to the IS-A
+	 * chains of the bound concepts through WordNet, expanded with their
+	 * {@link WordNet#getRelatedWords(String)}: the lemmas of the tokens that depend on the action
+	 * verb and the canonical names of the concepts with the same head nouns as the argument.
 	 * </p>
 	 * 
-	 * @param query the parsed {@link Query} object from the user utterance;
-	 * @return the predicate match object which best matches the query; {@code null} if no predicate
-	 *         matched. It's safe to say that the information is not in the Knowledge Base in this
-	 *         case.
+	 * @param qArg the query argument;
+	 * @return the words the IS-A chains of the matching concepts are indexed by.
 	 */
-	public PMatch resolveQuery(Query query) {
-		PMatch result = null;
-		float maxScore = 0.0f;
+	private List<String> relatedWords(Argument qArg) {
+		Set<String> related = new LinkedHashSet<>();
 
-		for (RDPredicate pred : predicates) {
-			PMatch pm = scoreQueryAgainstPredicate(query, pred);
+		for (Token t : qArg.argTokens) {
+			if (t.isActionVerbDependent) {
+				String lemma = t.lemma.trim().toLowerCase();
 
-			if (pm != null && pm.matchScore > maxScore) {
-				result = pm;
-				maxScore = pm.matchScore;
+				related.add(lemma);
+				related.addAll(wordNet.getRelatedWords(lemma));
 			}
 		}
 
-		return result;
+		for (RDConcept c : findSimilarBoundConcepts(qArg)) {
+			if (c.getCanonicalName() != null) {
+				related.add(c.getCanonicalName());
+				related.addAll(wordNet.getRelatedWords(c.getCanonicalName()));
+			}
+		}
+
+		return new ArrayList<>(related);
 	}
 
 	/**
@@ -336,150 +1957,164 @@ public class RDUniverse {
 
 	/**
 	 * Finds the bound concepts which resemble the given {@code arg}ument.
+	 * We only compare the noun heads of the reference vs. the argument.
 	 * 
 	 * @param arg the query argument;
-	 * @return {@link RDConcept}s that are similar to the given argument.
+	 * @return {@link RDConcept}s that are similar to the given argument, top-level (non-ISA) ones.
 	 */
 	public List<RDConcept> findSimilarBoundConcepts(Argument arg) {
-		List<RDConcept> result = new ArrayList<>();
+		HeadNouns index = headNouns;
 
-		// Let's see if we can be a bit more specific than CType.WORD.
-		// We only compare the noun heads of the reference vs. the argument.
-		for (RDConcept c : boundConcepts) {
-			String ccn = c.getCanonicalName();
-			boolean cfnd = false;
-
-			for (Token t1 : c.getTokenizedReference()) {
-				if (t1.drel.equals("root") && lexicon.isNounPOS(t1.pos)) {
-					for (Token t2 : arg.argTokens) {
-						if (t2.isActionVerbDependent && lexicon.isNounPOS(t2.pos)
-								&& (t1.wform.equalsIgnoreCase(t2.wform)
-										|| t1.lemma.equalsIgnoreCase(t2.lemma)
-										|| (ccn != null && ccn.equalsIgnoreCase(t2.wform))
-										|| (ccn != null && ccn.equalsIgnoreCase(t2.lemma)))) {
-							// If c has ISA type, get the superclass.
-							while (c.getType() == CType.ISA && c.getSuperClass() != null) {
-								c = c.getSuperClass();
-							}
-
-							result.add(c);
-							cfnd = true;
-							break;
-						}
-					} // end arg tokens
+		if (index == null) {
+			throw new IllegalStateException(
+					"The bound concepts are not indexed, call indexBoundConcepts() first!");
+		}
+
+		BitSet found = new BitSet(index.topLevelConcepts.length);
+
+		for (Token t : arg.argTokens) {
+			if (t.isActionVerbDependent && lexicon.isNounPOS(t.pos)) {
+				for (int id : index.wformIndex.getOrDefault(t.wform.toLowerCase(),
+						Collections.emptyList())) {
+					found.set(id);
 				}
 
-				if (cfnd) {
-					break;
+				for (int id : index.lemmaIndex.getOrDefault(t.lemma.toLowerCase(),
+						Collections.emptyList())) {
+					found.set(id);
 				}
-			} // end c tokens
+			}
+		}
+
+		List<RDConcept> result = new ArrayList<>();
+
+		for (int id = found.nextSetBit(0); id >= 0; id = found.nextSetBit(id + 1)) {
+			result.add(index.topLevelConcepts[id]);
 		}
 
 		return result;
 	}
 
 	/**
-	 * This method will return a {@link PMatch} object that describes a match
-	 * between the {@code query} and a given {@code pred}icate.
-	 * @param query the analyzed query that came from the NLP module.
-	 * @param pred the predicated that came from the .mw file.
-	 * @return a {@link PMatch} object containing match information.
+	 * <p>
+	 * Memoized {@link #isOfSameQueryType(RDConcept, Argument, QType)} for the query of
+	 * {@code scoring}.
+	 * </p>
 	 */
-	private PMatch scoreQueryAgainstPredicate(Query query, RDPredicate predicate) {
-		boolean exactPredicateNameMatch;
-
-		// 1. Match the action verb of the query with the one of the predicate
-		if (predicate.isTheActionVerb(query.actionVerb)) {
-			exactPredicateNameMatch = true;
-		}
-		else if (predicate.isThisPredicate(query.actionVerb, wordNet)) {
-			exactPredicateNameMatch = false;
-		}
-		else {
-			return null;
-		}
-
-		// 2. Match the syntactic arguments with logical (bound) arguments
-		// Predicate bound arguments
-		List<RDConcept> predicateArgs = predicate.getArguments();
-		// User query tokens making up syntactic arguments of the verb
-		List<Argument> queryArgs = query.predicateArguments;
-		// Find the maximal sum assignment of query arguments to predicate arguments
-		float[][] matchScores = new float[predicateArgs.size()][queryArgs.size()];
-		// Add this value so that we can pass the matching threshold at return.
-		float scoreDelta = 0.1f;
+	boolean isOfSameQueryType(QueryScoring scoring, RDConcept pArg, int j) {
+		return isOfSameQueryType(scoring, pArg, scoring.idOf(pArg), j);
+	}
 
-		for (int i = 0; i < predicateArgs.size(); i++) {
-			RDConcept pArg = predicateArgs.get(i);
+	/**
+	 * @param id the ID of {@code pArg} in {@code scoring}, {@code -1} if it has none.
+	 */
+	boolean isOfSameQueryType(QueryScoring scoring, RDConcept pArg, int id, int j) {
+		byte same = id >= 0 ? scoring.sameQueryType[j][id] : QueryScoring.UNKNOWN;
 
-			for (int j = 0; j < queryArgs.size(); j++) {
-				Argument qArg = queryArgs.get(j);
+		if (same == QueryScoring.UNKNOWN) {
+			same = isOfSameQueryType(pArg, scoring.query.predicateArguments.get(j),
+					scoring.query.queryType) ? QueryScoring.TRUE : QueryScoring.FALSE;
 
-				matchScores[i][j] = 0.0f;
+			if (id >= 0) {
+				scoring.sameQueryType[j][id] = same;
+			}
+		}
 
-				if (isOfSameQueryType(pArg, qArg, query.queryType)) {
-					// A query type that matches argument
-					// is counted as a argument match.
-					matchScores[i][j] = 1.0f;
+		return same == QueryScoring.TRUE;
+	}
 
-					if (pArg.hasJavaClassReference()) {
-						// Also a "full" match because this a Java class reference.
-						matchScores[i][j] += scoreDelta;
-					}
-				} else if (isConceptInstance(qArg, pArg)) {
-					// Else, the argument is fuzzy scored against user's description.
-					matchScores[i][j] = descriptionSimilarity(pArg, qArg) + scoreDelta;
+	/**
+	 * <p>
+	 * Scores the bound concept {@code pArg} against the query argument with index {@code j}. The
+	 * score does not depend on the predicate {@code pArg} is an argument of, so it is memoized.
+	 * </p>
+	 * 
+	 * @param scoring the query that is being resolved;
+	 * @param pArg    the bound concept;
+	 * @param j       the index of the query argument;
+	 * @param scratch the working memory of the current thread;
+	 * @return the score of the cell, {@code 0} if the two do not match.
+	 */
+	float cellScore(QueryScoring scoring, RDConcept pArg, int j, ScoringScratch scratch) {
+		return cellScore(scoring, pArg, scoring.idOf(pArg), j, scratch);
+	}
 
-					if (qArg.isQueryTopic) {
-						// If it's the query topic, the query type is YESNO.
-						matchScores[i][j] += 1.0;
-					}
-				}
-			}
+	/**
+	 * @param id the ID of {@code pArg} in {@code scoring}, {@code -1} if it has none.
+	 */
+	float cellScore(QueryScoring scoring, RDConcept pArg, int id, int j,
+			ScoringScratch scratch) {
+		if (id >= 0 && !Float.isNaN(scoring.cellScores[j][id])) {
+			return scoring.cellScores[j][id];
 		}
 
-		PMatch result = new PMatch(predicate);
+		Argument qArg = scoring.query.predicateArguments.get(j);
+		Set<RDConcept> cands = scoring.candidates.get(j);
+		float score = 0.0f;
 
-		// Predicate has matched with its name.
-		result.matchScore = 0.0f;
+		if (isOfSameQueryType(scoring, pArg, id, j)) {
+			// A query type that matches argument
+			// is counted as a argument match.
+			score = 1.0f;
 
-		for (int i = 0; i < predicateArgs.size(); i++) {
-			RDConcept pArg = predicateArgs.get(i);
-			float maxScore = 0.0f;
-
-			for (int j = 0; j < queryArgs.size(); j++) {
-				Argument qArg = queryArgs.get(j);
+			if (pArg.hasJavaClassReference()) {
+				// Also a "full" match because this a Java class reference.
+				score += SCORE_DELTA;
+			}
+		} else if (cands != null && !cands.contains(pArg)) {
+			// Not worth scoring, unless we measure how much we lose by not doing it.
+			if (candidateAudit && isConceptInstance(qArg, pArg)
+					&& referenceSimilarity(pArg, scoring, j, scratch) > 0.0f) {
+				auditMisses.increment();
+			}
+		} else if (isConceptInstance(qArg, pArg)) {
+			// Else, the argument is fuzzy scored against user's description.
+			score = referenceSimilarity(pArg, scoring, j, scratch) + SCORE_DELTA;
 
-				if (matchScores[i][j] > maxScore) {
-					maxScore = matchScores[i][j];
-				}
+			if (qArg.isQueryTopic) {
+				// If it's the query topic, the query type is YESNO.
+				score += 1.0;
+			}
 
-				if (isOfSameQueryType(pArg, qArg, query.queryType)
-						&& result.saidArgumentIndex == -1) {
-					// Only set this once.							
-					result.saidArgumentIndex = i;
-				}
+			if (candidateAudit && cands != null && score > SCORE_DELTA) {
+				auditHits.increment();
 			}
+		}
 
-			result.matchScore += maxScore;
-			result.argMatchScores[i] = maxScore;
+		if (id >= 0) {
+			scoring.cellScores[j][id] = score;
 		}
 
-		// 1.0 for the query variable.
-		// 0.5 for the predicate name or 0.25 for WordNet approximate equals.
-		// Anything extra is reference matching or Java references, the more, the better.
-		if (exactPredicateNameMatch) {
-			result.matchScore += 0.5f;
+		return score;
+	}
+
+	/**
+	 * This method will return a {@link PMatch} object that describes a match
+	 * between the {@code query} and the predicate that was just scored, from what the scoring of
+	 * the {@link RDFacts} left in {@code scratch}.
+	 * @param scoring the analyzed query;
+	 * @param scratch the working memory of the current thread;
+	 * @param score the score of the predicate.
+	 * @return a {@link PMatch} object containing match information.
+	 */
+	PMatch toPMatch(QueryScoring scoring, ScoringScratch scratch, float score) {
+		PMatch result = new PMatch(scratch.matchedFact);
+
+		System.arraycopy(scratch.argScores, 0, result.argMatchScores, 0,
+				result.argMatchScores.length);
+		result.matchScore = score;
+		result.saidArgumentIndex = scratch.saidArgumentIndex;
+
+		if (scratch.exactPredicateNameMatch) {
 			result.isValidMatch = (result.matchScore > 1.5f);
 		}
 		else {
-			result.matchScore += 0.25f;
 			result.isValidMatch = (result.matchScore > 1.25f);
 		}
 		
 		if (result.isValidMatch && result.saidArgumentIndex == -1
 				&& result.matchedPredicate.getArguments().size() == 1
-				&& query.queryType == QType.WHAT) {
+				&& scoring.query.queryType == QType.WHAT) {
 			// Some underspecified variables such as "cât" cannot match query type.
 			result.saidArgumentIndex = 0;
 		}
@@ -487,6 +2122,54 @@ public class RDUniverse {
 		return result;
 	}
 
+	/**
+	 * <p>
+	 * Scores the user's description of a concept against the reference of a bound concept, with
+	 * the {@link SimilarityType} of this universe.
+	 * </p>
+	 * 
+	 * @param con     the bound concept to get the reference from;
+	 * @param scoring the query that is being resolved;
+	 * @param j       the index of the query argument;
+	 * @param scratch the working memory of the current thread;
+	 * @return a real number that is 1.0f if the two entities are exactly equal and less than 1 for
+	 *         a percent of similarity.
+	 */
+	private float referenceSimilarity(RDConcept con, QueryScoring scoring, int j,
+			ScoringScratch scratch) {
+		float[] argVector = scoring.argVectors.get(j);
+
+		if (similarityType != SimilarityType.NGRAM || ngramIndex == null || argVector == null) {
+			return descriptionSimilarity(con, scoring, j, scratch);
+		}
+
+		if (isActionVerbConcept(con, scoring.query.predicateArguments.get(j))) {
+			return 1.0f;
+		}
+
+		float similarity = ngramIndex.similarity(con, argVector);
+
+		if (deltaNgramIndex != null) {
+			// A concept is in one of the two indexes and gets 0 from the other one.
+			similarity = Math.max(similarity, deltaNgramIndex.similarity(con, argVector));
+		}
+
+		return Math.max(0.0f, similarity);
+	}
+
+	/**
+	 * <p>
+	 * Scores the reference of {@code con} against argument {@code j} of {@code query}, as
+	 * {@link #resolveQuery(Query)} does, e.g. to compare the {@link SimilarityType}s.
+	 * </p>
+	 * 
+	 * @return the similarity of {@link #referenceSimilarity(RDConcept, QueryScoring, int,
+	 *         ScoringScratch)}.
+	 */
+	float referenceSimilarity(Query query, int j, RDConcept con) {
+		return referenceSimilarity(con, newScoring(query), j, scoringScratch.get());
+	}
+
 	/**
 	 * <p>
 	 * Detects if two lists of words are ``similar''. Word matching is done in a lower-case manner,
@@ -497,71 +2180,76 @@ public class RDUniverse {
 	 * we output {@code sum((|i - j| + 1) * (L + 1)) / (length(description) + length(reference))}.
 	 * </p>
 	 * 
-	 * @param con the bound concept to get the reference from;
-	 * @param arg the query argument reference;
+	 * @param con     the bound concept to get the reference from;
+	 * @param scoring the query that is being resolved;
+	 * @param j       the index of the query argument;
+	 * @param scratch the working memory of the current thread;
 	 * @return a real number that is 1.0f if the two entities are exactly equal and less than 1 for
 	 *         a percent of similarity.
 	 */
-	private float descriptionSimilarity(RDConcept con, Argument arg) {
-		if (arg.argTokens.size() == 1) {
-			for (Token t : arg.argTokens) {
-				if (t.isActionVerbDependent && con.isThisConcept(t.lemma, wordNet)) {
-					return 1.0f;
-				}
-			}
+	private float descriptionSimilarity(RDConcept con, QueryScoring scoring, int j,
+			ScoringScratch scratch) {
+		if (isActionVerbConcept(con, scoring.query.predicateArguments.get(j))) {
+			return 1.0f;
 		}
 
-		List<Token> description =
-				textProcessor.noFunctionalWordsFilter(con.assignedReferenceTokens);
-		int dLen = description.size();
-		List<Token> reference = textProcessor.noFunctionalWordsFilter(arg.argTokens);
-		int rLen = reference.size();
-		int[][] ldMatrix = new int[description.size()][reference.size()];
+		RDConcept.MatchFeatures features = con.getMatchFeatures();
+		List<String> descLemmas = features.getLemmas();
+		List<String> descFoldedLemmas = features.getFoldedLemmas();
+		List<String> descWordForms = features.getFoldedWordForms();
+		int dLen = features.size();
+		// Query side was folded once, the concept side was folded by RDConcept.setReference().
+		String[] refWordForms = scoring.argWordForms[j];
+		String[] refLemmas = scoring.argLemmas[j];
+		String[] refFoldedLemmas = scoring.argFoldedLemmas[j];
+		int rLen = refWordForms.length;
+		// ldMatrix[i][r] is ldMatrix[i * rLen + r]
+		int[] ldMatrix = scratch.distances(dLen * rLen);
 		final int maxLD = 5;
 
-		for (int i = 0; i < description.size(); i++) {
-			String li = description.get(i).lemma;
-			String wi = description.get(i).wform;
-
-			for (int j = 0; j < reference.size(); j++) {
-				String wj = reference.get(j).wform;
-				String lj = reference.get(j).lemma;
+		for (int i = 0; i < dLen; i++) {
+			String li = descLemmas.get(i);
+			String fli = descFoldedLemmas.get(i);
+			String wi = descWordForms.get(i);
 
-				ldMatrix[i][j] = maxLD + 1;
+			for (int r = 0; r < rLen; r++) {
+				ldMatrix[i * rLen + r] = maxLD + 1;
 
-				if (li.equalsIgnoreCase(lj) || wordNet.wordnetEquals(li, lj)) {
-					ldMatrix[i][j] = 0;
+				if (fli.equals(refFoldedLemmas[r]) || wordNet.wordnetEquals(li, refLemmas[r])) {
+					ldMatrix[i * rLen + r] = 0;
 				} else {
 					// This one returns maxLD + 1 if there's no similarity between inputs.
-					int d = wordDistance.distance(wi.toLowerCase(), wj.toLowerCase(), maxLD);
+					int d = scratch.wordDistance.distance(wi, refWordForms[r], maxLD);
 
-					if (d < ldMatrix[i][j]) {
-						ldMatrix[i][j] = d;
+					if (d < ldMatrix[i * rLen + r]) {
+						ldMatrix[i * rLen + r] = d;
 					}
 				}
-			} // end j
+			} // end r
 		} // end i
 
 		int sum = 0;
-		Set<Integer> alreadyPaired = new HashSet<>();
+		BitSet alreadyPaired = scratch.paired;
 		int maxValue = 0;
 
-		if (description.size() > reference.size()) {
-			maxValue = description.size() * (maxLD + 1);
+		alreadyPaired.clear();
+
+		if (dLen > rLen) {
+			maxValue = dLen * (maxLD + 1);
 		}
 		else {
-			maxValue = reference.size() * (maxLD + 1);
+			maxValue = rLen * (maxLD + 1);
 		}
 
-		for (int i = 0; i < description.size(); i++) {
+		for (int i = 0; i < dLen; i++) {
 			int minLD = maxLD + 1;
-			int minJ = -1;
+			int minR = -1;
 
-			for (int j = 0; j < reference.size(); j++) {
-				if (!alreadyPaired.contains(j)) {
-					if (minLD > ldMatrix[i][j]) {
-						minLD = ldMatrix[i][j];
-						minJ = j;
+			for (int r = 0; r < rLen; r++) {
+				if (!alreadyPaired.get(r)) {
+					if (minLD > ldMatrix[i * rLen + r]) {
+						minLD = ldMatrix[i * rLen + r];
+						minR = r;
 					}
 
 					if (minLD == 0) {
@@ -570,9 +2258,9 @@ public class RDUniverse {
 				}
 			}
 
-			if (minJ >= 0) {
-				alreadyPaired.add(minJ);
-				sum += (Math.abs(i - minJ) + 1) * (minLD + 1);
+			if (minR >= 0) {
+				alreadyPaired.set(minR);
+				sum += (Math.abs(i - minR) + 1) * (minLD + 1);
 			}
 			else {
 				// Mare sure dScore and rScore are >= 1
@@ -589,4 +2277,18 @@ public class RDUniverse {
 			return 0.0f;
 		}
 	}
+
+	/**
+	 * @return {@code true} if the argument is a single word, dependent of the action verb, which
+	 *         names the concept.
+	 */
+	private boolean isActionVerbConcept(RDConcept con, Argument arg) {
+		if (arg.argTokens.size() == 1) {
+			Token t = arg.argTokens.get(0);
+
+			return t.isActionVerbDependent && con.isThisConcept(t.lemma, wordNet);
+		}
+
+		return false;
+	}
 }
@@ -0,0 +1,20 @@
+/**
+ * 
+ */
+package ro.racai.robin.dialog;
+
+/**
+ * @author Radu Ion ({@code radu@racai.ro})
+ *         <p>
+ *         How the user's description of a concept is scored against the references of the bound
+ *         concepts. Set it in the {@code .mw} file with the {@code SIMILARITY} keyword.
+ *         </p>
+ */
+public enum SimilarityType {
+	// Word by word alignment, with WordNet and Levenshtein distances.
+	// Best for small micro-worlds, this is the default.
+	DESCRIPTION,
+	// Cosine similarity of hashed character n-gram vectors.
+	// Scales to catalogs with thousands of references.
+	NGRAM
+}
@@ -12,6 +12,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -20,10 +21,13 @@ import java.util.regex.Pattern;
 import org.apache.log4j.Logger;
 
 import ro.racai.robin.dialog.CType;
+import ro.racai.robin.dialog.RDAttribute;
 import ro.racai.robin.dialog.RDConcept;
 import ro.racai.robin.dialog.RDConstant;
+import ro.racai.robin.dialog.RDFactFilter;
 import ro.racai.robin.dialog.RDPredicate;
 import ro.racai.robin.dialog.RDUniverse;
+import ro.racai.robin.dialog.SimilarityType;
 import ro.racai.robin.dialog.UIntentType;
 import ro.racai.robin.nlp.Lexicon;
 import ro.racai.robin.nlp.TextProcessor;
@@ -46,6 +50,9 @@ public class MWFileReader implements RDMicroworld {
 	// CONCEPT sală, laborator, cameră -> LOCATION
 	private static final Pattern CONCEPT_PATT =
 			Pattern.compile("^CONCEPT\\s+(.+)\\s*->\\s*([A-Za-zșțăîâȘȚĂÎÂ_-]+)$");
+	// ATTRIBUTE ieftin, convenabil -> MIN preț
+	private static final Pattern ATTRIBUTE_PATT =
+			Pattern.compile("^ATTRIBUTE\\s+(.+?)\\s*->\\s*(?:(MIN|MAX)\\s+)?(.+)$");
 	// REFERENCE curs laboratorul de informatică = C1
 	private static final Pattern REFERENCE_PATT =
 			Pattern.compile("^REFERENCE\\s+([^ \\t]+)\\s+([^=]+?)\\s*=\\s*([a-zA-Z0-9]+)$");
@@ -56,6 +63,8 @@ public class MWFileReader implements RDMicroworld {
 	// PREDICATE ține, desfășura -> EXPLAIN_SOMETHING
 	private static final Pattern PREDICATE_PATT =
 			Pattern.compile("^PREDICATE\\s+(.+)\\s*->\\s*([A-Z_]+)$");
+	// SIMILARITY NGRAM
+	private static final Pattern SIMILARITY_PATT = Pattern.compile("^SIMILARITY\\s+([A-Z_]+)$");
 
 	/**
 	 * <p>
@@ -75,14 +84,42 @@ public class MWFileReader implements RDMicroworld {
 	 */
 	@Override
 	public RDUniverse constructUniverse(WordNet wn, Lexicon lex, TextProcessor proc) {
+		return read(wn, lex, proc, null);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see ro.racai.robin.mw.RDMicroworld#constructUniverse(RDFactFilter)
+	 */
+	@Override
+	public RDUniverse constructUniverse(WordNet wn, Lexicon lex, TextProcessor proc,
+			RDFactFilter keep) {
+		return read(wn, lex, proc, keep);
+	}
+
+	/**
+	 * <p>
+	 * Reads the {@code .mw} file. The TRUE facts are only built at the end, when the IDs of the
+	 * bound concepts are known, and only if {@code keep} selects them.
+	 * </p>
+	 * 
+	 * @param keep selects the TRUE facts of a partition or, if {@code null}, the universe gets
+	 *             all of them.
+	 */
+	private RDUniverse read(WordNet wn, Lexicon lex, TextProcessor proc, RDFactFilter keep) {
 		try (BufferedReader rdr = new BufferedReader(
 				new InputStreamReader(new FileInputStream(mwFilePath), StandardCharsets.UTF_8))) {
 			String line = rdr.readLine();
 			Map<String, String> asrDictionary = new HashMap<>();
 			List<RDConcept> definedConcepts = new ArrayList<>();
+			List<RDAttribute> definedAttributes = new ArrayList<>();
 			List<RDPredicate> definedPredicates = new ArrayList<>();
 			Map<String, RDConcept> referencedConcepts = new HashMap<>();
-			List<RDPredicate> truePredicates = new ArrayList<>();
+			// The predicate definition and the arguments of each TRUE line
+			List<RDPredicate> trueDefinitions = new ArrayList<>();
+			List<RDConcept[]> trueArguments = new ArrayList<>();
+			SimilarityType similarityType = SimilarityType.DESCRIPTION;
 			int lineCount = 1;
 
 			while (line != null) {
@@ -115,6 +152,24 @@ public class MWFileReader implements RDMicroworld {
 						}
 					}
 				}
+				else if (line.startsWith("SIMILARITY ") || line.startsWith("SIMILARITY\t")) {
+					Matcher sm = SIMILARITY_PATT.matcher(line);
+
+					if (sm.find()) {
+						try {
+							similarityType = SimilarityType.valueOf(sm.group(1));
+						} catch (IllegalArgumentException iae) {
+							LOGGER.error("'" + sm.group(1) + "' "
+									+ "is not a recognized ro.racai.robin.dialog.SimilarityType "
+									+ "member at line " + lineCount + "!");
+							iae.printStackTrace();
+							return null;
+						}
+					} else {
+						LOGGER.warn(
+								"SIMILARITY line is not well-formed at line " + lineCount + "...");
+					}
+				} // end SIMILARITY keyword
 				else if (line.startsWith("CONCEPT ") || line.startsWith("CONCEPT\t")) {
 					Matcher cm = CONCEPT_PATT.matcher(line);
 
@@ -161,6 +216,45 @@ public class MWFileReader implements RDMicroworld {
 						LOGGER.warn("CONCEPT line is not well-formed at line " + lineCount + "...");
 					}
 				} // end CONCEPT keyword
+				else if (line.startsWith("ATTRIBUTE ") || line.startsWith("ATTRIBUTE\t")) {
+					Matcher am = ATTRIBUTE_PATT.matcher(line);
+
+					if (am.find()) {
+						String asyn = am.group(1);
+						String order = am.group(2);
+						String cname = am.group(3).trim();
+						RDConcept amount = null;
+
+						for (RDConcept c : definedConcepts) {
+							if (c.getCanonicalName().equalsIgnoreCase(cname)) {
+								amount = c;
+								break;
+							}
+						}
+
+						if (amount == null || amount.getType() != CType.AMOUNT) {
+							LOGGER.error("'" + cname + "' is not an AMOUNT concept defined above, "
+									+ "at line " + lineCount + "!");
+							return null;
+						}
+
+						if (order == null) {
+							LOGGER.warn("ATTRIBUTE line has no MIN or MAX order at line "
+									+ lineCount + ", assuming MIN...");
+							order = RDAttribute.Order.MIN.name();
+						}
+
+						List<String> synParts =
+								new ArrayList<>(Arrays.asList(asyn.split(COMMA_RX_STR)));
+						String canonName = synParts.remove(0);
+
+						definedAttributes.add(RDAttribute.attributeBuilder(canonName, synParts,
+								amount, RDAttribute.Order.valueOf(order)));
+					} else {
+						LOGGER.warn(
+								"ATTRIBUTE line is not well-formed at line " + lineCount + "...");
+					}
+				} // end ATTRIBUTE keyword
 				else if (line.startsWith("REFERENCE ") || line.startsWith("REFERENCE\t")) {
 					if (definedConcepts.isEmpty()) {
 						LOGGER.error("Found references for missing concepts. "
@@ -267,14 +361,14 @@ public class MWFileReader implements RDMicroworld {
 
 					for (RDPredicate p : definedPredicates) {
 						if (p.getActionVerb().equalsIgnoreCase(actionVerb)) {
-							RDPredicate np = p.deepCopy();
+							RDConcept[] args = new RDConcept[trueParts.length - 2];
 
-							// Add arguments to the predicate
+							// Collect the arguments of the predicate
 							for (int i = 2; i < trueParts.length; i++) {
 								String refCode = trueParts[i];
 
 								if (referencedConcepts.containsKey(refCode)) {
-									np.addArgument(referencedConcepts.get(refCode));
+									args[i - 2] = referencedConcepts.get(refCode);
 								} else {
 									LOGGER.error("Reference code '" + refCode
 											+ "' was not declared before at " + lineCount + "!");
@@ -283,7 +377,8 @@ public class MWFileReader implements RDMicroworld {
 							} // end all arguments
 
 							predicateFound = true;
-							truePredicates.add(np);
+							trueDefinitions.add(p);
+							trueArguments.add(args);
 							break;
 						} // end predicate found
 					} // end all defined predicates
@@ -301,18 +396,50 @@ public class MWFileReader implements RDMicroworld {
 			} // end all .mw file
 
 			RDUniverse universe = new RDUniverse(wn, lex, proc);
-
-			universe.addBoundPredicates(truePredicates);
+			Map<RDConcept, Integer> conceptIds = new IdentityHashMap<>();
+			List<RDPredicate> truePredicates = new ArrayList<>();
+			int[] factIds = new int[trueDefinitions.size()];
 
 			for (Map.Entry<String, RDConcept> e : referencedConcepts.entrySet()) {
+				conceptIds.put(e.getValue(), conceptIds.size());
 				universe.addBoundConcept(e.getValue());
 			}
 
+			for (int f = 0; f < trueDefinitions.size(); f++) {
+				RDConcept[] args = trueArguments.get(f);
+
+				if (keep != null
+						&& !keep.keeps(f, args.length == 0 ? -1 : conceptIds.get(args[0]))) {
+					continue;
+				}
+
+				RDPredicate np = trueDefinitions.get(f).deepCopy();
+
+				for (RDConcept a : args) {
+					np.addArgument(a);
+				}
+
+				factIds[truePredicates.size()] = f;
+				truePredicates.add(np);
+			}
+
+			if (keep == null) {
+				universe.addBoundPredicates(truePredicates);
+			} else {
+				universe.setPartitionFacts(truePredicates,
+						Arrays.copyOf(factIds, truePredicates.size()));
+			}
+
 			for (RDConcept c : definedConcepts) {
 				universe.addConcept(c);
 			}
 
+			for (RDAttribute a : definedAttributes) {
+				universe.addAttribute(a);
+			}
+
 			universe.setASRRulesMap(asrDictionary);
+			universe.setSimilarityType(similarityType);
 
 			return universe;
 		} catch (IOException e) {
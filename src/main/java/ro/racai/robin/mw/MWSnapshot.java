@@ -0,0 +1,591 @@
+/**
+ *
+ */
+package ro.racai.robin.mw;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import ro.racai.robin.dialog.CType;
+import ro.racai.robin.dialog.RDAttribute;
+import ro.racai.robin.dialog.RDConcept;
+import ro.racai.robin.dialog.RDConstant;
+import ro.racai.robin.dialog.RDFactFilter;
+import ro.racai.robin.dialog.RDFactStore;
+import ro.racai.robin.dialog.RDMappedFactStore;
+import ro.racai.robin.dialog.RDPredicate;
+import ro.racai.robin.dialog.RDUniverse;
+import ro.racai.robin.dialog.SimilarityType;
+import ro.racai.robin.dialog.UIntentType;
+import ro.racai.robin.nlp.Lexicon;
+import ro.racai.robin.nlp.TextProcessor;
+import ro.racai.robin.nlp.TextProcessor.Token;
+import ro.racai.robin.nlp.WordNet;
+
+/**
+ * @author Radu Ion ({@code radu@racai.ro})
+ *         <p>
+ *         A compiled {@code .mw} file: the universe that {@link MWFileReader} builds, with the
+ *         processed references, saved in a binary file next to the {@code .mw} file (e.g.
+ *         {@code sales.mwc} for {@code sales.mw}). Loading the snapshot needs neither the regular
+ *         expressions of the reader nor the text processor, so it is instant.
+ *         </p>
+ *         <p>
+ *         The snapshot holds the SHA-256 hash of the {@code .mw} file it was compiled from. If the
+ *         {@code .mw} file changed, or the snapshot has another {@link #FORMAT_VERSION}, the
+ *         {@code .mw} file is read again and the snapshot is rewritten. The indexes of the
+ *         universe depend on WordNet, so they are not saved: build them after loading, as with
+ *         {@link MWFileReader}.
+ *         </p>
+ *         <p>
+ *         {@link #constructMappedUniverse(WordNet, Lexicon, TextProcessor)} also compiles the
+ *         TRUE facts into an {@link RDMappedFactStore} file (e.g. {@code sales.mwf}) and loads
+ *         the universe without building the facts of the snapshot.
+ *         </p>
+ *         <p>
+ *         {@link #constructUniverse(WordNet, Lexicon, TextProcessor, RDFactFilter)} only builds
+ *         the facts of one partition, e.g. for an {@link ro.racai.robin.dialog.RDPartitionWorker}.
+ *         </p>
+ */
+public class MWSnapshot implements RDMicroworld {
+	private static final Logger LOGGER = Logger.getLogger(MWSnapshot.class.getName());
+	private static final int MAGIC = 0x52444d57;
+
+	/**
+	 * Increase this when the layout of the snapshot changes.
+	 */
+	public static final int FORMAT_VERSION = 2;
+
+	private static final String SNAPSHOT_EXTENSION = ".mwc";
+	private static final String FACTS_EXTENSION = ".mwf";
+
+	private final String mwFilePath;
+	private final File snapshotFile;
+	private final File factsFile;
+
+	/**
+	 * <p>
+	 * Constructs a snapshot reader for the given {@code .mw} file.
+	 * </p>
+	 *
+	 * @param file the file containing the micro-world definition.
+	 */
+	public MWSnapshot(String file) {
+		mwFilePath = file;
+		snapshotFile = new File(file.replaceFirst("\\.mw$", "") + SNAPSHOT_EXTENSION);
+		factsFile = new File(file.replaceFirst("\\.mw$", "") + FACTS_EXTENSION);
+	}
+
+	public File getSnapshotFile() {
+		return snapshotFile;
+	}
+
+	public File getFactsFile() {
+		return factsFile;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see ro.racai.robin.mw.RDMicroworld#constructUniverse()
+	 */
+	@Override
+	public RDUniverse constructUniverse(WordNet wn, Lexicon lex, TextProcessor proc) {
+		byte[] mwHash = hashFile(new File(mwFilePath));
+
+		if (mwHash == null) {
+			return null;
+		}
+
+		if (snapshotFile.exists()) {
+			long start = System.currentTimeMillis();
+			RDUniverse universe = read(mwHash, wn, lex, proc);
+
+			if (universe != null) {
+				LOGGER.info(String.format("Loaded %s in %d ms", snapshotFile.getPath(),
+						System.currentTimeMillis() - start));
+				return universe;
+			}
+		}
+
+		RDUniverse universe = new MWFileReader(mwFilePath).constructUniverse(wn, lex, proc);
+
+		if (universe != null) {
+			write(universe, mwHash);
+		}
+
+		return universe;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see ro.racai.robin.mw.RDMicroworld#constructUniverse(RDFactFilter)
+	 */
+	@Override
+	public RDUniverse constructUniverse(WordNet wn, Lexicon lex, TextProcessor proc,
+			RDFactFilter keep) {
+		byte[] mwHash = hashFile(new File(mwFilePath));
+
+		if (mwHash == null) {
+			return null;
+		}
+
+		if (!isCurrent(mwHash)) {
+			// Compile the snapshot with all the facts, then read the partition from it
+			RDUniverse universe = new MWFileReader(mwFilePath).constructUniverse(wn, lex, proc);
+
+			if (universe == null) {
+				return null;
+			}
+
+			write(universe, mwHash);
+		}
+
+		long start = System.currentTimeMillis();
+		RDUniverse universe = read(mwHash, wn, lex, proc, true, keep);
+
+		if (universe == null) {
+			// The snapshot could not be written
+			return new MWFileReader(mwFilePath).constructUniverse(wn, lex, proc, keep);
+		}
+
+		LOGGER.info(String.format("Loaded %d facts of %s in %d ms",
+				universe.getBoundPredicates().size(), snapshotFile.getPath(),
+				System.currentTimeMillis() - start));
+		return universe;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see ro.racai.robin.mw.RDMicroworld#constructMappedUniverse()
+	 */
+	@Override
+	public RDUniverse constructMappedUniverse(WordNet wn, Lexicon lex, TextProcessor proc) {
+		byte[] mwHash = hashFile(new File(mwFilePath));
+
+		if (mwHash == null) {
+			return null;
+		}
+
+		if (snapshotFile.exists() && factsFile.exists()) {
+			long start = System.currentTimeMillis();
+			RDUniverse universe = read(mwHash, wn, lex, proc, false, null);
+
+			if (universe != null) {
+				RDMappedFactStore store =
+						RDMappedFactStore.open(factsFile, universe.getBoundConcepts(), mwHash);
+
+				if (store != null) {
+					universe.setFactStore(store);
+					LOGGER.info(String.format("Loaded %s and mapped %s in %d ms",
+							snapshotFile.getPath(), factsFile.getPath(),
+							System.currentTimeMillis() - start));
+					return universe;
+				}
+			}
+		}
+
+		// Compile the facts from the snapshot, which is compiled first if needed
+		RDUniverse universe = constructUniverse(wn, lex, proc);
+
+		if (universe == null) {
+			return null;
+		}
+
+		RDFactStore facts = new RDFactStore();
+
+		for (RDPredicate p : universe.getBoundPredicates()) {
+			facts.addFact(p);
+		}
+
+		if (RDMappedFactStore.write(facts, universe.getBoundConcepts(), mwHash, factsFile)) {
+			RDMappedFactStore store =
+					RDMappedFactStore.open(factsFile, universe.getBoundConcepts(), mwHash);
+
+			if (store != null) {
+				LOGGER.info("Compiled the facts of " + mwFilePath + " into " + factsFile.getPath());
+				universe.setFactStore(store);
+				return universe;
+			}
+		}
+
+		// Keep the facts on the heap, but in columns
+		LOGGER.warn("Could not map the facts of " + mwFilePath + ", they are kept on the heap");
+		universe.setFactStore(facts);
+		return universe;
+	}
+
+	@Override
+	public String getMicroworldName() {
+		return new MWFileReader(mwFilePath).getMicroworldName();
+	}
+
+	/**
+	 * @return the SHA-256 hash of {@code file} or {@code null} if it could not be read.
+	 */
+	private static byte[] hashFile(File file) {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(file.toPath()));
+		} catch (IOException ioe) {
+			LOGGER.error("Could not read " + file.getPath());
+			ioe.printStackTrace();
+			return null;
+		} catch (NoSuchAlgorithmException nsae) {
+			throw new RuntimeException(nsae);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Saves the {@code universe} to {@link #snapshotFile}. The file is replaced atomically, so a
+	 * failed write leaves the old snapshot in place.
+	 * </p>
+	 *
+	 * @param universe the universe built from the {@code .mw} file;
+	 * @param mwHash   the hash of the {@code .mw} file.
+	 */
+	public void write(RDUniverse universe, byte[] mwHash) {
+		File tmpFile = new File(snapshotFile.getPath() + ".tmp");
+
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeInt(mwHash.length);
+			out.write(mwHash);
+			out.writeUTF(universe.getSimilarityType().name());
+
+			// 1. ASR correction rules
+			out.writeInt(universe.getASRRulesMap().size());
+
+			for (Map.Entry<String, String> e : universe.getASRRulesMap().entrySet()) {
+				out.writeUTF(e.getKey());
+				out.writeUTF(e.getValue());
+			}
+
+			// 2. Concept definitions, a superclass is always defined before its subclasses
+			List<RDConcept> defined = universe.getDefinedConcepts();
+			Map<RDConcept, Integer> definedIds = new IdentityHashMap<>();
+
+			out.writeInt(defined.size());
+
+			for (RDConcept c : defined) {
+				definedIds.put(c, definedIds.size());
+				out.writeUTF(c.getType().name());
+				out.writeUTF(c.getCanonicalName());
+				writeStrings(out, c.getSynonyms());
+				out.writeInt(c.getSuperClass() == null ? -1 : definedIds.get(c.getSuperClass()));
+			}
+
+			// 3. References, with their processed tokens
+			List<RDConcept> bound = universe.getBoundConcepts();
+			Map<RDConcept, Integer> boundIds = new IdentityHashMap<>();
+
+			out.writeInt(bound.size());
+
+			for (RDConcept c : bound) {
+				boundIds.put(c, boundIds.size());
+
+				if (c instanceof RDConstant) {
+					out.writeInt(-1);
+					out.writeUTF(c.getType().name());
+				} else {
+					out.writeInt(definitionOf(c, defined));
+				}
+
+				// Java class references are recognized again from the reference.
+				out.writeUTF(c.getReference());
+				out.writeInt(c.getTokenizedReference().size());
+
+				for (Token t : c.getTokenizedReference()) {
+					out.writeUTF(t.wform);
+					out.writeUTF(t.lemma);
+					out.writeUTF(t.pos);
+					out.writeInt(t.head);
+					out.writeUTF(t.drel);
+					out.writeBoolean(t.isActionVerbDependent);
+				}
+			}
+
+			// 4. TRUE facts
+			List<RDPredicate> facts = universe.getBoundPredicates();
+
+			out.writeInt(facts.size());
+
+			for (RDPredicate p : facts) {
+				out.writeUTF(p.getUserIntent().name());
+				out.writeUTF(p.getActionVerb());
+				writeStrings(out, p.getSynonyms());
+				out.writeInt(p.getArguments().size());
+
+				for (RDConcept a : p.getArguments()) {
+					out.writeInt(boundIds.get(a));
+				}
+			}
+
+			// 5. Attributes of the amount concepts
+			out.writeInt(universe.getAttributes().size());
+
+			for (RDAttribute a : universe.getAttributes()) {
+				out.writeUTF(a.getCanonicalName());
+				writeStrings(out, a.getSynonyms());
+				out.writeUTF(a.getOrder().name());
+				out.writeInt(definedIds.get(a.getConcept()));
+			}
+		} catch (IOException ioe) {
+			LOGGER.warn("Could not write " + tmpFile.getPath());
+			ioe.printStackTrace();
+			return;
+		}
+
+		try {
+			Files.move(tmpFile.toPath(), snapshotFile.toPath(),
+					StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			LOGGER.info("Compiled " + mwFilePath + " into " + snapshotFile.getPath());
+		} catch (IOException ioe) {
+			LOGGER.warn("Could not replace " + snapshotFile.getPath());
+			ioe.printStackTrace();
+		}
+	}
+
+	private static int definitionOf(RDConcept c, List<RDConcept> defined) {
+		for (int i = 0; i < defined.size(); i++) {
+			if (defined.get(i).getCanonicalName().equalsIgnoreCase(c.getCanonicalName())) {
+				return i;
+			}
+		}
+
+		throw new RuntimeException(
+				String.format("Concept %s has no CONCEPT definition!", c.toString()));
+	}
+
+	private static void writeStrings(DataOutputStream out, List<String> strings)
+			throws IOException {
+		out.writeInt(strings.size());
+
+		for (String s : strings) {
+			out.writeUTF(s);
+		}
+	}
+
+	private static List<String> readStrings(DataInputStream in) throws IOException {
+		int n = in.readInt();
+		List<String> strings = new ArrayList<>(n);
+
+		for (int i = 0; i < n; i++) {
+			strings.add(in.readUTF());
+		}
+
+		return strings;
+	}
+
+	/**
+	 * <p>
+	 * Loads the universe from {@link #snapshotFile}.
+	 * </p>
+	 *
+	 * @param mwHash the hash of the current {@code .mw} file;
+	 * @return the universe or {@code null} if the snapshot is stale or unreadable.
+	 */
+	public RDUniverse read(byte[] mwHash, WordNet wn, Lexicon lex, TextProcessor proc) {
+		return read(mwHash, wn, lex, proc, true, null);
+	}
+
+	/**
+	 * @return {@code true} if {@link #snapshotFile} exists and was compiled from the {@code .mw}
+	 *         file with hash {@code mwHash}, in the current {@link #FORMAT_VERSION}.
+	 */
+	private boolean isCurrent(byte[] mwHash) {
+		if (!snapshotFile.exists()) {
+			return false;
+		}
+
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(snapshotFile)))) {
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+				return false;
+			}
+
+			byte[] hash = new byte[in.readInt()];
+
+			in.readFully(hash);
+			return Arrays.equals(hash, mwHash);
+		} catch (IOException | RuntimeException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @param withFacts if {@code false}, the TRUE facts are skipped, e.g. because they are in the
+	 *                  {@link #factsFile};
+	 * @param keep      selects the TRUE facts of a partition, see
+	 *                  {@link RDUniverse#setPartitionFacts(List, int[])}; if {@code null}, the
+	 *                  universe gets all of them.
+	 */
+	private RDUniverse read(byte[] mwHash, WordNet wn, Lexicon lex, TextProcessor proc,
+			boolean withFacts, RDFactFilter keep) {
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(snapshotFile)))) {
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+				LOGGER.info(snapshotFile.getPath() + " has an old format, recompiling");
+				return null;
+			}
+
+			byte[] hash = new byte[in.readInt()];
+
+			in.readFully(hash);
+
+			if (!Arrays.equals(hash, mwHash)) {
+				LOGGER.info(mwFilePath + " has changed, recompiling");
+				return null;
+			}
+
+			RDUniverse universe = new RDUniverse(wn, lex, proc);
+
+			universe.setSimilarityType(SimilarityType.valueOf(in.readUTF()));
+
+			// 1. ASR correction rules
+			Map<String, String> asrDictionary = new HashMap<>();
+			int n = in.readInt();
+
+			for (int i = 0; i < n; i++) {
+				asrDictionary.put(in.readUTF(), in.readUTF());
+			}
+
+			universe.setASRRulesMap(asrDictionary);
+
+			// 2. Concept definitions
+			List<RDConcept> defined = new ArrayList<>();
+
+			n = in.readInt();
+
+			for (int i = 0; i < n; i++) {
+				CType type = CType.valueOf(in.readUTF());
+				String name = in.readUTF();
+				List<String> syns = readStrings(in);
+				int sup = in.readInt();
+				RDConcept c = RDConcept.conceptBuilder(type, name, syns,
+						sup >= 0 ? defined.get(sup) : null);
+
+				defined.add(c);
+				universe.addConcept(c);
+			}
+
+			// 3. References
+			List<RDConcept> bound = new ArrayList<>();
+
+			n = in.readInt();
+
+			for (int i = 0; i < n; i++) {
+				int def = in.readInt();
+				RDConcept c = def >= 0 ? defined.get(def).deepCopy()
+						: new RDConstant(CType.valueOf(in.readUTF()));
+				String reference = in.readUTF();
+				int tokenCount = in.readInt();
+				List<Token> tokens = new ArrayList<>(tokenCount);
+
+				for (int k = 0; k < tokenCount; k++) {
+					String wform = in.readUTF();
+					String lemma = in.readUTF();
+					String pos = in.readUTF();
+					int head = in.readInt();
+					String drel = in.readUTF();
+
+					tokens.add(new Token(wform, lemma, pos, head, drel, in.readBoolean()));
+				}
+
+				c.setReference(reference, tokens, proc, lex);
+				bound.add(c);
+				universe.addBoundConcept(c);
+			}
+
+			// 4. TRUE facts, copied from one predicate definition per verb, as the reader does
+			Map<String, RDPredicate> definedPredicates = new LinkedHashMap<>();
+			List<RDPredicate> facts = new ArrayList<>();
+			int[] factIds = null;
+
+			n = in.readInt();
+
+			if (keep != null) {
+				factIds = new int[n];
+			}
+
+			for (int i = 0; i < n; i++) {
+				UIntentType intent = UIntentType.valueOf(in.readUTF());
+				String verb = in.readUTF();
+				List<String> syns = readStrings(in);
+				int argCount = in.readInt();
+				int[] args = new int[argCount];
+
+				for (int k = 0; k < argCount; k++) {
+					args[k] = in.readInt();
+				}
+
+				if (!withFacts
+						|| (keep != null && !keep.keeps(i, argCount == 0 ? -1 : args[0]))) {
+					continue;
+				}
+
+				RDPredicate def = definedPredicates.computeIfAbsent(
+						intent.name() + "#" + verb + "#" + syns,
+						k -> RDPredicate.predicateBuilder(intent, verb, syns));
+				RDPredicate p = def.deepCopy();
+
+				for (int a : args) {
+					p.addArgument(bound.get(a));
+				}
+
+				if (keep != null) {
+					factIds[facts.size()] = i;
+				}
+
+				facts.add(p);
+			}
+
+			if (keep != null) {
+				universe.setPartitionFacts(facts, Arrays.copyOf(factIds, facts.size()));
+			} else if (withFacts) {
+				universe.addBoundPredicates(facts);
+			}
+
+			// 5. Attributes
+			n = in.readInt();
+
+			for (int i = 0; i < n; i++) {
+				String name = in.readUTF();
+				List<String> syns = readStrings(in);
+				RDAttribute.Order order = RDAttribute.Order.valueOf(in.readUTF());
+
+				universe.addAttribute(
+						RDAttribute.attributeBuilder(name, syns, defined.get(in.readInt()), order));
+			}
+
+			return universe;
+		} catch (IOException | RuntimeException e) {
+			LOGGER.warn("Could not read " + snapshotFile.getPath() + ", recompiling");
+			e.printStackTrace();
+			return null;
+		}
+	}
+}
@@ -3,7 +3,14 @@
  */
 package ro.racai.robin.mw;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
 import ro.racai.robin.dialog.RDConcept;
+import ro.racai.robin.dialog.RDFactFilter;
 import ro.racai.robin.dialog.RDPredicate;
 import ro.racai.robin.dialog.RDUniverse;
 import ro.racai.robin.nlp.Lexicon;
@@ -31,6 +38,76 @@ public interface RDMicroworld {
 	 */
 	public RDUniverse constructUniverse(WordNet wn, Lexicon lex, TextProcessor proc);
 
+	/**
+	 * <p>
+	 * Construct a universe that is a partition of the micro-world: it has all the bound concepts,
+	 * but only the TRUE facts that {@code keep} selects, e.g. for an
+	 * {@link ro.racai.robin.dialog.RDPartitionWorker}. Builders that can skip the other facts
+	 * while reading them override this; by default, the whole universe is built and then
+	 * partitioned.
+	 * </p>
+	 *
+	 * @param wn   the WordNet object to be used in the creation of the {@link RDUniverse} object;
+	 * @param lex  the lexicon object to be used in the creation of the {@link RDUniverse} object;
+	 * @param proc the text processor to be used in the creation of the {@link RDUniverse} object;
+	 * @param keep selects the TRUE facts of the partition.
+	 * @return the constructed partition, see {@link RDUniverse#setPartitionFacts(List, int[])}.
+	 */
+	public default RDUniverse constructUniverse(WordNet wn, Lexicon lex, TextProcessor proc,
+			RDFactFilter keep) {
+		RDUniverse universe = constructUniverse(wn, lex, proc);
+
+		if (universe == null) {
+			return null;
+		}
+
+		Map<RDConcept, Integer> conceptIds = new IdentityHashMap<>();
+		List<RDPredicate> all = universe.getBoundPredicates();
+		List<RDPredicate> facts = new ArrayList<>();
+		int[] factIds = new int[all.size()];
+
+		for (RDConcept c : universe.getBoundConcepts()) {
+			conceptIds.put(c, conceptIds.size());
+		}
+
+		for (int f = 0; f < all.size(); f++) {
+			List<RDConcept> args = all.get(f).getArguments();
+
+			if (keep.keeps(f, args.isEmpty() ? -1 : conceptIds.getOrDefault(args.get(0), 0))) {
+				factIds[facts.size()] = f;
+				facts.add(all.get(f));
+			}
+		}
+
+		universe.setPartitionFacts(facts, Arrays.copyOf(factIds, facts.size()));
+		return universe;
+	}
+
+	/**
+	 * <p>
+	 * Construct a universe whose TRUE facts are not kept as {@link RDPredicate} objects, for
+	 * micro-worlds with more facts than the heap can hold. Builders that can keep the facts out
+	 * of the heap, e.g. in an {@link ro.racai.robin.dialog.RDMappedFactStore}, override this;
+	 * by default, the facts are kept in the int columns of {@link RDUniverse#setColumnarFacts(
+	 * boolean)}. The bound concepts and their indexes are on the heap in both cases.
+	 * </p>
+	 * 
+	 * @param wn   the WordNet object to be used in the creation of the {@link RDUniverse} object;
+	 * @param lex  the lexicon object to be used in the creation of the {@link RDUniverse} object;
+	 * @param proc the text processor to be used in the creation of the {@link RDUniverse} object.
+	 * @return the constructed universe, with columnar facts.
+	 */
+	public default RDUniverse constructMappedUniverse(WordNet wn, Lexicon lex,
+			TextProcessor proc) {
+		RDUniverse universe = constructUniverse(wn, lex, proc);
+
+		if (universe != null) {
+			universe.setColumnarFacts(true);
+		}
+
+		return universe;
+	}
+
 	/**
 	 * <p>
 	 * To pretty-print this micro-world, get its name.
@@ -0,0 +1,466 @@
+/**
+ *
+ */
+package ro.racai.robin.nlp;
+
+import java.util.Arrays;
+
+/**
+ * @author Radu Ion ({@code radu@racai.ro})
+ *         <p>
+ *         A compressed set of non-negative ints, e.g. the IDs of the facts that have a concept as
+ *         an argument. The ints are split in chunks of 65536 by their high 16 bits and each chunk
+ *         holds its low 16 bits either in a sorted {@code char} array, if it has at most
+ *         {@value #ARRAY_MAX} of them, or in a 65536-bit bit set otherwise. Sparse sets take 2
+ *         bytes per int and dense sets take 1 bit per int.
+ *         </p>
+ *         <p>
+ *         {@link #and(CompressedBitmap)}, {@link #or(CompressedBitmap)} and
+ *         {@link #andNot(CompressedBitmap)} return new bitmaps and do not change their operands.
+ *         </p>
+ */
+public class CompressedBitmap {
+	/**
+	 * The largest chunk that is kept as a sorted array.
+	 */
+	public static final int ARRAY_MAX = 4096;
+
+	private static final int WORDS = 1024;
+
+	/**
+	 * @author Radu Ion ({@code radu@racai.ro})
+	 *         <p>
+	 *         The low 16 bits of the ints of one chunk, in {@link #values} or in {@link #words}.
+	 *         </p>
+	 */
+	private static class Chunk {
+		/**
+		 * Sorted values, the first {@link #cardinality} of them, if {@link #words} is
+		 * {@code null}.
+		 */
+		char[] values;
+		long[] words;
+		int cardinality;
+
+		static Chunk ofValues(char[] values, int cardinality) {
+			Chunk c = new Chunk();
+
+			c.values = values;
+			c.cardinality = cardinality;
+			return c;
+		}
+
+		static Chunk ofWords(long[] words) {
+			Chunk c = new Chunk();
+			int cardinality = 0;
+
+			for (long w : words) {
+				cardinality += Long.bitCount(w);
+			}
+
+			if (cardinality > ARRAY_MAX) {
+				c.words = words;
+				c.cardinality = cardinality;
+				return c;
+			}
+
+			// Back to an array
+			char[] values = new char[cardinality];
+			int n = 0;
+
+			for (int i = 0; i < WORDS; i++) {
+				for (long w = words[i]; w != 0; w &= w - 1) {
+					values[n++] = (char) (i * 64 + Long.numberOfTrailingZeros(w));
+				}
+			}
+
+			return ofValues(values, cardinality);
+		}
+
+		boolean contains(char v) {
+			if (words != null) {
+				return (words[v >>> 6] & (1L << v)) != 0;
+			}
+
+			return Arrays.binarySearch(values, 0, cardinality, v) >= 0;
+		}
+
+		void add(char v) {
+			if (words != null) {
+				if ((words[v >>> 6] & (1L << v)) == 0) {
+					words[v >>> 6] |= 1L << v;
+					cardinality++;
+				}
+
+				return;
+			}
+
+			int i = Arrays.binarySearch(values, 0, cardinality, v);
+
+			if (i >= 0) {
+				return;
+			}
+
+			if (cardinality == ARRAY_MAX) {
+				words = toWords();
+				values = null;
+				add(v);
+				return;
+			}
+
+			i = -i - 1;
+
+			if (cardinality == values.length) {
+				values = Arrays.copyOf(values, Math.min(ARRAY_MAX, Math.max(4, 2 * cardinality)));
+			}
+
+			System.arraycopy(values, i, values, i + 1, cardinality - i);
+			values[i] = v;
+			cardinality++;
+		}
+
+		Chunk copy() {
+			Chunk c = new Chunk();
+
+			c.values = values == null ? null : Arrays.copyOf(values, cardinality);
+			c.words = words == null ? null : words.clone();
+			c.cardinality = cardinality;
+			return c;
+		}
+
+		long[] toWords() {
+			if (words != null) {
+				return words.clone();
+			}
+
+			long[] result = new long[WORDS];
+
+			for (int i = 0; i < cardinality; i++) {
+				result[values[i] >>> 6] |= 1L << values[i];
+			}
+
+			return result;
+		}
+
+		static Chunk and(Chunk a, Chunk b) {
+			if (a.words != null && b.words != null) {
+				long[] result = new long[WORDS];
+
+				for (int i = 0; i < WORDS; i++) {
+					result[i] = a.words[i] & b.words[i];
+				}
+
+				return ofWords(result);
+			}
+
+			if (a.words != null) {
+				// Look up the array values in the bit set
+				return and(b, a);
+			}
+
+			char[] result = new char[a.cardinality];
+			int n = 0;
+
+			if (b.words != null) {
+				for (int i = 0; i < a.cardinality; i++) {
+					if (b.contains(a.values[i])) {
+						result[n++] = a.values[i];
+					}
+				}
+			} else {
+				int i = 0;
+				int j = 0;
+
+				while (i < a.cardinality && j < b.cardinality) {
+					if (a.values[i] < b.values[j]) {
+						i++;
+					} else if (a.values[i] > b.values[j]) {
+						j++;
+					} else {
+						result[n++] = a.values[i];
+						i++;
+						j++;
+					}
+				}
+			}
+
+			return ofValues(result, n);
+		}
+
+		static Chunk or(Chunk a, Chunk b) {
+			if (a.words != null || b.words != null
+					|| a.cardinality + b.cardinality > ARRAY_MAX) {
+				long[] result = a.toWords();
+
+				if (b.words != null) {
+					for (int i = 0; i < WORDS; i++) {
+						result[i] |= b.words[i];
+					}
+				} else {
+					for (int i = 0; i < b.cardinality; i++) {
+						result[b.values[i] >>> 6] |= 1L << b.values[i];
+					}
+				}
+
+				return ofWords(result);
+			}
+
+			char[] result = new char[a.cardinality + b.cardinality];
+			int i = 0;
+			int j = 0;
+			int n = 0;
+
+			while (i < a.cardinality || j < b.cardinality) {
+				if (j == b.cardinality || (i < a.cardinality && a.values[i] < b.values[j])) {
+					result[n++] = a.values[i++];
+				} else if (i == a.cardinality || a.values[i] > b.values[j]) {
+					result[n++] = b.values[j++];
+				} else {
+					result[n++] = a.values[i];
+					i++;
+					j++;
+				}
+			}
+
+			return ofValues(result, n);
+		}
+
+		static Chunk andNot(Chunk a, Chunk b) {
+			if (a.words != null) {
+				long[] result = a.words.clone();
+
+				if (b.words != null) {
+					for (int i = 0; i < WORDS; i++) {
+						result[i] &= ~b.words[i];
+					}
+				} else {
+					for (int i = 0; i < b.cardinality; i++) {
+						result[b.values[i] >>> 6] &= ~(1L << b.values[i]);
+					}
+				}
+
+				return ofWords(result);
+			}
+
+			char[] result = new char[a.cardinality];
+			int n = 0;
+
+			for (int i = 0; i < a.cardinality; i++) {
+				if (!b.contains(a.values[i])) {
+					result[n++] = a.values[i];
+				}
+			}
+
+			return ofValues(result, n);
+		}
+	}
+
+	/**
+	 * The high 16 bits of the chunks, in increasing order.
+	 */
+	private char[] keys = new char[0];
+	private Chunk[] chunks = new Chunk[0];
+	private int size;
+
+	public CompressedBitmap() {
+		// Empty set
+	}
+
+	/**
+	 * @param values the ints of the new bitmap, in any order.
+	 * @return a new bitmap with the given ints.
+	 */
+	public static CompressedBitmap of(int... values) {
+		CompressedBitmap result = new CompressedBitmap();
+
+		for (int v : values) {
+			result.add(v);
+		}
+
+		return result;
+	}
+
+	private int chunkIndex(char key) {
+		return Arrays.binarySearch(keys, 0, size, key);
+	}
+
+	/**
+	 * @param value a non-negative int to add to the set.
+	 */
+	public void add(int value) {
+		if (value < 0) {
+			throw new IllegalArgumentException("Only non-negative values can be added!");
+		}
+
+		char key = (char) (value >>> 16);
+		int i = chunkIndex(key);
+
+		if (i < 0) {
+			i = -i - 1;
+
+			if (size == keys.length) {
+				keys = Arrays.copyOf(keys, Math.max(2, 2 * size));
+				chunks = Arrays.copyOf(chunks, keys.length);
+			}
+
+			System.arraycopy(keys, i, keys, i + 1, size - i);
+			System.arraycopy(chunks, i, chunks, i + 1, size - i);
+			keys[i] = key;
+			chunks[i] = Chunk.ofValues(new char[4], 0);
+			size++;
+		}
+
+		chunks[i].add((char) value);
+	}
+
+	public boolean contains(int value) {
+		if (value < 0) {
+			return false;
+		}
+
+		int i = chunkIndex((char) (value >>> 16));
+
+		return i >= 0 && chunks[i].contains((char) value);
+	}
+
+	public int cardinality() {
+		int result = 0;
+
+		for (int i = 0; i < size; i++) {
+			result += chunks[i].cardinality;
+		}
+
+		return result;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return a new bitmap with the ints that are in this bitmap and in {@code other}.
+	 */
+	public CompressedBitmap and(CompressedBitmap other) {
+		CompressedBitmap result = new CompressedBitmap();
+		int i = 0;
+		int j = 0;
+
+		result.keys = new char[Math.min(size, other.size)];
+		result.chunks = new Chunk[result.keys.length];
+
+		while (i < size && j < other.size) {
+			if (keys[i] < other.keys[j]) {
+				i++;
+			} else if (keys[i] > other.keys[j]) {
+				j++;
+			} else {
+				Chunk c = Chunk.and(chunks[i], other.chunks[j]);
+
+				if (c.cardinality > 0) {
+					result.keys[result.size] = keys[i];
+					result.chunks[result.size] = c;
+					result.size++;
+				}
+
+				i++;
+				j++;
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * @return a new bitmap with the ints that are in this bitmap or in {@code other}.
+	 */
+	public CompressedBitmap or(CompressedBitmap other) {
+		CompressedBitmap result = new CompressedBitmap();
+		int i = 0;
+		int j = 0;
+
+		result.keys = new char[size + other.size];
+		result.chunks = new Chunk[result.keys.length];
+
+		while (i < size || j < other.size) {
+			Chunk c;
+			char key;
+
+			if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+				key = keys[i];
+				c = chunks[i++].copy();
+			} else if (i == size || keys[i] > other.keys[j]) {
+				key = other.keys[j];
+				c = other.chunks[j++].copy();
+			} else {
+				key = keys[i];
+				c = Chunk.or(chunks[i++], other.chunks[j++]);
+			}
+
+			result.keys[result.size] = key;
+			result.chunks[result.size] = c;
+			result.size++;
+		}
+
+		return result;
+	}
+
+	/**
+	 * @return a new bitmap with the ints that are in this bitmap and not in {@code other}.
+	 */
+	public CompressedBitmap andNot(CompressedBitmap other) {
+		CompressedBitmap result = new CompressedBitmap();
+		int j = 0;
+
+		result.keys = new char[size];
+		result.chunks = new Chunk[size];
+
+		for (int i = 0; i < size; i++) {
+			while (j < other.size && other.keys[j] < keys[i]) {
+				j++;
+			}
+
+			Chunk c = j < other.size && other.keys[j] == keys[i]
+					? Chunk.andNot(chunks[i], other.chunks[j]) : chunks[i].copy();
+
+			if (c.cardinality > 0) {
+				result.keys[result.size] = keys[i];
+				result.chunks[result.size] = c;
+				result.size++;
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * @return the ints of the set, in increasing order.
+	 */
+	public int[] toArray() {
+		int[] result = new int[cardinality()];
+		int n = 0;
+
+		for (int i = 0; i < size; i++) {
+			int high = keys[i] << 16;
+			Chunk c = chunks[i];
+
+			if (c.words == null) {
+				for (int k = 0; k < c.cardinality; k++) {
+					result[n++] = high | c.values[k];
+				}
+			} else {
+				for (int k = 0; k < WORDS; k++) {
+					for (long w = c.words[k]; w != 0; w &= w - 1) {
+						result[n++] = high | (k * 64 + Long.numberOfTrailingZeros(w));
+					}
+				}
+			}
+		}
+
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(toArray());
+	}
+}
@@ -0,0 +1,234 @@
+/**
+ *
+ */
+package ro.racai.robin.nlp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * @author Radu Ion ({@code radu@racai.ro})
+ *         <p>
+ *         Embeds bags of words into fixed-width vectors of hashed character n-grams (the
+ *         ``hashing trick'') and finds the most similar indexed items by cosine similarity.
+ *         </p>
+ *         <p>
+ *         All item vectors are L2-normalized and stored one after the other in a single
+ *         {@code float[]}, such that scoring a query is a linear scan over contiguous memory with
+ *         dot products that the JIT compiler can unroll and vectorize. Cosine similarity is the
+ *         dot product of the normalized vectors.
+ *         </p>
+ * @param <T> the type of the indexed items.
+ */
+public class HashedNgramIndex<T> {
+	public static final int DEFAULT_DIMENSIONS = 1024;
+	private static final char BOUNDARY = '$';
+	private static final int FNV32_OFFSET = 0x811c9dc5;
+	private static final int FNV32_PRIME = 0x01000193;
+
+	/**
+	 * @author Radu Ion ({@code radu@racai.ro})
+	 *         <p>
+	 *         An item and its cosine similarity with the query.
+	 *         </p>
+	 */
+	public static class Hit<T> {
+		public final T item;
+		public final float score;
+
+		public Hit(T item, float score) {
+			this.item = item;
+			this.score = score;
+		}
+	}
+
+	private final int dimensions;
+
+	/**
+	 * Indexed items, by row.
+	 */
+	private final List<T> items = new ArrayList<>();
+
+	/**
+	 * Items to rows.
+	 */
+	private final Map<T, Integer> rows = new IdentityHashMap<>();
+
+	/**
+	 * The item vectors, row after row, {@link #dimensions} floats each.
+	 */
+	private float[] vectors;
+
+	public HashedNgramIndex(int dimensions) {
+		this.dimensions = dimensions;
+		this.vectors = new float[16 * dimensions];
+	}
+
+	public HashedNgramIndex() {
+		this(DEFAULT_DIMENSIONS);
+	}
+
+	public int size() {
+		return items.size();
+	}
+
+	/**
+	 * <p>
+	 * Adds an item to the index.
+	 * </p>
+	 *
+	 * @param item  the item to add;
+	 * @param words the words describing the item.
+	 */
+	public void add(T item, Collection<String> words) {
+		int row = items.size();
+
+		if ((row + 1) * dimensions > vectors.length) {
+			vectors = Arrays.copyOf(vectors, vectors.length * 2);
+		}
+
+		items.add(item);
+		rows.put(item, row);
+		embedInto(words, vectors, row * dimensions);
+	}
+
+	/**
+	 * <p>
+	 * Computes the normalized vector of a query.
+	 * </p>
+	 *
+	 * @param words the query words;
+	 * @return the vector, {@link #dimensions} floats long.
+	 */
+	public float[] embed(Collection<String> words) {
+		float[] v = new float[dimensions];
+
+		embedInto(words, v, 0);
+		return v;
+	}
+
+	private void embedInto(Collection<String> words, float[] v, int offset) {
+		for (String w : words) {
+			if (StringUtils.isNullEmptyOrBlank(w)) {
+				continue;
+			}
+
+			String pw = BOUNDARY + w.toLowerCase() + BOUNDARY;
+
+			// The whole word is a feature too, so that exact word matches count more.
+			addFeature(pw, v, offset);
+
+			for (int i = 0; i + 3 <= pw.length(); i++) {
+				addFeature(pw.substring(i, i + 3), v, offset);
+			}
+		}
+
+		float norm = (float) Math.sqrt(dot(v, offset, v, offset, dimensions));
+
+		if (norm > 0.0f) {
+			for (int i = offset; i < offset + dimensions; i++) {
+				v[i] /= norm;
+			}
+		}
+	}
+
+	private void addFeature(String feature, float[] v, int offset) {
+		int h = FNV32_OFFSET;
+
+		for (int i = 0; i < feature.length(); i++) {
+			h ^= feature.charAt(i);
+			h *= FNV32_PRIME;
+		}
+
+		// The sign bit decides the sign of the feature, such that collisions tend to cancel out.
+		v[offset + (h & 0x7fffffff) % dimensions] += (h < 0 ? -1.0f : 1.0f);
+	}
+
+	/**
+	 * Dot product with four independent accumulators, which breaks the dependency chain of the
+	 * sum and lets the JIT compiler keep several multiply-adds in flight.
+	 */
+	private static float dot(float[] a, int aOff, float[] b, int bOff, int len) {
+		float s0 = 0.0f;
+		float s1 = 0.0f;
+		float s2 = 0.0f;
+		float s3 = 0.0f;
+		int i = 0;
+
+		for (; i + 3 < len; i += 4) {
+			s0 += a[aOff + i] * b[bOff + i];
+			s1 += a[aOff + i + 1] * b[bOff + i + 1];
+			s2 += a[aOff + i + 2] * b[bOff + i + 2];
+			s3 += a[aOff + i + 3] * b[bOff + i + 3];
+		}
+
+		for (; i < len; i++) {
+			s0 += a[aOff + i] * b[bOff + i];
+		}
+
+		return (s0 + s1) + (s2 + s3);
+	}
+
+	/**
+	 * <p>
+	 * Cosine similarity between an indexed item and a query vector.
+	 * </p>
+	 *
+	 * @param item  the indexed item;
+	 * @param query the query vector, from {@link #embed(Collection)};
+	 * @return the similarity or {@code 0} if {@code item} is not indexed.
+	 */
+	public float similarity(T item, float[] query) {
+		Integer row = rows.get(item);
+
+		if (row == null) {
+			return 0.0f;
+		}
+
+		return dot(vectors, row * dimensions, query, 0, dimensions);
+	}
+
+	/**
+	 * <p>
+	 * Finds the {@code k} indexed items most similar to the query.
+	 * </p>
+	 *
+	 * @param query the query vector, from {@link #embed(Collection)};
+	 * @param k     how many items to return;
+	 * @return the items with a positive similarity, best first.
+	 */
+	public List<Hit<T>> topK(float[] query, int k) {
+		int n = items.size();
+		float[] scores = new float[n];
+		// Min-heap on score, the worst hit is on top.
+		PriorityQueue<Integer> heap = new PriorityQueue<>(k + 1,
+				(a, b) -> scores[a] != scores[b] ? Float.compare(scores[a], scores[b]) : b - a);
+
+		for (int r = 0; r < n; r++) {
+			scores[r] = dot(vectors, r * dimensions, query, 0, dimensions);
+
+			if (scores[r] > 0.0f) {
+				heap.add(r);
+
+				if (heap.size() > k) {
+					heap.poll();
+				}
+			}
+		}
+
+		List<Hit<T>> result = new ArrayList<>();
+
+		while (!heap.isEmpty()) {
+			int r = heap.poll();
+
+			result.add(0, new Hit<>(items.get(r), scores[r]));
+		}
+
+		return result;
+	}
+}
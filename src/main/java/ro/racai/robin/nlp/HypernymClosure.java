@@ -0,0 +1,192 @@
+/**
+ *
+ */
+package ro.racai.robin.nlp;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Radu Ion ({@code radu@racai.ro})
+ *         <p>
+ *         Precomputed IS-A ancestors of a set of words, up to a maximum number of hops. Edges come
+ *         from WordNet hypernymy and from the IS-A concepts of the micro-world. After
+ *         {@link #build()}, checking if a word is a kind of another word within {@code k} hops is
+ *         a bit test.
+ *         </p>
+ */
+public class HypernymClosure {
+	/**
+	 * Default depth of the closure, e.g. <i>laptop</i> -> <i>calculator</i> -> <i>mașină</i>
+	 * -> <i>dispozitiv</i>.
+	 */
+	public static final int DEFAULT_MAX_HOPS = 3;
+
+	/**
+	 * Maps a word to its node ID.
+	 */
+	private final Map<String, Integer> nodeIds = new HashMap<>();
+
+	/**
+	 * The word of each node, by node ID.
+	 */
+	private final List<String> words = new ArrayList<>();
+
+	/**
+	 * Direct IS-A parents of each node, by node ID.
+	 */
+	private final List<List<Integer>> parents = new ArrayList<>();
+
+	/**
+	 * {@code ancestors[v][d - 1]} holds the nodes reachable from {@code v} going up at most
+	 * {@code d} hops. Filled in by {@link #build()}.
+	 */
+	private BitSet[][] ancestors;
+
+	/**
+	 * The maximum number of hops stored in {@link #ancestors}.
+	 */
+	private final int maxHops;
+
+	public HypernymClosure(int maxHops) {
+		this.maxHops = Math.max(1, maxHops);
+	}
+
+	private int nodeId(String word) {
+		Integer id = nodeIds.get(word);
+
+		if (id == null) {
+			id = parents.size();
+			nodeIds.put(word, id);
+			words.add(word);
+			parents.add(new ArrayList<>());
+			// New nodes invalidate the closure.
+			ancestors = null;
+		}
+
+		return id;
+	}
+
+	/**
+	 * <p>
+	 * Adds the fact that {@code hypo} is a kind of {@code hyper}.
+	 * </p>
+	 *
+	 * @param hypo  the more specific word;
+	 * @param hyper the more general word.
+	 */
+	public void addIsA(String hypo, String hyper) {
+		if (hypo.equals(hyper)) {
+			return;
+		}
+
+		int h = nodeId(hypo);
+		int p = nodeId(hyper);
+		List<Integer> hp = parents.get(h);
+
+		if (!hp.contains(p)) {
+			hp.add(p);
+			ancestors = null;
+		}
+	}
+
+	public boolean containsWord(String word) {
+		return nodeIds.containsKey(word);
+	}
+
+	public int getMaxHops() {
+		return maxHops;
+	}
+
+	/**
+	 * <p>
+	 * Computes the ancestors of all nodes, one hop level at a time: the ancestors of {@code v}
+	 * within {@code d} hops are its parents plus the ancestors of its parents within {@code d - 1}
+	 * hops.
+	 * </p>
+	 */
+	public void build() {
+		int n = parents.size();
+		BitSet[][] closure = new BitSet[n][maxHops];
+
+		for (int v = 0; v < n; v++) {
+			BitSet first = new BitSet();
+
+			for (int p : parents.get(v)) {
+				first.set(p);
+			}
+
+			closure[v][0] = first;
+		}
+
+		for (int d = 1; d < maxHops; d++) {
+			for (int v = 0; v < n; v++) {
+				BitSet within = (BitSet) closure[v][0].clone();
+
+				for (int p : parents.get(v)) {
+					within.or(closure[p][d - 1]);
+				}
+
+				closure[v][d] = within;
+			}
+		}
+
+		ancestors = closure;
+	}
+
+	/**
+	 * <p>
+	 * Tests if {@code hypo} is a kind of {@code hyper} within {@code hops} IS-A links.
+	 * </p>
+	 *
+	 * @param hypo  the more specific word;
+	 * @param hyper the more general word;
+	 * @param hops  how many links we can follow; capped to {@link #getMaxHops()}.
+	 * @return {@code true} if {@code hyper} is an ancestor of {@code hypo}.
+	 */
+	public boolean isKindOf(String hypo, String hyper, int hops) {
+		if (ancestors == null) {
+			throw new IllegalStateException("Call build() before querying the closure!");
+		}
+
+		Integer h = nodeIds.get(hypo);
+		Integer p = nodeIds.get(hyper);
+
+		if (h == null || p == null || hops < 1) {
+			return false;
+		}
+
+		return ancestors[h][Math.min(hops, maxHops) - 1].get(p);
+	}
+
+	public boolean isKindOf(String hypo, String hyper) {
+		return isKindOf(hypo, hyper, maxHops);
+	}
+
+	/**
+	 * @param hypo the more specific word;
+	 * @return all the words that {@code hypo} {@link #isKindOf(String, String)}, within
+	 *         {@link #getMaxHops()} IS-A links.
+	 */
+	public List<String> getAncestors(String hypo) {
+		if (ancestors == null) {
+			throw new IllegalStateException("Call build() before querying the closure!");
+		}
+
+		Integer h = nodeIds.get(hypo);
+		List<String> result = new ArrayList<>();
+
+		if (h != null) {
+			BitSet up = ancestors[h][maxHops - 1];
+
+			for (int p = up.nextSetBit(0); p >= 0; p = up.nextSetBit(p + 1)) {
+				result.add(words.get(p));
+			}
+		}
+
+		return result;
+	}
+}
@@ -1,20 +1,39 @@
 /**
- * 
+ *
  */
 package ro.racai.robin.nlp;
 
-import java.util.HashMap;
-import java.util.Map;
-
 /**
- * Taken from:<br/>
- * <a href=
+ * <p>
+ * Bit-parallel Levenshtein distance, following Myers (1999) in the formulation of Hyyrö (2001),
+ * <i>Explaining and extending the bit-parallel approximate string matching algorithm of
+ * Myers</i>. The shorter string has to fit in a 64-bit word, which is always the case for the
+ * words we compare. For longer strings, we fall back to the space optimized dynamic programming
+ * version from <a href=
  * "https://rosettacode.org/wiki/Levenshtein_distance#Iterative_space_optimized_.28even_bounded.29">
- * https://rosettacode.org/wiki/Levenshtein_distance#Iterative_space_optimized_.28even_bounded.29</a>.</br>
- * Added cache for better performance.
+ * rosettacode.org</a>.
+ * </p>
+ * <p>
+ * There is no memory allocation when computing distances between words, so no cache is needed.
+ * The match masks are kept in this object, which makes it <b>not thread-safe</b>: use one
+ * instance per thread.
+ * </p>
  */
 public class Levenshtein {
-	private Map<String, Integer> levenshteinCache = new HashMap<>();
+	private static final int WORD_BITS = 64;
+
+	/**
+	 * Match masks of the pattern, for characters below 256.
+	 */
+	private final long[] asciiMasks = new long[256];
+
+	/**
+	 * Match masks of the pattern, for the rest of the characters (e.g. Romanian diacritics).
+	 * There are at most {@link #WORD_BITS} distinct characters in a pattern.
+	 */
+	private final char[] otherChars = new char[WORD_BITS];
+	private final long[] otherMasks = new long[WORD_BITS];
+	private int otherCount = 0;
 
 	public int ld(String a, String b) {
 		return distance(a, b, -1);
@@ -24,20 +43,19 @@ public class Levenshtein {
 		return distance(a, b, max) <= max;
 	}
 
+	/**
+	 * <p>
+	 * Computes the Levenshtein distance between {@code a} and {@code b}.
+	 * </p>
+	 *
+	 * @param a   first string;
+	 * @param b   second string;
+	 * @param max if {@code >= 0}, stop as soon as we know that the distance is above it;
+	 * @return the distance or {@code max + 1} if {@code max >= 0} and the distance is greater
+	 *         than {@code max}.
+	 */
 	public int distance(String a, String b, int max) {
-		String keyab = a + "#" + b;
-		String keyba = b + "#" + a;
-
-		if (levenshteinCache.containsKey(keyab)) {
-			return levenshteinCache.get(keyab);
-		}
-
-		if (levenshteinCache.containsKey(keyba)) {
-			return levenshteinCache.get(keyba);
-		}
-
 		if (a.equals(b)) {
-			levenshteinCache.put(keyab, 0);
 			return 0;
 		}
 
@@ -45,40 +63,134 @@ public class Levenshtein {
 		int lb = b.length();
 
 		if (max >= 0 && Math.abs(la - lb) > max) {
-			levenshteinCache.put(keyab, max + 1);
-			levenshteinCache.put(keyba, max + 1);
-
 			return max + 1;
 		}
 
+		if (la > lb) {
+			// Make a the shorter string, the pattern.
+			String ts = a;
+
+			a = b;
+			b = ts;
+			la = a.length();
+			lb = b.length();
+		}
+
 		if (la == 0) {
-			levenshteinCache.put(keyab, lb);
-			levenshteinCache.put(keyba, lb);
+			return bounded(lb, max);
+		}
 
-			return lb;
+		if (la > WORD_BITS) {
+			return bounded(dynamicDistance(a, b, max), max);
 		}
 
-		if (lb == 0) {
-			levenshteinCache.put(keyab, la);
-			levenshteinCache.put(keyba, la);
+		return bounded(myersDistance(a, b, max), max);
+	}
+
+	private static int bounded(int d, int max) {
+		return (max >= 0 && d > max) ? max + 1 : d;
+	}
+
+	private int myersDistance(String pattern, String text, int max) {
+		int m = pattern.length();
+		int n = text.length();
 
-			return la;
+		for (int i = 0; i < m; i++) {
+			setMask(pattern.charAt(i), 1L << i);
 		}
 
-		if (la < lb) {
-			int tl = la;
+		long pv = -1L;
+		long mv = 0L;
+		long last = 1L << (m - 1);
+		int score = m;
+
+		for (int j = 0; j < n; j++) {
+			long eq = getMask(text.charAt(j));
+			long xv = eq | mv;
+			long xh = (((eq & pv) + pv) ^ pv) | eq;
+			long ph = mv | ~(xh | pv);
+			long mh = pv & xh;
+
+			if ((ph & last) != 0) {
+				score++;
+			} else if ((mh & last) != 0) {
+				score--;
+			}
 
-			la = lb;
-			lb = tl;
+			// The first row of the DP matrix increases by 1 with each text char.
+			ph = (ph << 1) | 1L;
+			mh <<= 1;
+			pv = mh | ~(xv | ph);
+			mv = ph & xv;
 
-			String ts = a;
+			// Each remaining text char can lower the score by at most 1.
+			if (max >= 0 && score - (n - j - 1) > max) {
+				score = max + 1;
+				break;
+			}
+		}
 
-			a = b;
-			b = ts;
+		clearMasks(pattern);
+		return score;
+	}
+
+	private void setMask(char c, long bit) {
+		if (c < asciiMasks.length) {
+			asciiMasks[c] |= bit;
+			return;
+		}
+
+		for (int k = 0; k < otherCount; k++) {
+			if (otherChars[k] == c) {
+				otherMasks[k] |= bit;
+				return;
+			}
 		}
 
+		otherChars[otherCount] = c;
+		otherMasks[otherCount] = bit;
+		otherCount++;
+	}
+
+	private long getMask(char c) {
+		if (c < asciiMasks.length) {
+			return asciiMasks[c];
+		}
+
+		for (int k = 0; k < otherCount; k++) {
+			if (otherChars[k] == c) {
+				return otherMasks[k];
+			}
+		}
+
+		return 0L;
+	}
+
+	private void clearMasks(String pattern) {
+		for (int i = 0; i < pattern.length(); i++) {
+			char c = pattern.charAt(i);
+
+			if (c < asciiMasks.length) {
+				asciiMasks[c] = 0L;
+			}
+		}
+
+		otherCount = 0;
+	}
+
+	/**
+	 * The classic, row-by-row computation, for strings that do not fit in a 64-bit word.
+	 * {@code a} is the longer string here.
+	 */
+	private static int dynamicDistance(String b, String a, int max) {
+		int la = a.length();
+		int lb = b.length();
 		int[] cost = new int[lb + 1];
 
+		for (int j = 0; j <= lb; j++) {
+			cost[j] = j;
+		}
+
 		for (int i = 1; i <= la; i += 1) {
 			cost[0] = i;
 
@@ -89,7 +201,7 @@ public class Levenshtein {
 				int act = prv + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
 
 				prv = cost[j];
-				cost[j] = min(1 + cost[j], 1 + cost[j - 1], act);
+				cost[j] = Math.min(Math.min(1 + cost[j], 1 + cost[j - 1]), act);
 
 				if (prv < min) {
 					min = prv;
@@ -97,35 +209,10 @@ public class Levenshtein {
 			}
 
 			if (max >= 0 && min > max) {
-				levenshteinCache.put(keyab, max + 1);
-				levenshteinCache.put(keyba, max + 1);
-
 				return max + 1;
 			}
 		}
 
-		if (max >= 0 && cost[lb] > max) {
-			levenshteinCache.put(keyab, max + 1);
-			levenshteinCache.put(keyba, max + 1);
-
-			return max + 1;
-		}
-
-		levenshteinCache.put(keyab, cost[lb]);
-		levenshteinCache.put(keyba, cost[lb]);
-
 		return cost[lb];
 	}
-
-	private int min(int... a) {
-		int min = Integer.MAX_VALUE;
-
-		for (int i : a) {
-			if (i < min) {
-				min = i;
-			}
-		}
-
-		return min;
-	}
 }
@@ -1,7 +1,9 @@
 package ro.racai.robin.nlp;
 
+import java.util.List;
 import java.util.Map;
 import ro.racai.robin.dialog.CType;
+import ro.racai.robin.nlp.TextProcessor.Token;
 
 /**
  * @author Radu Ion ({@code radu@racai.ro})
@@ -43,6 +45,25 @@ public interface Lexicon {
 
 	public boolean isAmountVariableWord(String lemma);
 
+	/**
+	 * Checks if the words before an adjective make it a superlative, e.g. "cel mai" in "cel mai
+	 * ieftin". A comparative such as "mai ieftin" is not a superlative.
+	 * 
+	 * @param tokens    the tokens of the noun phrase
+	 * @param adjective the index of the adjective in {@code tokens}
+	 * @return {@code true} if the adjective is a superlative
+	 */
+	public boolean isSuperlative(List<Token> tokens, int adjective);
+
+	/**
+	 * Finds a numeric constraint in a noun phrase of the query, e.g. 'sub 2500 de lei' or 'cu cel
+	 * puțin 8 GB memorie'.
+	 * 
+	 * @param tokens the tokens of the noun phrase
+	 * @return the range of values, or {@code null} if the noun phrase has no numeric constraint
+	 */
+	public NumericRange findNumericRange(List<Token> tokens);
+
 	/**
 	 * Checks if the POS belongs to a functional word.
 	 * 
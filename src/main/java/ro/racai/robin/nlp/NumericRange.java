@@ -0,0 +1,77 @@
+/**
+ *
+ */
+package ro.racai.robin.nlp;
+
+/**
+ * @author Radu Ion ({@code radu@racai.ro})
+ *         <p>
+ *         A numeric constraint from the user's query, e.g. <i>sub 2500 de lei</i> is the range
+ *         {@code (-inf, 2500)} with the unit <i>leu</i> and <i>cel puțin 8 GB</i> is the range
+ *         {@code [8, +inf)} with the unit <i>GB</i>. Found by
+ *         {@link Lexicon#findNumericRange(java.util.List)}.
+ *         </p>
+ */
+public class NumericRange {
+	private final float low;
+	private final boolean lowInclusive;
+	private final float high;
+	private final boolean highInclusive;
+
+	/**
+	 * The lemma of the unit of the values, {@code null} if the query did not say it.
+	 */
+	private final String unit;
+
+	public NumericRange(float low, boolean lowInclusive, float high, boolean highInclusive,
+			String unit) {
+		this.low = low;
+		this.lowInclusive = lowInclusive;
+		this.high = high;
+		this.highInclusive = highInclusive;
+		this.unit = unit;
+	}
+
+	public static NumericRange atLeast(float value, boolean inclusive, String unit) {
+		return new NumericRange(value, inclusive, Float.POSITIVE_INFINITY, true, unit);
+	}
+
+	public static NumericRange atMost(float value, boolean inclusive, String unit) {
+		return new NumericRange(Float.NEGATIVE_INFINITY, true, value, inclusive, unit);
+	}
+
+	public float getLow() {
+		return low;
+	}
+
+	public boolean isLowInclusive() {
+		return lowInclusive;
+	}
+
+	public float getHigh() {
+		return high;
+	}
+
+	public boolean isHighInclusive() {
+		return highInclusive;
+	}
+
+	public String getUnit() {
+		return unit;
+	}
+
+	/**
+	 * @param value the value to check;
+	 * @return {@code true} if {@code value} is in this range.
+	 */
+	public boolean contains(float value) {
+		return (lowInclusive ? value >= low : value > low)
+				&& (highInclusive ? value <= high : value < high);
+	}
+
+	@Override
+	public String toString() {
+		return (lowInclusive ? "[" : "(") + low + ", " + high + (highInclusive ? "]" : ")")
+				+ (unit == null ? "" : " " + unit);
+	}
+}
@@ -8,6 +8,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import ro.racai.robin.nlp.TextProcessor.Token;
 
 /**
  * @author Radu Ion ({@code radu@racai.ro})
@@ -26,7 +27,8 @@ public class RoLexicon implements Lexicon {
 			+ "dec[.]?|decembrie" + ")\\s([0-9]{4})", Pattern.CASE_INSENSITIVE);
 	private static final Pattern TIME_RX = Pattern.compile("([0-9]{1,2}):([0-9]{1,2})");
 	private static final Pattern NUMBER_RX = Pattern.compile("([0-9]+)");
-	private static final Pattern MODEL_RX = Pattern.compile("([A-Z][0-9A-Z-]+)");
+	private static final Pattern VALUE_RX = Pattern.compile("^[0-9]+([.,][0-9]+)?$");
+	static final Pattern MODEL_RX = Pattern.compile("([A-Z][0-9A-Z-]+)");
 	private static final Map<Integer, String> NUMBERS = new HashMap<>();
 	private static final List<Pair<EntityType, Pattern>> ENTITIES = new ArrayList<>();
 	private static final Map<Integer, String> MONTHS = new HashMap<>();
@@ -1127,4 +1129,75 @@ public class RoLexicon implements Lexicon {
 	public boolean isAmountVariableWord(String lemma) {
 		return lemma.equalsIgnoreCase("cât");
 	}
+
+	@Override
+	public boolean isSuperlative(List<Token> tokens, int adjective) {
+		if (adjective < 2 || !tokens.get(adjective - 1).lemma.equalsIgnoreCase("mai")) {
+			return false;
+		}
+
+		// 'cel', 'cea', 'cei' or 'cele'
+		String det = tokens.get(adjective - 2).wform.toLowerCase();
+
+		return det.equals("cel") || det.equals("cea") || det.equals("cei") || det.equals("cele");
+	}
+
+	/**
+	 * <p>
+	 * Recognizes 'sub X', 'peste X', 'cel puțin X', 'cel mult X' and 'între X și Y', where the
+	 * unit of the values is the first content word after the last number, e.g. 'leu' in 'sub
+	 * 2500 de lei'.
+	 * </p>
+	 */
+	@Override
+	public NumericRange findNumericRange(List<Token> tokens) {
+		for (int i = 1; i < tokens.size(); i++) {
+			if (!VALUE_RX.matcher(tokens.get(i).wform).matches()) {
+				continue;
+			}
+
+			float value = Float.parseFloat(tokens.get(i).wform.replace(',', '.'));
+			String prev = tokens.get(i - 1).lemma.toLowerCase();
+			String prevPrev = i >= 2 ? tokens.get(i - 2).lemma.toLowerCase() : "";
+
+			if (prev.equals("între") && i + 2 < tokens.size()
+					&& tokens.get(i + 1).lemma.equalsIgnoreCase("și")
+					&& VALUE_RX.matcher(tokens.get(i + 2).wform).matches()) {
+				float other = Float.parseFloat(tokens.get(i + 2).wform.replace(',', '.'));
+
+				return new NumericRange(Math.min(value, other), true, Math.max(value, other),
+						true, findUnit(tokens, i + 3));
+			}
+
+			if (prev.equals("sub")) {
+				return NumericRange.atMost(value, false, findUnit(tokens, i + 1));
+			}
+
+			if (prev.equals("peste")) {
+				return NumericRange.atLeast(value, false, findUnit(tokens, i + 1));
+			}
+
+			if (prevPrev.equals("cel") && prev.equals("puțin")) {
+				return NumericRange.atLeast(value, true, findUnit(tokens, i + 1));
+			}
+
+			if (prevPrev.equals("cel") && prev.equals("mult")) {
+				return NumericRange.atMost(value, true, findUnit(tokens, i + 1));
+			}
+		}
+
+		return null;
+	}
+
+	private String findUnit(List<Token> tokens, int from) {
+		for (int i = from; i < tokens.size(); i++) {
+			Token t = tokens.get(i);
+
+			if (!isFunctionalWord(t.wform) && !t.drel.equals("punct")) {
+				return t.lemma;
+			}
+		}
+
+		return null;
+	}
 }
@@ -0,0 +1,272 @@
+/**
+ *
+ */
+package ro.racai.robin.nlp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @author Radu Ion ({@code radu@racai.ro})
+ *         <p>
+ *         Maps the words of a micro-world to phonetic keys, such that the way the Romanian ASR
+ *         spells an unknown word (e.g. <i>leptop</i>, <i>uindos</i> or <i>aisăr</i>) finds the
+ *         intended word (<i>laptop</i>, <i>Windows</i> or <i>Acer</i>) with a single hash lookup.
+ *         </p>
+ *         <p>
+ *         A key is the consonant skeleton of the word as it is pronounced: vowels are dropped,
+ *         except for an initial one, and consonants that sound alike are merged. Micro-world words
+ *         are often English names, so they are indexed both with their Romanian and their English
+ *         reading. ASR output is always read the Romanian way.
+ *         </p>
+ */
+public class RoPhoneticIndex {
+	/**
+	 * Keys with fewer consonants than this are too ambiguous, e.g. <i>are</i> and <i>Air</i>.
+	 */
+	public static final int MIN_KEY_CONSONANTS = 2;
+
+	private static final String VOWELS = "aeiouăâîy";
+
+	/**
+	 * Phonetic key to the words having it.
+	 */
+	private final Map<String, List<String>> keyWords = new HashMap<>();
+
+	/**
+	 * <p>
+	 * Adds a word under its Romanian and English keys. Words with digits are skipped.
+	 * </p>
+	 *
+	 * @param word the word to add.
+	 */
+	public void addWord(String word) {
+		if (StringUtils.isNullEmptyOrBlank(word) || word.matches(".*\\d.*")) {
+			return;
+		}
+
+		Set<String> keys = new LinkedHashSet<>();
+
+		keys.add(romanianKey(word));
+		keys.add(englishKey(word));
+
+		for (String k : keys) {
+			if (consonantCount(k) < MIN_KEY_CONSONANTS) {
+				continue;
+			}
+
+			List<String> words = keyWords.computeIfAbsent(k, x -> new ArrayList<>(1));
+			boolean found = false;
+
+			for (String w : words) {
+				if (w.equalsIgnoreCase(word)) {
+					found = true;
+					break;
+				}
+			}
+
+			if (!found) {
+				words.add(word);
+			}
+		}
+	}
+
+	/**
+	 * <p>
+	 * Finds the indexed words that sound like {@code token}, read the Romanian way.
+	 * </p>
+	 *
+	 * @param token the ASR output token;
+	 * @return the words with the same key, possibly empty.
+	 */
+	public List<String> lookup(String token) {
+		String k = romanianKey(token);
+
+		if (consonantCount(k) < MIN_KEY_CONSONANTS) {
+			return Collections.emptyList();
+		}
+
+		return keyWords.getOrDefault(k, Collections.emptyList());
+	}
+
+	private static int consonantCount(String key) {
+		int count = key.length();
+
+		if (key.startsWith("A")) {
+			// Initial vowel
+			count--;
+		}
+
+		return count;
+	}
+
+	private static boolean isVowel(char c) {
+		return VOWELS.indexOf(c) >= 0;
+	}
+
+	private static char charAt(String s, int i) {
+		return i < s.length() ? s.charAt(i) : '\0';
+	}
+
+	/**
+	 * <p>
+	 * Computes the key of the word as read in Romanian, e.g. <i>ce</i> and <i>ci</i> are
+	 * <i>tʃ</i>, <i>che</i> and <i>chi</i> are <i>k</i>, <i>ge</i> and <i>gi</i> are <i>dʒ</i>.
+	 * </p>
+	 *
+	 * @param word the word;
+	 * @return its phonetic key.
+	 */
+	public static String romanianKey(String word) {
+		String s = word.toLowerCase();
+		StringBuilder key = new StringBuilder();
+
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			char n = charAt(s, i + 1);
+
+			if ((c == 'u' || c == 'w') && isVowel(n)) {
+				// Semivowel, as in 'uindos' or 'huauei'
+				key.append('W');
+			} else if (isVowel(c) || c == 'w') {
+				if (i == 0) {
+					key.append('A');
+				}
+			} else if (c == 'c') {
+				if (n == 'e' || n == 'i') {
+					key.append('C');
+				} else if (n == 'h') {
+					key.append('K');
+					i++;
+				} else {
+					key.append('K');
+				}
+			} else if (c == 'g') {
+				if (n == 'e' || n == 'i') {
+					key.append('J');
+				} else if (n == 'h') {
+					key.append('G');
+					i++;
+				} else {
+					key.append('G');
+				}
+			} else {
+				appendCommonConsonant(c, key);
+			}
+		}
+
+		return collapse(key);
+	}
+
+	/**
+	 * <p>
+	 * Computes the key of the word as read in English, e.g. <i>Acer</i> sounds like <i>eisăr</i>
+	 * and <i>smartwatch</i> sounds like <i>smartuaci</i>.
+	 * </p>
+	 *
+	 * @param word the word;
+	 * @return its phonetic key.
+	 */
+	public static String englishKey(String word) {
+		String s = word.toLowerCase();
+		StringBuilder key = new StringBuilder();
+
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			char n = charAt(s, i + 1);
+			char n2 = charAt(s, i + 2);
+
+			if ((c == 'u' || c == 'w') && isVowel(n)) {
+				key.append('W');
+			} else if (c == 'w' && n == 'h') {
+				key.append('W');
+				i++;
+			} else if (isVowel(c) || c == 'w') {
+				// A 'w' before a consonant is a vowel, e.g. 'Windows' or 'showroom'
+				if (i == 0) {
+					key.append('A');
+				}
+			} else if (c == 't' && n == 'c' && n2 == 'h') {
+				key.append('C');
+				i += 2;
+			} else if ((c == 't' || c == 's') && n == 'i' && n2 == 'o') {
+				// 'edition', 'version'
+				key.append('S');
+			} else if (c == 's' && n == 'h') {
+				key.append('S');
+				i++;
+			} else if (c == 'c' && n == 'h') {
+				key.append('C');
+				i++;
+			} else if (c == 'c' && n == 'k') {
+				key.append('K');
+				i++;
+			} else if (c == 'p' && n == 'h') {
+				key.append('F');
+				i++;
+			} else if (c == 't' && n == 'h') {
+				key.append('T');
+				i++;
+			} else if (c == 'q' && n == 'u') {
+				key.append("KW");
+				i++;
+			} else if (c == 'c') {
+				key.append(n == 'e' || n == 'i' || n == 'y' ? 'S' : 'K');
+			} else if (c == 'g') {
+				key.append(n == 'e' || n == 'i' || n == 'y' ? 'J' : 'G');
+			} else {
+				appendCommonConsonant(c, key);
+			}
+		}
+
+		return collapse(key);
+	}
+
+	private static void appendCommonConsonant(char c, StringBuilder key) {
+		switch (c) {
+			case 's':
+			case 'z':
+			case 'ș':
+			case 'ş':
+				key.append('S');
+				break;
+			case 'ț':
+			case 'ţ':
+				key.append('T');
+				break;
+			case 'k':
+			case 'q':
+				key.append('K');
+				break;
+			case 'x':
+				key.append("KS");
+				break;
+			default:
+				if (Character.isLetter(c)) {
+					key.append(Character.toUpperCase(c));
+				}
+		}
+	}
+
+	/**
+	 * Double consonants are pronounced as one, e.g. <i>Apple</i> or <i>business</i>.
+	 */
+	private static String collapse(StringBuilder key) {
+		StringBuilder result = new StringBuilder();
+
+		for (int i = 0; i < key.length(); i++) {
+			char c = key.charAt(i);
+
+			if (result.length() == 0 || result.charAt(result.length() - 1) != c) {
+				result.append(c);
+			}
+		}
+
+		return result.toString();
+	}
+}
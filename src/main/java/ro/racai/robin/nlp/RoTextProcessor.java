@@ -16,6 +16,7 @@ import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -52,10 +53,80 @@ public class RoTextProcessor extends TextProcessor {
 	private static final Pattern PUNCT_RX = Pattern.compile("^\\W+$");
 	//private static final String NLP_CUBE = "nlp-cube-adobe";
 
+	/**
+	 * The word distance object of each thread, since {@link Levenshtein} keeps its working
+	 * memory between calls.
+	 */
+	private final ThreadLocal<Levenshtein> wordDistance = ThreadLocal.withInitial(Levenshtein::new);
+
 	public RoTextProcessor(Lexicon lex, WordNet wn, RDSayings say) {
 		super(lex, wn, say);
 	}
 
+	/**
+	 * @author Radu Ion ({@code radu@racai.ro})
+	 * <p>The spelling indexes, with the words of the micro-world by their phonetic keys.</p>
+	 */
+	private static class RoSpelling extends Spelling {
+		private final RoPhoneticIndex phoneticIndex;
+
+		RoSpelling(Spelling spelling, RoPhoneticIndex phoneticIndex) {
+			super(spelling.index);
+			this.phoneticIndex = phoneticIndex;
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see ro.racai.robin.nlp.TextProcessor#buildSpelling(java.util.Collection)
+	 */
+	@Override
+	public Spelling buildSpelling(Collection<String> vocabulary) {
+		RoPhoneticIndex index = new RoPhoneticIndex();
+
+		for (String w : vocabulary) {
+			index.addWord(w);
+		}
+
+		return new RoSpelling(super.buildSpelling(vocabulary), index);
+	}
+
+	/**
+	 * <p>
+	 * Looks up the phonetic key of the word and returns the closest word with that key. Equally
+	 * close words are resolved in favor of the one that was added first to the vocabulary (word
+	 * forms come before lemmas). As keys ignore vowels, the word must also be within an edit
+	 * distance of half its length from its correction, e.g. <i>Pepper</i> is not <i>Pro</i>.
+	 * </p>
+	 * 
+	 * @see ro.racai.robin.nlp.TextProcessor#phoneticCorrection(java.lang.String,
+	 *      ro.racai.robin.nlp.TextProcessor.Spelling)
+	 */
+	@Override
+	protected String phoneticCorrection(String word, Spelling spelling) {
+		if (!(spelling instanceof RoSpelling)) {
+			return null;
+		}
+
+		RoPhoneticIndex phoneticIndex = ((RoSpelling) spelling).phoneticIndex;
+
+		String lcWord = word.toLowerCase();
+		String best = null;
+		int bestDistance = Integer.MAX_VALUE;
+
+		for (String cand : phoneticIndex.lookup(word)) {
+			String lcCand = cand.toLowerCase();
+			int maxDistance = (Math.max(lcWord.length(), lcCand.length()) + 1) / 2;
+			int d = wordDistance.get().distance(lcWord, lcCand, maxDistance);
+
+			if (d <= maxDistance && d < bestDistance) {
+				best = cand;
+				bestDistance = d;
+			}
+		}
+
+		return best;
+	}
+
 /* 	private String improveASRDetection(String text, String queryUrl) {
 		StringBuilder content = new StringBuilder();
 	
@@ -248,10 +319,11 @@ public class RoTextProcessor extends TextProcessor {
 	/*
 	 * (non-Javadoc)
 	 * 
-	 * @see ro.racai.robin.nlp.TextProcessor#textCorrection(java.lang.String)
+	 * @see ro.racai.robin.nlp.TextProcessor#textCorrection(java.lang.String,
+	 *      ro.racai.robin.nlp.TextProcessor.Corrections)
 	 */
 	@Override
-	protected String textCorrection(String text) {
+	protected String textCorrection(String text, Corrections textCorrections) {
 		if (!StringUtils.isNullEmptyOrBlank(text)) {
 			// 1. Take care of clitic insertion (done by Vasile Păiș)
 			//text = improveASRDetection(text, CLITIC_QUERY);
@@ -261,9 +333,11 @@ public class RoTextProcessor extends TextProcessor {
 			// 2. Replace known ASR errors with the correct Romanian phrases.
 			List<String> tokens = Arrays.asList(text.split("\\s+"));
 			Map<Pair<Integer, Integer>, String> corrected = new HashMap<>();
+			Map<String, String> asrCorrectionDictionary = textCorrections.getASRDictionary();
+			Spelling spelling = textCorrections.getSpelling();
 
 			if (!asrCorrectionDictionary.isEmpty()) {
-				for (int k = asrMaxPhraseLength; k >= 1; k--) {
+				for (int k = textCorrections.getASRMaxPhraseLength(); k >= 1; k--) {
 					for (int i = 0; i <= tokens.size() - k; i++) {
 						Pair<Integer, Integer> rk = new Pair<>(i, i + k);
 						boolean overlap = false;
@@ -292,22 +366,41 @@ public class RoTextProcessor extends TextProcessor {
 						}
 					} // end for i
 				} // end for k
+			}
 
-				for (Map.Entry<Pair<Integer, Integer>, String> e : corrected.entrySet()) {
-					Pair<Integer, Integer> p = e.getKey();
+			// 2.1 Correct the rest of the tokens to the words of the micro-world.
+			// DICT replacements take precedence.
+			if (spelling != null) {
+				for (int i = 0; i < tokens.size(); i++) {
+					boolean inDictRange = false;
 
-					tokens.set(p.getFirstMember(), e.getValue());
+					for (Pair<Integer, Integer> p : corrected.keySet()) {
+						if (i >= p.getFirstMember() && i < p.getSecondMember()) {
+							inDictRange = true;
+							break;
+						}
+					}
 
-					for (int i = p.getFirstMember() + 1; i < p.getSecondMember(); i++) {
-						tokens.set(i, "");
+					if (!inDictRange) {
+						tokens.set(i, spellingCorrection(tokens.get(i), spelling));
 					}
 				}
+			}
+
+			for (Map.Entry<Pair<Integer, Integer>, String> e : corrected.entrySet()) {
+				Pair<Integer, Integer> p = e.getKey();
+
+				tokens.set(p.getFirstMember(), e.getValue());
 
-				text = String.join(" ", tokens);
-				text = text.replaceAll("\\s+", " ");
-				text = text.trim();
+				for (int i = p.getFirstMember() + 1; i < p.getSecondMember(); i++) {
+					tokens.set(i, "");
+				}
 			}
 
+			text = String.join(" ", tokens);
+			text = text.replaceAll("\\s+", " ");
+			text = text.trim();
+
 			if (!text.endsWith(".") && !text.endsWith("?")) {
 				// 3. Add '?' or '.' depending on the statement, only if required!
 				String[] spaceTokens = text.split("\\s+");
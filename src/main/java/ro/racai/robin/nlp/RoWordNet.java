@@ -12,7 +12,14 @@ import java.net.URL;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.log4j.Logger;
 import org.json.simple.JSONArray;
@@ -29,20 +36,48 @@ public class RoWordNet extends WordNet {
 	private static final String WORDNET_QUERY =
 		"https://relate.racai.ro/index.php?path=rownws&word=#WORD#&sid=#ILI#&wn=ro";
 	private static final Logger LOGGER = Logger.getLogger(RoWordNet.class.getName());
+	/**
+	 * How many concurrent requests we send to RELATE when looking up words in batch.
+	 */
+	static final int MAX_CONNECTIONS = 4;
+	private static ExecutorService lookupPool;
 	
 	@Override
 	public List<String> getHypernyms(String word) {
-		return getRelationMembers(word, "hypernym");
+		return lookup(word).getHypernyms();
 	}
 
 	@Override
 	public List<String> getHyponyms(String word) {
-		return getRelationMembers(word, "hyponym");
+		return lookup(word).getHyponyms();
 	}
-	
-	private List<String> getRelationMembers(String word, String relName) {
-		List<String> members = new ArrayList<>();
+
+	@Override
+	public List<String> getSynonyms(String word) {
+		return lookup(word).getSynonyms();
+	}
+
+	/**
+	 * <p>
+	 * One RELATE request gives us all the senses of the word, with their literals and relations,
+	 * so we extract everything from it.
+	 * </p>
+	 */
+	@Override
+	protected WordNetEntry fetchEntry(String word) {
+		if (isNotInWordNet(word)) {
+			return WordNetEntry.emptyEntry(word);
+		}
+
 		String json = jsonWordNetResponse(word);
+
+		if (json == null) {
+			return null;
+		}
+
+		List<String> synonyms = new ArrayList<>();
+		List<String> hypernyms = new ArrayList<>();
+		List<String> hyponyms = new ArrayList<>();
 		JSONParser parser = new JSONParser();
 		
 		try {
@@ -50,64 +85,128 @@ public class RoWordNet extends WordNet {
 			
 			if (root.isEmpty()) {
 				// If word is not found in WordNet...
-				return members;
+				return WordNetEntry.emptyEntry(word);
 			}
 			
 			JSONArray senses = (JSONArray) root.get("senses");
 			
 			for (int i = 0; i < senses.size(); i++) {
 				JSONObject sense = (JSONObject) senses.get(i);
+				String[] synset = ((String) sense.get("literal")).split(",");
+				
+				for (String syn : synset) {
+					if (!syn.equals(word)) {
+						synonyms.add(syn);
+					}
+				}
+
 				JSONArray relations = (JSONArray) sense.get("relations");
 				
 				for (int j = 0; j < relations.size(); j++) {
 					JSONObject relation = (JSONObject) relations.get(j);
 					String relationName = (String) relation.get("rel");
 					
-					if (relationName.equals(relName)) {
-						members.add((String) relation.get("tliteral"));
+					if (relationName.equals("hypernym")) {
+						hypernyms.add((String) relation.get("tliteral"));
+					}
+					else if (relationName.equals("hyponym")) {
+						hyponyms.add((String) relation.get("tliteral"));
 					}
 				}
 			}
 		}
 		catch (ParseException pe) {
 			pe.printStackTrace();
+			return null;
 		}
 
-		return members;
+		return new WordNetEntry(word, synonyms, hypernyms, hyponyms);
 	}
 
+	/**
+	 * <p>
+	 * Issues the RELATE requests for the words that are not cached yet concurrently, using at
+	 * most {@link #MAX_CONNECTIONS} connections at a time. The words whose request failed get
+	 * empty entries, which are not cached, and are not asked for again in this call.
+	 * </p>
+	 */
 	@Override
-	public List<String> getSynonyms(String word) {
-		List<String> synonyms = new ArrayList<>();
-		String json = jsonWordNetResponse(word);
-		JSONParser parser = new JSONParser();
-		
-		try {
-			JSONObject root = (JSONObject) parser.parse(json);
-			
-			if (root.isEmpty()) {
-				// If word is not found in WordNet...
-				return synonyms;
+	public Map<String, WordNetEntry> lookupAll(Collection<String> words) {
+		Map<String, Future<WordNetEntry>> pending = new LinkedHashMap<>();
+
+		for (String w : words) {
+			if (isNotInWordNet(w)) {
+				wnEntryCache.put(w, WordNetEntry.emptyEntry(w));
 			}
-			
-			JSONArray senses = (JSONArray) root.get("senses");
-			
-			for (int i = 0; i < senses.size(); i++) {
-				JSONObject sense = (JSONObject) senses.get(i);
-				String[] synset = ((String) sense.get("literal")).split(",");
-				
-				for (String syn : synset) {
-					if (!syn.equals(word)) {
-						synonyms.add(syn);
-					}
+			else if (!wnEntryCache.containsKey(w) && !pending.containsKey(w)) {
+				pending.put(w, getLookupPool().submit(() -> fetchEntry(w)));
+			}
+		}
+
+		for (Map.Entry<String, Future<WordNetEntry>> e : pending.entrySet()) {
+			try {
+				WordNetEntry entry = e.getValue().get();
+
+				if (entry != null) {
+					wnEntryCache.put(e.getKey(), entry);
 				}
+			} catch (ExecutionException ee) {
+				LOGGER.warn("RELATE lookup failed for word '" + e.getKey() + "'");
+				ee.printStackTrace();
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+				break;
 			}
 		}
-		catch (ParseException pe) {
-			pe.printStackTrace();
+
+		LOGGER.info("Looked up " + pending.size() + " new words in RoWordNet");
+
+		Map<String, WordNetEntry> result = new LinkedHashMap<>();
+
+		for (String w : words) {
+			if (!result.containsKey(w)) {
+				result.put(w, wnEntryCache.getOrDefault(w, WordNetEntry.emptyEntry(w)));
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * <p>
+	 * Tests if {@code word} is certainly not a RoWordNet literal, without asking RELATE. Model
+	 * names (e.g. <i>A515-56</i>) and words with digits in them (e.g. <i>i5</i>) are never
+	 * literals.
+	 * </p>
+	 * 
+	 * @param word the word to check;
+	 * @return {@code true} if there is no point in looking up {@code word}.
+	 */
+	public static boolean isNotInWordNet(String word) {
+		if (RoLexicon.MODEL_RX.matcher(word).matches()) {
+			return true;
+		}
+
+		for (int i = 0; i < word.length(); i++) {
+			if (Character.isDigit(word.charAt(i))) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private static synchronized ExecutorService getLookupPool() {
+		if (lookupPool == null) {
+			lookupPool = Executors.newFixedThreadPool(MAX_CONNECTIONS, r -> {
+				Thread t = new Thread(r, "rown-lookup");
+
+				t.setDaemon(true);
+				return t;
+			});
 		}
 
-		return synonyms;
+		return lookupPool;
 	}
 	
 	private String jsonWordNetResponse(String word) {
@@ -0,0 +1,173 @@
+/**
+ *
+ */
+package ro.racai.robin.nlp;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @author Radu Ion ({@code radu@racai.ro})
+ *         <p>
+ *         Spelling correction with the symmetric delete algorithm of Wolf Garbe's
+ *         <a href="https://github.com/wolfgarbe/SymSpell">SymSpell</a>. All the strings obtained by
+ *         deleting up to {@link #maxEditDistance} characters from the vocabulary words are indexed,
+ *         so the candidate corrections of a word are found by looking up its own deletes, without
+ *         scanning the vocabulary. Candidates are verified with {@link Levenshtein}.
+ *         </p>
+ *         <p>
+ *         Matching is case-insensitive; corrections are returned in the form they were added in.
+ *         </p>
+ */
+public class SymSpell {
+	/**
+	 * The maximum edit distance for which deletes are indexed.
+	 */
+	private final int maxEditDistance;
+
+	/**
+	 * Lower-cased vocabulary words, mapped to their form as added.
+	 */
+	private final Map<String, String> vocabulary = new HashMap<>();
+
+	/**
+	 * Maps each delete of a lower-cased vocabulary word to the words it was obtained from.
+	 */
+	private final Map<String, List<String>> deletes = new HashMap<>();
+
+	/**
+	 * The word distance object of each thread, since {@link Levenshtein} keeps its working
+	 * memory between calls and queries can be corrected on several threads.
+	 */
+	private final ThreadLocal<Levenshtein> wordDistance = ThreadLocal.withInitial(Levenshtein::new);
+
+	public SymSpell(int maxEditDistance) {
+		this.maxEditDistance = maxEditDistance;
+	}
+
+	/**
+	 * <p>
+	 * Adds a word to the vocabulary. The first form that is added for a word is the one that will
+	 * be returned as a correction.
+	 * </p>
+	 *
+	 * @param word the word to add.
+	 */
+	public void addWord(String word) {
+		if (StringUtils.isNullEmptyOrBlank(word)) {
+			return;
+		}
+
+		String key = word.toLowerCase();
+
+		if (vocabulary.containsKey(key)) {
+			return;
+		}
+
+		vocabulary.put(key, word);
+
+		for (String del : generateDeletes(key, maxEditDistance)) {
+			deletes.computeIfAbsent(del, k -> new ArrayList<>(1)).add(key);
+		}
+	}
+
+	public boolean contains(String word) {
+		return vocabulary.containsKey(word.toLowerCase());
+	}
+
+	public int size() {
+		return vocabulary.size();
+	}
+
+	private static Set<String> generateDeletes(String word, int distance) {
+		Set<String> result = new HashSet<>();
+		List<String> current = new ArrayList<>();
+
+		current.add(word);
+
+		for (int d = 0; d < distance; d++) {
+			List<String> next = new ArrayList<>();
+
+			for (String w : current) {
+				for (int i = 0; i < w.length(); i++) {
+					String del = w.substring(0, i) + w.substring(i + 1);
+
+					if (result.add(del)) {
+						next.add(del);
+					}
+				}
+			}
+
+			current = next;
+		}
+
+		return result;
+	}
+
+	/**
+	 * <p>
+	 * Finds the closest vocabulary word to {@code word}.
+	 * </p>
+	 *
+	 * @param word        the (possibly misspelled) word;
+	 * @param maxDistance the maximum accepted edit distance, at most {@link #maxEditDistance};
+	 * @return the vocabulary word, if {@code word} is in the vocabulary, or the unique closest
+	 *         vocabulary word within {@code maxDistance} edits, or {@code null} if there is no such
+	 *         word or if there are several equally close words.
+	 */
+	public String lookup(String word, int maxDistance) {
+		String key = word.toLowerCase();
+
+		if (vocabulary.containsKey(key)) {
+			return vocabulary.get(key);
+		}
+
+		maxDistance = Math.min(maxDistance, maxEditDistance);
+
+		Set<String> probes = generateDeletes(key, maxDistance);
+		Set<String> checked = new HashSet<>();
+		String best = null;
+		int bestDistance = maxDistance + 1;
+		boolean tie = false;
+
+		probes.add(key);
+
+		for (String probe : probes) {
+			List<String> candidates = new ArrayList<>();
+
+			if (vocabulary.containsKey(probe)) {
+				candidates.add(probe);
+			}
+
+			if (deletes.containsKey(probe)) {
+				candidates.addAll(deletes.get(probe));
+			}
+
+			for (String cand : candidates) {
+				if (!checked.add(cand)) {
+					continue;
+				}
+
+				int d = wordDistance.get().distance(key, cand, maxDistance);
+
+				if (d < bestDistance) {
+					best = cand;
+					bestDistance = d;
+					tie = false;
+				} else if (d == bestDistance && d <= maxDistance) {
+					tie = true;
+				}
+			}
+		}
+
+		if (best == null || tie) {
+			return null;
+		}
+
+		return vocabulary.get(best);
+	}
+}
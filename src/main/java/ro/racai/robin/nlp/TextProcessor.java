@@ -13,9 +13,14 @@ import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import org.apache.log4j.Logger;
 
 import ro.racai.robin.dialog.RDConcept;
@@ -47,17 +52,105 @@ public abstract class TextProcessor {
 	
 	/**
 	 * Save expensive text processing calls
-	 * to the TEPROLIN web service. 
+	 * to the TEPROLIN web service. Also read when the micro-world is reloaded
+	 * in the background, while prompts are processed.
 	 */
 	protected static final String PROCESSED_TEXT_CACHE_FILE = "processed-text-cache.txt";
-	protected Map<String, List<Token>> processedTextCache = new HashMap<>();
+	protected Map<String, List<Token>> processedTextCache = new ConcurrentHashMap<>();
 	
 	/**
-	 * The correction dictionary for the ASR module.
+	 * The corrections of the ASR output, replaced in one write when the micro-world is
+	 * (re)loaded. A text is corrected with the one that was read when its correction started.
 	 */
-	protected Map<String, String> asrCorrectionDictionary = new HashMap<>();
-	protected int asrMaxPhraseLength = 0;
+	protected volatile Corrections corrections = Corrections.NONE;
+
+	/**
+	 * Words shorter than this are not spell-checked: there are too many close candidates.
+	 */
+	protected static final int SPELLING_MIN_LENGTH = 4;
+
+	/**
+	 * Words at least this long are corrected with up to 2 edits; shorter ones with 1 edit.
+	 */
+	protected static final int SPELLING_TWO_EDITS_LENGTH = 7;
+
+	private static final Pattern SPELLING_TOKEN_RX =
+		Pattern.compile("^([^\\p{L}\\p{N}]*)(.*?)([^\\p{L}\\p{N}]*)$");
 	
+	/**
+	 * @author Radu Ion ({@code radu@racai.ro})
+	 * <p>The spelling correction indexes over the words of the micro-world, for the ASR
+	 * errors that are not in the correction dictionary. Language-specific text processors
+	 * add their own indexes, see {@link TextProcessor#buildSpelling(Collection)}.</p>
+	 */
+	public static class Spelling {
+		protected final SymSpell index;
+
+		protected Spelling(SymSpell index) {
+			this.index = index;
+		}
+	}
+
+	/**
+	 * @author Radu Ion ({@code radu@racai.ro})
+	 * <p>What the ASR output is corrected with: the DICT rules of the micro-world, the
+	 * length of their longest phrase and the {@link Spelling} indexes. It is not changed
+	 * once built, such that the rules and the indexes of a micro-world are always used
+	 * together.</p>
+	 */
+	public static final class Corrections {
+		/**
+		 * No DICT rules and no spelling correction.
+		 */
+		public static final Corrections NONE = new Corrections(new HashMap<>(), null);
+
+		final Map<String, String> asrDictionary;
+		final int asrMaxPhraseLength;
+
+		/**
+		 * {@code null} if the words are not spell-checked.
+		 */
+		final Spelling spelling;
+
+		/**
+		 * @param dictionary the DICT rules, from the wrong phrase to the correct one;
+		 * @param spelling   the spelling indexes of the micro-world, see
+		 *                   {@link TextProcessor#buildSpelling(Collection)}, or {@code null}.
+		 */
+		public Corrections(Map<String, String> dictionary, Spelling spelling) {
+			int maxPhraseLength = 0;
+
+			for (String phrase : dictionary.keySet()) {
+				// Establish the maximum length of an erroneous phrase
+				maxPhraseLength = Math.max(maxPhraseLength, phrase.split("\\s+").length);
+			}
+
+			asrDictionary = Collections.unmodifiableMap(new HashMap<>(dictionary));
+			asrMaxPhraseLength = maxPhraseLength;
+			this.spelling = spelling;
+		}
+
+		public Corrections withASRDictionary(Map<String, String> dictionary) {
+			return new Corrections(dictionary, spelling);
+		}
+
+		public Corrections withSpelling(Spelling newSpelling) {
+			return new Corrections(asrDictionary, newSpelling);
+		}
+
+		public Map<String, String> getASRDictionary() {
+			return asrDictionary;
+		}
+
+		public int getASRMaxPhraseLength() {
+			return asrMaxPhraseLength;
+		}
+
+		public Spelling getSpelling() {
+			return spelling;
+		}
+	}
+
 	/**
 	 * @author Radu Ion ({@code radu@racai.ro})
 	 * <p>Represents an annotated token of the input text.
@@ -211,17 +304,137 @@ public abstract class TextProcessor {
 		populateProcessedTextCache();
 	}
 	
-	public void setASRDictionary(Map<String, String> dictionary) {
-		asrCorrectionDictionary = dictionary;
+	public Corrections getCorrections() {
+		return corrections;
+	}
 
-		for (Map.Entry<String, String> e : asrCorrectionDictionary.entrySet()) {
-			String[] parts = e.getKey().split("\\s+");
+	/**
+	 * <p>
+	 * Replaces the DICT rules and the spelling indexes, in one go.
+	 * </p>
+	 * 
+	 * @param newCorrections the corrections of the (re)loaded micro-world.
+	 */
+	public void setCorrections(Corrections newCorrections) {
+		corrections = newCorrections;
+	}
 
-			if (asrMaxPhraseLength < parts.length) {
-				// Establish the maximum length of an erroneous phrase
-				asrMaxPhraseLength = parts.length;
+	public synchronized void setASRDictionary(Map<String, String> dictionary) {
+		// The dictionary of a reloaded micro-world replaces the old one
+		corrections = corrections.withASRDictionary(dictionary);
+	}
+
+	/**
+	 * <p>
+	 * Builds the spelling correction index with the words of the micro-world, e.g. the word forms
+	 * and lemmas of its bound concepts.
+	 * </p>
+	 * 
+	 * @param vocabulary the words that the ASR output should be corrected to.
+	 */
+	public synchronized void setSpellingVocabulary(Collection<String> vocabulary) {
+		corrections = corrections.withSpelling(buildSpelling(vocabulary));
+	}
+
+	/**
+	 * <p>
+	 * Builds the spelling correction indexes of a vocabulary, for
+	 * {@link Corrections#Corrections(Map, Spelling)}.
+	 * </p>
+	 * 
+	 * @param vocabulary the words that the ASR output should be corrected to;
+	 * @return the spelling indexes.
+	 */
+	public Spelling buildSpelling(Collection<String> vocabulary) {
+		SymSpell index = new SymSpell(2);
+
+		for (String w : vocabulary) {
+			index.addWord(w);
+		}
+
+		LOGGER.info("Spelling correction index has " + index.size() + " words");
+		return new Spelling(index);
+	}
+
+	/**
+	 * <p>
+	 * Corrects one token of the ASR output to a word of the micro-world, if it is out of
+	 * vocabulary and there is a single, close enough word to correct it to. Punctuation
+	 * stuck to the token is kept.
+	 * </p>
+	 * 
+	 * @param token the token to correct;
+	 * @return the corrected token or {@code token} if nothing could be done.
+	 */
+	protected String spellingCorrection(String token) {
+		return spellingCorrection(token, corrections.spelling);
+	}
+
+	/**
+	 * @param spelling the spelling indexes of the text that {@code token} is from, or
+	 *                 {@code null}.
+	 */
+	protected String spellingCorrection(String token, Spelling spelling) {
+		if (spelling == null) {
+			return token;
+		}
+
+		SymSpell spellingIndex = spelling.index;
+
+		Matcher m = SPELLING_TOKEN_RX.matcher(token);
+
+		if (!m.find()) {
+			return token;
+		}
+
+		String word = m.group(2);
+
+		if (word.isEmpty() || word.matches(".*\\d.*")
+				|| lexicon.isFunctionalWord(word.toLowerCase()) || spellingIndex.contains(word)) {
+			return token;
+		}
+
+		String lcWord = word.toLowerCase();
+
+		for (int i = SPELLING_MIN_LENGTH - 1; i < lcWord.length(); i++) {
+			if (spellingIndex.contains(lcWord.substring(0, i))) {
+				// An inflected form of a known word, e.g. 'laptopul'.
+				return token;
 			}
 		}
+
+		if (word.length() < SPELLING_MIN_LENGTH) {
+			return token;
+		}
+
+		String correction = phoneticCorrection(word, spelling);
+
+		if (correction == null) {
+			int maxDistance = word.length() >= SPELLING_TWO_EDITS_LENGTH ? 2 : 1;
+
+			correction = spellingIndex.lookup(word, maxDistance);
+		}
+
+		if (correction == null) {
+			return token;
+		}
+
+		LOGGER.info("Spelling correction: '" + word + "' -> '" + correction + "'");
+		return m.group(1) + correction + m.group(3);
+	}
+
+	/**
+	 * <p>
+	 * Language-specific correction of a word that sounds like a word of the micro-world, tried
+	 * before the edit distance based correction. By default, it does nothing.
+	 * </p>
+	 * 
+	 * @param word     an out of vocabulary word;
+	 * @param spelling the spelling indexes of the micro-world;
+	 * @return the micro-world word or {@code null} if there is none.
+	 */
+	protected String phoneticCorrection(String word, Spelling spelling) {
+		return null;
 	}
 
 	/**
@@ -236,6 +449,19 @@ public abstract class TextProcessor {
 	 * @return the list of tokens to work with.
 	 */
 	public List<Token> textProcessor(String text, boolean isJavaRef, boolean isFromMW) {
+		return textProcessor(text, isJavaRef, isFromMW, corrections);
+	}
+
+	/**
+	 * <p>
+	 * As {@link #textProcessor(String, boolean, boolean)}, with the corrections of a given
+	 * version of the micro-world, e.g. the one that the dialogue turn is using.
+	 * </p>
+	 * 
+	 * @param textCorrections the DICT rules and spelling indexes to correct the text with.
+	 */
+	public List<Token> textProcessor(String text, boolean isJavaRef, boolean isFromMW,
+			Corrections textCorrections) {
 		if (isJavaRef) {
 			// This is a Java class name
 			Token t = new Token(text, text, "Nc", 0, "root", false);
@@ -248,7 +474,7 @@ public abstract class TextProcessor {
 		if (!isFromMW) {
 			// This is a piece of text NOT coming from the .mw file
 			text = normalizeText(text);
-			text = textCorrection(text);
+			text = textCorrection(text, textCorrections);
 		}
 
 		if (processedTextCache.containsKey(text)) {
@@ -405,7 +631,15 @@ public abstract class TextProcessor {
 	 * @param text          text to be corrected
 	 * @return              the fixed text
 	 */
-	protected abstract String textCorrection(String text);
+	protected String textCorrection(String text) {
+		return textCorrection(text, corrections);
+	}
+
+	/**
+	 * @param textCorrections the DICT rules and spelling indexes to correct {@code text} with,
+	 *                        read once for the whole text.
+	 */
+	protected abstract String textCorrection(String text, Corrections textCorrections);
 	
 	/**
 	 * <p>When saying e.g. '245', we need to transform
@@ -0,0 +1,133 @@
+/**
+ *
+ */
+package ro.racai.robin.nlp;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @author Radu Ion ({@code radu@racai.ro})
+ *         <p>
+ *         Character trigram inverted index over items described by a bag of words. Given the
+ *         words of a query, it quickly returns the items which share the most trigrams with them,
+ *         so that only those are scored with the expensive similarity measures.
+ *         </p>
+ *         <p>
+ *         Words are lower-cased and padded with a boundary mark, such that short words still get
+ *         trigrams and word starts and ends weigh more.
+ *         </p>
+ * @param <T> the type of the indexed items.
+ */
+public class TrigramIndex<T> {
+	private static final char BOUNDARY = '$';
+
+	/**
+	 * Indexed items, by item ID.
+	 */
+	private final List<T> items = new ArrayList<>();
+
+	/**
+	 * Maps a trigram to the IDs of the items having it, in increasing order.
+	 */
+	private final Map<String, List<Integer>> postings = new HashMap<>();
+
+	/**
+	 * <p>
+	 * Adds an item to the index.
+	 * </p>
+	 *
+	 * @param item  the item to add;
+	 * @param words the words describing the item.
+	 */
+	public void add(T item, Collection<String> words) {
+		int id = items.size();
+
+		items.add(item);
+
+		for (String tg : trigrams(words)) {
+			postings.computeIfAbsent(tg, k -> new ArrayList<>()).add(id);
+		}
+	}
+
+	public int size() {
+		return items.size();
+	}
+
+	/**
+	 * <p>
+	 * Computes the set of trigrams of a bag of words.
+	 * </p>
+	 *
+	 * @param words the words to split into trigrams;
+	 * @return the set of distinct trigrams, lower-cased.
+	 */
+	public static Set<String> trigrams(Collection<String> words) {
+		Set<String> result = new LinkedHashSet<>();
+
+		for (String w : words) {
+			if (StringUtils.isNullEmptyOrBlank(w)) {
+				continue;
+			}
+
+			String pw = BOUNDARY + w.toLowerCase() + BOUNDARY;
+
+			for (int i = 0; i + 3 <= pw.length(); i++) {
+				result.add(pw.substring(i, i + 3));
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * <p>
+	 * Retrieves the items that share trigrams with {@code words}, ranked by the number of shared
+	 * trigrams.
+	 * </p>
+	 *
+	 * @param words         the query words;
+	 * @param maxCandidates how many items to return; items that tie with the last returned item
+	 *                      are also returned, so that the cut is not arbitrary;
+	 * @return the candidate items, best first.
+	 */
+	public List<T> candidates(Collection<String> words, int maxCandidates) {
+		int[] shared = new int[items.size()];
+		List<Integer> found = new ArrayList<>();
+
+		for (String tg : trigrams(words)) {
+			List<Integer> ids = postings.get(tg);
+
+			if (ids == null) {
+				continue;
+			}
+
+			for (int id : ids) {
+				if (shared[id] == 0) {
+					found.add(id);
+				}
+
+				shared[id]++;
+			}
+		}
+
+		found.sort((a, b) -> shared[b] != shared[a] ? shared[b] - shared[a] : a - b);
+
+		List<T> result = new ArrayList<>();
+
+		for (int i = 0; i < found.size(); i++) {
+			if (i >= maxCandidates && shared[found.get(i)] < shared[found.get(i - 1)]) {
+				break;
+			}
+
+			result.add(items.get(found.get(i)));
+		}
+
+		return result;
+	}
+}
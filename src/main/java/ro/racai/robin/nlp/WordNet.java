@@ -12,9 +12,15 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.log4j.Logger;
 
@@ -31,17 +37,32 @@ public abstract class WordNet {
 	
 	/**
 	 * The equals cache map, to avoid
-	 * expensive calls to the RELATE platform. 
+	 * expensive calls to the RELATE platform.
+	 * Keyed by the first word, then by the second word, in both directions,
+	 * such that a cache hit builds no key.
+	 * Concurrent, because queries can be resolved on several threads.
 	 */
-	protected Map<String, Boolean> wnEqualsCache;
+	protected Map<String, Map<String, Boolean>> wnEqualsCache;
 	
 	/**
 	 * Where to save the WordNet equals cache. 
 	 */
 	protected String wnEqualsCacheFile = "wordnet-cache.txt";
+
+	/**
+	 * The relations of already looked up words, so that we only ask for a word once.
+	 */
+	protected Map<String, WordNetEntry> wnEntryCache;
+
+	/**
+	 * Multi-hop IS-A index over the words of the loaded micro-world. If {@code null},
+	 * {@link #isKindOf(String, String)} always says {@code false}.
+	 */
+	protected HypernymClosure hypernymClosure;
 	
 	public WordNet() {
-		wnEqualsCache = new HashMap<>();
+		wnEqualsCache = new ConcurrentHashMap<>();
+		wnEntryCache = new ConcurrentHashMap<>();
 		populateWordNetEqualsCache();
 	}
 	
@@ -58,8 +79,13 @@ public abstract class WordNet {
 			
 			while (line != null) {
 				String[] parts = line.split("\\s+");
+				int hash = parts[0].indexOf('#');
+				
+				if (hash > 0) {
+					cacheEquals(parts[0].substring(0, hash), parts[0].substring(hash + 1),
+							Boolean.parseBoolean(parts[1]));
+				}
 				
-				wnEqualsCache.put(parts[0], Boolean.parseBoolean(parts[1]));
 				line = rdr.readLine();
 			}
 		}
@@ -72,9 +98,11 @@ public abstract class WordNet {
 	public void dumpWordNetCache() {
 		try (BufferedWriter wrt = new BufferedWriter(
 				new OutputStreamWriter(new FileOutputStream(wnEqualsCacheFile), StandardCharsets.UTF_8))) {
-			for (Map.Entry<String, Boolean> e : wnEqualsCache.entrySet()) {
-				wrt.write(e.getKey() + "\t" + e.getValue());
-				wrt.newLine();
+			for (Map.Entry<String, Map<String, Boolean>> e1 : wnEqualsCache.entrySet()) {
+				for (Map.Entry<String, Boolean> e2 : e1.getValue().entrySet()) {
+					wrt.write(e1.getKey() + "#" + e2.getKey() + "\t" + e2.getValue());
+					wrt.newLine();
+				}
 			}
 		}
 		catch (IOException ioe) {
@@ -108,7 +136,123 @@ public abstract class WordNet {
 	 *               regardless of the meaning.
 	 */
 	public abstract List<String> getSynonyms(String word);
+
+	/**
+	 * <p>
+	 * Retrieves all the relations of {@code word} from the WordNet backend. By default, it calls
+	 * {@link #getSynonyms(String)}, {@link #getHypernyms(String)} and
+	 * {@link #getHyponyms(String)}. Override it if the backend can do it in one call.
+	 * </p>
+	 * 
+	 * @param word the word to get the relations for;
+	 * @return the {@link WordNetEntry} of {@code word} or {@code null} if the backend could not be
+	 *         queried (the result is not cached in this case).
+	 */
+	protected WordNetEntry fetchEntry(String word) {
+		return new WordNetEntry(word, getSynonyms(word), getHypernyms(word), getHyponyms(word));
+	}
+
+	/**
+	 * <p>
+	 * Gets all the relations of {@code word}, asking the backend only once per word.
+	 * </p>
+	 * 
+	 * @param word the word to look up;
+	 * @return the (possibly empty) {@link WordNetEntry} of {@code word}.
+	 */
+	public WordNetEntry lookup(String word) {
+		WordNetEntry entry = wnEntryCache.get(word);
+
+		if (entry != null) {
+			return entry;
+		}
+
+		entry = fetchEntry(word);
+
+		if (entry == null) {
+			return WordNetEntry.emptyEntry(word);
+		}
+
+		wnEntryCache.put(word, entry);
+		return entry;
+	}
+
+	/**
+	 * <p>
+	 * Batch version of {@link #lookup(String)}, to be used to warm up the cache for a whole
+	 * micro-world. This implementation does a single pass over {@code words}; remote backends
+	 * should override it to issue their requests concurrently.
+	 * </p>
+	 * 
+	 * @param words the words to look up;
+	 * @return a map from each distinct word to its {@link WordNetEntry}, in the order of
+	 *         {@code words}.
+	 */
+	public Map<String, WordNetEntry> lookupAll(Collection<String> words) {
+		Map<String, WordNetEntry> result = new LinkedHashMap<>();
+
+		for (String w : words) {
+			if (!result.containsKey(w)) {
+				result.put(w, lookup(w));
+			}
+		}
+
+		return result;
+	}
 	
+	/**
+	 * <p>
+	 * Collects the hypernymy edges of {@code words}, going up at most {@code maxHops} levels.
+	 * Each level is looked up with one {@link #lookupAll(Collection)} call. The returned
+	 * closure is not built, such that other IS-A edges can be added to it.
+	 * </p>
+	 * 
+	 * @param words   the words to start from;
+	 * @param maxHops how many hypernymy levels to follow.
+	 * @return the (not yet built) {@link HypernymClosure} of {@code words}.
+	 */
+	public HypernymClosure buildHypernymClosure(Collection<String> words, int maxHops) {
+		HypernymClosure closure = new HypernymClosure(maxHops);
+		Set<String> seen = new HashSet<>(words);
+		List<String> frontier = new ArrayList<>(seen);
+
+		for (int d = 0; d < maxHops && !frontier.isEmpty(); d++) {
+			List<String> next = new ArrayList<>();
+
+			for (Map.Entry<String, WordNetEntry> e : lookupAll(frontier).entrySet()) {
+				for (String hyper : e.getValue().getHypernyms()) {
+					closure.addIsA(e.getKey(), hyper);
+
+					if (seen.add(hyper)) {
+						next.add(hyper);
+					}
+				}
+			}
+
+			frontier = next;
+		}
+
+		return closure;
+	}
+
+	public void setHypernymClosure(HypernymClosure closure) {
+		hypernymClosure = closure;
+	}
+
+	/**
+	 * <p>
+	 * Checks if {@code hypo} is a kind of {@code hyper}, following all IS-A hops indexed in
+	 * the {@link #hypernymClosure}. No WordNet requests are made here.
+	 * </p>
+	 * 
+	 * @param hypo  the more specific word;
+	 * @param hyper the more general word.
+	 * @return {@code true} if {@code hyper} is an indexed ancestor of {@code hypo}.
+	 */
+	public boolean isKindOf(String hypo, String hyper) {
+		return hypernymClosure != null && hypernymClosure.isKindOf(hypo, hyper);
+	}
+
 	/**
 	 * <p>Does a WordNet first order neighborhood search to
 	 * see if the two parameters can be made equal.</p> 
@@ -118,50 +262,97 @@ public abstract class WordNet {
 	 *                   are synonyms, first order hyponyms/hypernyms
 	 */
 	public boolean wordnetEquals(String w1, String w2) {
-		String key12 = w1 + "#" + w2;
-		String key21 = w2 + "#" + w1;
+		// Both directions are cached
+		Map<String, Boolean> cached = wnEqualsCache.get(w1);
+		Boolean equal = cached == null ? null : cached.get(w2);
 		
-		if (wnEqualsCache.containsKey(key12)) {
-			return wnEqualsCache.get(key12);
-		}
-
-		if (wnEqualsCache.containsKey(key21)) {
-			return wnEqualsCache.get(key21);
+		if (equal != null) {
+			return equal;
 		}
 		
+		WordNetEntry entry1 = lookup(w1);
+
 		// Synonym check with WordNet
-		for (String syn : getSynonyms(w1)) {
+		for (String syn : entry1.getSynonyms()) {
 			if (w2.equals(syn)) {
-				wnEqualsCache.put(key12, true);
-				wnEqualsCache.put(key21, true);
+				cacheEquals(w1, w2, true);
 				
 				return true;
 			}
 		}
 		
 		// Use hypernyms from WordNet (only direct hypernyms)
-		for (String hyper : getHypernyms(w1)) {
+		for (String hyper : entry1.getHypernyms()) {
 			if (w2.equals(hyper)) {
-				wnEqualsCache.put(key12, true);
-				wnEqualsCache.put(key21, true);
+				cacheEquals(w1, w2, true);
 				
 				return true;
 			}
 		}
 		
 		// Use hyponyms from WordNet (only direct hyponyms)
-		for (String hypo : getHyponyms(w1)) {
+		for (String hypo : entry1.getHyponyms()) {
 			if (w2.equals(hypo)) {
-				wnEqualsCache.put(key12, true);
-				wnEqualsCache.put(key21, true);
+				cacheEquals(w1, w2, true);
 				
 				return true;
 			}
 		}
 		
-		wnEqualsCache.put(key12, false);
-		wnEqualsCache.put(key21, false);
+		cacheEquals(w1, w2, false);
 		
 		return false;
 	}
+
+	private void cacheEquals(String w1, String w2, boolean equal) {
+		wnEqualsCache.computeIfAbsent(w1, k -> new ConcurrentHashMap<>()).put(w2, equal);
+		wnEqualsCache.computeIfAbsent(w2, k -> new ConcurrentHashMap<>()).put(w1, equal);
+	}
+
+	/**
+	 * <p>
+	 * Gets the words {@code w} for which {@link #wordnetEquals(String, String)} can say
+	 * {@code true} when asked about {@code word} and {@code w}: the synonyms, direct hypernyms and
+	 * direct hyponyms of {@code word} and the words cached as equal to it.
+	 * </p>
+	 * 
+	 * @param word the word to get the equal words for;
+	 * @return the set of words equal to {@code word}.
+	 */
+	public Set<String> getEqualWords(String word) {
+		WordNetEntry entry = lookup(word);
+		Set<String> equal = new HashSet<>(entry.getSynonyms());
+
+		equal.addAll(entry.getHypernyms());
+		equal.addAll(entry.getHyponyms());
+
+		for (Map.Entry<String, Boolean> e : wnEqualsCache
+				.getOrDefault(word, Collections.emptyMap()).entrySet()) {
+			if (e.getValue()) {
+				equal.add(e.getKey());
+			}
+		}
+
+		return equal;
+	}
+
+	/**
+	 * <p>
+	 * Adds the ancestors of {@code word} in the {@link #hypernymClosure} to
+	 * {@link #getEqualWords(String)}, i.e. the words {@code w} for which
+	 * {@link #isKindOf(String, String)} can also say {@code true}.
+	 * </p>
+	 * 
+	 * @param word the word to get the related words for;
+	 * @return the set of words related to {@code word}.
+	 */
+	public Set<String> getRelatedWords(String word) {
+		Set<String> related = getEqualWords(word);
+
+		if (hypernymClosure != null) {
+			related.addAll(hypernymClosure.getAncestors(word));
+		}
+
+		return related;
+	}
 }
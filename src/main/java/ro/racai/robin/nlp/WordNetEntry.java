@@ -0,0 +1,81 @@
+/**
+ *
+ */
+package ro.racai.robin.nlp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author Radu Ion ({@code radu@racai.ro})
+ *         <p>
+ *         All the first order WordNet relations of a word, regardless of its senses. It is
+ *         retrieved in one go by {@link WordNet#lookup(String)} so that we do not pay a round trip
+ *         for each relation we need.
+ *         </p>
+ */
+public class WordNetEntry {
+	/**
+	 * The word that was looked up.
+	 */
+	private final String word;
+
+	/**
+	 * Literals from all synsets of {@link #word}, except {@link #word} itself.
+	 */
+	private final List<String> synonyms;
+
+	/**
+	 * Direct hypernyms of {@link #word}, from all senses.
+	 */
+	private final List<String> hypernyms;
+
+	/**
+	 * Direct hyponyms of {@link #word}, from all senses.
+	 */
+	private final List<String> hyponyms;
+
+	public WordNetEntry(String word, List<String> syns, List<String> hypers, List<String> hypos) {
+		this.word = word;
+		synonyms = Collections.unmodifiableList(new ArrayList<>(syns));
+		hypernyms = Collections.unmodifiableList(new ArrayList<>(hypers));
+		hyponyms = Collections.unmodifiableList(new ArrayList<>(hypos));
+	}
+
+	/**
+	 * <p>
+	 * Use this one for words that are not in WordNet.
+	 * </p>
+	 *
+	 * @param word the word that was not found.
+	 * @return an entry with no relations.
+	 */
+	public static WordNetEntry emptyEntry(String word) {
+		return new WordNetEntry(word, Collections.emptyList(), Collections.emptyList(),
+				Collections.emptyList());
+	}
+
+	public String getWord() {
+		return word;
+	}
+
+	public List<String> getSynonyms() {
+		return synonyms;
+	}
+
+	public List<String> getHypernyms() {
+		return hypernyms;
+	}
+
+	public List<String> getHyponyms() {
+		return hyponyms;
+	}
+
+	/**
+	 * @return {@code true} if {@link #word} has no relations at all.
+	 */
+	public boolean isEmpty() {
+		return synonyms.isEmpty() && hypernyms.isEmpty() && hyponyms.isEmpty();
+	}
+}
@@ -39,6 +39,17 @@ public class SalesTest {
         assertEquals("1399 de lei", dstat.getReply().get(0));
     }
 
+    @Test
+    public void test_superlative() {
+        DialogueState dstat = getAnswer("Care este cel mai ieftin laptop?");
+
+        assertEquals("Asus X515MA", dstat.getReply().get(0));
+
+        dstat = getAnswer("Care este cel mai scump calculator?");
+
+        assertEquals("Gaming Pro 377", dstat.getReply().get(0));
+    }
+
     @Test
     public void test_context() {
         DialogueState dstat = getAnswer("Aveți laptop Apple MacBook Air 13?");
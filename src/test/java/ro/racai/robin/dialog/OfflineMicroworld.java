@@ -0,0 +1,191 @@
+/**
+ *
+ */
+package ro.racai.robin.dialog;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ro.racai.robin.dialog.RDPredicate.PMatch;
+import ro.racai.robin.mw.MWFileReader;
+import ro.racai.robin.nlp.Lexicon;
+import ro.racai.robin.nlp.QType;
+import ro.racai.robin.nlp.RoLexicon;
+import ro.racai.robin.nlp.RoTextProcessor;
+import ro.racai.robin.nlp.TextProcessor;
+import ro.racai.robin.nlp.TextProcessor.Argument;
+import ro.racai.robin.nlp.TextProcessor.Query;
+import ro.racai.robin.nlp.TextProcessor.Token;
+import ro.racai.robin.nlp.WordNet;
+
+/**
+ * @author Radu Ion ({@code radu@racai.ro})
+ *         <p>
+ *         Loads micro-worlds for the unit tests without RELATE requests: the WordNet relations
+ *         are given by the test and the references are tokenized from
+ *         {@code processed-text-cache.txt}. Queries are built by hand, from their tokens.
+ *         </p>
+ */
+public class OfflineMicroworld {
+	public static final String SALES_MW = "src/main/resources/sales.mw";
+
+	/**
+	 * @author Radu Ion ({@code radu@racai.ro})
+	 *         <p>
+	 *         A {@link WordNet} with the relations added by the test, and no others.
+	 *         </p>
+	 */
+	public static class OfflineWordNet extends WordNet {
+		private final Map<String, List<String>> synonyms = new HashMap<>();
+		private final Map<String, List<String>> hypernyms = new HashMap<>();
+		private final Map<String, List<String>> hyponyms = new HashMap<>();
+
+		/**
+		 * Makes {@code w1} and {@code w2} synonyms of each other.
+		 */
+		public OfflineWordNet addSynonyms(String w1, String w2) {
+			synonyms.computeIfAbsent(w1, w -> new ArrayList<>()).add(w2);
+			synonyms.computeIfAbsent(w2, w -> new ArrayList<>()).add(w1);
+			return this;
+		}
+
+		/**
+		 * Makes {@code hyper} a hypernym of {@code hypo} and {@code hypo} a hyponym of
+		 * {@code hyper}.
+		 */
+		public OfflineWordNet addHypernym(String hypo, String hyper) {
+			hypernyms.computeIfAbsent(hypo, w -> new ArrayList<>()).add(hyper);
+			hyponyms.computeIfAbsent(hyper, w -> new ArrayList<>()).add(hypo);
+			return this;
+		}
+
+		@Override
+		public List<String> getSynonyms(String word) {
+			return new ArrayList<>(synonyms.getOrDefault(word, new ArrayList<>()));
+		}
+
+		@Override
+		public List<String> getHypernyms(String word) {
+			return new ArrayList<>(hypernyms.getOrDefault(word, new ArrayList<>()));
+		}
+
+		@Override
+		public List<String> getHyponyms(String word) {
+			return new ArrayList<>(hyponyms.getOrDefault(word, new ArrayList<>()));
+		}
+	}
+
+	public final WordNet wordNet;
+	public final Lexicon lexicon = new RoLexicon();
+	public final TextProcessor textProcessor;
+
+	public OfflineMicroworld() {
+		this(new OfflineWordNet());
+	}
+
+	public OfflineMicroworld(WordNet wn) {
+		wordNet = wn;
+		textProcessor = new RoTextProcessor(lexicon, wordNet, new RoSayings());
+	}
+
+	/**
+	 * @return the universe of {@code mwFile}, as read from the file, with no indexes.
+	 */
+	public RDUniverse load(String mwFile) {
+		return new MWFileReader(mwFile).constructUniverse(wordNet, lexicon, textProcessor);
+	}
+
+	/**
+	 * @return the universe of {@link #SALES_MW}, as read from the file, with no indexes.
+	 */
+	public static RDUniverse sales() {
+		return new OfflineMicroworld().load(SALES_MW);
+	}
+
+	/**
+	 * @return a token that depends on the first token of its argument.
+	 */
+	public static Token token(String wform, String lemma, String pos) {
+		return new Token(wform, lemma, pos, 1, "nmod", false);
+	}
+
+	/**
+	 * @return a token that depends on the action verb of the query.
+	 */
+	public static Token verbToken(String wform, String lemma, String pos) {
+		return new Token(wform, lemma, pos, 1, "nsubj", true);
+	}
+
+	/**
+	 * @return an argument made of {@code tokens}.
+	 */
+	public static Argument argument(Token... tokens) {
+		return new Argument(new ArrayList<>(List.of(tokens)));
+	}
+
+	/**
+	 * @return the query variable, made of {@code tokens}.
+	 */
+	public static Argument variable(Token... tokens) {
+		Argument arg = argument(tokens);
+
+		arg.isQueryVariable = true;
+		return arg;
+	}
+
+	/**
+	 * @return a query with the given action verb and arguments.
+	 */
+	public static Query query(QType type, String verb, Argument... args) {
+		Query q = new Query();
+
+		q.queryType = type;
+		q.actionVerb = verb;
+		q.predicateArguments.addAll(List.of(args));
+		return q;
+	}
+
+	/**
+	 * @return the query of {@code text}, which has to be in {@code processed-text-cache.txt}.
+	 */
+	public Query parse(String text, RDUniverse universe) {
+		return textProcessor.queryAnalyzer(textProcessor.textProcessor(text, false, false),
+				universe.getDefinedConcepts());
+	}
+
+	/**
+	 * @return the fact, the scores and the answer of a match, to compare two resolutions.
+	 */
+	public static String describe(PMatch pm) {
+		if (pm == null) {
+			return "null";
+		}
+
+		StringBuilder sb = new StringBuilder();
+
+		sb.append(pm.matchedPredicate).append(' ').append(pm.matchScore).append(' ')
+				.append(pm.saidArgumentIndex).append(' ').append(pm.isValidMatch);
+
+		for (float s : pm.argMatchScores) {
+			sb.append(' ').append(s);
+		}
+
+		return sb.toString();
+	}
+
+	public static String describe(List<PMatch> matches) {
+		if (matches == null) {
+			return "null";
+		}
+
+		List<String> result = new ArrayList<>();
+
+		for (PMatch pm : matches) {
+			result.add(describe(pm));
+		}
+
+		return result.toString();
+	}
+}
@@ -0,0 +1,70 @@
+/**
+ *
+ */
+package ro.racai.robin.dialog;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * @author Radu Ion ({@code radu@racai.ro})
+ */
+public class RDFactStoreTest {
+	@Test
+	public void testStore() {
+		List<RDPredicate> facts = OfflineMicroworld.sales().getBoundPredicates();
+		RDFactStore store = new RDFactStore();
+
+		for (int f = 0; f < facts.size(); f++) {
+			assertEquals(f, store.addFact(facts.get(f)));
+		}
+
+		assertEquals(facts.size(), store.size());
+		assertTrue(store.tableCount() < facts.size());
+
+		for (int f = 0; f < facts.size(); f++) {
+			RDPredicate fact = facts.get(f);
+
+			assertEquals(fact.toString(), store.fact(f).toString());
+			assertEquals(fact.getArguments().size(), store.arity(f));
+
+			for (int i = 0; i < store.arity(f); i++) {
+				RDConcept arg = store.concept(store.argumentId(f, i));
+
+				assertSame(fact.getArguments().get(i), arg);
+
+				int[] posting = store.factsWith(store.argumentId(f, i));
+
+				assertTrue(posting.length > 0);
+				assertTrue(Arrays.binarySearch(posting, f) >= 0);
+			}
+		}
+	}
+
+	@Test
+	public void testColumnarUniverse() {
+		RDUniverse universe = OfflineMicroworld.sales();
+		String before = universe.getBoundPredicates().toString();
+
+		universe.setColumnarFacts(true);
+		assertTrue(universe.isColumnarFacts());
+		assertEquals(before, universe.getBoundPredicates().toString());
+
+		universe.setColumnarFacts(false);
+		assertEquals(before, universe.getBoundPredicates().toString());
+
+		RDFactStore store = new RDFactStore();
+		List<RDPredicate> facts = universe.getBoundPredicates();
+
+		store.addFact(facts.get(0));
+		store.addFact(facts.get(0));
+		assertArrayEquals(new int[] {0, 1}, store.factsWith(store.argumentId(1, 0)));
+	}
+}
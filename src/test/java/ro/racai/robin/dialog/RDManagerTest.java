@@ -0,0 +1,128 @@
+/**
+ *
+ */
+package ro.racai.robin.dialog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Radu Ion ({@code radu@racai.ro})
+ */
+public class RDManagerTest {
+	private final List<RDPartitionWorker> workers = new ArrayList<>();
+	private Path dir;
+	private Path mw;
+
+	@Before
+	public void copyMicroworld() throws IOException {
+		dir = Files.createTempDirectory("rdmanager");
+		mw = dir.resolve("sales.mw");
+		Files.copy(new File(OfflineMicroworld.SALES_MW).toPath(), mw,
+				StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	@After
+	public void deleteMicroworld() throws IOException {
+		for (RDPartitionWorker w : workers) {
+			w.stop();
+		}
+
+		try (Stream<Path> files = Files.walk(dir)) {
+			files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	/**
+	 * @return a manager of the sales micro-world, loaded in the given mode.
+	 */
+	private RDManager load(boolean mapped, boolean partitioned) throws IOException {
+		OfflineMicroworld offline = new OfflineMicroworld();
+		RDManager dman = new RDManager(offline.wordNet, offline.lexicon, offline.textProcessor,
+				new RoSayings(), null, false);
+
+		dman.setMappedFacts(mapped);
+
+		if (partitioned) {
+			RDUniverse universe = OfflineMicroworld.sales();
+			List<String> urls = new ArrayList<>();
+
+			universe.indexBoundConcepts();
+
+			for (int i = 0; i < 2; i++) {
+				RDPartitionWorker w = new RDPartitionWorker(universe.partition(i, 2, true), i, 2);
+				InetSocketAddress address =
+						w.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+
+				workers.add(w);
+				urls.add("http://" + address.getHostString() + ":" + address.getPort());
+			}
+
+			dman.setPartitionWorkers(urls);
+		}
+
+		dman.loadMicroworld(mw.toString());
+		return dman;
+	}
+
+	/**
+	 * @return the number of times {@code dman} called the changes of an update.
+	 */
+	private static int update(RDManager dman, boolean published) {
+		AtomicInteger calls = new AtomicInteger();
+
+		assertEquals(published, dman.updateMicroworld(tx -> {
+			calls.incrementAndGet();
+			tx.retractBoundConcept(tx.getBase().getBoundConcepts().get(0));
+		}));
+
+		return calls.get();
+	}
+
+	@Test
+	public void testUpdate() throws IOException {
+		assertEquals(1, update(load(false, false), true));
+	}
+
+	@Test
+	public void testUpdateMappedFacts() throws IOException {
+		RDManager dman = load(true, false);
+
+		assertTrue(dman.isMappedFacts());
+		assertEquals(0, update(dman, false));
+	}
+
+	@Test
+	public void testUpdatePartitionedFacts() throws IOException {
+		RDManager dman = load(false, true);
+
+		assertFalse(dman.getPartitionWorkers().isEmpty());
+		assertEquals(0, update(dman, false));
+	}
+
+	@Test
+	public void testUpdateMappedPartitionedFacts() throws IOException {
+		RDManager dman = load(true, true);
+
+		assertTrue(dman.isMappedFacts());
+		assertEquals(0, update(dman, false));
+	}
+}
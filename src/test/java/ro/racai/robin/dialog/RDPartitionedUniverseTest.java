@@ -0,0 +1,357 @@
+/**
+ *
+ */
+package ro.racai.robin.dialog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static ro.racai.robin.dialog.OfflineMicroworld.argument;
+import static ro.racai.robin.dialog.OfflineMicroworld.describe;
+import static ro.racai.robin.dialog.OfflineMicroworld.query;
+import static ro.racai.robin.dialog.OfflineMicroworld.token;
+import static ro.racai.robin.dialog.OfflineMicroworld.variable;
+import static ro.racai.robin.dialog.OfflineMicroworld.verbToken;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.json.simple.JSONValue;
+import org.junit.After;
+import org.junit.Test;
+
+import ro.racai.robin.dialog.RDPredicate.PMatch;
+import ro.racai.robin.mw.MWSnapshot;
+import ro.racai.robin.nlp.QType;
+import ro.racai.robin.nlp.TextProcessor.Query;
+
+/**
+ * @author Radu Ion ({@code radu@racai.ro})
+ */
+public class RDPartitionedUniverseTest {
+	private static final long WORKER_START_TIMEOUT = 60000;
+
+	private final List<RDPartitionWorker> workers = new ArrayList<>();
+
+	/**
+	 * @return a partitioned universe, with its workers listening on the loopback address.
+	 */
+	private RDUniverse partitioned(RDUniverse universe, int count, boolean byConcept)
+			throws IOException {
+		return new RDPartitionedUniverse(universe, startWorkers(universe, count, byConcept));
+	}
+
+	/**
+	 * @return the base URLs of the workers of the partitions of {@code universe}.
+	 */
+	private List<String> startWorkers(RDUniverse universe, int count, boolean byConcept)
+			throws IOException {
+		List<String> urls = new ArrayList<>();
+
+		for (int i = 0; i < count; i++) {
+			RDPartitionWorker w =
+					new RDPartitionWorker(universe.partition(i, count, byConcept), i, count);
+			InetSocketAddress address =
+					w.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+
+			workers.add(w);
+			urls.add("http://" + address.getHostString() + ":" + address.getPort());
+		}
+
+		return urls;
+	}
+
+	@After
+	public void stopWorkers() {
+		for (RDPartitionWorker w : workers) {
+			w.stop();
+		}
+	}
+
+	@Test
+	public void testScatterGather() throws IOException {
+		RDUniverse universe = OfflineMicroworld.sales();
+
+		universe.indexBoundConcepts();
+		universe.indexPredicates();
+
+		List<Query> queries = new ArrayList<>();
+
+		// Aveți laptop Apple MacBook Air 13?
+		queries.add(query(QType.YESNO, "avea",
+				argument(token("laptop", "laptop", "Ncms-n"), token("Apple", "Apple", "Np"),
+						token("MacBook", "MacBook", "Np"), token("Air", "Air", "Np"),
+						token("13", "13", "Mc"))));
+		// Laptopuri sub 2500 de lei?
+		queries.add(query(QType.YESNO, "avea",
+				argument(token("laptopuri", "laptop", "Ncmp-n"), token("sub", "sub", "Spsa"),
+						token("2500", "2500", "Mc"), token("de", "de", "Spsa"),
+						token("lei", "leu", "Ncmp-n"))));
+		// Care este cel mai ieftin laptop?
+		queries.add(query(QType.WHAT, "fi",
+				argument(token("cel", "cel", "Tsms"), token("mai", "mai", "Rp"),
+						token("ieftin", "ieftin", "Afpms-n"),
+						verbToken("laptop", "laptop", "Ncms-n"))));
+		// Ce procesor are cel mai ieftin laptop? The facts of the laptop may be in another
+		// partition than its price.
+		queries.add(query(QType.WHAT, "avea",
+				variable(token("Ce", "ce", "Pw3--r"), verbToken("procesor", "procesor", "Ncms-n")),
+				argument(token("cel", "cel", "Tsms"), token("mai", "mai", "Rp"),
+						token("ieftin", "ieftin", "Afpms-n"),
+						verbToken("laptop", "laptop", "Ncms-n"))));
+
+		for (boolean byConcept : new boolean[] {true, false}) {
+			RDUniverse scattered = partitioned(universe, 3, byConcept);
+
+			for (Query q : queries) {
+				assertEquals(describe(universe.resolveQuery(q)),
+						describe(scattered.resolveQuery(q)));
+				assertEquals(describe(universe.resolveQueryTopK(q, 5)),
+						describe(scattered.resolveQueryTopK(q, 5)));
+			}
+
+			List<PMatch> range = scattered.resolveRangeQuery(queries.get(1));
+
+			assertNotNull(range);
+			assertEquals(describe(universe.resolveRangeQuery(queries.get(1))), describe(range));
+			assertNull(scattered.resolveRangeQuery(queries.get(0)));
+			stopWorkers();
+			workers.clear();
+		}
+	}
+
+	@Test
+	public void testMissingPartition() throws IOException {
+		RDUniverse universe = OfflineMicroworld.sales();
+
+		universe.indexBoundConcepts();
+
+		List<String> urls = startWorkers(universe, 3, false);
+		RDUniverse scattered = new RDPartitionedUniverse(universe, urls);
+		// Aveți laptop Apple MacBook Air 13?
+		Query q = query(QType.YESNO, "avea",
+				argument(token("laptop", "laptop", "Ncms-n"), token("Apple", "Apple", "Np")));
+
+		assertNotNull(scattered.resolveQuery(q));
+		assertFalse(scattered.resolveQueryTopK(q, 5).isEmpty());
+
+		// A query that the worker cannot resolve
+		HttpURLConnection http = (HttpURLConnection) new URL(
+				new URL(urls.get(0)), RDPartitionWorker.RESOLVE_PATH).openConnection();
+		byte[] body = "{\"query\": {}}".getBytes(StandardCharsets.UTF_8);
+
+		http.setRequestMethod("POST");
+		http.setDoOutput(true);
+
+		try (OutputStream os = http.getOutputStream()) {
+			os.write(body);
+		}
+
+		assertEquals(500, http.getResponseCode());
+
+		// The answer of the other partitions is not the answer of the whole universe.
+		workers.get(1).stop();
+		assertNull(scattered.resolveQuery(q));
+		assertNull(scattered.resolveQueryTopK(q, 5));
+		assertNull(scattered.resolveRangeQuery(q));
+	}
+
+	/**
+	 * @return the status code and the reply of a worker to {@code body}.
+	 */
+	private static String post(String worker, String body) throws IOException {
+		HttpURLConnection http = (HttpURLConnection) new URL(new URL(worker),
+				RDPartitionWorker.RESOLVE_PATH).openConnection();
+
+		http.setRequestMethod("POST");
+		http.setDoOutput(true);
+
+		try (OutputStream os = http.getOutputStream()) {
+			os.write(body.getBytes(StandardCharsets.UTF_8));
+		}
+
+		int status = http.getResponseCode();
+
+		if (status != 200) {
+			return status + " {}";
+		}
+
+		try (InputStream in = http.getInputStream()) {
+			return status + " " + RDPartitionWorker.readAll(in);
+		}
+	}
+
+	@Test
+	public void testConcurrentRequests() throws IOException, InterruptedException,
+			ExecutionException {
+		RDUniverse universe = OfflineMicroworld.sales();
+
+		// As RDPartitionWorker.main() does
+		universe.indexBoundConcepts();
+
+		String worker = startWorkers(universe, 1, true).get(0);
+		Map<String, Object> request = new LinkedHashMap<>();
+
+		// Ce procesor are laptopul Asus? The head nouns are looked up for each query.
+		request.put("query", RDPartitionWorker.queryToJson(query(QType.WHAT, "avea",
+				variable(token("Ce", "ce", "Pw3--r"), verbToken("procesor", "procesor", "Ncms-n")),
+				argument(verbToken("laptopul", "laptop", "Ncmsry"),
+						token("Asus", "Asus", "Np")))));
+		request.put("k", 5);
+
+		String body = JSONValue.toJSONString(request);
+		int threads = 4 * Runtime.getRuntime().availableProcessors();
+		ExecutorService clients = Executors.newFixedThreadPool(threads);
+		CountDownLatch ready = new CountDownLatch(threads);
+		List<Future<String>> replies = new ArrayList<>();
+
+		try {
+			// The first requests of a fresh worker all come at once.
+			for (int i = 0; i < threads; i++) {
+				replies.add(clients.submit(() -> {
+					ready.countDown();
+					ready.await();
+					return post(worker, body);
+				}));
+			}
+
+			String first = replies.get(0).get();
+
+			assertTrue(first, first.startsWith("200 "));
+
+			for (Future<String> r : replies) {
+				assertEquals(first, r.get());
+			}
+		} finally {
+			clients.shutdown();
+		}
+	}
+
+	/**
+	 * @return the base URL of the worker that logs to {@code log}, when it listens.
+	 */
+	private static String waitForWorker(Process worker, Path log) throws IOException,
+			InterruptedException {
+		Pattern listening = Pattern.compile("listening at (http://\\S+)");
+		long deadline = System.currentTimeMillis() + WORKER_START_TIMEOUT;
+
+		while (System.currentTimeMillis() < deadline) {
+			Matcher m = listening.matcher(
+					new String(Files.readAllBytes(log), StandardCharsets.UTF_8));
+
+			if (m.find()) {
+				return m.group(1);
+			}
+
+			if (!worker.isAlive()) {
+				break;
+			}
+
+			Thread.sleep(100);
+		}
+
+		fail("The worker did not start:\n"
+				+ new String(Files.readAllBytes(log), StandardCharsets.UTF_8));
+		return null;
+	}
+
+	@Test
+	public void testWorkerProcesses() throws IOException, InterruptedException {
+		// The workers compile nothing, they read the snapshot of the coordinator.
+		Path dir = Files.createTempDirectory("rdpartitionworker");
+		Path mw = dir.resolve("sales.mw");
+
+		Files.copy(new File(OfflineMicroworld.SALES_MW).toPath(), mw,
+				StandardCopyOption.REPLACE_EXISTING);
+
+		OfflineMicroworld offline = new OfflineMicroworld();
+		RDUniverse universe = new MWSnapshot(mw.toString()).constructUniverse(offline.wordNet,
+				offline.lexicon, offline.textProcessor);
+		RDUniverse coordinator = new MWSnapshot(mw.toString()).constructUniverse(
+				offline.wordNet, offline.lexicon, offline.textProcessor, RDFactFilter.NONE);
+		String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+		List<Process> processes = new ArrayList<>();
+
+		universe.indexBoundConcepts();
+		universe.indexPredicates();
+		coordinator.indexBoundConcepts();
+		assertTrue(coordinator.getBoundPredicates().isEmpty());
+
+		try {
+			List<String> urls = new ArrayList<>();
+			int factCount = 0;
+
+			for (int i = 0; i < 2; i++) {
+				Path log = dir.resolve("worker" + i + ".log");
+				// In the temporary folder, such that the WordNet cache of the project is not used
+				Process worker = new ProcessBuilder(java, "-cp",
+						System.getProperty("java.class.path"),
+						RDPartitionWorker.class.getName(), mw.toString(), String.valueOf(i), "2",
+						"127.0.0.1:0").directory(dir.toFile()).redirectErrorStream(true)
+								.redirectOutput(log.toFile()).start();
+
+				processes.add(worker);
+				urls.add(waitForWorker(worker, log));
+			}
+
+			for (String url : urls) {
+				try (InputStream in =
+						new URL(new URL(url), RDPartitionWorker.INFO_PATH).openStream()) {
+					Map<?, ?> info = (Map<?, ?>) JSONValue.parse(RDPartitionWorker.readAll(in));
+
+					assertEquals(RDPartitionWorker.conceptsChecksum(universe.getBoundConcepts()),
+							((Number) info.get("checksum")).longValue());
+					factCount += ((Number) info.get("facts")).intValue();
+				}
+			}
+
+			assertEquals(universe.getBoundPredicates().size(), factCount);
+
+			RDUniverse scattered = new RDPartitionedUniverse(coordinator, urls);
+			// Aveți laptop Apple MacBook Air 13?
+			Query q = query(QType.YESNO, "avea",
+					argument(token("laptop", "laptop", "Ncms-n"), token("Apple", "Apple", "Np"),
+							token("MacBook", "MacBook", "Np"), token("Air", "Air", "Np"),
+							token("13", "13", "Mc")));
+
+			assertNotNull(scattered.resolveQuery(q));
+			assertEquals(describe(universe.resolveQueryTopK(q, 5)),
+					describe(scattered.resolveQueryTopK(q, 5)));
+		} finally {
+			for (Process p : processes) {
+				p.destroyForcibly().waitFor();
+			}
+
+			try (Stream<Path> files = Files.walk(dir)) {
+				files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+			}
+		}
+	}
+}
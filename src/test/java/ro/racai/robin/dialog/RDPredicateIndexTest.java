@@ -0,0 +1,107 @@
+/**
+ *
+ */
+package ro.racai.robin.dialog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import ro.racai.robin.dialog.OfflineMicroworld.OfflineWordNet;
+import ro.racai.robin.nlp.WordNet;
+import ro.racai.robin.nlp.WordNetEntry;
+
+/**
+ * @author Radu Ion ({@code radu@racai.ro})
+ */
+public class RDPredicateIndexTest {
+	@Test
+	public void testPredicatesFor() {
+		// 'poseda' and 'valora' have 'avea' as a hypernym, but 'avea' does not have them as
+		// hyponyms. 'valora' is indexed, as a synonym of 'costa'.
+		WordNet wn = new OfflineWordNet() {
+			@Override
+			public List<String> getHypernyms(String word) {
+				return word.equals("poseda") || word.equals("valora") ? List.of("avea")
+						: super.getHypernyms(word);
+			}
+		}.addSynonyms("costa", "valora");
+		List<RDPredicate> facts = new OfflineMicroworld(wn).load(OfflineMicroworld.SALES_MW)
+				.getBoundPredicates();
+		RDPredicateIndex index = new RDPredicateIndex(facts, wn);
+
+		for (String verb : new String[] {"avea", "Deține", "fi", "costa", "valora", "poseda",
+				"trebui", "mânca"}) {
+			List<RDPredicate> expected = new ArrayList<>();
+
+			for (RDPredicate p : facts) {
+				if (p.isThisPredicate(verb, wn)) {
+					expected.add(p);
+				}
+			}
+
+			assertEquals(verb, expected, index.predicatesFor(verb));
+			assertEquals(verb, expected, index.update(facts).predicatesFor(verb));
+		}
+
+		assertFalse(index.predicatesFor("poseda").isEmpty());
+		assertEquals(facts.size(), index.predicatesFor("valora").size());
+	}
+
+	@Test
+	public void testUpdate() {
+		AtomicInteger lookups = new AtomicInteger();
+		WordNet wn = new OfflineWordNet() {
+			@Override
+			public WordNetEntry lookup(String word) {
+				lookups.incrementAndGet();
+				return super.lookup(word);
+			}
+		}.addSynonyms("costa", "valora");
+		List<RDPredicate> facts = new OfflineMicroworld(wn).load(OfflineMicroworld.SALES_MW)
+				.getBoundPredicates();
+		RDPredicateIndex index = new RDPredicateIndex(facts, wn);
+
+		// The verb groups are known, so WordNet is not asked again.
+		lookups.set(0);
+
+		RDPredicateIndex updated = index.update(facts.subList(1, facts.size()));
+
+		assertEquals(0, lookups.get());
+
+		// Fact 0 is replaced by a fact of another verb group and fact 1 is not indexed any more.
+		List<RDPredicate> changed = new ArrayList<>(facts);
+
+		for (RDPredicate p : facts) {
+			if (!p.isThisPredicate(facts.get(0).getActionVerb(), wn)) {
+				changed.set(0, p);
+				break;
+			}
+		}
+
+		assertNotSame(facts.get(0), changed.get(0));
+
+		RDPredicateIndex incremental = index.update(changed, new int[] {0, 1}, new int[] {0});
+		List<RDPredicate> indexed = new ArrayList<>(changed);
+
+		indexed.remove(1);
+
+		RDPredicateIndex fresh = new RDPredicateIndex(indexed, wn);
+
+		for (String verb : new String[] {"avea", "fi", "costa", "valora", "mânca"}) {
+			assertEquals(verb, updated.predicatesFor(verb),
+					new RDPredicateIndex(facts.subList(1, facts.size()), wn)
+							.predicatesFor(verb));
+			assertEquals(verb, fresh.predicatesFor(verb), incremental.predicatesFor(verb));
+			// The index which was updated answers as before.
+			assertEquals(verb, new RDPredicateIndex(facts, wn).predicatesFor(verb),
+					index.predicatesFor(verb));
+		}
+	}
+}
@@ -0,0 +1,816 @@
+/**
+ *
+ */
+package ro.racai.robin.dialog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static ro.racai.robin.dialog.OfflineMicroworld.argument;
+import static ro.racai.robin.dialog.OfflineMicroworld.describe;
+import static ro.racai.robin.dialog.OfflineMicroworld.query;
+import static ro.racai.robin.dialog.OfflineMicroworld.token;
+import static ro.racai.robin.dialog.OfflineMicroworld.variable;
+import static ro.racai.robin.dialog.OfflineMicroworld.verbToken;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import ro.racai.robin.dialog.OfflineMicroworld.OfflineWordNet;
+import ro.racai.robin.dialog.RDPredicate.PMatch;
+import ro.racai.robin.nlp.QType;
+import ro.racai.robin.nlp.TextProcessor.Argument;
+import ro.racai.robin.nlp.TextProcessor.Query;
+import ro.racai.robin.nlp.TextProcessor.Token;
+
+import com.sun.management.ThreadMXBean;
+
+/**
+ * @author Radu Ion ({@code radu@racai.ro})
+ */
+public class RDUniverseTest {
+	private static RDConcept boundConcept(RDUniverse universe, String reference) {
+		for (RDConcept c : universe.getBoundConcepts()) {
+			if (reference.equals(c.getReference())) {
+				return c;
+			}
+		}
+
+		return null;
+	}
+
+	@Test
+	public void testTransaction() {
+		RDUniverse universe = OfflineMicroworld.sales();
+
+		universe.indexBoundConcepts();
+		universe.indexPredicates();
+
+		String facts = universe.getBoundPredicates().toString();
+		RDConcept asus = boundConcept(universe, "Asus X515MA");
+		RDConcept oldPrice = boundConcept(universe, "1399 de lei");
+		RDConcept newPrice = boundConcept(universe, "2700 de lei");
+
+		assertNotNull(asus);
+		assertNotNull(oldPrice);
+		assertNotNull(newPrice);
+
+		// A price change
+		RDTransaction tx = universe.beginTransaction();
+
+		for (RDPredicate p : universe.getBoundPredicatesWith(asus)) {
+			int position = p.getArguments().indexOf(oldPrice);
+
+			if (position >= 0) {
+				tx.replaceArgument(p, position, newPrice);
+			}
+		}
+
+		assertFalse(tx.isEmpty());
+
+		RDUniverse next = tx.commit();
+
+		assertEquals(1, next.getVersion());
+		assertEquals(0, universe.getVersion());
+		assertEquals(facts, universe.getBoundPredicates().toString());
+		assertEquals(universe.getBoundPredicates().size(), next.getBoundPredicates().size());
+
+		for (RDPredicate p : next.getBoundPredicatesWith(asus)) {
+			assertTrue(p.getArguments().contains(newPrice));
+			assertFalse(p.getArguments().contains(oldPrice));
+		}
+
+		assertTrue(next.getBoundPredicatesWith(oldPrice).isEmpty());
+		assertEquals(2, universe.getBoundPredicatesWith(oldPrice).size());
+
+		// Retracting a concept retracts its facts
+		tx = next.beginTransaction();
+		tx.retractBoundConcept(asus);
+
+		RDUniverse last = tx.commit();
+
+		assertEquals(next.getBoundConcepts().size() - 1, last.getBoundConcepts().size());
+		assertEquals(next.getBoundPredicates().size() - 2, last.getBoundPredicates().size());
+		assertTrue(last.getBoundPredicatesWith(asus).isEmpty());
+		assertSame(asus, boundConcept(next, "Asus X515MA"));
+	}
+
+	/**
+	 * @return the bound concepts of {@code universe}, best match of argument 0 of {@code q}
+	 *         first.
+	 */
+	private static List<RDConcept> ranked(RDUniverse universe, Query q) {
+		List<RDConcept> result = new ArrayList<>(universe.getBoundConcepts());
+
+		result.sort(Comparator.comparing(c -> -universe.referenceSimilarity(q, 0, c)));
+		return result;
+	}
+
+	@Test
+	public void testNgramSimilarity() {
+		RDUniverse description = OfflineMicroworld.sales();
+		RDUniverse ngram = OfflineMicroworld.sales();
+
+		description.setSimilarityType(SimilarityType.DESCRIPTION);
+		ngram.setSimilarityType(SimilarityType.NGRAM);
+
+		for (RDUniverse u : new RDUniverse[] {description, ngram}) {
+			u.indexBoundConcepts();
+			u.indexPredicates();
+		}
+
+		// Misspelled references, the best match of the word by word scorer and the best match of
+		// the n-gram index. On the last two, the word by word scorer prefers another processor.
+		String[][] misspellings = {
+				{"Aser Aspire 5 A515-56", "Acer Aspire 5 A515-56", "Acer Aspire 5 A515-56"},
+				{"Apple MacBok Air 13", "Apple MacBook Air 13", "Apple MacBook Air 13"},
+				{"Asus X515M", "Asus X515MA", "Asus X515MA"},
+				{"Intel Celeron N4002", "Intel Celeron N4020", "Intel Celeron N4020"},
+				{"Intel Core i3 1115G", "Intel Core i7", "Intel Core i3 1115G4"},
+				{"Intel Dual Core i5 9400", "Intel Dual Core i5", "Intel Dual Core i5 9400F"}};
+
+		for (String[] m : misspellings) {
+			List<Token> tokens = new ArrayList<>();
+
+			for (String w : m[0].split(" ")) {
+				tokens.add(token(w, w, "Np"));
+			}
+
+			Query q = query(QType.YESNO, "avea", argument(tokens.toArray(new Token[0])));
+			String best = ranked(description, q).get(0).getReference();
+			List<RDConcept> ngramRanking = ranked(ngram, q);
+
+			assertEquals(m[0], m[1], best);
+			assertEquals(m[0], m[2], ngramRanking.get(0).getReference());
+			// The best match of the word by word scorer is an n-gram candidate.
+			assertTrue(m[0], ngramRanking.subList(0, 5).stream()
+					.anyMatch(c -> c.getReference().equals(best)));
+		}
+	}
+
+	@Test
+	public void testCandidateConcepts() {
+		OfflineMicroworld offline = new OfflineMicroworld(new OfflineWordNet()
+				.addHypernym("laptop", "dispozitiv").addHypernym("calculator", "dispozitiv"));
+		RDUniverse filtered = offline.load(OfflineMicroworld.SALES_MW);
+		RDUniverse unfiltered = offline.load(OfflineMicroworld.SALES_MW);
+
+		filtered.indexBoundConcepts();
+		filtered.indexPredicates();
+		unfiltered.indexPredicates();
+
+		List<Query> queries = new ArrayList<>();
+
+		queries.add(offline.parse("Aveți laptop Apple MacBook Air 13.", filtered));
+		queries.add(offline.parse("Câtă memorie are.", filtered));
+		// Aveți dispozitive Acer? 'dispozitiv' is only found through WordNet.
+		queries.add(query(QType.YESNO, "avea",
+				argument(verbToken("dispozitive", "dispozitiv", "Ncfp-n"),
+						token("Acer", "Acer", "Np"))));
+		// Aveți dispozitive?
+		queries.add(query(QType.YESNO, "avea",
+				argument(verbToken("dispozitive", "dispozitiv", "Ncfp-n"))));
+
+		for (Query q : queries) {
+			assertEquals(describe(unfiltered.resolveQuery(q)), describe(filtered.resolveQuery(q)));
+			assertEquals(describe(unfiltered.resolveQueryTopK(q, 10)),
+					describe(filtered.resolveQueryTopK(q, 10)));
+		}
+	}
+
+	@Test
+	public void testSuperlative() {
+		RDUniverse universe = OfflineMicroworld.sales();
+
+		universe.indexBoundConcepts();
+		universe.indexPredicates();
+
+		// Ce procesor are cel mai ieftin laptop?
+		PMatch pm = universe.resolveQuery(query(QType.WHAT, "avea",
+				variable(token("Ce", "ce", "Pw3--r"), verbToken("procesor", "procesor", "Ncms-n")),
+				argument(token("cel", "cel", "Tsms"), token("mai", "mai", "Rp"),
+						token("ieftin", "ieftin", "Afpms-n"),
+						verbToken("laptop", "laptop", "Ncms-n"))));
+
+		assertNotNull(pm);
+		assertEquals("avea", pm.matchedPredicate.getActionVerb());
+		assertEquals("Asus X515MA", pm.matchedPredicate.getArguments().get(0).getReference());
+		assertEquals("procesor", pm.matchedPredicate.getArguments().get(pm.saidArgumentIndex)
+				.getCanonicalName());
+
+		// Care este cel mai ieftin laptop?
+		pm = universe.resolveQuery(query(QType.WHAT, "fi",
+				variable(token("Care", "care", "Pw3--r")),
+				argument(token("cel", "cel", "Tsms"), token("mai", "mai", "Rp"),
+						token("ieftin", "ieftin", "Afpms-n"),
+						verbToken("laptop", "laptop", "Ncms-n"))));
+
+		assertNotNull(pm);
+		assertEquals("Asus X515MA",
+				pm.matchedPredicate.getArguments().get(pm.saidArgumentIndex).getReference());
+
+		// Câtă memorie are cel mai scump laptop?
+		pm = universe.resolveQuery(query(QType.AMOUNT, "avea",
+				variable(token("Câtă", "cât", "Pw3fsr"),
+						verbToken("memorie", "memorie", "Ncfsrn")),
+				argument(token("cel", "cel", "Tsms"), token("mai", "mai", "Rp"),
+						token("scump", "scump", "Afpms-n"),
+						verbToken("laptop", "laptop", "Ncms-n"))));
+
+		assertNotNull(pm);
+		assertEquals("Apple MacBook Air 13",
+				pm.matchedPredicate.getArguments().get(0).getReference());
+		assertEquals("8 GB",
+				pm.matchedPredicate.getArguments().get(pm.saidArgumentIndex).getReference());
+	}
+
+	@Test
+	public void testRangeQuery() {
+		OfflineMicroworld mw = new OfflineMicroworld();
+		RDUniverse universe = mw.load(OfflineMicroworld.SALES_MW);
+
+		universe.indexBoundConcepts();
+		universe.indexPredicates();
+
+		// Aveți laptopuri sub 2500 de lei?
+		Argument cheap = argument(token("laptopuri", "laptop", "Ncmp-n"),
+				token("sub", "sub", "Spsa"), token("2500", "2500", "Mc"),
+				token("de", "de", "Spsa"), token("lei", "leu", "Ncmp-n"));
+
+		for (String verb : new String[] {"avea", "costa"}) {
+			List<PMatch> range = universe.resolveRangeQuery(query(QType.YESNO, verb, cheap));
+			List<String> laptops = new ArrayList<>();
+
+			for (PMatch pm : range) {
+				assertTrue(pm.matchedPredicate.isThisPredicate(verb, mw.wordNet));
+				laptops.add(pm.matchedPredicate.getArguments().get(pm.saidArgumentIndex)
+						.getReference());
+			}
+
+			assertEquals(verb, List.of("Asus X515MA", "Acer Aspire 5 A515-56"), laptops);
+		}
+
+		// Aveți laptopuri cu cel puțin 8 GB memorie? The prices do not have a memory.
+		Argument memory = argument(token("laptopuri", "laptop", "Ncmp-n"),
+				token("cu", "cu", "Spsa"), token("cel", "cel", "Tsms"),
+				token("puțin", "puțin", "Rgp"), token("8", "8", "Mc"), token("GB", "GB", "Yn"),
+				token("memorie", "memorie", "Ncfsrn"));
+		Query costs = query(QType.YESNO, "costa", memory);
+
+		assertEquals(2, universe.resolveRangeQuery(query(QType.YESNO, "avea", memory)).size());
+		assertTrue(universe.resolveRangeQuery(costs).isEmpty());
+
+		// With no facts in the range, the facts are scored.
+		PMatch pm = universe.resolveQuery(costs);
+
+		assertNotNull(pm);
+		assertEquals(describe(pm), describe(universe.resolveQueryTopK(costs, 1).get(0)));
+		assertNull(universe.resolveRangeQuery(query(QType.YESNO, "costa",
+				argument(token("laptopuri", "laptop", "Ncmp-n")))));
+	}
+
+	/**
+	 * @return a universe with the bound concepts and the facts of {@code version}, with all its
+	 *         indexes built again.
+	 */
+	private static RDUniverse rebuilt(RDUniverse version) {
+		RDUniverse fresh = new RDUniverse(version);
+
+		fresh.indexBoundConcepts();
+		fresh.indexPredicates();
+		return fresh;
+	}
+
+	private static void assertSameAnswers(RDUniverse version, List<Query> queries) {
+		RDUniverse fresh = rebuilt(version);
+
+		for (Query q : queries) {
+			assertEquals(describe(fresh.resolveQuery(q)), describe(version.resolveQuery(q)));
+			assertEquals(describe(fresh.resolveQueryTopK(q, 10)),
+					describe(version.resolveQueryTopK(q, 10)));
+			assertEquals(describe(fresh.resolveRangeQuery(q)),
+					describe(version.resolveRangeQuery(q)));
+		}
+
+		for (RDConcept c : version.getBoundConcepts()) {
+			assertEquals(c.toString(), fresh.getBoundPredicatesWith(c),
+					version.getBoundPredicatesWith(c));
+		}
+	}
+
+	/**
+	 * @return queries about the products of {@code sales.mw}.
+	 */
+	private static List<Query> salesQueries() {
+		List<Query> queries = new ArrayList<>();
+
+		// Aveți procesor Intel Celeron N4020?
+		queries.add(query(QType.YESNO, "avea",
+				argument(verbToken("procesor", "procesor", "Ncms-n"),
+						token("Intel", "Intel", "Np"), token("Celeron", "Celeron", "Np"),
+						token("N4020", "N4020", "Mc"))));
+		// Aveți Celeron N4020? The candidates of the argument come from the trigram indexes.
+		queries.add(query(QType.YESNO, "avea",
+				argument(verbToken("Celeron", "Celeron", "Np"), token("N4020", "N4020", "Mc"))));
+		// Aveți placă Intel Celeron N4020?
+		queries.add(query(QType.YESNO, "avea",
+				argument(verbToken("placă", "placă", "Ncfsrn"), token("Intel", "Intel", "Np"),
+						token("Celeron", "Celeron", "Np"), token("N4020", "N4020", "Mc"))));
+		// Aveți laptop cu procesor Intel Celeron N4020? The facts to score are the ones in the
+		// fact bitmaps of both arguments.
+		queries.add(query(QType.YESNO, "avea",
+				argument(verbToken("laptop", "laptop", "Ncms-n")),
+				argument(verbToken("procesor", "procesor", "Ncms-n"),
+						token("Intel", "Intel", "Np"), token("Celeron", "Celeron", "Np"),
+						token("N4020", "N4020", "Mc"))));
+		// Aveți laptop Asus?
+		queries.add(query(QType.YESNO, "avea",
+				argument(verbToken("laptop", "laptop", "Ncms-n"), token("Asus", "Asus", "Np"))));
+		// Laptopuri sub 2450 de lei?
+		queries.add(query(QType.YESNO, "avea",
+				argument(verbToken("laptopuri", "laptop", "Ncmp-n"),
+						token("sub", "sub", "Spsa"), token("2450", "2450", "Mc"),
+						token("de", "de", "Spsa"), token("lei", "leu", "Ncmp-n"))));
+		// Care este cel mai ieftin laptop?
+		queries.add(query(QType.WHAT, "fi",
+				argument(token("cel", "cel", "Tsms"), token("mai", "mai", "Rp"),
+						token("ieftin", "ieftin", "Afpms-n"),
+						verbToken("laptop", "laptop", "Ncms-n"))));
+		// Ce memorie are laptopul Acer Aspire?
+		queries.add(query(QType.WHAT, "avea",
+				variable(token("Ce", "ce", "Pw3--r"), verbToken("memorie", "memorie", "Ncfsrn")),
+				argument(verbToken("laptopul", "laptop", "Ncmsry"), token("Acer", "Acer", "Np"),
+						token("Aspire", "Aspire", "Np"))));
+		// Cât costă laptopul Apple MacBook?
+		queries.add(query(QType.AMOUNT, "costa", variable(token("Cât", "cât", "Rw")),
+				argument(verbToken("laptopul", "laptop", "Ncmsry"), token("Apple", "Apple", "Np"),
+						token("MacBook", "MacBook", "Np"))));
+
+		return queries;
+	}
+
+	@Test
+	public void testCommittedVersions() {
+		List<Query> queries = salesQueries();
+
+		for (SimilarityType type : new SimilarityType[] {SimilarityType.DESCRIPTION,
+				SimilarityType.NGRAM}) {
+			for (boolean grouping : new boolean[] {false, true}) {
+				RDUniverse universe = OfflineMicroworld.sales();
+
+				universe.setSimilarityType(type);
+				universe.setFactGrouping(grouping);
+				universe.indexBoundConcepts();
+				universe.indexPredicates();
+
+				RDConcept asus = boundConcept(universe, "Asus X515MA");
+				RDConcept serioux = boundConcept(universe, "Serioux");
+				RDConcept acer = boundConcept(universe, "Acer Aspire 5 A515-56");
+				RDConcept cpu = boundConcept(universe, "Intel Core i3 1115G4");
+				RDConcept price = boundConcept(universe, "3999 de lei");
+				RDConcept memory = boundConcept(universe, "16 GB");
+
+				// A new price and processor of a laptop, and a new video card, which goes to the
+				// delta concept indexes. It is not equal to the processor with the same reference.
+				RDTransaction tx = universe.beginTransaction();
+				RDConcept newCard = tx.addReference("placă", "Intel Celeron N4020");
+
+				for (RDPredicate p : universe.getBoundPredicatesWith(asus)) {
+					RDPredicate np = tx.replaceArgument(p, p.getArguments().size() - 1, price);
+
+					if (np.getArguments().size() > 2) {
+						tx.replaceArgument(np, 1, cpu);
+					}
+				}
+
+				tx.addFact("avea", serioux, newCard);
+
+				RDUniverse v1 = tx.commit();
+
+				assertEquals(universe.getBoundPredicates().size() + 1,
+						v1.getBoundPredicates().size());
+				assertSameAnswers(v1, queries);
+
+				// A new memory in a group of facts which only differ by the video card
+				tx = v1.beginTransaction();
+
+				for (RDPredicate p : v1.getBoundPredicatesWith(acer)) {
+					if (p.getArguments().size() > 2) {
+						tx.replaceArgument(p, 2, memory);
+						break;
+					}
+				}
+
+				RDUniverse v2 = tx.commit();
+
+				assertSameAnswers(v2, queries);
+				// The old version answers as before.
+				assertSameAnswers(v1, queries);
+
+				// Retracting a product moves the fact IDs of the next facts.
+				tx = v2.beginTransaction();
+				tx.retractBoundConcept(asus);
+				assertSameAnswers(tx.commit(), queries);
+			}
+		}
+	}
+
+	@Test
+	public void testTopKAgreesWithBestMatch() {
+		for (boolean grouping : new boolean[] {false, true}) {
+			RDUniverse universe = OfflineMicroworld.sales();
+
+			universe.setFactGrouping(grouping);
+			universe.indexBoundConcepts();
+			universe.indexPredicates();
+
+			for (Query q : salesQueries()) {
+				// No fact is pruned when k is larger than the number of facts.
+				List<PMatch> all = universe.resolveQueryTopK(q, 1000);
+
+				assertEquals(describe(universe.resolveQuery(q)),
+						describe(all.isEmpty() ? null : all.get(0)));
+
+				for (int k = 1; k <= 3; k++) {
+					assertEquals(describe(all.subList(0, Math.min(k, all.size()))),
+							describe(universe.resolveQueryTopK(q, k)));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testBitmapFiltering() {
+		List<Query> queries = salesQueries();
+
+		// Aveți laptop Apple cu procesor Intel Celeron N4020? No fact has both arguments.
+		queries.add(query(QType.YESNO, "avea",
+				argument(verbToken("laptop", "laptop", "Ncms-n"), token("Apple", "Apple", "Np")),
+				argument(verbToken("procesor", "procesor", "Ncms-n"),
+						token("Intel", "Intel", "Np"), token("Celeron", "Celeron", "Np"),
+						token("N4020", "N4020", "Mc"))));
+
+		for (boolean columnar : new boolean[] {false, true}) {
+			RDUniverse universe = OfflineMicroworld.sales();
+
+			universe.setColumnarFacts(columnar);
+			universe.indexBoundConcepts();
+			universe.indexPredicates();
+
+			for (Query q : queries) {
+				universe.setBitmapFiltering(false);
+
+				String best = describe(universe.resolveQuery(q));
+				String topK = describe(universe.resolveQueryTopK(q, 3));
+
+				universe.setBitmapFiltering(true);
+				assertEquals(best, describe(universe.resolveQuery(q)));
+				assertEquals(topK, describe(universe.resolveQueryTopK(q, 3)));
+			}
+		}
+	}
+
+	@Test
+	public void testParallelScoring() {
+		RDUniverse universe = OfflineMicroworld.sales();
+
+		universe.indexBoundConcepts();
+		universe.indexPredicates();
+
+		// Enough copies of the facts of each verb to score them in parallel. A copy ties with its
+		// fact and the fact wins, as it comes first.
+		RDTransaction tx = universe.beginTransaction();
+		List<RDPredicate> facts = universe.getBoundPredicates();
+
+		for (int i = 0; i < RDUniverse.PARALLEL_SCORING_THRESHOLD; i++) {
+			for (RDPredicate p : facts) {
+				tx.addFact(p.getActionVerb(), p.getArguments().toArray(new RDConcept[0]));
+			}
+		}
+
+		RDUniverse copies = tx.commit();
+
+		assertTrue(copies.getBoundPredicates().size() > RDUniverse.PARALLEL_SCORING_THRESHOLD);
+		copies.setBitmapFiltering(false);
+
+		for (Query q : salesQueries()) {
+			copies.setParallelScoring(false);
+
+			PMatch sequential = copies.resolveQuery(q);
+
+			copies.setParallelScoring(true);
+
+			PMatch parallel = copies.resolveQuery(q);
+
+			assertEquals(describe(sequential), describe(parallel));
+
+			if (sequential != null) {
+				assertSame(sequential.matchedPredicate, parallel.matchedPredicate);
+				assertTrue(facts.stream().anyMatch(p -> p == parallel.matchedPredicate));
+			}
+		}
+	}
+
+	@Test
+	public void testColumnarFacts() {
+		RDUniverse objects = OfflineMicroworld.sales();
+		RDUniverse columns = OfflineMicroworld.sales();
+
+		columns.setColumnarFacts(true);
+
+		for (RDUniverse universe : new RDUniverse[] {objects, columns}) {
+			universe.indexBoundConcepts();
+			universe.indexPredicates();
+		}
+
+		List<Query> queries = salesQueries();
+
+		// Care este laptopul? The facts of 'avea' and 'costa' are in two tables of the store and
+		// the laptops tie in both.
+		queries.add(query(QType.WHAT, "fi",
+				argument(verbToken("laptopul", "laptop", "Ncmsry"))));
+
+		for (Query q : queries) {
+			assertEquals(describe(objects.resolveQuery(q)), describe(columns.resolveQuery(q)));
+
+			// Many facts of the sales micro-world tie, and the earlier ones come first.
+			for (int k : new int[] {1, 2, 3, 1000}) {
+				assertEquals(describe(objects.resolveQueryTopK(q, k)),
+						describe(columns.resolveQueryTopK(q, k)));
+			}
+		}
+	}
+
+	/**
+	 * The facts that the queries of {@link #testRankingBeforeRefactoring()} rank, as
+	 * <i>fact score saidArgumentIndex</i>, best first. They were computed by scoring all the
+	 * predicates that the predicate index returns, with the code of {@code [user-034]} (commit
+	 * 41daf12), before the head noun index, the precomputed concept features, the argument score
+	 * memo, the top-k bounds, the scoring without allocations and the fact groups.
+	 */
+	private static final String[] RANKINGS_BEFORE = {
+			"6 1.1714287 -1, 3 0.73186815 -1, 4 0.73186815 -1, 8 0.6888889 -1, 10 0.68 -1, "
+					+ "11 0.68 -1, 0 0.6516796 -1, 1 0.6516796 -1",
+			"0 0.5 -1, 1 0.5 -1, 3 0.5 -1, 4 0.5 -1, 6 0.5 -1, 8 0.5 -1, 10 0.5 -1, 11 0.5 -1",
+			"1 0.6945627 -1, 4 0.67407405 -1, 0 0.66944444 -1, 10 0.66441226 -1, "
+					+ "11 0.65698004 -1, 3 0.6562588 -1, 6 0.63809526 -1, 8 0.5 -1",
+			"6 2.2714286 -1, 8 1.7888889 -1, 10 1.78 -1, 11 1.78 -1, 3 0.73186815 -1, "
+					+ "4 0.73186815 -1, 0 0.6516796 -1, 1 0.6516796 -1",
+			"6 0.74285716 -1, 8 0.64371586 -1, 10 0.6392157 -1, 11 0.6392157 -1, 0 0.5 -1, "
+					+ "1 0.5 -1, 3 0.5 -1, 4 0.5 -1",
+			"6 1.6923077 2, 10 1.6659341 2, 11 1.6659341 2, 8 1.6519481 2, 0 1.5 2, 1 1.5 2, "
+					+ "3 1.5 2, 4 1.5 2",
+			"7 0.6857143 -1, 9 0.6659341 -1, 12 0.64181185 -1, 2 0.5 -1, 5 0.5 -1",
+			"6 1.35 -1, 7 1.35 -1, 8 1.35 -1, 9 1.35 -1, 10 1.35 -1, 11 1.35 -1, 12 1.35 -1, "
+					+ "0 0.25 -1, 1 0.25 -1, 2 0.25 -1, 3 0.25 -1, 4 0.25 -1, 5 0.25 -1",
+			"0 2.2666667 1, 1 2.2666667 1, 3 1.6571429 1, 4 1.6571429 1, 6 1.5 1, 8 1.5 1, "
+					+ "10 1.5 1, 11 1.5 1",
+			"1 1.6 -1, 0 0.8173913 -1, 11 0.71904767 -1, 6 0.7010101 -1, 3 0.68928576 -1, "
+					+ "10 0.6877193 -1, 4 0.6746269 -1, 8 0.5 -1",
+			"6 1.7428572 4, 8 1.6325203 3, 0 1.5 0, 1 1.5 0, 3 1.5 0, 4 1.5 0, "
+					+ "10 0.6333333 -1, 11 0.6333333 -1",
+			"6 0.7 -1, 8 0.6634921 -1, 10 0.6634921 -1, 11 0.6634921 -1, 0 0.5 -1, 1 0.5 -1, "
+					+ "3 0.5 -1, 4 0.5 -1"};
+
+	/**
+	 * @return the ranked facts of {@code matches}, as in {@link #RANKINGS_BEFORE}.
+	 */
+	private static String ranking(RDUniverse universe, List<PMatch> matches) {
+		List<String> result = new ArrayList<>();
+
+		for (PMatch pm : matches) {
+			result.add(universe.getGlobalFactId(pm.matchedPredicate) + " " + pm.matchScore + " "
+					+ pm.saidArgumentIndex);
+		}
+
+		return String.join(", ", result);
+	}
+
+	@Test
+	public void testRankingBeforeRefactoring() {
+		List<Query> queries = salesQueries();
+
+		// The range and the superlative queries were not answered from the scores.
+		queries.subList(5, 7).clear();
+		// Care este laptopul?
+		queries.add(query(QType.WHAT, "fi",
+				argument(verbToken("laptopul", "laptop", "Ncmsry"))));
+		// Ce procesor are calculatorul Serioux?
+		queries.add(query(QType.WHAT, "avea",
+				variable(token("Ce", "ce", "Pw3--r"), verbToken("procesor", "procesor", "Ncms-n")),
+				argument(verbToken("calculatorul", "calculator", "Ncmsry"),
+						token("Serioux", "Serioux", "Np"))));
+		// Aveți placă video Radeon RX 550?
+		queries.add(query(QType.YESNO, "avea",
+				argument(verbToken("placă", "placă", "Ncfsrn"), token("video", "video", "Ncms-n"),
+						token("Radeon", "Radeon", "Np"), token("RX", "RX", "Np"),
+						token("550", "550", "Mc"))));
+		// Ce sistem de operare are laptopul Asus?
+		queries.add(query(QType.WHAT, "avea",
+				variable(token("Ce", "ce", "Pw3--r"), verbToken("sistem", "sistem", "Ncms-n"),
+						token("de", "de", "Spsa"), token("operare", "operare", "Ncfsrn")),
+				argument(verbToken("laptopul", "laptop", "Ncmsry"), token("Asus", "Asus", "Np"))));
+		// Aveți laptop Aser Aspire?
+		queries.add(query(QType.YESNO, "avea",
+				argument(verbToken("laptop", "laptop", "Ncms-n"), token("Aser", "Aser", "Np"),
+						token("Aspire", "Aspire", "Np"))));
+		assertEquals(RANKINGS_BEFORE.length, queries.size());
+
+		RDUniverse universe = OfflineMicroworld.sales();
+		RDUniverse grouped = OfflineMicroworld.sales();
+
+		grouped.setFactGrouping(true);
+
+		for (RDUniverse u : new RDUniverse[] {universe, grouped}) {
+			// The faceted queries only rank the facts which satisfy all their constraints.
+			u.setBitmapFiltering(false);
+			u.indexBoundConcepts();
+			u.indexPredicates();
+		}
+
+		for (int i = 0; i < queries.size(); i++) {
+			Query q = queries.get(i);
+			String before = RANKINGS_BEFORE[i];
+
+			assertEquals(before, ranking(universe, universe.resolveQueryTopK(q, 1000)));
+
+			for (int k = 1; k <= 3; k++) {
+				assertEquals(String.join(", ", Arrays.asList(before.split(", ")).subList(0, k)),
+						ranking(universe, universe.resolveQueryTopK(q, k)));
+			}
+
+			// The best fact satisfies them.
+			universe.setBitmapFiltering(true);
+			assertEquals(before.split(", ")[0],
+					ranking(universe, Collections.singletonList(universe.resolveQuery(q))));
+			universe.setBitmapFiltering(false);
+
+			// Facts 0 and 1, 3 and 4, 10 and 11 only differ by the video card: with fact groups,
+			// only the better fact of each group is ranked.
+			List<String> groups = new ArrayList<>();
+			Set<Integer> ranked = new HashSet<>();
+
+			for (String f : before.split(", ")) {
+				int id = Integer.parseInt(f.substring(0, f.indexOf(' ')));
+
+				if (ranked.add(id == 1 || id == 4 || id == 11 ? id - 1 : id)) {
+					groups.add(f);
+				}
+			}
+
+			assertEquals(String.join(", ", groups),
+					ranking(grouped, grouped.resolveQueryTopK(q, 1000)));
+		}
+	}
+
+	@Test
+	public void testSharedSynonyms() {
+		RDUniverse universe = OfflineMicroworld.sales();
+		RDConcept asus = boundConcept(universe, "Asus X515MA");
+		RDConcept apple = boundConcept(universe, "Apple MacBook Air 13");
+		RDPredicate fact = universe.getBoundPredicates().get(0);
+
+		assertEquals(apple.getSynonyms(), asus.getSynonyms());
+
+		// The synonyms are shared by the references of 'laptop' and by the facts of 'avea'.
+		try {
+			asus.getSynonyms().add("notebook");
+			fail("The synonyms of a concept cannot be changed through getSynonyms()");
+		} catch (UnsupportedOperationException uoe) {
+			assertFalse(apple.getSynonyms().contains("notebook"));
+		}
+
+		try {
+			fact.getSynonyms().clear();
+			fail("The synonyms of a predicate cannot be changed through getSynonyms()");
+		} catch (UnsupportedOperationException uoe) {
+			assertFalse(universe.getBoundPredicates().get(1).getSynonyms().isEmpty());
+		}
+
+		asus.addSynonym("notebook");
+		assertTrue(asus.getSynonyms().contains("notebook"));
+		assertFalse(apple.getSynonyms().contains("notebook"));
+	}
+
+	@Test
+	public void testQueriesNeedIndexes() {
+		RDUniverse universe = OfflineMicroworld.sales();
+		Query q = salesQueries().get(0);
+
+		try {
+			universe.resolveQuery(q);
+			fail("The facts are not indexed");
+		} catch (IllegalStateException expected) {
+			// The query does not build the indexes.
+		}
+
+		// Also builds the head noun index, as the bound concepts are not indexed
+		universe.indexPredicates();
+
+		String best = describe(universe.resolveQuery(q));
+
+		assertNotNull(universe.resolveQuery(q));
+		universe.setFactGrouping(true);
+
+		try {
+			universe.resolveQueryTopK(q, 5);
+			fail("The fact groups are not indexed");
+		} catch (IllegalStateException expected) {
+			// Changing how the facts are scored drops the fact indexes.
+		}
+
+		universe.indexPredicates();
+		assertEquals(best, describe(universe.resolveQuery(q)));
+	}
+
+	/**
+	 * @return the sales universe with each fact {@code copies} times, indexed.
+	 */
+	private static RDUniverse salesCopies(int copies) {
+		RDUniverse universe = OfflineMicroworld.sales();
+		List<RDPredicate> facts = new ArrayList<>();
+
+		for (int i = 0; i < copies; i++) {
+			for (RDPredicate p : universe.getBoundPredicates()) {
+				RDPredicate copy = p.deepCopy();
+
+				for (RDConcept a : p.getArguments()) {
+					copy.addArgument(a);
+				}
+
+				facts.add(copy);
+			}
+		}
+
+		universe.addBoundPredicates(facts);
+		universe.indexBoundConcepts();
+		universe.indexPredicates();
+		return universe;
+	}
+
+	/**
+	 * @return the fewest bytes that one {@code resolveQuery(q)} call allocated, in a few rounds.
+	 */
+	private static long allocatedBytes(ThreadMXBean threads, RDUniverse universe, Query q) {
+		long min = Long.MAX_VALUE;
+
+		for (int round = 0; round < 5; round++) {
+			long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+
+			for (int i = 0; i < 100; i++) {
+				universe.resolveQuery(q);
+			}
+
+			min = Math.min(min,
+					(threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before)
+							/ 100);
+		}
+
+		return min;
+	}
+
+	@Test
+	public void testNoAllocationPerPredicate() {
+		ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+		Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+
+		// Ce procesor are laptopul Asus?
+		Query q = query(QType.WHAT, "avea",
+				variable(token("Ce", "ce", "Pw3--r"), verbToken("procesor", "procesor", "Ncms-n")),
+				argument(verbToken("laptopul", "laptop", "Ncmsry"), token("Asus", "Asus", "Np")));
+		RDUniverse small = salesCopies(1);
+		RDUniverse large = salesCopies(256);
+
+		assertEquals(describe(small.resolveQuery(q)), describe(large.resolveQuery(q)));
+
+		// The caches, the scratch memory of the thread and the JIT compiler warm up.
+		for (int i = 0; i < 3000; i++) {
+			small.resolveQuery(q);
+			large.resolveQuery(q);
+		}
+
+		long smallBytes = allocatedBytes(threads, small, q);
+		long largeBytes = allocatedBytes(threads, large, q);
+		int extra = large.getBoundPredicates().size() - small.getBoundPredicates().size();
+
+		// What is left is allocated per query, e.g. the memoized cell scores.
+		assertTrue(smallBytes + " bytes per query with " + small.getBoundPredicates().size()
+				+ " facts, " + largeBytes + " with " + large.getBoundPredicates().size(),
+				largeBytes - smallBytes < extra);
+	}
+}
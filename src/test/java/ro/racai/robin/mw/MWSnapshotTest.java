@@ -0,0 +1,208 @@
+/**
+ *
+ */
+package ro.racai.robin.mw;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import ro.racai.robin.dialog.OfflineMicroworld;
+import ro.racai.robin.dialog.RDConcept;
+import ro.racai.robin.dialog.RDFactFilter;
+import ro.racai.robin.dialog.RDMappedFactStore;
+import ro.racai.robin.dialog.RDPredicate;
+import ro.racai.robin.dialog.RDUniverse;
+import ro.racai.robin.nlp.Lexicon;
+import ro.racai.robin.nlp.TextProcessor;
+import ro.racai.robin.nlp.TextProcessor.Token;
+import ro.racai.robin.nlp.WordNet;
+
+/**
+ * @author Radu Ion ({@code radu@racai.ro})
+ */
+public class MWSnapshotTest {
+	private static String describe(RDUniverse universe) {
+		StringBuilder sb = new StringBuilder();
+
+		sb.append(universe.getSimilarityType()).append('\n');
+		sb.append(universe.getASRRulesMap()).append('\n');
+
+		for (RDConcept c : universe.getDefinedConcepts()) {
+			sb.append(c).append(' ').append(c.getSynonyms()).append('\n');
+		}
+
+		for (RDConcept c : universe.getBoundConcepts()) {
+			sb.append(c).append(' ').append(c.getTokenizedReference().stream()
+					.map(Token::textRecord).collect(Collectors.joining(" "))).append('\n');
+		}
+
+		for (RDPredicate p : universe.getBoundPredicates()) {
+			sb.append(p).append(' ').append(p.getSynonyms()).append('\n');
+		}
+
+		sb.append(universe.getAttributes()).append('\n');
+
+		return sb.toString();
+	}
+
+	/**
+	 * @return the facts of {@code part}, with their global fact IDs.
+	 */
+	private static String describeFacts(RDUniverse part) {
+		StringBuilder sb = new StringBuilder();
+
+		part.indexPredicates();
+
+		for (RDPredicate p : part.getBoundPredicates()) {
+			sb.append(part.getGlobalFactId(p)).append(' ').append(p).append('\n');
+		}
+
+		return sb.toString();
+	}
+
+	@Test
+	public void testSnapshotRoundTrip() throws IOException {
+		Path dir = Files.createTempDirectory("mwsnapshot");
+		Path mw = dir.resolve("sales.mw");
+
+		Files.copy(new File(OfflineMicroworld.SALES_MW).toPath(), mw,
+				StandardCopyOption.REPLACE_EXISTING);
+
+		OfflineMicroworld offline = new OfflineMicroworld();
+		WordNet wn = offline.wordNet;
+		Lexicon lex = offline.lexicon;
+		TextProcessor proc = offline.textProcessor;
+		MWSnapshot snapshot = new MWSnapshot(mw.toString());
+		RDUniverse parsed = offline.load(mw.toString());
+
+		// First load compiles the .mw file
+		RDUniverse compiled = snapshot.constructUniverse(wn, lex, proc);
+
+		assertTrue(snapshot.getSnapshotFile().exists());
+		assertEquals(describe(parsed), describe(compiled));
+
+		// Second load reads the snapshot
+		RDUniverse loaded = snapshot.constructUniverse(wn, lex, proc);
+
+		assertEquals(describe(parsed), describe(loaded));
+		assertEquals("SALES", snapshot.getMicroworldName());
+		assertEquals(2, loaded.getAttributes().size());
+
+		RDConcept amount = null;
+
+		for (RDConcept c : loaded.getBoundConcepts()) {
+			if (c.getReference().equals("8 GB")) {
+				amount = c;
+			}
+		}
+
+		assertNotNull(amount);
+		assertEquals(8.0f, amount.getMatchFeatures().getNumericalValue(), 1e-5f);
+
+		// A stale snapshot is not used
+		assertNull(snapshot.read(new byte[32], wn, lex, proc));
+
+		Files.delete(snapshot.getSnapshotFile().toPath());
+		Files.delete(mw);
+		Files.delete(dir);
+	}
+
+	@Test
+	public void testPartitionFacts() throws IOException {
+		Path dir = Files.createTempDirectory("mwsnapshot");
+		Path mw = dir.resolve("sales.mw");
+
+		Files.copy(new File(OfflineMicroworld.SALES_MW).toPath(), mw,
+				StandardCopyOption.REPLACE_EXISTING);
+
+		OfflineMicroworld offline = new OfflineMicroworld();
+		WordNet wn = offline.wordNet;
+		Lexicon lex = offline.lexicon;
+		TextProcessor proc = offline.textProcessor;
+		MWSnapshot snapshot = new MWSnapshot(mw.toString());
+		RDUniverse parsed = offline.load(mw.toString());
+		int factCount = 0;
+
+		for (boolean byConcept : new boolean[] {true, false}) {
+			for (int i = 0; i < 3; i++) {
+				RDFactFilter keep = RDFactFilter.partition(i, 3, byConcept);
+				String expected = describeFacts(parsed.partition(i, 3, byConcept));
+				// The first load compiles the snapshot, the next ones read it
+				RDUniverse loaded = snapshot.constructUniverse(wn, lex, proc, keep);
+				RDUniverse read = new MWFileReader(mw.toString()).constructUniverse(wn, lex,
+						proc, keep);
+
+				assertEquals(expected, describeFacts(loaded));
+				assertEquals(expected, describeFacts(read));
+				assertEquals(parsed.getBoundConcepts().size(), loaded.getBoundConcepts().size());
+				factCount += loaded.getBoundPredicates().size();
+			}
+		}
+
+		assertEquals(2 * parsed.getBoundPredicates().size(), factCount);
+		assertTrue(snapshot.constructUniverse(wn, lex, proc, RDFactFilter.NONE)
+				.getBoundPredicates().isEmpty());
+
+		Files.delete(snapshot.getSnapshotFile().toPath());
+		Files.delete(mw);
+		Files.delete(dir);
+	}
+
+	@Test
+	public void testMappedFacts() throws IOException {
+		Path dir = Files.createTempDirectory("mwsnapshot");
+		Path mw = dir.resolve("sales.mw");
+
+		Files.copy(new File(OfflineMicroworld.SALES_MW).toPath(), mw,
+				StandardCopyOption.REPLACE_EXISTING);
+
+		OfflineMicroworld offline = new OfflineMicroworld();
+		WordNet wn = offline.wordNet;
+		Lexicon lex = offline.lexicon;
+		TextProcessor proc = offline.textProcessor;
+		MWSnapshot snapshot = new MWSnapshot(mw.toString());
+		RDUniverse parsed = offline.load(mw.toString());
+
+		// First load compiles the snapshot and the facts file
+		RDUniverse compiled = snapshot.constructMappedUniverse(wn, lex, proc);
+
+		assertTrue(snapshot.getFactsFile().exists());
+		assertTrue(compiled.isColumnarFacts());
+		assertEquals(describe(parsed), describe(compiled));
+
+		// Second load maps the facts file
+		RDUniverse mapped = snapshot.constructMappedUniverse(wn, lex, proc);
+
+		assertTrue(mapped.isColumnarFacts());
+		assertEquals(describe(parsed), describe(mapped));
+
+		// The mapped facts are read-only
+		try {
+			mapped.addBoundPredicate(parsed.getBoundPredicates().get(0));
+			fail("Added a fact to a mapped fact store");
+		} catch (UnsupportedOperationException e) {
+			assertEquals(parsed.getBoundPredicates().size(), mapped.getBoundPredicates().size());
+		}
+
+		// A stale facts file is not mapped
+		assertNull(RDMappedFactStore.open(snapshot.getFactsFile(), mapped.getBoundConcepts(),
+				new byte[32]));
+
+		Files.delete(snapshot.getFactsFile().toPath());
+		Files.delete(snapshot.getSnapshotFile().toPath());
+		Files.delete(mw);
+		Files.delete(dir);
+	}
+}
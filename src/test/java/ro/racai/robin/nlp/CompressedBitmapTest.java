@@ -0,0 +1,75 @@
+/**
+ *
+ */
+package ro.racai.robin.nlp;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * @author Radu Ion ({@code radu@racai.ro})
+ */
+public class CompressedBitmapTest {
+	private static CompressedBitmap random(Random rnd, BitSet expected, int count, int bound) {
+		CompressedBitmap bm = new CompressedBitmap();
+
+		for (int i = 0; i < count; i++) {
+			int v = rnd.nextInt(bound);
+
+			bm.add(v);
+			expected.set(v);
+		}
+
+		return bm;
+	}
+
+	@Test
+	public void testAddContains() {
+		CompressedBitmap bm = CompressedBitmap.of(7, 3, 70000, 3);
+
+		assertArrayEquals(new int[] {3, 7, 70000}, bm.toArray());
+		assertEquals(3, bm.cardinality());
+		assertTrue(bm.contains(70000));
+		assertFalse(bm.contains(4));
+		assertFalse(bm.contains(-1));
+		assertTrue(new CompressedBitmap().isEmpty());
+	}
+
+	@Test
+	public void testAndOr() {
+		Random rnd = new Random(42);
+
+		// Sparse and dense chunks, over several chunks
+		for (int[] sizes : new int[][] {{100, 200}, {20000, 300}, {30000, 40000}}) {
+			BitSet ea = new BitSet();
+			BitSet eb = new BitSet();
+			CompressedBitmap a = random(rnd, ea, sizes[0], 150000);
+			CompressedBitmap b = random(rnd, eb, sizes[1], 150000);
+			BitSet and = (BitSet) ea.clone();
+			BitSet or = (BitSet) ea.clone();
+			BitSet andNot = (BitSet) ea.clone();
+
+			and.and(eb);
+			or.or(eb);
+			andNot.andNot(eb);
+
+			assertArrayEquals(ea.stream().toArray(), a.toArray());
+			assertArrayEquals(and.stream().toArray(), a.and(b).toArray());
+			assertArrayEquals(and.stream().toArray(), b.and(a).toArray());
+			assertArrayEquals(or.stream().toArray(), a.or(b).toArray());
+			assertEquals(or.cardinality(), b.or(a).cardinality());
+			assertArrayEquals(andNot.stream().toArray(), a.andNot(b).toArray());
+			assertTrue(a.andNot(a).isEmpty());
+			// Operands are not changed
+			assertArrayEquals(ea.stream().toArray(), a.toArray());
+			assertArrayEquals(eb.stream().toArray(), b.toArray());
+		}
+	}
+}
@@ -0,0 +1,94 @@
+/**
+ * 
+ */
+package ro.racai.robin.nlp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * @author Radu Ion ({@code radu@racai.ro})
+ */
+public class HashedNgramIndexTest {
+	private static final String[] BRANDS = {"Acer", "Asus", "Lenovo", "Dell", "HP", "Apple"};
+	private static final String[] SERIES =
+			{"Aspire", "VivoBook", "IdeaPad", "Inspiron", "Pavilion", "MacBook", "Swift", "ZenBook"};
+
+	private static List<List<String>> catalog(int size) {
+		Random rnd = new Random(42);
+		List<List<String>> refs = new ArrayList<>();
+
+		for (int i = 0; i < size; i++) {
+			refs.add(Arrays.asList("laptop", BRANDS[rnd.nextInt(BRANDS.length)],
+					SERIES[rnd.nextInt(SERIES.length)], Integer.toString(rnd.nextInt(10)),
+					"A" + (100 + rnd.nextInt(900)) + "-" + (10 + rnd.nextInt(90))));
+		}
+
+		return refs;
+	}
+
+	@Test
+	public void testTopKIsSortedAndConsistent() {
+		List<List<String>> refs = catalog(500);
+		HashedNgramIndex<Integer> index = new HashedNgramIndex<>(256);
+
+		for (int i = 0; i < refs.size(); i++) {
+			index.add(i, refs.get(i));
+		}
+
+		float[] q = index.embed(Arrays.asList("laptop", "Lenovo", "IdeaPad"));
+		List<HashedNgramIndex.Hit<Integer>> hits = index.topK(q, 10);
+
+		assertEquals(10, hits.size());
+
+		float worstHit = hits.get(hits.size() - 1).score;
+		int better = 0;
+
+		for (int i = 0; i < refs.size(); i++) {
+			if (index.similarity(i, q) > worstHit) {
+				better++;
+			}
+		}
+
+		assertTrue(better < 10);
+
+		for (int i = 0; i < hits.size(); i++) {
+			assertEquals(index.similarity(hits.get(i).item, q), hits.get(i).score, 1e-6f);
+
+			if (i > 0) {
+				assertTrue(hits.get(i - 1).score >= hits.get(i).score);
+			}
+		}
+	}
+
+	@Test
+	public void testFindsMisspelledReference() {
+		List<List<String>> refs = catalog(5000);
+		HashedNgramIndex<Integer> index = new HashedNgramIndex<>();
+
+		for (int i = 0; i < refs.size(); i++) {
+			index.add(i, refs.get(i));
+		}
+
+		List<String> target = refs.get(1234);
+		List<String> query = Arrays.asList("laptop", target.get(1), target.get(2).toLowerCase(),
+				target.get(3), target.get(4).substring(1));
+		List<HashedNgramIndex.Hit<Integer>> hits = index.topK(index.embed(query), 5);
+		boolean found = false;
+
+		for (HashedNgramIndex.Hit<Integer> h : hits) {
+			if (refs.get(h.item).equals(target)) {
+				found = true;
+			}
+		}
+
+		assertTrue(found);
+	}
+}
@@ -0,0 +1,48 @@
+/**
+ * 
+ */
+package ro.racai.robin.nlp;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * @author Radu Ion ({@code radu@racai.ro})
+ */
+public class HypernymClosureTest {
+
+	@Test
+	public void testMultiHop() {
+		HypernymClosure hc = new HypernymClosure(3);
+
+		hc.addIsA("laptop", "calculator");
+		hc.addIsA("calculator", "mașină");
+		hc.addIsA("mașină", "dispozitiv");
+		hc.addIsA("dispozitiv", "obiect");
+		hc.build();
+
+		assertTrue(hc.isKindOf("laptop", "calculator", 1));
+		assertFalse(hc.isKindOf("laptop", "mașină", 1));
+		assertTrue(hc.isKindOf("laptop", "mașină", 2));
+		assertTrue(hc.isKindOf("laptop", "dispozitiv"));
+		assertFalse(hc.isKindOf("laptop", "obiect"));
+		assertFalse(hc.isKindOf("dispozitiv", "laptop"));
+		assertFalse(hc.isKindOf("laptop", "copac"));
+	}
+
+	@Test
+	public void testMultipleParents() {
+		HypernymClosure hc = new HypernymClosure(2);
+
+		hc.addIsA("laptop", "calculator");
+		hc.addIsA("laptop", "portabil");
+		hc.addIsA("portabil", "obiect");
+		hc.build();
+
+		assertTrue(hc.isKindOf("laptop", "obiect"));
+		assertTrue(hc.isKindOf("laptop", "calculator"));
+		assertFalse(hc.isKindOf("calculator", "obiect"));
+	}
+}
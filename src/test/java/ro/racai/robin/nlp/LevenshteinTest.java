@@ -0,0 +1,113 @@
+/**
+ * 
+ */
+package ro.racai.robin.nlp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * @author Radu Ion ({@code radu@racai.ro})
+ */
+public class LevenshteinTest {
+	private static int referenceDistance(String a, String b) {
+		int[][] d = new int[a.length() + 1][b.length() + 1];
+
+		for (int i = 0; i <= a.length(); i++) {
+			d[i][0] = i;
+		}
+
+		for (int j = 0; j <= b.length(); j++) {
+			d[0][j] = j;
+		}
+
+		for (int i = 1; i <= a.length(); i++) {
+			for (int j = 1; j <= b.length(); j++) {
+				int sub = d[i - 1][j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+
+				d[i][j] = Math.min(sub, Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1));
+			}
+		}
+
+		return d[a.length()][b.length()];
+	}
+
+	private static String randomWord(Random rnd, int maxLength) {
+		String alphabet = "abcdeăâîșțxyz";
+		int len = rnd.nextInt(maxLength + 1);
+		StringBuilder sb = new StringBuilder();
+
+		for (int i = 0; i < len; i++) {
+			sb.append(alphabet.charAt(rnd.nextInt(alphabet.length())));
+		}
+
+		return sb.toString();
+	}
+
+	@Test
+	public void testKnownDistances() {
+		Levenshtein lev = new Levenshtein();
+
+		assertEquals(3, lev.ld("kitten", "sitting"));
+		assertEquals(1, lev.ld("leptop", "laptop"));
+		assertEquals(2, lev.ld("raizen", "ryzen"));
+		assertEquals(6, lev.ld("", "laptop"));
+		assertEquals(0, lev.ld("sală", "sală"));
+		assertEquals(1, lev.ld("sala", "sală"));
+	}
+
+	@Test
+	public void testRandomAgainstReference() {
+		Levenshtein lev = new Levenshtein();
+		Random rnd = new Random(1977);
+
+		for (int k = 0; k < 5000; k++) {
+			String a = randomWord(rnd, 20);
+			String b = randomWord(rnd, 20);
+
+			assertEquals(a + "/" + b, referenceDistance(a, b), lev.ld(a, b));
+		}
+	}
+
+	@Test
+	public void testLongWords() {
+		Levenshtein lev = new Levenshtein();
+		Random rnd = new Random(2020);
+
+		for (int k = 0; k < 200; k++) {
+			String a = randomWord(rnd, 100);
+			String b = randomWord(rnd, 100);
+
+			assertEquals(a + "/" + b, referenceDistance(a, b), lev.ld(a, b));
+		}
+	}
+
+	@Test
+	public void testBounded() {
+		Levenshtein lev = new Levenshtein();
+		Random rnd = new Random(5);
+
+		for (int k = 0; k < 5000; k++) {
+			String a = randomWord(rnd, 12);
+			String b = randomWord(rnd, 12);
+			int d = referenceDistance(a, b);
+
+			assertEquals(Math.min(d, 4), lev.distance(a, b, 3));
+		}
+	}
+
+	@Test
+	public void testBoundedThenUnbounded() {
+		Levenshtein lev = new Levenshtein();
+
+		assertFalse(lev.ld("calculator", "laptop", 2));
+		assertEquals(3, lev.distance("calculator", "laptop", 2));
+		assertEquals(referenceDistance("calculator", "laptop"), lev.ld("calculator", "laptop"));
+		assertTrue(lev.ld("calculator", "laptop", 10));
+	}
+}
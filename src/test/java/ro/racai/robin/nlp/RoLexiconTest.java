@@ -1,9 +1,14 @@
 package ro.racai.robin.nlp;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import org.junit.Test;
+import ro.racai.robin.nlp.TextProcessor.Token;
 
 /**
  * @author Radu Ion ({@code radu@racai.ro})
@@ -62,4 +67,55 @@ public class RoLexiconTest {
 		assertTrue(entities.containsKey(5));
 		assertEquals(EntityType.NUMBER, entities.get(5).getFirstMember());
 	}
+
+	private static List<Token> tokens(String... wordsAndLemmas) {
+		List<Token> result = new ArrayList<>();
+
+		for (int i = 0; i < wordsAndLemmas.length; i += 2) {
+			result.add(new Token(wordsAndLemmas[i], wordsAndLemmas[i + 1], "X", 0, "dep", false));
+		}
+
+		return result;
+	}
+
+	@Test
+	public void testNumericRange() {
+		Lexicon lex = new RoLexicon();
+		NumericRange below =
+				lex.findNumericRange(tokens("laptopuri", "laptop", "sub", "sub", "2500", "2500",
+						"de", "de", "lei", "leu"));
+
+		assertEquals("leu", below.getUnit());
+		assertTrue(below.contains(2499));
+		assertFalse(below.contains(2500));
+
+		NumericRange atLeast = lex.findNumericRange(tokens("cu", "cu", "cel", "cel", "puțin",
+				"puțin", "8", "8", "GB", "GB", "memorie", "memorie"));
+
+		assertEquals("GB", atLeast.getUnit());
+		assertTrue(atLeast.contains(8));
+		assertFalse(atLeast.contains(4));
+
+		NumericRange between = lex.findNumericRange(tokens("între", "între", "3000", "3000", "și",
+				"și", "2000", "2000", "de", "de", "lei", "leu"));
+
+		assertEquals("leu", between.getUnit());
+		assertTrue(between.contains(2000));
+		assertTrue(between.contains(3000));
+		assertFalse(between.contains(3999));
+
+		assertNull(lex.findNumericRange(tokens("memorie", "memorie", "8", "8", "GB", "GB")));
+	}
+
+	@Test
+	public void testSuperlative() {
+		Lexicon lex = new RoLexicon();
+
+		assertTrue(lex.isSuperlative(
+				tokens("cel", "cel", "mai", "mai", "ieftin", "ieftin", "laptop", "laptop"), 2));
+		assertTrue(lex.isSuperlative(tokens("cea", "cel", "mai", "mai", "ieftină", "ieftin"), 2));
+		assertFalse(lex.isSuperlative(
+				tokens("laptop", "laptop", "mai", "mai", "ieftin", "ieftin"), 2));
+		assertFalse(lex.isSuperlative(tokens("mai", "mai", "ieftin", "ieftin"), 1));
+	}
 }
@@ -5,11 +5,17 @@ package ro.racai.robin.nlp;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.Test;
 
+import ro.racai.robin.dialog.OfflineMicroworld;
+import ro.racai.robin.dialog.RDUniverse;
 import ro.racai.robin.dialog.RoSayings;
+import ro.racai.robin.nlp.TextProcessor.Corrections;
 import ro.racai.robin.nlp.TextProcessor.Token;
 
 /**
@@ -36,4 +42,76 @@ public class RoTextProcessorTest {
 
 		assertEquals("joia de la ora zece fix", expanded);
 	}
+
+	@Test
+	public void testSpellingCorrection() {
+		RoTextProcessor tp = new RoTextProcessor(new RoLexicon(), new RoWordNet(), new RoSayings());
+		Map<String, String> dict = new HashMap<>();
+
+		dict.put("mac bug", "MacBook");
+		tp.setASRDictionary(dict);
+		tp.setSpellingVocabulary(Arrays.asList("laptop", "desktop", "memorie", "MacBook", "Apple"));
+
+		// Misspelled words are corrected, inflected and in-vocabulary ones are left alone.
+		assertEquals("Aveți laptop Apple?", tp.textCorrection("Aveți leptop Aple?"));
+		assertEquals("Ce memorie are un desktop?", tp.textCorrection("Ce memorie are un desctop?"));
+		assertEquals("Cât costă laptopurile?", tp.textCorrection("Cât costă laptopurile?"));
+		// DICT rules take precedence
+		assertEquals("Aveți MacBook acum?", tp.textCorrection("aveți mac bug acum?"));
+	}
+
+	@Test
+	public void testPhoneticCorrection() {
+		RoTextProcessor tp = new RoTextProcessor(new RoLexicon(), new RoWordNet(), new RoSayings());
+
+		tp.setSpellingVocabulary(
+				Arrays.asList("Windows", "Apple", "Acer", "Aspire", "aspira", "smartwatch", "Pro"));
+
+		assertEquals("Windows", tp.spellingCorrection("uindos"));
+		assertEquals("Apple", tp.spellingCorrection("epăl"));
+		assertEquals("Acer", tp.spellingCorrection("aisăr"));
+		assertEquals("Aspire", tp.spellingCorrection("espaiăr"));
+		assertEquals("smartwatch.", tp.spellingCorrection("smartuaci."));
+		// Same key, but too far apart
+		assertEquals("Pepper", tp.spellingCorrection("Pepper"));
+		// Same key as 'Pro', but too short to be corrected
+		assertEquals("pru", tp.spellingCorrection("pru"));
+	}
+
+	@Test
+	public void testCorrectionsSnapshot() {
+		RoTextProcessor tp = new RoTextProcessor(new RoLexicon(), new RoWordNet(), new RoSayings());
+		Map<String, String> dict = new HashMap<>();
+
+		dict.put("mac bug", "MacBook");
+		tp.setASRDictionary(dict);
+
+		Corrections before = tp.getCorrections();
+
+		tp.setSpellingVocabulary(Arrays.asList("laptop", "MacBook"));
+		dict.put("leptop", "desktop");
+
+		// A text is corrected with the rules and the indexes of one version, as a whole
+		assertEquals("Aveți MacBook leptop?", tp.textCorrection("aveți mac bug leptop?", before));
+		assertEquals("Aveți MacBook laptop?", tp.textCorrection("aveți mac bug leptop?"));
+	}
+
+	@Test
+	public void testSalesCorrections() {
+		OfflineMicroworld mw = new OfflineMicroworld();
+		RDUniverse universe = mw.load(OfflineMicroworld.SALES_MW);
+		RoTextProcessor tp = (RoTextProcessor) mw.textProcessor;
+
+		tp.setSpellingVocabulary(universe.getSpellingVocabulary());
+
+		// These used to be DICT lines of sales.mw.
+		String[][] corrections = {{"leptop", "laptop"}, {"desctop", "desktop"},
+				{"gheiming", "gaming"}, {"envidia", "NVIDIA"}, {"uindăus", "Windows"},
+				{"uindos", "Windows"}, {"linăx", "Linux"}, {"epăl", "Apple"}, {"aisăr", "Acer"},
+				{"espaiăr", "Aspire"}, {"smartuaci", "smartwatch"}};
+
+		for (String[] c : corrections) {
+			assertEquals(c[0], c[1], tp.spellingCorrection(c[0]));
+		}
+	}
 }
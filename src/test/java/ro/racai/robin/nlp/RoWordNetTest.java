@@ -4,8 +4,15 @@
 package ro.racai.robin.nlp;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 
@@ -51,4 +58,105 @@ public class RoWordNetTest {
 
 		assertEquals("plantă_lemnoasă", hypernyms.get(0));
 	}
+
+	@Test
+	public void testModelNames() {
+		assertTrue(RoWordNet.isNotInWordNet("A515-56"));
+		assertTrue(RoWordNet.isNotInWordNet("N4020"));
+		assertTrue(RoWordNet.isNotInWordNet("i5"));
+		assertTrue(RoWordNet.isNotInWordNet("SDA"));
+		assertFalse(RoWordNet.isNotInWordNet("copac"));
+		assertFalse(RoWordNet.isNotInWordNet("Copac"));
+	}
+
+	@Test
+	public void testLookupAll() {
+		Map<String, Integer> fetches = new ConcurrentHashMap<>();
+		WordNet wn = new WordNet() {
+			@Override
+			protected WordNetEntry fetchEntry(String word) {
+				fetches.merge(word, 1, Integer::sum);
+				return word.equals("lipsă") ? null
+						: new WordNetEntry(word, List.of(word + "_syn"), List.of(), List.of());
+			}
+
+			@Override
+			public List<String> getHypernyms(String word) {
+				return lookup(word).getHypernyms();
+			}
+
+			@Override
+			public List<String> getHyponyms(String word) {
+				return lookup(word).getHyponyms();
+			}
+
+			@Override
+			public List<String> getSynonyms(String word) {
+				return lookup(word).getSynonyms();
+			}
+		};
+		Map<String, WordNetEntry> entries =
+				wn.lookupAll(List.of("copac", "pom", "copac", "lipsă"));
+
+		assertEquals(List.of("copac", "pom", "lipsă"), new ArrayList<>(entries.keySet()));
+		assertEquals(List.of("copac_syn"), entries.get("copac").getSynonyms());
+		assertTrue(entries.get("lipsă").getSynonyms().isEmpty());
+
+		// Entries are cached, but not the failed lookups.
+		wn.lookupAll(List.of("pom", "lipsă"));
+		assertEquals(Map.of("copac", 1, "pom", 1, "lipsă", 2), fetches);
+	}
+
+	@Test
+	public void testLookupPool() {
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		List<String> fetched = Collections.synchronizedList(new ArrayList<>());
+		RoWordNet rown = new RoWordNet() {
+			@Override
+			protected WordNetEntry fetchEntry(String word) {
+				maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+				fetched.add(word);
+
+				try {
+					Thread.sleep(50);
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+				}
+
+				running.decrementAndGet();
+
+				if (word.equals("eroare")) {
+					throw new IllegalStateException("RELATE is down");
+				}
+
+				return new WordNetEntry(word, List.of(), List.of(word + "_hyper"), List.of());
+			}
+		};
+		List<String> words = new ArrayList<>();
+
+		for (int i = 0; i < 3 * RoWordNet.MAX_CONNECTIONS; i++) {
+			words.add("cuvânt" + (char) ('a' + i));
+		}
+
+		// Model names and words with digits are not sent to RELATE.
+		words.add("A515-56");
+		words.add("i5");
+		words.add("eroare");
+
+		Map<String, WordNetEntry> entries = rown.lookupAll(words);
+
+		assertEquals(words, new ArrayList<>(entries.keySet()));
+		assertEquals(3 * RoWordNet.MAX_CONNECTIONS + 1, fetched.size());
+		assertTrue(maxRunning.get() > 1);
+		assertTrue(maxRunning.get() <= RoWordNet.MAX_CONNECTIONS);
+		assertEquals(List.of("cuvânta_hyper"), entries.get("cuvânta").getHypernyms());
+		assertTrue(entries.get("i5").getHypernyms().isEmpty());
+
+		// The failed lookup is not cached, but it is not tried again on the calling thread.
+		assertTrue(entries.get("eroare").getHypernyms().isEmpty());
+		assertEquals(3 * RoWordNet.MAX_CONNECTIONS + 1, fetched.size());
+		rown.lookupAll(List.of("cuvânta", "eroare"));
+		assertEquals(3 * RoWordNet.MAX_CONNECTIONS + 2, fetched.size());
+	}
 }